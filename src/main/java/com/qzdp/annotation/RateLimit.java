@@ -0,0 +1,70 @@
+package com.qzdp.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:00
+ * @description 接口限流，标注在 controller方法上，由 RateLimitInterceptor在进入方法之前检查
+ *  - 本地令牌桶：每个节点按 permitsPerSecond平滑放行，突发最多 burst个，不访问 redis
+ *  - redis滑动窗口：按用户、IP或请求参数（手机号、券 id等）在整个集群内计数，多条规则一次发出
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RateLimit {
+
+    /**
+     * 限流名称，用于 redis key与指标的 name标签
+     */
+    String name();
+
+    /**
+     * 本地令牌桶每秒生成的令牌数，不大于 0时不做本地限流
+     */
+    double permitsPerSecond() default 0;
+
+    /**
+     * 本地令牌桶的容量
+     */
+    int burst() default 1;
+
+    /**
+     * redis滑动窗口规则，全部通过才放行
+     */
+    Rule[] rules() default {};
+
+    @Target({})
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Rule {
+
+        Dimension dimension();
+
+        /**
+         * dimension为 PARAM时的参数名，先找请求参数，再找路径变量
+         */
+        String param() default "";
+
+        /**
+         * 一个窗口内最多放行的请求数
+         */
+        int limit();
+
+        int windowSeconds() default 1;
+    }
+
+    enum Dimension {
+        /**
+         * 登录用户 id，未登录时跳过这条规则
+         */
+        USER,
+        /**
+         * 客户端 IP
+         */
+        IP,
+        /**
+         * 请求参数或路径变量
+         */
+        PARAM
+    }
+}
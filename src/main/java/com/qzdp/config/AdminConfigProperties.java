@@ -0,0 +1,22 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 16:00
+ * @description 运维接口（/admin/**）的配置
+ */
+@ConfigurationProperties("hm.admin")
+@Data
+public class AdminConfigProperties {
+
+    /**
+     * 可以访问运维接口的用户 id，为空时所有用户都不能访问
+     */
+    private List<Long> userIds = new ArrayList<>();
+}
@@ -0,0 +1,50 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:35
+ * @description 布隆过滤器的配置
+ */
+@ConfigurationProperties("hm.bloom")
+@Data
+public class BloomFilterConfigProperties {
+
+    /**
+     * 是否开启布隆过滤器
+     */
+    private Boolean enabled = true;
+
+    /**
+     * redis：基于 redis bitmap，所有节点共享；
+     * local：每个节点堆内一份，新增 id通过发布订阅同步，大于构建时最大 id的请求不会被拦截
+     */
+    private String type = "redis";
+
+    /**
+     * 每张表预期的 id数量
+     */
+    private Long expectedInsertions = 1000000L;
+
+    /**
+     * 预期误判率
+     */
+    private Double fpp = 0.01;
+
+    /**
+     * 启动时分批读取 id的批次大小
+     */
+    private Integer batchSize = 1000;
+
+    /**
+     * 检查是否需要重建的间隔，redis模式下同时切换到其它节点重建好的位数组
+     */
+    private Long checkMillis = 60000L;
+
+    /**
+     * 距离上次构建超过这个时间就重新从数据库构建，把加入失败的 id补进位数组并提高最大 id
+     */
+    private Long rebuildMillis = 86400000L;
+}
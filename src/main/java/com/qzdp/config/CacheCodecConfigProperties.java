@@ -0,0 +1,24 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:10
+ * @description 缓存值编码格式的配置
+ */
+@ConfigurationProperties("hm.cache.codec")
+@Data
+public class CacheCodecConfigProperties {
+
+    /**
+     * 写入缓存使用的格式：json 或 binary，读取时两种格式都能识别
+     */
+    private String type = "binary";
+
+    /**
+     * 二进制 body超过多少字节才压缩
+     */
+    private Integer compressThreshold = 1024;
+}
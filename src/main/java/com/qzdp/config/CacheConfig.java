@@ -0,0 +1,85 @@
+package com.qzdp.config;
+
+import com.qzdp.utils.codec.*;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 10:22
+ * @description 缓存相关配置
+ */
+@EnableConfigurationProperties({LocalCacheConfigProperties.class, BloomFilterConfigProperties.class,
+        CacheCodecConfigProperties.class, CacheExpireConfigProperties.class, HotKeyConfigProperties.class,
+        WarmupConfigProperties.class})
+@Configuration
+public class CacheConfig {
+
+    /**
+     * 缓存值直接读写字节，由 {@link CacheCodec}负责编解码
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    @Bean
+    public CacheCodec cacheCodec(CacheCodecConfigProperties properties) {
+        BinaryCacheCodec binary = new BinaryCacheCodec(EntitySchemas.all(), properties.getCompressThreshold());
+        return new MigratingCacheCodec(binary, new JsonCacheCodec(), "binary".equals(properties.getType()));
+    }
+
+    /**
+     * 异步查询缓存使用的 lettuce连接，复用 spring创建的客户端，key为字符串，value为字节
+     */
+    @Bean(destroyMethod = "close")
+    public StatefulConnection<String, byte[]> cacheAsyncConnection(LettuceConnectionFactory connectionFactory) {
+        RedisCodec<String, byte[]> codec = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+        AbstractRedisClient client = connectionFactory.getRequiredNativeClient();
+        if (client instanceof RedisClusterClient) {
+            return ((RedisClusterClient) client).connect(codec);
+        }
+        // 单机模式下 spring创建的客户端没有默认地址，需要自己指定
+        RedisURI uri = RedisURI.builder()
+                .withHost(connectionFactory.getHostName())
+                .withPort(connectionFactory.getPort())
+                .withDatabase(connectionFactory.getDatabase())
+                .withSsl(connectionFactory.isUseSsl())
+                .build();
+        if (connectionFactory.getPassword() != null) {
+            uri.setPassword((CharSequence) connectionFactory.getPassword());
+        }
+        return ((RedisClient) client).connect(codec, uri);
+    }
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public RedisClusterAsyncCommands<String, byte[]> cacheAsyncCommands(StatefulConnection<String, byte[]> cacheAsyncConnection) {
+        if (cacheAsyncConnection instanceof StatefulRedisClusterConnection) {
+            return ((StatefulRedisClusterConnection<String, byte[]>) cacheAsyncConnection).async();
+        }
+        return ((StatefulRedisConnection<String, byte[]>) cacheAsyncConnection).async();
+    }
+}
@@ -0,0 +1,30 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:40
+ * @description 缓存过期时间策略的配置
+ */
+@ConfigurationProperties("hm.cache.expire")
+@Data
+public class CacheExpireConfigProperties {
+
+    /**
+     * fixed：固定过期时间；uniform：在基础时间上增加均匀分布的随机时间；
+     * exponential：在基础时间上增加指数分布的随机时间，大部分 key集中在基础时间附近，少量 key分散到更远
+     */
+    private String mode = "uniform";
+
+    /**
+     * 随机时间相对基础时间的比例，uniform为最大比例，exponential为平均比例
+     */
+    private Double jitterRatio = 0.1;
+
+    /**
+     * exponential模式下随机时间的上限，是平均值的倍数
+     */
+    private Double maxJitterMultiple = 4.0;
+}
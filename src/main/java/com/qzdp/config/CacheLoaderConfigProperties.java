@@ -0,0 +1,25 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 19:10
+ * @description 缓存重建（回源数据库）线程池的配置
+ */
+@ConfigurationProperties("hm.cache.loader")
+@Data
+public class CacheLoaderConfigProperties {
+
+    private Integer coreSize = 8;
+
+    private Integer maxSize = 32;
+
+    private Integer keepAliveTime = 60;
+
+    /**
+     * 等待队列长度，队列满了直接拒绝，不让回源任务无限堆积
+     */
+    private Integer queueCapacity = 1000;
+}
@@ -0,0 +1,15 @@
+package com.qzdp.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 07:00
+ * @description 关注推送（feed）与热门笔记排行相关配置
+ */
+@EnableConfigurationProperties({FeedConfigProperties.class, RankConfigProperties.class})
+@Configuration
+public class FeedConfig {
+
+}
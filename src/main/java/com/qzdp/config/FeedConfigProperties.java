@@ -0,0 +1,95 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 07:00
+ * @description 关注推送（feed）的配置
+ */
+@ConfigurationProperties("hm.feed")
+@Data
+public class FeedConfigProperties {
+
+    /**
+     * 推送时每页从 tb_follow读取的粉丝数，也是一次 pipeline写入的收件箱数
+     */
+    private Integer fanoutPageSize = 1000;
+
+    /**
+     * 没有推送任务时阻塞等待的毫秒数
+     */
+    private Integer blockMillis = 2000;
+
+    /**
+     * 扫描未完成推送任务的间隔
+     */
+    private Long reclaimMillis = 10000L;
+
+    /**
+     * 推送任务超过该时间没有进展（节点宕机）时由其它节点接管
+     */
+    private Long minIdleMillis = 60000L;
+
+    /**
+     * 推送任务的最大投递次数，推送失败后约每 blockMillis重试一次，达到后确认并丢弃
+     */
+    private Integer maxDeliveries = 10;
+
+    /**
+     * 推送进度的保留时间，需要大于任务可能中断的最长时间
+     */
+    private Long checkpointTtlSeconds = 86400L;
+
+    /**
+     * 粉丝数不少于该值的作者只写自己的发件箱，由粉丝读取时拉取
+     */
+    private Long bigAuthorFollowers = 10000L;
+
+    /**
+     * 每个作者发件箱保留的笔记数
+     */
+    private Integer outboxSize = 1000;
+
+    /**
+     * 收件箱在最后一次读取之后保留的天数，只推送给收件箱还存在的粉丝；不大于 0时推送给所有粉丝，收件箱不过期
+     * 过期时收件箱中还没有归档的笔记一起删除，重建只能找回每个作者最近 rebuildPerAuthor篇
+     */
+    private Integer activeDays = 7;
+
+    /**
+     * 收件箱过期后重建时，从每个关注的作者的发件箱取的笔记数
+     */
+    private Integer rebuildPerAuthor = 50;
+
+    /**
+     * 关注时间线每页的笔记数
+     */
+    private Integer pageSize = 2;
+
+    /**
+     * 各节点刷新大 V名单的间隔
+     */
+    private Long bigAuthorsRefreshMillis = 30000L;
+
+    /**
+     * 每个收件箱在 redis中保留的笔记数，更早的归档到 tb_feed_archive
+     */
+    private Integer inboxSize = 1000;
+
+    /**
+     * 收件箱超出 inboxSize达到这么多条时才交给归档任务，一次归档一批，收件箱最多 inboxSize + compactBatch条
+     */
+    private Integer compactBatch = 100;
+
+    /**
+     * 归档任务的执行间隔
+     */
+    private Long compactMillis = 5000L;
+
+    /**
+     * 归档任务每次最多处理的收件箱数
+     */
+    private Integer compactKeysPerRun = 200;
+}
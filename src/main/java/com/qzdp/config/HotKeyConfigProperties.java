@@ -0,0 +1,64 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:05
+ * @description 热点 key探测与本地副本的配置
+ */
+@ConfigurationProperties("hm.cache.hotkey")
+@Data
+public class HotKeyConfigProperties {
+
+    /**
+     * 是否开启热点 key探测
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 采样比例，只有被采样的访问才计数
+     */
+    private Double sampleRate = 0.1;
+
+    /**
+     * 滑动窗口长度
+     */
+    private Integer windowSeconds = 10;
+
+    /**
+     * 窗口切分的段数，每段一个计数器，过期的段整段清空
+     */
+    private Integer windowSlices = 5;
+
+    /**
+     * 单个节点在一个窗口内的访问次数（按采样比例折算）超过该值即判定为热点
+     */
+    private Long threshold = 1000L;
+
+    /**
+     * count-min sketch每行的计数器个数，需要是 2的幂
+     */
+    private Integer sketchWidth = 4096;
+
+    /**
+     * count-min sketch的行数（哈希函数个数）
+     */
+    private Integer sketchDepth = 4;
+
+    /**
+     * 本地副本的有效期，过期后下一次访问重新从 redis读取，决定了副本最多落后多久
+     */
+    private Integer replicaTtlMillis = 2000;
+
+    /**
+     * 晋升的有效期，期间持续热点会自动续期
+     */
+    private Integer promoteSeconds = 60;
+
+    /**
+     * 每个节点最多固定的热点 key个数
+     */
+    private Integer maxPinned = 1000;
+}
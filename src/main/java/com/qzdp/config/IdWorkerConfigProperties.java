@@ -0,0 +1,49 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 03:00
+ * @description 全局 id生成的配置
+ */
+@ConfigurationProperties("hm.id")
+@Data
+public class IdWorkerConfigProperties {
+
+    /**
+     * id生成器：redis（RedisIdWorker）或 snowflake（SnowflakeIdGenerator，生成 id不访问 redis）
+     */
+    private String type = "redis";
+
+    /**
+     * incr：每个 id一次 INCR；lease：每个节点一次 INCRBY租用一段序列号，在本地发放
+     */
+    private String mode = "incr";
+
+    /**
+     * 每次租用的序列号个数，节点重启时未用完的序列号会被跳过
+     */
+    private Integer leaseSize = 1000;
+
+    /**
+     * 当前号段用掉该比例后异步租用下一段
+     */
+    private Double prefetchRatio = 0.8;
+
+    /**
+     * snowflake的 worker id租约时长，节点宕机后超过该时间 worker id才能被其它节点使用
+     */
+    private Long workerTtlMillis = 30000L;
+
+    /**
+     * worker id续期间隔，需要明显小于 workerTtlMillis
+     */
+    private Long workerHeartbeatMillis = 10000L;
+
+    /**
+     * 允许等待的最大时钟回拨毫秒数，超过时拒绝生成 id
+     */
+    private Long maxBackwardMillis = 5L;
+}
@@ -0,0 +1,37 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 10:05
+ * @description 进程内一级缓存（L1）的配置
+ */
+@ConfigurationProperties("hm.cache.local")
+@Data
+public class LocalCacheConfigProperties {
+
+    /**
+     * 是否开启本地缓存
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 每个 key前缀最多缓存的条目数
+     */
+    private Long maximumSize = 10000L;
+
+    /**
+     * 写入后多少秒过期，兜底跨节点失效消息丢失的情况
+     */
+    private Integer expireSeconds = 60;
+
+    /**
+     * 允许走本地缓存的 key前缀，查询结果会被调用方修改的前缀不要配置在这里
+     */
+    private List<String> prefixes = new ArrayList<>();
+}
@@ -4,6 +4,7 @@ import cn.hutool.core.thread.ThreadFactoryBuilder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 import java.util.concurrent.*;
 
@@ -13,12 +14,13 @@ import java.util.concurrent.*;
  * @description 配置线程池
  */
 
-@EnableConfigurationProperties(ThreadPoolConfigProperties.class)
+@EnableConfigurationProperties({ThreadPoolConfigProperties.class, CacheLoaderConfigProperties.class})
 @Configuration
 public class MyThreadConfig {
 
     private static final ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNamePrefix("demo-pool-").build();
 
+    @Primary
     @Bean
     public ThreadPoolExecutor threadPoolExecutor(ThreadPoolConfigProperties pool) {
         return new ThreadPoolExecutor(
@@ -32,4 +34,20 @@ public class MyThreadConfig {
         );
     }
 
+    /**
+     * 缓存回源数据库专用的有界线程池，和业务线程池隔离
+     */
+    @Bean
+    public ThreadPoolExecutor cacheLoaderExecutor(CacheLoaderConfigProperties pool) {
+        return new ThreadPoolExecutor(
+                pool.getCoreSize(),
+                pool.getMaxSize(),
+                pool.getKeepAliveTime(),
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(pool.getQueueCapacity()),
+                new ThreadFactoryBuilder().setNamePrefix("cache-loader-").build(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
 }
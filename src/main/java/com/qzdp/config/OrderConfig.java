@@ -0,0 +1,20 @@
+package com.qzdp.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:36
+ * @description 秒杀订单相关配置，开启定时任务用于消费节点的心跳
+ *  定时任务线程数由 spring.task.scheduling.pool.size配置，需要不少于 @Scheduled任务数，
+ *  否则订单分片与 worker id的心跳会排在排行重建、收件箱归档等慢任务后面，租约过期
+ */
+@EnableConfigurationProperties({OrderConsumerConfigProperties.class, SeckillConfigProperties.class,
+        IdWorkerConfigProperties.class})
+@EnableScheduling
+@Configuration
+public class OrderConfig {
+
+}
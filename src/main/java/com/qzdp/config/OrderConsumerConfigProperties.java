@@ -0,0 +1,79 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:35
+ * @description 秒杀订单消费者的配置
+ */
+@ConfigurationProperties("hm.order.consumer")
+@Data
+public class OrderConsumerConfigProperties {
+
+    /**
+     * 每次从 stream.orders读取的最大消息数
+     */
+    private Integer batchSize = 200;
+
+    /**
+     * 没有消息时阻塞等待的毫秒数
+     */
+    private Integer blockMillis = 2000;
+
+    /**
+     * 每个节点的消费线程数
+     */
+    private Integer threads = 2;
+
+    /**
+     * 订单 stream的分片数，活动进行中不能修改，否则优惠券会被路由到其它分片
+     */
+    private Integer shards = 4;
+
+    /**
+     * 节点标识，为空时使用 应用名-主机名-端口，同一台机器重启后保持不变
+     */
+    private String nodeId;
+
+    /**
+     * 节点心跳间隔
+     */
+    private Long heartbeatMillis = 5000L;
+
+    /**
+     * 超过该时间没有心跳的节点视为已下线，它的分片分给其它节点
+     */
+    private Long nodeTtlMillis = 15000L;
+
+    /**
+     * 扫描 pending-list的间隔
+     */
+    private Long reclaimMillis = 10000L;
+
+    /**
+     * 投递后超过该时间仍未确认的消息会被接管，需要明显大于一批订单的处理时间
+     */
+    private Long minIdleMillis = 60000L;
+
+    /**
+     * 每个分片每次最多接管的消息数
+     */
+    private Integer reclaimBatchSize = 100;
+
+    /**
+     * 最大投递次数，超过后转入死信 stream
+     */
+    private Integer maxDeliveries = 5;
+
+    /**
+     * 订单处理结果在 redis中的保留时间，下单超过这个时间仍查不到结果时返回 EXPIRED
+     */
+    private Long resultTtlSeconds = 600L;
+
+    /**
+     * 查询订单结果时最长的等待时间
+     */
+    private Long resultMaxWaitMillis = 10000L;
+}
@@ -0,0 +1,49 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 11:00
+ * @description 热门笔记排行的配置
+ */
+@ConfigurationProperties("hm.rank")
+@Data
+public class RankConfigProperties {
+
+    /**
+     * 打分方式：gravity按点赞数随发布时间衰减，score = liked / (小时数 + 2) ^ gravity；liked只按点赞数
+     */
+    private String mode = "gravity";
+
+    /**
+     * 时间衰减的指数，越大新笔记越靠前
+     */
+    private Double gravity = 1.8;
+
+    /**
+     * gravity模式下只给最近这么多天发布的笔记排名，liked模式下不限制
+     */
+    private Integer windowDays = 7;
+
+    /**
+     * 排行中最多保留的笔记数
+     */
+    private Integer maxSize = 10000;
+
+    /**
+     * gravity模式下重新计算全部分数的间隔
+     */
+    private Long recomputeMillis = 300000L;
+
+    /**
+     * 从数据库重建排行的间隔
+     */
+    private Long reconcileMillis = 3600000L;
+
+    /**
+     * 重建时每页从 tb_blog读取的笔记数
+     */
+    private Integer reconcilePageSize = 1000;
+}
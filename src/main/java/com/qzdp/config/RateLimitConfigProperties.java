@@ -0,0 +1,33 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:10
+ * @description 接口限流的配置，具体的限流规则写在 controller方法的 @RateLimit上
+ */
+@ConfigurationProperties("hm.ratelimit")
+@Data
+public class RateLimitConfigProperties {
+
+    /**
+     * 是否开启限流
+     */
+    private Boolean enabled = true;
+
+    /**
+     * redis不可用时是否放行，false时直接拒绝
+     */
+    private Boolean failOpen = true;
+
+    /**
+     * 可信的反向代理（nginx、负载均衡）地址或 IPv4网段，只有请求来自这些地址时才按 X-Forwarded-For取客户端 IP
+     * 为空时一律使用连接的地址
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+}
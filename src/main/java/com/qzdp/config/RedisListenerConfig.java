@@ -0,0 +1,50 @@
+package com.qzdp.config;
+
+import com.qzdp.utils.BloomFilterRegistry;
+import com.qzdp.utils.HotKeyDetector;
+import com.qzdp.utils.LocalCache;
+import com.qzdp.utils.OrderResultStore;
+import com.qzdp.utils.SeckillLocalState;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static com.qzdp.utils.RedisConstants.BLOOM_PUT_CHANNEL;
+import static com.qzdp.utils.RedisConstants.CACHE_HOTKEY_CHANNEL;
+import static com.qzdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+import static com.qzdp.utils.RedisConstants.ORDER_RESULT_CHANNEL;
+import static com.qzdp.utils.RedisConstants.SECKILL_STATE_CHANNEL;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 10:20
+ * @description redis发布订阅的监听配置，用于节点之间广播消息
+ */
+@Configuration
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       LocalCache localCache,
+                                                                       HotKeyDetector hotKeyDetector,
+                                                                       SeckillLocalState seckillLocalState,
+                                                                       OrderResultStore orderResultStore,
+                                                                       BloomFilterRegistry bloomFilterRegistry) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        // 本地缓存失效
+        container.addMessageListener(localCache, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        // 热点 key晋升，以及删除缓存时清空热点副本
+        container.addMessageListener(hotKeyDetector, new ChannelTopic(CACHE_HOTKEY_CHANNEL));
+        container.addMessageListener(hotKeyDetector, new ChannelTopic(CACHE_INVALIDATE_CHANNEL));
+        // 秒杀券时间窗口变化、售罄
+        container.addMessageListener(seckillLocalState, new ChannelTopic(SECKILL_STATE_CHANNEL));
+        // 订单处理结果，唤醒等待中的长轮询请求
+        container.addMessageListener(orderResultStore, new ChannelTopic(ORDER_RESULT_CHANNEL));
+        // 堆内布隆过滤器新增 id
+        container.addMessageListener(bloomFilterRegistry, new ChannelTopic(BLOOM_PUT_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,21 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 00:20
+ * @description 秒杀库存的配置
+ */
+@ConfigurationProperties("hm.seckill")
+@Data
+public class SeckillConfigProperties {
+
+    /**
+     * 新建秒杀券时库存拆分的段数，1表示不拆分
+     * 每一段落在不同的订单分片（slot）上，段数超过 hm.order.consumer.shards时多出的段与其它段共用分片
+     * 段数在创建秒杀券时写入 redis，修改配置只影响之后创建的秒杀券
+     */
+    private Integer segments = 1;
+}
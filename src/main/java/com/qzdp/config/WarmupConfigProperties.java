@@ -0,0 +1,34 @@
+package com.qzdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:00
+ * @description 启动预热的配置
+ */
+@ConfigurationProperties("hm.warmup")
+@Data
+public class WarmupConfigProperties {
+
+    /**
+     * 是否在启动时预热商铺缓存和地理位置索引
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 每批从数据库读取、写入 redis的商铺数
+     */
+    private Integer batchSize = 500;
+
+    /**
+     * 最多等待多少秒，超过后不再阻塞就绪探针，预热在后台继续
+     */
+    private Integer deadlineSeconds = 120;
+
+    /**
+     * 商铺缓存的写入方式，需要与读取方式一致：ttl（空值穿透、互斥锁）或 logical（逻辑过期）
+     */
+    private String cacheMode = "ttl";
+}
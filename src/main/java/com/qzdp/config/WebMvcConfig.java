@@ -1,8 +1,12 @@
 package com.qzdp.config;
 
+import com.qzdp.interceptor.AdminInterceptor;
 import com.qzdp.interceptor.LoginInterceptor;
+import com.qzdp.interceptor.RateLimitInterceptor;
 import com.qzdp.interceptor.RefreshTokenInterceptor;
+import com.qzdp.utils.RateLimiter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -14,12 +18,22 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * @description
  */
 
+@EnableConfigurationProperties({RateLimitConfigProperties.class, AdminConfigProperties.class})
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private AdminConfigProperties adminConfigProperties;
+
+    @Autowired
+    private RateLimitConfigProperties rateLimitConfigProperties;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 登录拦截器 order中数值越大优先级越低
@@ -29,11 +43,15 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/voucher/**",
                         "/shop-type/**",
                         "/upload/**",
-                        "/blog/hot",
+                        "/blog/hot/**",
                         "/user/code",
                         "/user/login"
                 ).order(1);
+        // 运维接口只允许配置的管理员访问
+        registry.addInterceptor(new AdminInterceptor(adminConfigProperties)).addPathPatterns("/admin/**").order(1);
         // token刷新的拦截器
         registry.addInterceptor(new RefreshTokenInterceptor(redisTemplate)).addPathPatterns("/**").order(0);
+        // 限流拦截器，只处理标注了 @RateLimit的方法，放在登录校验之后，按用户限流时可以取到用户
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, rateLimitConfigProperties)).addPathPatterns("/**").order(2);
     }
 }
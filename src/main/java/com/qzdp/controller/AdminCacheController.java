@@ -0,0 +1,40 @@
+package com.qzdp.controller;
+
+import com.qzdp.dto.Result;
+import com.qzdp.utils.HotKeyDetector;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:40
+ * @description 缓存运维接口，数据只反映当前节点，只允许 hm.admin.userIds中的用户访问（AdminInterceptor）
+ */
+@RestController
+@RequestMapping("/admin/cache")
+public class AdminCacheController {
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 当前节点固定的热点 key及本地副本命中率
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 查询某个 key在当前窗口内估算的访问次数
+     * @param key 完整的 key
+     */
+    @GetMapping("/hot-keys/{key}")
+    public Result estimate(@PathVariable("key") String key) {
+        return Result.ok(hotKeyDetector.estimate(key));
+    }
+}
@@ -0,0 +1,40 @@
+package com.qzdp.controller;
+
+import com.qzdp.dto.Result;
+import com.qzdp.utils.OrderPendingReclaimer;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 23:30
+ * @description 秒杀订单运维接口，只允许 hm.admin.userIds中的用户访问（AdminInterceptor）
+ */
+@RestController
+@RequestMapping("/admin/order")
+public class AdminOrderController {
+
+    @Resource
+    private OrderPendingReclaimer orderPendingReclaimer;
+
+    /**
+     * 查看死信 stream中最早的消息
+     * @param count 条数
+     */
+    @GetMapping("/dead-letters")
+    public Result deadLetters(@RequestParam(value = "count", defaultValue = "100") Integer count) {
+        return Result.ok(orderPendingReclaimer.deadLetters(count));
+    }
+
+    /**
+     * 把死信重新投递到订单分片 stream，修复数据或代码问题后使用
+     * @param id 死信消息 id，不传时重放最早的 count条
+     * @param count 条数
+     */
+    @PostMapping("/dead-letters/replay")
+    public Result replay(@RequestParam(value = "id", required = false) String id,
+                         @RequestParam(value = "count", defaultValue = "100") Integer count) {
+        return Result.ok(orderPendingReclaimer.replay(id, count));
+    }
+}
@@ -5,9 +5,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.qzdp.dto.Result;
 import com.qzdp.dto.UserDTO;
 import com.qzdp.entity.Blog;
-import com.qzdp.entity.User;
 import com.qzdp.service.IBlogService;
-import com.qzdp.service.IUserService;
+import com.qzdp.utils.BlogHydrator;
 import com.qzdp.utils.SystemConstants;
 import com.qzdp.utils.UserHolder;
 import org.springframework.web.bind.annotation.*;
@@ -23,7 +22,7 @@ public class BlogController {
     @Resource
     private IBlogService blogService;
     @Resource
-    private IUserService userService;
+    private BlogHydrator blogHydrator;
 
     @PostMapping
     public Result saveBlog(@RequestBody Blog blog) {
@@ -46,25 +45,27 @@ public class BlogController {
                 .eq("user_id", user.getId()).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
         // 获取当前页数据
         List<Blog> records = page.getRecords();
+        blogHydrator.hydrate(records);
         return Result.ok(records);
     }
 
     @GetMapping("/hot")
     public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-        });
-        return Result.ok(records);
+        return blogService.queryHotBlog(current);
+    }
+
+    /**
+     * 按热门排行的分数滚动分页，lastScore为上一页返回的 minScore，不需要登录
+     * 排行定时重算分数，跨过重算的两页之间可能有少量重复或遗漏，前端按 id去重
+     * @param max
+     * @param offset
+     * @return
+     */
+    @GetMapping("/hot/scroll")
+    public Result queryHotBlogScroll(
+            @RequestParam(value = "lastScore", required = false) Double max,
+            @RequestParam(value = "offset", defaultValue = "0") Integer offset) {
+        return blogService.queryHotBlogScroll(max, offset);
     }
 
     @GetMapping("/{id}")
@@ -85,6 +86,7 @@ public class BlogController {
                 .eq("user_id", id).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
         // 获取当前页数据
         List<Blog> records = page.getRecords();
+        blogHydrator.hydrate(records);
         return Result.ok(records);
     }
 
@@ -8,8 +8,10 @@ import com.qzdp.entity.Shop;
 import com.qzdp.service.IShopService;
 import com.qzdp.utils.SystemConstants;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.Resource;
+import java.util.concurrent.CompletionException;
 
 /**
  * <p>
@@ -25,13 +27,23 @@ public class ShopController {
     public IShopService shopService;
 
     /**
-     * 根据id查询商铺信息
+     * 根据id查询商铺信息，异步返回，等待 redis和数据库期间不占用 tomcat线程
      * @param id 商铺id
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryById(id);
+    public DeferredResult<Result> queryShopById(@PathVariable("id") Long id) {
+        DeferredResult<Result> deferredResult = new DeferredResult<>(SystemConstants.ASYNC_REQUEST_TIMEOUT);
+        deferredResult.onTimeout(() -> deferredResult.setResult(Result.fail("查询超时，请稍后重试")));
+        shopService.queryByIdAsync(id).whenComplete((result, e) -> {
+            if (e != null) {
+                // 交给 WebExceptionAdvice统一处理
+                deferredResult.setErrorResult(e instanceof CompletionException ? e.getCause() : e);
+            } else {
+                deferredResult.setResult(result);
+            }
+        });
+        return deferredResult;
     }
 
     /**
@@ -41,10 +53,7 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.qzdp.controller;
 
 
+import com.qzdp.annotation.RateLimit;
 import com.qzdp.dto.LoginFormDTO;
 import com.qzdp.dto.Result;
 import com.qzdp.dto.UserDTO;
@@ -26,8 +27,12 @@ public class UserController {
     private IUserInfoService userInfoService;
 
     /**
-     * 发送手机验证码
+     * 发送手机验证码，每个 IP每分钟 20次，每个手机号 10分钟 5次
      */
+    @RateLimit(name = "code", permitsPerSecond = 200, burst = 400, rules = {
+            @RateLimit.Rule(dimension = RateLimit.Dimension.IP, limit = 20, windowSeconds = 60),
+            @RateLimit.Rule(dimension = RateLimit.Dimension.PARAM, param = "phone", limit = 5, windowSeconds = 600)
+    })
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
         return userService.sendCode(phone, session);
@@ -1,12 +1,11 @@
 package com.qzdp.controller;
 
 
+import com.qzdp.annotation.RateLimit;
 import com.qzdp.dto.Result;
 import com.qzdp.service.IVoucherOrderService;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.Resource;
 
@@ -24,8 +23,27 @@ public class VoucherOrderController {
     @Resource
     private IVoucherOrderService voucherOrderService;
 
+    /**
+     * 每个节点平滑放行，集群内每个用户每秒 5次、每个 IP每秒 50次、每张券每秒 20000次
+     */
+    @RateLimit(name = "seckill", permitsPerSecond = 5000, burst = 10000, rules = {
+            @RateLimit.Rule(dimension = RateLimit.Dimension.USER, limit = 5),
+            @RateLimit.Rule(dimension = RateLimit.Dimension.IP, limit = 50),
+            @RateLimit.Rule(dimension = RateLimit.Dimension.PARAM, param = "id", limit = 20000)
+    })
     @PostMapping("seckill/{id}")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
         return voucherOrderService.secKillVoucher(voucherId);
     }
+
+    /**
+     * 查询秒杀订单的处理结果：PENDING、SUCCESS、DUPLICATE、SOLD_OUT、FAILED、EXPIRED
+     * 下单超过 hm.order.consumer.resultTtlSeconds后结果不再保留，返回 EXPIRED，客户端应停止轮询
+     * @param waitMillis 还没有结果时最长等待的毫秒数（长轮询），0表示立即返回
+     */
+    @GetMapping("result/{id}")
+    public DeferredResult<Result> orderResult(@PathVariable("id") Long orderId,
+                                              @RequestParam(value = "waitMillis", defaultValue = "0") Long waitMillis) {
+        return voucherOrderService.queryOrderResult(orderId, waitMillis);
+    }
 }
@@ -0,0 +1,35 @@
+package com.qzdp.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:15
+ * @description 热点 key在当前节点的状态
+ */
+@Data
+public class HotKeyDTO {
+
+    private String key;
+
+    /**
+     * 当前窗口内估算的访问次数
+     */
+    private Long estimate;
+
+    /**
+     * 本地副本命中次数
+     */
+    private Long hits;
+
+    /**
+     * 晋升后仍然访问了 redis的次数（副本还没加载或已过期）
+     */
+    private Long misses;
+
+    private Double hitRate;
+
+    private LocalDateTime promotedUntil;
+}
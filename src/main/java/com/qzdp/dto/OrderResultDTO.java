@@ -0,0 +1,24 @@
+package com.qzdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 06:00
+ * @description 秒杀订单的处理结果，status见 OrderResultStore.Status
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderResultDTO {
+
+    private Long orderId;
+
+    private Long userId;
+
+    private Long voucherId;
+
+    private String status;
+}
@@ -15,4 +15,8 @@ public class ScrollResult {
     private List<?> list;
     private Long minTime;
     private Integer offset;
+    /**
+     * 按分数滚动分页时，本页最小的分数
+     */
+    private Double minScore;
 }
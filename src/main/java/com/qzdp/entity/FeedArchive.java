@@ -0,0 +1,55 @@
+package com.qzdp.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 收件箱超出上限后归档的旧笔记
+ * </p>
+ *
+
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("tb_feed_archive")
+public class FeedArchive implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 收件箱所属的用户id
+     */
+    private Long userId;
+
+    /**
+     * 探店笔记id
+     */
+    private Long blogId;
+
+    /**
+     * 笔记发布的毫秒时间戳，即收件箱中的score
+     */
+    private Long publishTime;
+
+    /**
+     * 归档时间
+     */
+    private LocalDateTime createTime;
+
+
+}
@@ -0,0 +1,39 @@
+package com.qzdp.interceptor;
+
+import com.qzdp.config.AdminConfigProperties;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.utils.UserHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 16:00
+ * @description 运维接口的拦截器，只拦截 /admin/**，放在登录拦截器之后
+ *  死信重放、热点 key查询等接口只允许 hm.admin.userIds中的用户访问，其它登录用户返回 403
+ */
+public class AdminInterceptor implements HandlerInterceptor {
+
+    private final AdminConfigProperties properties;
+
+    public AdminInterceptor(AdminConfigProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            response.setStatus(401);
+            return false;
+        }
+        if (!properties.getUserIds().contains(user.getId())) {
+            //403 已登录但不是管理员
+            response.setStatus(403);
+            return false;
+        }
+        return true;
+    }
+}
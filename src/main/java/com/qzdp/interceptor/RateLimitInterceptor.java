@@ -0,0 +1,124 @@
+package com.qzdp.interceptor;
+
+import cn.hutool.core.lang.Validator;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.qzdp.annotation.RateLimit;
+import com.qzdp.config.RateLimitConfigProperties;
+import com.qzdp.dto.Result;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.utils.RateLimiter;
+import com.qzdp.utils.UserHolder;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:20
+ * @description 限流拦截器，只处理标注了 @RateLimit的方法
+ *  职责：
+ *      - 按规则取出用户 id、客户端 IP或请求参数，只有经过 hm.ratelimit.trustedProxies中的代理时才信任 X-Forwarded-For
+ *      - 交给 RateLimiter判断
+ *      - 被拒绝时返回 429
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String TOO_MANY_REQUESTS = JSONUtil.toJsonStr(Result.fail("请求太频繁，请稍后再试"));
+
+    private final RateLimiter rateLimiter;
+
+    /**
+     * 可信的反向代理地址，只有请求来自这些地址时才读取 X-Forwarded-For
+     */
+    private final List<String> trustedProxies;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitConfigProperties properties) {
+        this.rateLimiter = rateLimiter;
+        this.trustedProxies = properties.getTrustedProxies();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod) || !rateLimiter.isEnabled()) {
+            return true;
+        }
+        RateLimit limit = ((HandlerMethod) handler).getMethodAnnotation(RateLimit.class);
+        if (limit == null) {
+            return true;
+        }
+        List<String> values = new ArrayList<>(limit.rules().length);
+        for (RateLimit.Rule rule : limit.rules()) {
+            values.add(resolve(rule, request));
+        }
+        if (rateLimiter.tryAcquire(limit, values) == null) {
+            return true;
+        }
+        response.setStatus(429);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getOutputStream().write(TOO_MANY_REQUESTS.getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    String resolve(RateLimit.Rule rule, HttpServletRequest request) {
+        switch (rule.dimension()) {
+            case USER:
+                UserDTO user = UserHolder.getUser();
+                return user == null ? null : String.valueOf(user.getId());
+            case IP:
+                return clientIp(request);
+            default:
+                String value = request.getParameter(rule.param());
+                if (value == null) {
+                    Map<String, String> variables =
+                            (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+                    value = variables == null ? null : variables.get(rule.param());
+                }
+                return StrUtil.isBlank(value) ? null : value;
+        }
+    }
+
+    /**
+     * 请求直接来自客户端时取连接的地址，X-Forwarded-For可以由客户端随意填写，不能用来限流
+     * 来自可信代理时从右往左跳过 X-Forwarded-For中的可信代理，第一个不可信的地址就是客户端，更左边的地址同样可能是伪造的
+     */
+    String clientIp(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (StrUtil.isBlank(forwarded) || !isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 支持单个地址和 IPv4网段，例如 10.0.0.0/8
+     */
+    private boolean isTrustedProxy(String ip) {
+        for (String proxy : trustedProxies) {
+            if (proxy.equals(ip)) {
+                return true;
+            }
+            if (proxy.contains("/") && Validator.isIpv4(ip) && NetUtil.isInRange(ip, proxy)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.qzdp.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.qzdp.entity.FeedArchive;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ *
+
+ */
+public interface FeedArchiveMapper extends BaseMapper<FeedArchive> {
+
+    /**
+     * 批量归档，已经归档过的笔记忽略
+     */
+    int insertIgnoreBatch(@Param("list") List<FeedArchive> list);
+
+    /**
+     * 按发布时间倒序查询不晚于 max的归档笔记
+     */
+    List<FeedArchive> queryBefore(@Param("userId") Long userId, @Param("max") long max, @Param("limit") int limit);
+}
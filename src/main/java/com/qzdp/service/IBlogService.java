@@ -42,6 +42,21 @@ public interface IBlogService extends IService<Blog> {
      */
     Result likeBlog(Long id);
 
+    /**
+     * 按热门排行分页查询博客
+     * @param current
+     * @return
+     */
+    Result queryHotBlog(Integer current);
+
+    /**
+     * 按热门排行的分数滚动查询博客
+     * @param max 上一页最小的分数，第一页为空
+     * @param offset
+     * @return
+     */
+    Result queryHotBlogScroll(Double max, Integer offset);
+
     /**
      * 保存博客，并推送给粉丝
      * @param blog
@@ -4,6 +4,8 @@ import com.qzdp.dto.Result;
 import com.qzdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * <p>
  *  服务类
@@ -20,6 +22,20 @@ public interface IShopService extends IService<Shop> {
      */
     Result queryById(Long id);
 
+    /**
+     * 根据商铺的 id异步查询商铺信息，不阻塞调用线程
+     * @param id 商铺 id
+     * @return 商铺结果
+     */
+    CompletableFuture<Result> queryByIdAsync(Long id);
+
+    /**
+     * 新增商铺
+     * @param shop 商铺数据
+     * @return 商铺 id
+     */
+    Result saveShop(Shop shop);
+
     /**
      * 更新商铺
      * @param shop
@@ -3,6 +3,10 @@ package com.qzdp.service;
 import com.qzdp.dto.Result;
 import com.qzdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
 
 /**
  * <p>
@@ -20,4 +24,20 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
      */
     Result secKillVoucher(Long voucherId);
 
+    /**
+     * 查询秒杀订单的处理结果，不访问数据库
+     * @param orderId 秒杀接口返回的订单 id
+     * @param waitMillis 还没有结果时最长等待的毫秒数，0表示立即返回
+     * @return 订单结果，超时仍没有结果时状态为 PENDING
+     */
+    DeferredResult<Result> queryOrderResult(Long orderId, long waitMillis);
+
+    /**
+     * 把一批订单消息落库并确认
+     * @param streamKey 消息所在的分片 stream
+     * @param records 订单消息
+     * @return 实际创建的订单数
+     */
+    int handleOrderRecords(String streamKey, List<? extends MapRecord<String, ?, ?>> records);
+
 }
@@ -6,28 +6,31 @@ import com.qzdp.dto.Result;
 import com.qzdp.dto.ScrollResult;
 import com.qzdp.dto.UserDTO;
 import com.qzdp.entity.Blog;
-import com.qzdp.entity.Follow;
-import com.qzdp.entity.User;
 import com.qzdp.mapper.BlogMapper;
 import com.qzdp.service.IBlogService;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.qzdp.service.IFollowService;
 import com.qzdp.service.IUserService;
+import com.qzdp.utils.BlogHydrator;
+import com.qzdp.utils.BlogRanking;
+import com.qzdp.utils.BloomFilterRegistry;
+import com.qzdp.utils.CacheClient;
+import com.qzdp.utils.FeedFanoutWorker;
+import com.qzdp.utils.FeedTimeline;
+import com.qzdp.utils.SystemConstants;
 import com.qzdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static com.qzdp.utils.RedisConstants.BLOG_LIKED_KEY;
-import static com.qzdp.utils.RedisConstants.FEED_KEY;
+import static com.qzdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -36,6 +39,7 @@ import static com.qzdp.utils.RedisConstants.FEED_KEY;
  *
 
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
@@ -44,8 +48,24 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
 
     @Resource
     private IUserService userService;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private BloomFilterRegistry bloomFilters;
+
+    @Resource
+    private FeedFanoutWorker feedFanoutWorker;
+
+    @Resource
+    private FeedTimeline feedTimeline;
+
+    @Resource
+    private BlogHydrator blogHydrator;
+
     @Resource
-    private IFollowService followService;
+    private BlogRanking blogRanking;
 
     @Override
     public Result queryBlogById(Long id) {
@@ -54,34 +74,11 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if (blog == null) {
             return Result.fail("笔记不存在！");
         }
-        // 2.查询blog有关的用户
-        queryBlogUser(blog);
-        // 3.查询blog是否被点赞
-        isBlogLiked(blog);
+        // 2.查询blog有关的用户与是否被点赞
+        blogHydrator.hydrate(Collections.singletonList(blog));
         return Result.ok(blog);
     }
 
-    private void isBlogLiked(Blog blog) {
-        // 1.获取登录用户
-        UserDTO user = UserHolder.getUser();
-        if (user == null) {
-            // 用户未登录，无需查询是否点赞
-            return;
-        }
-        Long userId = user.getId();
-        // 2.判断当前登录用户是否已经点赞
-        String key = BLOG_LIKED_KEY + blog.getId();
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        blog.setIsLike(score != null);
-    }
-
-    private void queryBlogUser(Blog blog) {
-        Long userId = blog.getUserId();
-        User user = userService.getById(userId);
-        blog.setName(user.getNickName());
-        blog.setIcon(user.getIcon());
-    }
-
     /**
      * 1、每次查询完成后，我们要分析出查询出数据的最小时间戳，这个值会作为下一次查询的条件
      * 2、我们需要找到与上一次查询相同的查询个数作为偏移量，下次查询时，跳过这些查询过的数据，拿到我们需要的数据
@@ -98,49 +95,35 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if (user == null) {
             return Result.fail("请先登录!");
         }
-        //1.拼接key获取当前用户的收件箱
-        Long userId = user.getId();
-        String key = FEED_KEY + userId;
-        Set<ZSetOperations.TypedTuple<String>> typedTuples = stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(key, 0, max, offset, 2);
+        //1.读取收件箱并与关注的大 V的发件箱归并
+        FeedTimeline.Page page = feedTimeline.read(user.getId(), max, offset);
         //2.非空判断
-        if (typedTuples == null || typedTuples.isEmpty()) {
+        List<Long> blogIds = page.getBlogIds();
+        if (blogIds.isEmpty()) {
             return Result.ok();
         }
-        //3.解析数据：blogId、minTime（时间戳）、offset
-        //存放博客集合
-        List<String> blogIds = new ArrayList<>(typedTuples.size());
-        //偏移量 1 1 2 2 3
-        int deviation = 1;
-        long minTime = 0;
-        for (ZSetOperations.TypedTuple<String> typedTuple : typedTuples) {
-            blogIds.add(typedTuple.getValue());
-            //比较时间戳
-            long time = typedTuple.getScore().longValue();
-            if (minTime == time){
-                deviation ++;
-            }else {
-                minTime = time;
-                deviation = 1;
-            }
-        }
-        //4.根据博客id查询博客
-        // 5.根据id查询blog
-        String idStr = StrUtil.join(",", blogIds);
-        List<Blog> blogs = query().in("id", blogIds).last("ORDER BY FIELD(id," + idStr + ")").list();
-        blogs.stream().forEach(blog -> {
-            //查询blog的作者信息
-            queryBlogUser(blog);
-            //查询当前用户是否未该博客点赞
-            isBlogLiked(blog);
-        });
-        //5.封装分页数据并返回
+        //3.根据博客id批量查询博客，先查缓存，未命中的再一次性查数据库
+        List<Blog> blogs = cacheClient.queryBatchWithPassThrough(
+                CACHE_BLOG_KEY, blogIds, Blog.class, this::queryBlogMap, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+        //查询blog的作者信息与当前用户是否点赞，整页一起查询
+        blogHydrator.hydrate(blogs);
+        //4.封装分页数据并返回
         ScrollResult scrollResult = ScrollResult.builder()
                 .list(blogs)
-                .offset(deviation)
-                .minTime(minTime).build();
+                .offset(page.getOffset())
+                .minTime(page.getMinTime()).build();
         return Result.ok(scrollResult);
     }
 
+    /**
+     * 根据 id批量查询博客
+     * @param ids 博客 id集合
+     * @return 博客 id -> 博客
+     */
+    private Map<Long, Blog> queryBlogMap(Collection<Long> ids) {
+        return listByIds(ids).stream().collect(Collectors.toMap(Blog::getId, Function.identity()));
+    }
+
     /**
      * 获取博客点赞的集合
      * 要求：
@@ -206,6 +189,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
              */
             if (isSuccess) {
                 stringRedisTemplate.opsForZSet().add(key, user.getId().toString(), System.currentTimeMillis());
+                cacheClient.delete(CACHE_BLOG_KEY + id);
+                updateRanking(id);
             }
         } else {
             //已点赞，则点赞数 - 1，修改数据库
@@ -213,12 +198,58 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
             if (isSuccess) {
                 //操作redis
                 stringRedisTemplate.opsForZSet().remove(key, user.getId().toString());
+                cacheClient.delete(CACHE_BLOG_KEY + id);
+                updateRanking(id);
             }
         }
         //3.若未点赞，则把当前在redis中记录
         return Result.ok();
     }
 
+    /**
+     * 更新热门排行中这篇笔记的分数，失败时等待定时重建
+     */
+    private void updateRanking(Long id) {
+        try {
+            blogRanking.onLikeChanged(id);
+        } catch (Exception e) {
+            log.error("更新热门笔记排行失败：{}", id, e);
+        }
+    }
+
+    @Override
+    public Result queryHotBlog(Integer current) {
+        //1.按排名读取一页，排行还没有建立时查询数据库
+        List<Long> blogIds = blogRanking.page(current, SystemConstants.MAX_PAGE_SIZE);
+        List<Blog> blogs;
+        if (blogIds == null) {
+            blogs = query().orderByDesc("liked")
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE)).getRecords();
+        } else {
+            blogs = cacheClient.queryBatchWithPassThrough(
+                    CACHE_BLOG_KEY, blogIds, Blog.class, this::queryBlogMap, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+        }
+        //2.批量查询作者与点赞状态
+        blogHydrator.hydrate(blogs);
+        return Result.ok(blogs);
+    }
+
+    @Override
+    public Result queryHotBlogScroll(Double max, Integer offset) {
+        BlogRanking.Page page = blogRanking.scroll(max, offset, SystemConstants.MAX_PAGE_SIZE);
+        if (page.getBlogIds().isEmpty()) {
+            return Result.ok();
+        }
+        List<Blog> blogs = cacheClient.queryBatchWithPassThrough(
+                CACHE_BLOG_KEY, page.getBlogIds(), Blog.class, this::queryBlogMap, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+        blogHydrator.hydrate(blogs);
+        ScrollResult scrollResult = ScrollResult.builder()
+                .list(blogs)
+                .offset(page.getOffset())
+                .minScore(page.getMinScore()).build();
+        return Result.ok(scrollResult);
+    }
+
 
     @Override
     public Result saveBlog(Blog blog) {
@@ -233,17 +264,16 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if (!save){
             return Result.fail("新增探店笔记失败");
         }
-        // 3.查询笔记作者的所有粉丝 select * from tb_follow where follow_user_id = ?
-        List<Follow> follows = followService.query().eq("follow_user_id", user.getId()).list();
-        // 4.推送笔记id给所有粉丝
-        for (Follow follow : follows) {
-            // 4.1.获取粉丝id
-            Long userId = follow.getUserId();
-            // 4.2.推送
-            String key = FEED_KEY + userId;
-            stringRedisTemplate.opsForZSet().add(key, blog.getId().toString(), System.currentTimeMillis());
+        bloomFilters.put(CACHE_BLOG_KEY, blog.getId());
+        // 3.写入自己的发件箱，再提交推送任务，由后台线程分页读取粉丝并写入收件箱，这里不等待
+        try {
+            long time = System.currentTimeMillis();
+            feedTimeline.publish(user.getId(), blog.getId(), time);
+            feedFanoutWorker.submit(blog.getId(), user.getId(), time);
+        } catch (Exception e) {
+            log.error("提交笔记推送任务失败：{}", blog.getId(), e);
         }
-        // 5.返回id
+        // 4.返回id
         return Result.ok(blog.getId());
     }
 }
@@ -1,12 +1,12 @@
 package com.qzdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.qzdp.dto.Result;
 import com.qzdp.entity.Shop;
 import com.qzdp.mapper.ShopMapper;
 import com.qzdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.qzdp.utils.BloomFilterRegistry;
 import com.qzdp.utils.CacheClient;
 import com.qzdp.utils.SystemConstants;
 import org.springframework.data.geo.Distance;
@@ -21,7 +21,10 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.qzdp.utils.RedisConstants.*;
 
@@ -41,16 +44,19 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient;
 
+    @Resource
+    private BloomFilterRegistry bloomFilters;
+
     /**
      * 关于缓存的问题：
-     *  - 缓存穿透：客户端大量集中地去查询一个一定不存在的 key，（解决：为此 key赋值为空,布隆过滤）
+     *  - 缓存穿透：客户端大量集中地去查询一个一定不存在的 key，（解决：布隆过滤，误判的再为此 key赋值为空）
      *  - 缓存击穿：一些热点 key过期了，再此期间被超高并发查询  （解决：热点 key的查询要加锁）
      *  - 缓存雪崩：大量的 key在一个集中的时间内过期   （解决：为每个 key过期的时间都加上一个随机值，使其分散）
      */
     @Override
     public Result queryById(Long id) {
         //解决缓存穿透
-        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.SECONDS);
+        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
         // 互斥锁解决缓存击穿
 //         Shop shop1 = cacheClient
@@ -61,6 +67,22 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
+    @Override
+    public CompletableFuture<Result> queryByIdAsync(Long id) {
+        return cacheClient.queryWithPassThroughAsync(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES)
+                .thenApply(shop -> shop == null ? Result.fail("商铺不存在") : Result.ok(shop));
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        // 加入布隆过滤器
+        bloomFilters.put(CACHE_SHOP_KEY, shop.getId());
+        // 返回店铺id
+        return Result.ok(shop.getId());
+    }
+
     @Override
     @Transactional
     public Result update(Shop shop) {
@@ -70,8 +92,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         }
         // 1.更新数据库
         updateById(shop);
-        // 2.删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+        // 2.删除缓存，并通知所有节点失效本地缓存
+        cacheClient.delete(CACHE_SHOP_KEY + id);
         return Result.ok();
     }
 
@@ -116,13 +138,22 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             Distance distance = item.getDistance();
             distanceMap.put(shopIdStr, distance);
         });
-        //5.根据id去查询shop信息
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
+        //5.根据id批量查询shop信息，先查缓存，未命中的再一次性查数据库
+        List<Shop> shops = cacheClient.queryBatchWithPassThrough(
+                CACHE_SHOP_KEY, ids, Shop.class, this::queryShopMap, CACHE_SHOP_TTL, TimeUnit.MINUTES);
         for (Shop shop : shops) {
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
         }
         // 6.返回
         return Result.ok(shops);
     }
+
+    /**
+     * 根据 id批量查询商铺
+     * @param ids 商铺 id集合
+     * @return 商铺 id -> 商铺
+     */
+    private Map<Long, Shop> queryShopMap(Collection<Long> ids) {
+        return listByIds(ids).stream().collect(Collectors.toMap(Shop::getId, Function.identity()));
+    }
 }
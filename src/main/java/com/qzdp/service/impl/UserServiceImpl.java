@@ -11,6 +11,7 @@ import com.qzdp.dto.UserDTO;
 import com.qzdp.entity.User;
 import com.qzdp.mapper.UserMapper;
 import com.qzdp.service.IUserService;
+import com.qzdp.utils.BloomFilterRegistry;
 import com.qzdp.utils.RegexUtils;
 import com.qzdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
@@ -47,8 +48,11 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Autowired
     private StringRedisTemplate redisTemplate;
 
+    @Autowired
+    private BloomFilterRegistry bloomFilters;
+
     /**
-     * todo 接口防刷
+     * 接口防刷由 UserController#sendCode上的 @RateLimit负责
      *
      * @param phone   用户手机号
      * @param session session
@@ -191,6 +195,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         user.setNickName(USER_NICK_NAME_PREFIX + RandomUtil.randomString(10));
         // 2.保存用户
         save(user);
+        // 3.加入布隆过滤器
+        bloomFilters.put(CACHE_USER_KEY, user.getId());
         return user;
     }
 }
@@ -1,32 +1,40 @@
 package com.qzdp.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.dto.OrderResultDTO;
 import com.qzdp.dto.Result;
 import com.qzdp.entity.VoucherOrder;
 import com.qzdp.mapper.VoucherOrderMapper;
 import com.qzdp.service.ISeckillVoucherService;
 import com.qzdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.qzdp.utils.RedisIdWorker;
+import com.qzdp.utils.IdGenerator;
+import com.qzdp.utils.LuaScriptRegistry;
+import com.qzdp.utils.OrderResultStore;
+import com.qzdp.utils.OrderShardCoordinator;
+import com.qzdp.utils.OrderShardRouter;
+import com.qzdp.utils.SeckillLocalState;
+import com.qzdp.utils.SlidingWindowRate;
 import com.qzdp.utils.UserHolder;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
-import org.springframework.core.io.ClassPathResource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-import static com.qzdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static com.qzdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -45,23 +53,43 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private ISeckillVoucherService seckillVoucherService;
 
     @Resource
-    private RedissonClient redissonClient;
+    private IdGenerator idGenerator;
 
     @Resource
-    private RedisIdWorker redisIdWorker;
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private OrderConsumerConfigProperties consumerProperties;
+
+    @Resource
+    private OrderShardRouter shardRouter;
+
+    @Resource
+    private OrderShardCoordinator shardCoordinator;
+
+    @Resource
+    private SeckillLocalState seckillLocalState;
+
+    @Resource
+    private LuaScriptRegistry scriptRegistry;
+
+    @Resource
+    private OrderResultStore orderResultStore;
 
     private final ThreadPoolExecutor pool;
 
-    private static final DefaultRedisScript<Long> DESKILL_SCRIPT;
+    private final MeterRegistry meterRegistry;
 
-    static {
-        DESKILL_SCRIPT = new DefaultRedisScript<>();
-        DESKILL_SCRIPT.setLocation(new ClassPathResource("secKill.lua"));
-        DESKILL_SCRIPT.setResultType(Long.class);
-    }
+    /**
+     * 最近 10秒平均每秒创建的订单数
+     */
+    private final SlidingWindowRate orderRate = new SlidingWindowRate(10);
 
-    public VoucherOrderServiceImpl(ThreadPoolExecutor pool) {
+    public VoucherOrderServiceImpl(ThreadPoolExecutor pool, MeterRegistry meterRegistry) {
         this.pool = pool;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("voucher.order.rate", orderRate, SlidingWindowRate::perSecond)
+                .description("最近 10秒平均每秒创建的订单数").register(meterRegistry);
     }
 
     /**
@@ -69,7 +97,9 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
      */
     @PostConstruct
     private void init() {
-        pool.submit(new VoucherOrderHandler());
+        for (int i = 0; i < consumerProperties.getThreads(); i++) {
+            pool.submit(new VoucherOrderHandler(i));
+        }
     }
 
     /**
@@ -81,103 +111,283 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Override
     public Result secKillVoucher(Long voucherId) {
 
-        //判断当前这个秒杀请求是否在活动时间区间内(效验时间的合法性)
+        //已经售罄的券直接在本地拒绝，不再访问 redis
+        if (seckillLocalState.isSoldOut(voucherId)) {
+            seckillLocalState.rejected(true);
+            return Result.fail("库存不足");
+        }
+        //判断当前这个秒杀请求是否在活动时间区间内(效验时间的合法性)，时间窗口缓存在本地
+        SeckillLocalState.SeckillWindow window = seckillLocalState.window(voucherId);
+        if (window == null) {
+            return Result.fail("秒杀券不存在！");
+        }
         long curTime = System.currentTimeMillis() / 1000;
-        String secTime = stringRedisTemplate.opsForValue().get(SECKILL_TIME_KEY + voucherId);
-        String[] s = secTime.split("-");
-        long beginTime = Long.parseLong(s[0]);
-        long endTime = Long.parseLong(s[1]);
-
-        if (curTime < beginTime || curTime > endTime) {
+        if (!window.contains(curTime)) {
+            seckillLocalState.rejected(false);
             return Result.fail("秒杀失败！");
         }
+        // 库存段数
+        int segments = window.getSegments();
 
         Long userId = UserHolder.getUser().getId();
-        long orderId = redisIdWorker.nextId("order");
-        //执行lua脚本 ，通过脚本来执行扣减库存，传递下单消息等
-        Long res = stringRedisTemplate.execute(
-                DESKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(), userId.toString(), String.valueOf(orderId)
-        );
+        long orderId = idGenerator.nextId("order");
+        int r = segments > 1
+                ? secKillSegmented(voucherId, userId, orderId, segments)
+                : secKill(voucherId, userId, orderId);
         //判断返回的结果
-        int r = res.intValue();
+        if (r == 1) {
+            //售罄后通知所有节点，之后的请求在本地拒绝
+            seckillLocalState.markSoldOut(voucherId);
+        }
         if (r != 0) {
             return Result.fail(r == 1 ? "库存不足" : "不能重复下单");
         }
-        //返回订单id
+        //返回订单id，之后通过 /voucher-order/result/{id}查询处理结果
         return Result.ok(orderId);
     }
 
+    /**
+     * 查询订单处理结果，只读 redis
+     * @param waitMillis 还没有结果时最长等待的时间，0表示立即返回
+     */
+    @Override
+    public DeferredResult<Result> queryOrderResult(Long orderId, long waitMillis) {
+        return orderResultStore.await(orderId, UserHolder.getUser().getId(), waitMillis);
+    }
+
+    private int secKill(Long voucherId, Long userId, long orderId) {
+        //执行lua脚本 ，通过脚本来执行扣减库存，传递下单消息等
+        Long res = scriptRegistry.execute(
+                LuaScriptRegistry.SECKILL,
+                shardRouter.secKillKeys(voucherId),
+                voucherId, userId, orderId
+        );
+        return res.intValue();
+    }
 
     /**
-     * 创建优惠卷订单
-     *  此处不加锁应该也行，毕竟 lua脚本已经做了判断拦截，不过也要保证万无一失
-     * @param voucherOrder
-     * @return
+     * 分段库存的秒杀
+     *  1.在用户的主段执行秒杀脚本，主段的下单用户集合保证同一个用户只能占位一次
+     *  2.主段库存不足时（返回3，用户已占位）依次到其它段扣库存
+     *  3.所有段都不足时释放占位
+     * 进程在占位之后、扣到库存之前宕机时，该用户会被当作已下单，不会超卖
      */
-    public void createVoucherOrder(VoucherOrder voucherOrder) {
-        Long voucherId = voucherOrder.getVoucherId();
-        Long userId = voucherOrder.getUserId();
-        //创建锁对象
-        RLock lock = redissonClient.getLock("lock:order:" + userId);
-        boolean b = lock.tryLock();
-        if (!b){
-            log.error("不允许重复下单！");
-            return;
+    private int secKillSegmented(Long voucherId, Long userId, long orderId, int segments) {
+        int home = OrderShardRouter.homeSegment(userId, segments);
+        Long res = scriptRegistry.execute(
+                LuaScriptRegistry.SECKILL,
+                shardRouter.secKillKeys(voucherId, home),
+                voucherId, userId, orderId, 1
+        );
+        int r = res.intValue();
+        if (r != 3) {
+            return r;
+        }
+        for (int i = 1; i < segments; i++) {
+            int segment = (home + i) % segments;
+            Long taken = scriptRegistry.execute(
+                    LuaScriptRegistry.SECKILL_TAKE,
+                    shardRouter.takeKeys(voucherId, segment),
+                    voucherId, userId, orderId
+            );
+            if (taken != null && taken == 0) {
+                return 0;
+            }
         }
+        stringRedisTemplate.opsForSet().remove(shardRouter.orderKey(voucherId, home), userId.toString());
+        return 1;
+    }
 
-        try {
-            //取数据库中查询用户是否已经创建过订单
-            int count = query().eq("user_id", userId).eq("voucher_id", voucherId).count();
-            if (count > 0){
-                //用户已经购买过了
+
+    /**
+     * 批量创建优惠卷订单，在一个事务中完成
+     *  - 一次查询过滤掉已经创建过的订单，pending-list重新投递时保证幂等
+     *  - 按优惠券分组，每个优惠券一条 stock = stock - k
+     *  - 一次批量插入（rewriteBatchedStatements=true时合并为多行 insert）
+     * 重复下单和库存已经由 lua脚本拦截，这里不再对每个用户加锁
+     * @param voucherOrders 一批订单
+     * @param statuses 每个订单的处理结果，订单 id -> 状态
+     * @return 实际创建的订单数
+     */
+    public int createVoucherOrders(List<VoucherOrder> voucherOrders, Map<Long, OrderResultStore.Status> statuses) {
+        // 1.去掉已经创建过的订单
+        Set<Long> userIds = voucherOrders.stream().map(VoucherOrder::getUserId).collect(Collectors.toSet());
+        Set<Long> voucherIds = voucherOrders.stream().map(VoucherOrder::getVoucherId).collect(Collectors.toSet());
+        Map<String, Long> existing = query().select("id", "user_id", "voucher_id")
+                .in("user_id", userIds).in("voucher_id", voucherIds).list()
+                .stream().collect(Collectors.toMap(order -> order.getUserId() + ":" + order.getVoucherId(),
+                        VoucherOrder::getId, (a, b) -> a));
+        Map<Long, List<VoucherOrder>> byVoucher = new LinkedHashMap<>();
+        for (VoucherOrder voucherOrder : voucherOrders) {
+            Long existingId = existing.putIfAbsent(voucherOrder.getUserId() + ":" + voucherOrder.getVoucherId(),
+                    voucherOrder.getId());
+            if (existingId == null) {
+                byVoucher.computeIfAbsent(voucherOrder.getVoucherId(), id -> new ArrayList<>()).add(voucherOrder);
+            } else if (existingId.equals(voucherOrder.getId())) {
+                // 落库之后、确认之前宕机，消息重新投递
+                statuses.put(voucherOrder.getId(), OrderResultStore.Status.SUCCESS);
+            } else {
                 log.error("不允许重复下单！");
-                return;
+                statuses.put(voucherOrder.getId(), OrderResultStore.Status.DUPLICATE);
             }
-            //扣减库存
-            boolean update = seckillVoucherService.update()
+        }
+        // 2.每个优惠券扣减一次库存
+        List<VoucherOrder> toSave = new ArrayList<>(voucherOrders.size());
+        for (Map.Entry<Long, List<VoucherOrder>> entry : byVoucher.entrySet()) {
+            List<VoucherOrder> deducted = deductStock(entry.getKey(), entry.getValue());
+            for (VoucherOrder order : entry.getValue()) {
+                statuses.put(order.getId(), OrderResultStore.Status.SOLD_OUT);
+            }
+            for (VoucherOrder order : deducted) {
+                statuses.put(order.getId(), OrderResultStore.Status.SUCCESS);
+            }
+            toSave.addAll(deducted);
+        }
+        if (toSave.isEmpty()) {
+            return 0;
+        }
+        // 3.批量插入订单
+        LocalDateTime now = LocalDateTime.now();
+        for (VoucherOrder voucherOrder : toSave) {
+            voucherOrder.setCreateTime(now);
+            voucherOrder.setUpdateTime(now);
+        }
+        saveBatch(toSave, toSave.size());
+        return toSave.size();
+    }
+
+    /**
+     * 解析处理一批消息数据，整批在一个事务里落库，成功后一次确认所有消息
+     * @param streamKey 消息所在的分片 stream
+     * @param list 一批消息
+     * @return 实际创建的订单数
+     */
+    @Override
+    public int handleOrderRecords(String streamKey, List<? extends MapRecord<String, ?, ?>> list) {
+        List<VoucherOrder> voucherOrders = new ArrayList<>(list.size());
+        RecordId[] recordIds = new RecordId[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            MapRecord<String, ?, ?> record = list.get(i);
+            voucherOrders.add(BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true));
+            recordIds[i] = record.getId();
+        }
+        long begin = System.nanoTime();
+        // 3.创建订单
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>(list.size() * 2);
+        Integer created = transactionTemplate.execute(status -> {
+            // 事务重试时重新记录结果
+            statuses.clear();
+            return createVoucherOrders(voucherOrders, statuses);
+        });
+        // 4.确认消息 XACK stream.orders:{order-i} g1 id1 id2 ...
+        stringRedisTemplate.opsForStream().acknowledge(streamKey, STREAM_ORDERS_GROUP, recordIds);
+        // 5.写入处理结果，失败时不影响订单，查询方等到超时后按 PENDING处理
+        saveResults(voucherOrders, statuses);
+        meterRegistry.timer("voucher.order.batch").record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("voucher.order.batch.size").record(list.size());
+        int n = created == null ? 0 : created;
+        meterRegistry.counter("voucher.order.created").increment(n);
+        orderRate.add(n);
+        return n;
+    }
+
+    private void saveResults(List<VoucherOrder> voucherOrders, Map<Long, OrderResultStore.Status> statuses) {
+        List<OrderResultDTO> results = new ArrayList<>(voucherOrders.size());
+        for (VoucherOrder order : voucherOrders) {
+            OrderResultStore.Status status = statuses.getOrDefault(order.getId(), OrderResultStore.Status.FAILED);
+            results.add(new OrderResultDTO(order.getId(), order.getUserId(), order.getVoucherId(), status.name()));
+        }
+        try {
+            orderResultStore.save(results);
+        } catch (Exception e) {
+            log.warn("写入订单处理结果失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 一条 update扣减该优惠券的 k个库存，库存不够 k个时（redis与数据库不一致）逐个扣减，扣不到的订单丢弃
+     * @return 扣减成功的订单
+     */
+    private List<VoucherOrder> deductStock(Long voucherId, List<VoucherOrder> orders) {
+        int k = orders.size();
+        boolean update = seckillVoucherService.update()
+                .setSql("stock = stock - " + k)
+                .eq("voucher_id", voucherId).ge("stock", k)
+                .update();
+        if (update) {
+            return orders;
+        }
+        List<VoucherOrder> deducted = new ArrayList<>(k);
+        for (VoucherOrder order : orders) {
+            boolean one = seckillVoucherService.update()
                     .setSql("stock = stock - 1")
                     .eq("voucher_id", voucherId).gt("stock", 0)
                     .update();
-            if (!update){
+            if (!one) {
                 log.error("库存不足");
-                return;
+                break;
             }
-            // 7.创建订单 还有其它信息也可以通过消息队列传递。。。。todo
-            voucherOrder.setCreateTime(LocalDateTime.now());
-            voucherOrder.setUpdateTime(LocalDateTime.now());
-            save(voucherOrder);
-        }finally {
-            lock.unlock();
+            deducted.add(order);
         }
+        return deducted;
     }
 
     /**
-     * 监听消息队列
+     * 监听消息队列，每个消费线程轮流读取分配给自己的分片
      */
     private class VoucherOrderHandler implements Runnable {
+
+        private final int index;
+
+        private final Consumer consumer;
+
+        /**
+         * 已经检查过 pending-list的分片
+         */
+        private final Set<Integer> recovered = new HashSet<>();
+
+        private VoucherOrderHandler(int index) {
+            this.index = index;
+            this.consumer = Consumer.from(STREAM_ORDERS_GROUP, shardCoordinator.consumerName(index));
+        }
+
         @Override
         public void run() {
             while (true) {
-                try {
-                    //1.获取消息队列的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 >
-                    //lastConsumed 相当于 > 表示下一个未消费的消息
-                    List<MapRecord<String, Object, Object>> mapRecords = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            StreamOffset.create("stream.orders", ReadOffset.lastConsumed())
-                    );
-                    //2.判断订单信息是否为空
-                    if (mapRecords == null || mapRecords.isEmpty()) {
-                        //如果为空就继续监听，进入下一次循环
-                        continue;
+                List<Integer> shards = shardCoordinator.ownedShards(index, consumerProperties.getThreads());
+                if (shards.isEmpty()) {
+                    // 节点数多于分片数时，当前线程没有分片
+                    sleep(consumerProperties.getBlockMillis());
+                    continue;
+                }
+                // 负责多个分片时缩短阻塞时间，避免一个空分片拖慢其它分片
+                long block = Math.max(100, consumerProperties.getBlockMillis() / shards.size());
+                for (Integer shard : shards) {
+                    String streamKey = shardRouter.streamKey(shard);
+                    // 新分到的分片先处理自己之前没有确认的消息（例如重启前）
+                    if (recovered.add(shard)) {
+                        handlePendingList(streamKey);
+                    }
+                    try {
+                        //1.获取消息队列的订单信息 XREADGROUP GROUP g1 consumer COUNT n BLOCK t STREAMS stream.orders:{order-i} >
+                        //lastConsumed 相当于 > 表示下一个未消费的消息
+                        List<MapRecord<String, Object, Object>> mapRecords = stringRedisTemplate.opsForStream().read(
+                                consumer,
+                                StreamReadOptions.empty().count(consumerProperties.getBatchSize())
+                                        .block(Duration.ofMillis(block)),
+                                StreamOffset.create(streamKey, ReadOffset.lastConsumed())
+                        );
+                        //2.判断订单信息是否为空
+                        if (mapRecords == null || mapRecords.isEmpty()) {
+                            //如果为空就继续监听下一个分片
+                            continue;
+                        }
+                        //一次处理整批消息
+                        handleOrderRecords(streamKey, mapRecords);
+                    } catch (Exception e) {
+                        log.error("处理订单异常", e);
+                        handlePendingList(streamKey);
                     }
-                    //因为只获取一个消息，所以集合中只有一个元素
-                    parseData(mapRecords);
-                } catch (Exception e) {
-                    log.error("处理订单异常", e);
-                    handlePendingList();
                 }
             }
         }
@@ -185,14 +395,14 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         /**
          * 处理 pending-list中的消息，（当消息被消费但没确认就会进入到 pending-list中）
          */
-        private void handlePendingList() {
+        private void handlePendingList(String streamKey) {
             while (true) {
                 try {
-                    // 1.获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 0
+                    // 1.获取pending-list中的订单信息 XREADGROUP GROUP g1 consumer COUNT n STREAMS stream.orders:{order-i} 0
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1),
-                            StreamOffset.create("stream.orders", ReadOffset.from("0"))
+                            consumer,
+                            StreamReadOptions.empty().count(consumerProperties.getBatchSize()),
+                            StreamOffset.create(streamKey, ReadOffset.from("0"))
                     );
                     // 2.判断订单信息是否为空
                     if (list == null || list.isEmpty()) {
@@ -200,25 +410,21 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                         break;
                     }
                     // 解析数据
-                    parseData(list);
+                    handleOrderRecords(streamKey, list);
                 } catch (Exception e) {
-                    log.error("处理订单异常", e);
+                    // 不在这里无限重试，留在 pending-list中由 OrderPendingReclaimer按投递次数重试或转入死信
+                    log.error("处理 pending-list订单异常", e);
+                    break;
                 }
             }
         }
+    }
 
-        /**
-         * 解析处理消息数据
-         * @param list
-         */
-        private void parseData(List<MapRecord<String, Object, Object>> list) {
-            MapRecord<String, Object, Object> record = list.get(0);
-            Map<Object, Object> value = record.getValue();
-            VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(value, new VoucherOrder(), true);
-            // 3.创建订单
-            createVoucherOrder(voucherOrder);
-            // 4.确认消息 XACK
-            stringRedisTemplate.opsForStream().acknowledge("s1", "g1", record.getId());
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 }
@@ -1,12 +1,15 @@
 package com.qzdp.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.qzdp.config.SeckillConfigProperties;
 import com.qzdp.dto.Result;
 import com.qzdp.entity.Voucher;
 import com.qzdp.mapper.VoucherMapper;
 import com.qzdp.entity.SeckillVoucher;
 import com.qzdp.service.ISeckillVoucherService;
 import com.qzdp.service.IVoucherService;
+import com.qzdp.utils.OrderShardRouter;
+import com.qzdp.utils.SeckillLocalState;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,7 +18,6 @@ import javax.annotation.Resource;
 import java.time.ZoneOffset;
 import java.util.List;
 
-import static com.qzdp.utils.RedisConstants.SECKILL_STOCK_KEY;
 import static com.qzdp.utils.RedisConstants.SECKILL_TIME_KEY;
 
 /**
@@ -35,6 +37,15 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private OrderShardRouter shardRouter;
+
+    @Resource
+    private SeckillConfigProperties seckillProperties;
+
+    @Resource
+    private SeckillLocalState seckillLocalState;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
@@ -56,10 +67,19 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
         // 保存秒杀卷信息到Redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(),
-                voucher.getStock().toString());
+        // 库存 key带有分片的 hash tag，与下单用户集合、订单 stream在同一个 slot
+        // 分段时每一段库存放在不同的分片上，分散热点券对单个 redis节点的压力
+        int segments = Math.max(1, seckillProperties.getSegments());
+        int[] stocks = OrderShardRouter.splitStock(voucher.getStock(), segments);
+        for (int i = 0; i < segments; i++) {
+            stringRedisTemplate.opsForValue().set(shardRouter.stockKey(voucher.getId(), i), String.valueOf(stocks[i]));
+        }
+        // 开始时间-结束时间-段数，秒杀时一次读取
         stringRedisTemplate.opsForValue().set(SECKILL_TIME_KEY + voucher.getId(),
-                voucher.getBeginTime().toEpochSecond(ZoneOffset.UTC) + "-" + voucher.getEndTime().toEpochSecond(ZoneOffset.UTC));
+                voucher.getBeginTime().toEpochSecond(ZoneOffset.UTC) + "-" + voucher.getEndTime().toEpochSecond(ZoneOffset.UTC)
+                        + "-" + segments);
+        // 通知所有节点加载新的时间窗口
+        seckillLocalState.publishWindow(voucher.getId());
     }
 }
 
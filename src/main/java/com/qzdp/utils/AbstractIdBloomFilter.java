@@ -0,0 +1,98 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:10
+ * @description 布隆过滤器的公共部分：根据预期数量和误判率计算位数组大小、哈希函数个数，
+ *  并使用 murmur3 128位哈希的两半做双重哈希得到 k个下标
+ *  构建时记录读到的最大 id，大于它的一律判断为可能存在：构建之后新增、但加入过滤器失败（或同步消息丢失）的
+ *  自增 id不会被误判为不存在，直到下一次重建把它们读进位数组
+ */
+public abstract class AbstractIdBloomFilter implements IdBloomFilter {
+
+    /**
+     * 位数组大小
+     */
+    protected final long numBits;
+
+    /**
+     * 哈希函数个数
+     */
+    protected final int numHashFunctions;
+
+    private volatile boolean ready;
+
+    /**
+     * 构建时读到的最大 id，构建完成之前为 Long.MAX_VALUE
+     */
+    private volatile long highWaterMark = Long.MAX_VALUE;
+
+    protected AbstractIdBloomFilter(long expectedInsertions, double fpp) {
+        // m = -n * ln(p) / (ln2)^2，k = m / n * ln2
+        this.numBits = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * 计算 id对应的 k个比特位下标
+     */
+    protected long[] indexes(Object id) {
+        long[] hash = MurmurHash.hash128(String.valueOf(id));
+        long[] indexes = new long[numHashFunctions];
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            indexes[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += hash[1];
+        }
+        return indexes;
+    }
+
+    /**
+     * 构建完成后设置，之后新增的自增 id都大于它
+     */
+    public void setHighWaterMark(long highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    protected boolean aboveHighWaterMark(Object id) {
+        long value;
+        if (id instanceof Number) {
+            value = ((Number) id).longValue();
+        } else {
+            try {
+                value = Long.parseLong(String.valueOf(id));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return value > highWaterMark;
+    }
+
+    /**
+     * 已置位比特数为 x时，误判率约为 (x / m)^k
+     */
+    protected double fppOf(long bitCount) {
+        return Math.pow((double) bitCount / numBits, numHashFunctions);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return (numBits + 7) / 8;
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void markReady() {
+        this.ready = true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.Blog;
+import com.qzdp.entity.User;
+import com.qzdp.mapper.UserMapper;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 10:00
+ * @description 批量填充笔记列表的作者信息与当前用户的点赞状态，所有返回笔记列表的接口共用
+ *  - 作者：去重后一次 MGET查询 cache:user:{id}（只缓存 UserDTO），未命中的一次 IN查询数据库
+ *  - 点赞：一次 pipeline对每篇笔记 ZSCORE blog:liked:{id} userId
+ *  一页 n篇笔记从 2n次往返降到 2次
+ */
+@Component
+public class BlogHydrator {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final CacheClient cacheClient;
+
+    private final UserMapper userMapper;
+
+    public BlogHydrator(StringRedisTemplate stringRedisTemplate, CacheClient cacheClient, UserMapper userMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheClient = cacheClient;
+        this.userMapper = userMapper;
+    }
+
+    /**
+     * 直接修改传入的笔记，作者不存在时不填充
+     */
+    public void hydrate(List<Blog> blogs) {
+        if (blogs == null || blogs.isEmpty()) {
+            return;
+        }
+        fillAuthors(blogs);
+        fillLiked(blogs);
+    }
+
+    private void fillAuthors(List<Blog> blogs) {
+        Set<Long> userIds = blogs.stream().map(Blog::getUserId).filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        List<UserDTO> users = cacheClient.queryBatchWithPassThrough(
+                CACHE_USER_KEY, userIds, UserDTO.class, this::queryUserMap, CACHE_USER_TTL, TimeUnit.MINUTES);
+        Map<Long, UserDTO> byId = users.stream()
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity(), (a, b) -> a));
+        for (Blog blog : blogs) {
+            UserDTO user = byId.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 根据 id批量查询用户，只保留可以公开的字段
+     */
+    private Map<Long, UserDTO> queryUserMap(Collection<Long> ids) {
+        return userMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(User::getId, user -> BeanUtil.copyProperties(user, UserDTO.class)));
+    }
+
+    private void fillLiked(List<Blog> blogs) {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            // 用户未登录，无需查询是否点赞
+            return;
+        }
+        String member = user.getId().toString();
+        List<Object> scores = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (Blog blog : blogs) {
+                redis.zScore(BLOG_LIKED_KEY + blog.getId(), member);
+            }
+            return null;
+        });
+        for (int i = 0; i < blogs.size(); i++) {
+            blogs.get(i).setIsLike(i < scores.size() && scores.get(i) != null);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.RankConfigProperties;
+import com.qzdp.entity.Blog;
+import com.qzdp.mapper.BlogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 11:10
+ * @description 热门笔记排行，代替每次请求在 tb_blog上 ORDER BY liked LIMIT offset
+ *  - {blog:hot}:rank 保存笔记的分数，{blog:hot}:meta 保存计算分数用的 "点赞数,发布毫秒时间戳"，两个 key在同一个 slot
+ *  - 点赞、取消点赞后按主键读取点赞数与发布时间，重新计算这篇笔记的分数
+ *  - 定时用 meta重新计算全部分数，超出时间窗口和 maxSize的笔记移出排行；gravity模式下分数随时间衰减，
+ *    两次重算之间点赞的笔记按点赞时的时间计算，误差不超过一个重算间隔
+ *  - 定时按主键分页扫描 tb_blog重建排行，写入临时 key后 RENAME，修复漏掉的增量更新
+ *  - 重算与重建通过 SET NX加锁，同一个间隔内只有一个节点执行
+ *  - 按分数滚动分页不保存快照，重算前后的分数不可比较，见 {@link #scroll(Double, int, int)}
+ */
+@Slf4j
+@Component
+public class BlogRanking {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String TMP_SUFFIX = ":tmp";
+
+    private final RankConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final BlogMapper blogMapper;
+
+    private final LongSupplier clock;
+
+    public BlogRanking(RankConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                       BlogMapper blogMapper) {
+        this(properties, stringRedisTemplate, blogMapper, System::currentTimeMillis);
+    }
+
+    BlogRanking(RankConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                BlogMapper blogMapper, LongSupplier clock) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.blogMapper = blogMapper;
+        this.clock = clock;
+    }
+
+    /**
+     * 点赞数变化后更新这篇笔记的分数
+     */
+    public void onLikeChanged(Long blogId) {
+        Blog blog = blogMapper.selectOne(new QueryWrapper<Blog>()
+                .select("id", "liked", "create_time").eq("id", blogId));
+        if (blog == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long createdAt = toMillis(blog.getCreateTime());
+        if (!inWindow(createdAt, now)) {
+            return;
+        }
+        int liked = blog.getLiked() == null ? 0 : blog.getLiked();
+        String member = blogId.toString();
+        double score = score(liked, createdAt, now);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.hSet(BLOG_HOT_META_KEY, member, liked + "," + createdAt);
+            redis.zAdd(BLOG_HOT_KEY, score, member);
+            return null;
+        });
+    }
+
+    /**
+     * 按排名读取第 current页
+     * @return 排行还没有建立时返回 null，由调用方查询数据库
+     */
+    public List<Long> page(int current, int size) {
+        long start = (long) (Math.max(current, 1) - 1) * size;
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(BLOG_HOT_KEY, start, start + size - 1);
+        if ((members == null || members.isEmpty()) && !Boolean.TRUE.equals(stringRedisTemplate.hasKey(BLOG_HOT_KEY))) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(members == null ? 0 : members.size());
+        if (members != null) {
+            members.forEach(member -> ids.add(Long.valueOf(member)));
+        }
+        return ids;
+    }
+
+    /**
+     * 按分数滚动分页，与关注时间线的 max/offset含义相同
+     * 游标是分数而不是快照：gravity模式下每次 recompute()都会重写全部分数，点赞也会改变单篇的分数，
+     * 跨过一次重算的滚动可能重复或跳过少量笔记，调用方需要按 id去重；liked模式下只有点赞会改变分数
+     * @param max 上一页最小的分数，第一页为 null
+     * @param offset 上一页中与 max相同的条数，本页跳过
+     */
+    public Page scroll(Double max, int offset, int count) {
+        double upper = max == null ? Double.MAX_VALUE : max;
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .reverseRangeByScoreWithScores(BLOG_HOT_KEY, -Double.MAX_VALUE, upper, offset, count);
+        List<Long> ids = new ArrayList<>();
+        double minScore = upper;
+        int sameAsMin = 0;
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                ids.add(Long.valueOf(tuple.getValue()));
+                double score = tuple.getScore();
+                if (sameAsMin > 0 && score == minScore) {
+                    sameAsMin++;
+                } else {
+                    minScore = score;
+                    sameAsMin = 1;
+                }
+            }
+        }
+        int nextOffset = ids.isEmpty() ? offset : minScore == upper ? sameAsMin + offset : sameAsMin;
+        return new Page(ids, minScore, nextOffset);
+    }
+
+    /**
+     * 用 meta重新计算全部分数，移出超出时间窗口与 maxSize的笔记，liked模式下只做裁剪
+     */
+    @Scheduled(fixedDelayString = "${hm.rank.recomputeMillis:300000}")
+    public void recompute() {
+        if (!tryLock("recompute", properties.getRecomputeMillis())) {
+            return;
+        }
+        try {
+            Map<Object, Object> meta = stringRedisTemplate.opsForHash().entries(BLOG_HOT_META_KEY);
+            long now = clock.getAsLong();
+            List<Entry> entries = new ArrayList<>(meta.size());
+            List<String> removed = new ArrayList<>();
+            for (Map.Entry<Object, Object> e : meta.entrySet()) {
+                String member = e.getKey().toString();
+                String[] parts = e.getValue().toString().split(",");
+                int liked = Integer.parseInt(parts[0]);
+                long createdAt = Long.parseLong(parts[1]);
+                if (inWindow(createdAt, now)) {
+                    entries.add(new Entry(member, liked, createdAt, score(liked, createdAt, now)));
+                } else {
+                    removed.add(member);
+                }
+            }
+            entries.sort(Comparator.comparingDouble((Entry e) -> e.score).reversed());
+            while (entries.size() > properties.getMaxSize()) {
+                removed.add(entries.remove(entries.size() - 1).member);
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (Entry entry : entries) {
+                    redis.zAdd(BLOG_HOT_KEY, entry.score, entry.member);
+                }
+                if (!removed.isEmpty()) {
+                    String[] members = removed.toArray(new String[0]);
+                    redis.zRem(BLOG_HOT_KEY, members);
+                    redis.hDel(BLOG_HOT_META_KEY, members);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("重新计算热门笔记分数失败", e);
+        }
+    }
+
+    /**
+     * 按主键分页扫描 tb_blog，保留分数最高的 maxSize篇，写入临时 key后替换排行
+     */
+    @Scheduled(fixedDelayString = "${hm.rank.reconcileMillis:3600000}")
+    public void reconcile() {
+        if (!tryLock("reconcile", properties.getReconcileMillis())) {
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            PriorityQueue<Entry> top = new PriorityQueue<>(Comparator.comparingDouble((Entry e) -> e.score));
+            long cursor = 0;
+            while (true) {
+                QueryWrapper<Blog> wrapper = new QueryWrapper<Blog>()
+                        .select("id", "liked", "create_time")
+                        .gt("id", cursor);
+                if (gravity()) {
+                    long since = now - TimeUnit.DAYS.toMillis(properties.getWindowDays());
+                    wrapper.ge("create_time", LocalDateTime.ofInstant(Instant.ofEpochMilli(since), ZoneId.systemDefault()));
+                }
+                List<Blog> blogs = blogMapper.selectList(
+                        wrapper.orderByAsc("id").last("limit " + properties.getReconcilePageSize()));
+                for (Blog blog : blogs) {
+                    int liked = blog.getLiked() == null ? 0 : blog.getLiked();
+                    long createdAt = toMillis(blog.getCreateTime());
+                    top.add(new Entry(blog.getId().toString(), liked, createdAt, score(liked, createdAt, now)));
+                    if (top.size() > properties.getMaxSize()) {
+                        top.poll();
+                    }
+                }
+                if (blogs.size() < properties.getReconcilePageSize()) {
+                    break;
+                }
+                cursor = blogs.get(blogs.size() - 1).getId();
+            }
+            replace(new ArrayList<>(top));
+            log.info("重建热门笔记排行：{}篇", top.size());
+        } catch (Exception e) {
+            log.error("重建热门笔记排行失败", e);
+        }
+    }
+
+    /**
+     * 写入临时 key后 RENAME，读取方不会看到写了一半的排行
+     */
+    private void replace(List<Entry> entries) {
+        String rankTmp = BLOG_HOT_KEY + TMP_SUFFIX;
+        String metaTmp = BLOG_HOT_META_KEY + TMP_SUFFIX;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.del(rankTmp, metaTmp);
+            for (Entry entry : entries) {
+                redis.zAdd(rankTmp, entry.score, entry.member);
+                redis.hSet(metaTmp, entry.member, entry.liked + "," + entry.createdAt);
+            }
+            if (entries.isEmpty()) {
+                redis.del(BLOG_HOT_KEY, BLOG_HOT_META_KEY);
+            } else {
+                redis.rename(rankTmp, BLOG_HOT_KEY);
+                redis.rename(metaTmp, BLOG_HOT_META_KEY);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * gravity：liked / (小时数 + 2) ^ gravity；liked：点赞数
+     */
+    double score(int liked, long createdAt, long now) {
+        if (!gravity()) {
+            return liked;
+        }
+        double hours = Math.max(0, now - createdAt) / (double) HOUR_MILLIS;
+        return liked / Math.pow(hours + 2, properties.getGravity());
+    }
+
+    private boolean gravity() {
+        return "gravity".equalsIgnoreCase(properties.getMode());
+    }
+
+    private boolean inWindow(long createdAt, long now) {
+        return !gravity() || now - createdAt <= TimeUnit.DAYS.toMillis(properties.getWindowDays());
+    }
+
+    /**
+     * 锁在半个间隔后过期，不主动释放，同一个间隔内其它节点直接跳过
+     */
+    private boolean tryLock(String task, long intervalMillis) {
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(BLOG_HOT_LOCK_KEY + task, "1",
+                Math.max(1, intervalMillis / 2), TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(locked);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static class Entry {
+        final String member;
+        final int liked;
+        final long createdAt;
+        final double score;
+
+        Entry(String member, int liked, long createdAt, double score) {
+            this.member = member;
+            this.liked = liked;
+            this.createdAt = createdAt;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 按分数滚动的一页，minScore与 offset作为下一页的参数
+     */
+    public static class Page {
+
+        private final List<Long> blogIds;
+
+        private final double minScore;
+
+        private final int offset;
+
+        Page(List<Long> blogIds, double minScore, int offset) {
+            this.blogIds = blogIds;
+            this.minScore = minScore;
+            this.offset = offset;
+        }
+
+        public List<Long> getBlogIds() {
+            return blogIds;
+        }
+
+        public double getMinScore() {
+            return minScore;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
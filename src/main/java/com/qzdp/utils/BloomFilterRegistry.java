@@ -0,0 +1,316 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.qzdp.config.BloomFilterConfigProperties;
+import com.qzdp.mapper.BlogMapper;
+import com.qzdp.mapper.ShopMapper;
+import com.qzdp.mapper.UserMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:40
+ * @description 按缓存 key前缀管理各张表的 id布隆过滤器
+ *  - 启动时按 id分批（keyset分页）读取 tb_shop、tb_blog、tb_user的 id构建过滤器
+ *  - 新增数据时调用 {@link #put(String, Object)} 保持同步，local模式下通过发布订阅广播给所有节点，
+ *    其它节点收到之前（或消息丢失）由构建时的最大 id兜底，不会把新数据误判为不存在
+ *  - 加入失败只记录日志和 bloom.filter.put.failure指标，不影响已经提交的数据，同样由最大 id兜底
+ *  - 每隔 rebuildMillis从数据库重建一次，补上加入失败的 id并提高最大 id
+ *  - 误判率和内存占用通过 bloom.filter.fpp、bloom.filter.memory指标暴露
+ */
+@Slf4j
+@Component
+public class BloomFilterRegistry implements MessageListener {
+
+    private final Map<String, IdBloomFilter> filters = new ConcurrentHashMap<>();
+
+    /**
+     * key前缀 -> 过滤器对应的表
+     */
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    private final BloomFilterConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ThreadPoolExecutor pool;
+
+    private final ShopMapper shopMapper;
+
+    private final BlogMapper blogMapper;
+
+    private final UserMapper userMapper;
+
+    public BloomFilterRegistry(BloomFilterConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                               MeterRegistry meterRegistry, ThreadPoolExecutor pool,
+                               ShopMapper shopMapper, BlogMapper blogMapper, UserMapper userMapper) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.pool = pool;
+        this.shopMapper = shopMapper;
+        this.blogMapper = blogMapper;
+        this.userMapper = userMapper;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return;
+        }
+        register(CACHE_SHOP_KEY, "shop", shopMapper);
+        register(CACHE_BLOG_KEY, "blog", blogMapper);
+        register(CACHE_USER_KEY, "user", userMapper);
+    }
+
+    /**
+     * 获取 key前缀对应的布隆过滤器
+     * @param keyPrefix 缓存 key前缀
+     * @return 没有配置时返回 null
+     */
+    public IdBloomFilter get(String keyPrefix) {
+        return filters.get(keyPrefix);
+    }
+
+    /**
+     * 新增数据后把 id加入过滤器，堆内过滤器同时广播给其它节点
+     */
+    public void put(String keyPrefix, Object id) {
+        IdBloomFilter filter = filters.get(keyPrefix);
+        if (filter == null) {
+            return;
+        }
+        if (filter instanceof RedisIdBloomFilter && !filter.isReady()) {
+            // 还没有确定使用哪个位数组，构建时会从数据库读到这个 id，或者它大于构建时的最大 id
+            return;
+        }
+        try {
+            filter.put(id);
+        } catch (Exception e) {
+            // 数据已经提交，不能因为过滤器失败而报错
+            log.warn("加入布隆过滤器失败，下一次重建时补上：{}{}", keyPrefix, id, e);
+            meterRegistry.counter("bloom.filter.put.failure", "name", sources.get(keyPrefix).name).increment();
+            return;
+        }
+        if (filter instanceof LocalIdBloomFilter) {
+            try {
+                stringRedisTemplate.convertAndSend(BLOOM_PUT_CHANNEL, keyPrefix + id);
+            } catch (Exception e) {
+                // 其它节点由最大 id兜底
+                log.warn("广播布隆过滤器新增 id失败：{}{}", keyPrefix, id, e);
+            }
+        }
+    }
+
+    /**
+     * 收到其它节点（包括自己）新增的 id，消息为 key前缀 + id
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = key.lastIndexOf(':');
+        IdBloomFilter filter = filters.get(key.substring(0, index + 1));
+        if (filter instanceof LocalIdBloomFilter) {
+            filter.put(key.substring(index + 1));
+        }
+    }
+
+    /**
+     * 定期检查是否需要重建，重建在线程池中执行，不占用定时任务线程
+     *  - local：距离上次构建超过 rebuildMillis时重新构建，构建完成后替换
+     *  - redis：切换到其它节点重建好的位数组，超过 rebuildMillis时由拿到锁的节点重建
+     */
+    @Scheduled(fixedDelayString = "${hm.bloom.checkMillis:60000}")
+    public void refresh() {
+        sources.forEach((keyPrefix, source) -> {
+            IdBloomFilter filter = filters.get(keyPrefix);
+            if (filter == null || !filter.isReady()) {
+                return;
+            }
+            if (filter instanceof LocalIdBloomFilter && !isStale(source.generation)) {
+                return;
+            }
+            if (!source.refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            pool.submit(() -> {
+                try {
+                    if (filter instanceof RedisIdBloomFilter) {
+                        syncShared(source, (RedisIdBloomFilter) filter, true);
+                    } else {
+                        rebuildLocal(keyPrefix, source);
+                    }
+                } catch (Exception e) {
+                    log.error("布隆过滤器[{}]重建失败", source.name, e);
+                } finally {
+                    source.refreshing.set(false);
+                }
+            });
+        });
+    }
+
+    private <T> void register(String keyPrefix, String name, BaseMapper<T> mapper) {
+        IdBloomFilter filter = "redis".equals(properties.getType())
+                ? new RedisIdBloomFilter(BLOOM_FILTER_KEY + name, properties.getExpectedInsertions(),
+                properties.getFpp(), stringRedisTemplate)
+                : new LocalIdBloomFilter(properties.getExpectedInsertions(), properties.getFpp());
+        Source source = new Source(name, mapper);
+        sources.put(keyPrefix, source);
+        filters.put(keyPrefix, filter);
+        // 重建后过滤器会被替换，指标每次按 key前缀取当前的过滤器
+        Gauge.builder("bloom.filter.fpp", filters, map -> map.get(keyPrefix).currentFpp())
+                .tag("name", name).register(meterRegistry);
+        Gauge.builder("bloom.filter.memory", filters, map -> map.get(keyPrefix).memoryBytes())
+                .tag("name", name).baseUnit("bytes").register(meterRegistry);
+        // 异步构建，构建完成之前过滤器对所有 id放行
+        pool.submit(() -> {
+            try {
+                if (filter instanceof RedisIdBloomFilter) {
+                    syncShared(source, (RedisIdBloomFilter) filter, false);
+                } else {
+                    ((LocalIdBloomFilter) filter).setHighWaterMark(load(filter, mapper));
+                    source.generation = System.currentTimeMillis();
+                    filter.markReady();
+                }
+                log.info("布隆过滤器[{}]构建完成，占用内存{}字节", name, filter.memoryBytes());
+            } catch (Exception e) {
+                log.error("布隆过滤器[{}]构建失败", name, e);
+            }
+        });
+    }
+
+    /**
+     * 重新构建堆内过滤器，构建期间继续使用旧的，构建完成后替换
+     *  构建期间新增的自增 id要么被读到，要么大于新的最大 id
+     */
+    private void rebuildLocal(String keyPrefix, Source source) {
+        LocalIdBloomFilter filter = new LocalIdBloomFilter(properties.getExpectedInsertions(), properties.getFpp());
+        filter.setHighWaterMark(load(filter, source.mapper));
+        filter.markReady();
+        filters.put(keyPrefix, filter);
+        source.generation = System.currentTimeMillis();
+        log.info("布隆过滤器[{}]重建完成，最大 id {}", source.name, filter.getHighWaterMark());
+    }
+
+    /**
+     * redis中的位数组只需要一个节点构建，其它节点切换到当前的位数组
+     *  - 位数组的 key包含规格和构建时间：bloom:{name}:{spec}:{构建时间}，规格变化后换成新的 key，不会读到旧规格的位数组
+     *  - bloom:{name}:{spec}:current记录当前的构建时间和最大 id
+     *  - 重建写入新的 key，写完后更新 current，旧的位数组保留 10个检查间隔，等其它节点切换
+     * @param rebuild 当前的位数组超过 rebuildMillis时是否重建，启动时只要有就直接复用
+     */
+    private void syncShared(Source source, RedisIdBloomFilter filter, boolean rebuild) throws InterruptedException {
+        String base = BLOOM_FILTER_KEY + source.name + ":" + filter.spec();
+        String currentKey = base + ":current";
+        String lockKey = BLOOM_FILTER_KEY + source.name + ":lock";
+        while (true) {
+            String current = stringRedisTemplate.opsForValue().get(currentKey);
+            if (current != null) {
+                long generation = Long.parseLong(current.substring(0, current.indexOf(':')));
+                if (generation != source.generation) {
+                    filter.use(base + ":" + generation, Long.parseLong(current.substring(current.indexOf(':') + 1)));
+                    source.generation = generation;
+                }
+                if (!rebuild || !isStale(generation)) {
+                    filter.markReady();
+                    return;
+                }
+            }
+            Boolean isLock = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, "1", 10, TimeUnit.MINUTES);
+            if (!Boolean.TRUE.equals(isLock)) {
+                if (current != null) {
+                    // 其它节点正在重建，继续使用当前的位数组
+                    filter.markReady();
+                    return;
+                }
+                // 其它节点正在构建，等待构建完成
+                Thread.sleep(1000);
+                continue;
+            }
+            try {
+                // 拿到锁之后再确认一次，其它节点可能刚刚构建完成
+                if (!Objects.equals(current, stringRedisTemplate.opsForValue().get(currentKey))) {
+                    continue;
+                }
+                long generation = System.currentTimeMillis();
+                String key = base + ":" + generation;
+                long highWaterMark = load(new RedisIdBloomFilter(key, properties.getExpectedInsertions(),
+                        properties.getFpp(), stringRedisTemplate), source.mapper);
+                stringRedisTemplate.opsForValue().set(currentKey, generation + ":" + highWaterMark);
+                if (current != null) {
+                    stringRedisTemplate.expire(base + ":" + current.substring(0, current.indexOf(':')),
+                            properties.getCheckMillis() * 10, TimeUnit.MILLISECONDS);
+                }
+                filter.use(key, highWaterMark);
+                source.generation = generation;
+                filter.markReady();
+                return;
+            } finally {
+                stringRedisTemplate.delete(lockKey);
+            }
+        }
+    }
+
+    private boolean isStale(long generation) {
+        return System.currentTimeMillis() - generation >= properties.getRebuildMillis();
+    }
+
+    /**
+     * 按主键分批读取 id，避免一次把整张表加载进内存
+     * @return 读到的最大 id
+     */
+    private <T> long load(IdBloomFilter filter, BaseMapper<T> mapper) {
+        long lastId = 0;
+        while (true) {
+            List<Object> ids = mapper.selectObjs(new QueryWrapper<T>()
+                    .select("id").gt("id", lastId).orderByAsc("id")
+                    .last("limit " + properties.getBatchSize()));
+            if (ids == null || ids.isEmpty()) {
+                return lastId;
+            }
+            filter.putAll(ids);
+            lastId = ((Number) ids.get(ids.size() - 1)).longValue();
+        }
+    }
+
+    /**
+     * 过滤器对应的表和最近一次构建的时间
+     */
+    private static class Source {
+
+        private final String name;
+
+        private final BaseMapper<?> mapper;
+
+        private volatile long generation;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Source(String name, BaseMapper<?> mapper) {
+            this.name = name;
+            this.mapper = mapper;
+        }
+    }
+}
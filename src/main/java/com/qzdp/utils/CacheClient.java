@@ -1,17 +1,26 @@
 package com.qzdp.utils;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.qzdp.utils.codec.CacheCodec;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.qzdp.utils.RedisConstants.*;
 
@@ -25,42 +34,115 @@ import static com.qzdp.utils.RedisConstants.*;
 @Component
 public class CacheClient {
 
+    /**
+     * XFetch的 beta系数，大于 1更倾向于提前刷新
+     */
+    private static final double XFETCH_BETA = 1.0;
+
+    /**
+     * XFetch使用的最小重建耗时，单位毫秒：预热、不带耗时写入的缓存 delta为 0，
+     * 重建耗时不足 1毫秒也会记成 0，没有下限的话这些缓存永远不会提前刷新，仍然会同时过期
+     */
+    static final long XFETCH_MIN_DELTA_MILLIS = 100;
+
+    /**
+     * 缓存的空值，兼容之前写入的空字符串
+     */
+    private static final byte[] NULL_PLACEHOLDER = new byte[0];
+
+    /**
+     * 互斥锁仍然使用字符串模板
+     */
     private final StringRedisTemplate stringRedisTemplate;
 
-    public CacheClient(StringRedisTemplate redisTemplate) {
+    /**
+     * 缓存值以字节读写，由 codec负责编解码
+     */
+    private final RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    /**
+     * lettuce异步命令，异步查询不占用调用线程
+     */
+    private final RedisClusterAsyncCommands<String, byte[]> asyncCommands;
+
+    private final CacheCodec codec;
+
+    /**
+     * 过期时间策略，所有写入都加上随机量
+     */
+    private final ExpirePolicy expirePolicy;
+
+    /**
+     * 一级缓存（进程内）
+     */
+    private final LocalCache localCache;
+
+    /**
+     * 各张表的 id布隆过滤器
+     */
+    private final BloomFilterRegistry bloomFilters;
+
+    /**
+     * 热点 key探测，热点 key从本地副本读取
+     */
+    private final HotKeyDetector hotKeys;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 回源数据库专用的有界线程池
+     */
+    private final ThreadPoolExecutor loaderExecutor;
+
+    public CacheClient(StringRedisTemplate redisTemplate, RedisTemplate<String, byte[]> cacheRedisTemplate,
+                       RedisClusterAsyncCommands<String, byte[]> asyncCommands, CacheCodec codec,
+                       ExpirePolicy expirePolicy, LocalCache localCache, BloomFilterRegistry bloomFilters,
+                       HotKeyDetector hotKeys, MeterRegistry meterRegistry,
+                       @Qualifier("cacheLoaderExecutor") ThreadPoolExecutor loaderExecutor) {
         this.stringRedisTemplate = redisTemplate;
+        this.cacheRedisTemplate = cacheRedisTemplate;
+        this.asyncCommands = asyncCommands;
+        this.codec = codec;
+        this.expirePolicy = expirePolicy;
+        this.localCache = localCache;
+        this.bloomFilters = bloomFilters;
+        this.hotKeys = hotKeys;
+        this.meterRegistry = meterRegistry;
+        this.loaderExecutor = loaderExecutor;
     }
 
     /**
-     * 定义线城池
+     * 合并同一个 key的并发缓存重建
      */
-    @Autowired
-    private ThreadPoolExecutor pool;
+    private final SingleFlight singleFlight = new SingleFlight();
 
     /*
-     * * 方法1：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置TTL过期时间
-     * * 方法2：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
+     * * 方法1：将任意Java对象编码后存储在string类型的key中，并且可以设置TTL过期时间
+     * * 方法2：将任意Java对象编码后存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
      *
      * * 方法3：根据指定的key查询缓存，并反序列化为指定类型，利用缓存空值的方式解决缓存穿透问题
      * * 方法4：根据指定的key查询缓存，并反序列化为指定类型，需要利用逻辑过期解决缓存击穿问题
+     * * 方法5：根据一批 id批量查询缓存，一次 MGET + 一次数据库 IN查询 + 一次 pipeline写回
+     * * 方法6：方法3、4和互斥锁查询的异步版本，基于 lettuce异步命令，回源数据库在独立的有界线程池执行
      */
 
     /**
-     * 任意Java对象序列化为json并存储在string类型的key中,并且可以设置TTL过期时间
+     * 任意Java对象按配置的格式（json / 二进制）编码并存储在string类型的key中,并且可以设置TTL过期时间
      *
      * @param key   不为空
      * @param value 不为空
-     * @param time  过期时间数值
+     * @param time  过期时间数值，实际过期时间由 {@link ExpirePolicy}加上随机量
      * @param unit  过期时间单位
      */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        cacheRedisTemplate.opsForValue().set(key, codec.encode(value),
+                expirePolicy.ttlSeconds(key, time, unit), TimeUnit.SECONDS);
     }
 
 
 
     /**
-     * 将任意Java对象序列化为 json并存储在 string类型的 key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
+     * 将任意Java对象编码后存储在 string类型的 key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
      *
      * @param key   不为空
      * @param value 不为空
@@ -68,12 +150,78 @@ public class CacheClient {
      * @param unit  过期时间单位
      */
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
+        setWithLogicalExpire(key, value, time, unit, 0L);
+    }
+
+    /**
+     * 设置逻辑过期，并记录本次重建的耗时，供概率提前刷新使用
+     *
+     * @param key   不为空
+     * @param value 不为空
+     * @param time  过期时间数值
+     * @param unit  过期时间单位
+     * @param delta 重建耗时，单位毫秒，为 0时按 {@link #XFETCH_MIN_DELTA_MILLIS}计算
+     */
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, Long delta) {
         // 设置逻辑过期
         RedisData redisData = new RedisData();
         redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expirePolicy.ttlSeconds(key, time, unit)));
+        redisData.setDelta(delta);
         //写入 redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        cacheRedisTemplate.opsForValue().set(key, codec.encodeWithExpire(redisData));
+    }
+
+    /**
+     * 通过一次 pipeline批量写入缓存，用于预热等批量场景
+     *
+     * @param values key -> 值，值不为空
+     * @param time   过期时间数值
+     * @param unit   过期时间单位
+     */
+    public void setAll(Map<String, ?> values, Long time, TimeUnit unit) {
+        Map<String, byte[]> encoded = new HashMap<>(values.size());
+        values.forEach((key, value) -> encoded.put(key, codec.encode(value)));
+        setBatch(encoded, time, unit, Collections.emptyList());
+    }
+
+    /**
+     * 通过一次 pipeline批量写入逻辑过期的缓存，用于预热等批量场景
+     *
+     * @param values key -> 值，值不为空
+     * @param time   逻辑过期时间数值
+     * @param unit   逻辑过期时间单位
+     */
+    public void setAllWithLogicalExpire(Map<String, ?> values, Long time, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        LocalDateTime now = LocalDateTime.now();
+        Map<byte[], byte[]> encoded = new HashMap<>(values.size());
+        values.forEach((key, value) -> {
+            RedisData redisData = new RedisData();
+            redisData.setData(value);
+            redisData.setExpireTime(now.plusSeconds(expirePolicy.ttlSeconds(key, time, unit)));
+            redisData.setDelta(0L);
+            encoded.put(serializer.serialize(key), codec.encodeWithExpire(redisData));
+        });
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            encoded.forEach((key, value) -> connection.stringCommands().set(key, value));
+            return null;
+        });
+    }
+
+    /**
+     * 删除缓存，同时通知所有节点失效本地缓存
+     *
+     * @param key 完整的 key
+     */
+    public void delete(String key) {
+        cacheRedisTemplate.delete(key);
+        localCache.invalidate(key);
+        hotKeys.invalidate(key);
+        localCache.publishInvalidate(key);
     }
 
 
@@ -91,46 +239,117 @@ public class CacheClient {
      */
     public <R, ID> R queryWithLogicalExpire(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithLogicalExpire(keyPrefix, id, type, dbFallback, time, unit, RefreshMode.ON_EXPIRE);
+    }
+
+    /**
+     * 利用逻辑过期解决缓存击穿问题，可以选择刷新方式
+     *  - ON_EXPIRE：逻辑过期之后才异步重建，期间返回旧数据
+     *  - EARLY：概率提前重建（XFetch），每次读取时根据上次重建耗时 delta和剩余时间决定是否提前重建，
+     *    满足 now - delta * beta * ln(random) >= expireTime 时重建，越接近过期、重建越慢，提前重建的概率越大
+     * @param mode 刷新方式
+     */
+    public <R, ID> R queryWithLogicalExpire(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit,
+            RefreshMode mode) {
         String key = keyPrefix + id;
+        // 0.先查本地缓存
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return local == LocalCache.NULL_VALUE ? null : type.cast(local);
+            }
+        }
         // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        byte[] bytes = readBytes(key);
         // 2.判断是否存在
-        if (StrUtil.isBlank(json)){
+        if (bytes == null || bytes.length == 0){
         //  缓存未命中
             return null;
         }
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        RedisData redisData = decodeWithExpire(key, bytes, type);
+        if (redisData == null) {
+            // 逻辑过期的 key在 redis中不会过期，无法解码时删除并同步回源重建，否则之后每次读取都会失败
+            discard(key);
+            return reloadLogical(key, id, dbFallback, time, unit);
+        }
+        R r = type.cast(redisData.getData());
         //判断是否过期
         LocalDateTime expireTime = redisData.getExpireTime();
         if (expireTime.isAfter(LocalDateTime.now())){
-            //没有过期，直接返回商铺信息
+            //没有过期，提前刷新模式下按概率决定是否提前重建
+            if (mode == RefreshMode.EARLY && shouldRefreshEarly(expireTime, redisData.getDelta())
+                    && rebuildLogicalAsync(key, id, dbFallback, time, unit)) {
+                meterRegistry.counter("cache.refresh.early", "prefix", keyPrefix).increment();
+            }
+            //直接返回商铺信息
+            if (useLocal) {
+                localCache.put(keyPrefix, key, r);
+            }
             return r;
         }
         //过期了就交给一个新的线程去异步更新缓存
+        rebuildLogicalAsync(key, id, dbFallback, time, unit);
+        //逻辑过期方式就不需要cas重试了
+        //直接返回过期的商铺信息
+        return r;
+    }
+
+    /**
+     * XFetch：now - delta * beta * ln(random) >= expireTime
+     * @param expireTime 逻辑过期时间
+     * @param delta      上次重建耗时，单位毫秒
+     */
+    private boolean shouldRefreshEarly(LocalDateTime expireTime, Long delta) {
+        long remaining = Duration.between(LocalDateTime.now(), expireTime).toMillis();
+        // 1 - nextDouble() 的范围是 (0, 1]，避免 ln(0)
+        return shouldRefreshEarly(remaining, delta, 1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @param remaining 距离逻辑过期的毫秒数
+     * @param delta     上次重建耗时，单位毫秒，不足 {@link #XFETCH_MIN_DELTA_MILLIS}时按下限计算
+     * @param random    (0, 1]之间的随机数
+     */
+    static boolean shouldRefreshEarly(long remaining, Long delta, double random) {
+        long effective = Math.max(delta == null ? 0 : delta, XFETCH_MIN_DELTA_MILLIS);
+        return -effective * XFETCH_BETA * Math.log(random) >= remaining;
+    }
+
+    /**
+     * 获取互斥锁，开启独立线程重建逻辑过期缓存，并记录重建耗时
+     * @return 是否获取到锁并提交了重建任务
+     */
+    private <R, ID> boolean rebuildLogicalAsync(String key, ID id, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
         //获取互斥锁
-        if (isLock){
-            //开启独立线程，实现缓存重建
-            pool.submit(()->{
+        if (!tryLock(lockKey)) {
+            return false;
+        }
+        //开启独立线程，实现缓存重建
+        try {
+            loaderExecutor.execute(() -> {
                 try {
+                    long begin = System.nanoTime();
                     R apply = dbFallback.apply(id);
                     if (apply != null){
-                        //数据库存在,实现缓存重建
-                        this.setWithLogicalExpire(key, apply, time, unit);
+                        //数据库存在,实现缓存重建，耗时向上取整到毫秒
+                        long delta = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin + 999_999);
+                        this.setWithLogicalExpire(key, apply, time, unit, delta);
                     }
-                }
-                catch (Exception e) {
-                    throw new RuntimeException(e);
+                } catch (Exception e) {
+                    log.error("缓存重建失败：{}", key, e);
                 } finally {
                     unlock(lockKey);
                 }
             });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，放弃本次重建，继续返回旧数据
+            unlock(lockKey);
+            return false;
         }
-        //逻辑过期方式就不需要cas重试了
-        //直接返回过期的商铺信息
-        return r;
+        return true;
     }
 
     /**
@@ -149,28 +368,55 @@ public class CacheClient {
     public <R, ID> R queryWithPassThrough(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
-        String redisValue = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(redisValue)) {
+        // 先查本地缓存
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return local == LocalCache.NULL_VALUE ? null : type.cast(local);
+            }
+        }
+        // 布隆过滤器判断一定不存在，直接返回，不访问 redis和数据库
+        if (isAbsent(keyPrefix, id)) {
+            return null;
+        }
+        byte[] redisValue = readBytes(key);
+        if (redisValue != null && redisValue.length > 0) {
             //缓存中存在，直接返回结果
-            return JSONUtil.toBean(redisValue, type);
+            R r = decode(key, redisValue, type);
+            if (r != null) {
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, r);
+                }
+                return r;
+            }
+            // 无法解码，按未命中处理
+            discard(key);
+            redisValue = null;
         }
         // 判断命中的是否是空值
         if (redisValue != null) {
+            if (useLocal) {
+                localCache.put(keyPrefix, key, null);
+            }
             // 返回一个错误信息
             return null;
         }
         //如果为空，就去数据库查询，查不到就缓存一个空值并返回
         //查询数据库
         R apply = dbFallback.apply(id);
+        if (useLocal) {
+            localCache.put(keyPrefix, key, apply);
+        }
         //数据中不存在
         if (apply == null) {
             //将空值写入 redis中去
-            this.set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            setNull(key);
             //返回错误信息
             return null;
         }
         //存在，则保存到redis中去
-        this.set(key, JSONUtil.toJsonStr(apply), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        this.set(key, apply, time, unit);
         return apply;
     }
 
@@ -190,61 +436,498 @@ public class CacheClient {
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         String key = keyPrefix + id;
+        // 0.先查本地缓存
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return local == LocalCache.NULL_VALUE ? null : type.cast(local);
+            }
+        }
+        // 布隆过滤器判断一定不存在，直接返回，不访问 redis和数据库
+        if (isAbsent(keyPrefix, id)) {
+            return null;
+        }
         // 1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        byte[] shopBytes = readBytes(key);
         // 2.判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
+        if (shopBytes != null && shopBytes.length > 0) {
             // 3.存在，直接返回
-            return JSONUtil.toBean(shopJson, type);
+            R r = decode(key, shopBytes, type);
+            if (r != null) {
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, r);
+                }
+                return r;
+            }
+            // 无法解码，按未命中处理
+            discard(key);
+            shopBytes = null;
         }
         // 判断命中的是否是空值，那什么时候为null呢
-        //如果shopJson不为空，根据上面的StrUtil.isNotBlank来判断，shopJson一定为空值
-        if (shopJson != null) {
+        //如果shopBytes不为null，根据上面的长度判断，shopBytes一定是空值
+        if (shopBytes != null) {
             // 返回一个错误信息
-            log.debug("shopJson:{}",shopJson);
+            log.debug("命中缓存空值:{}", key);
             return null;
         }
 
         // 4.实现缓存重建
+        // 同一个 JVM内对同一个 key的并发请求合并为一次重建，只有 leader去获取分布式锁，
+        // 其它线程阻塞等待 leader的结果，不再各自休眠重试
+        R r = singleFlight.execute(key, () -> rebuildWithMutex(key, id, type, dbFallback, time, unit),
+                LOCK_SHOP_TTL, TimeUnit.SECONDS);
+        if (useLocal) {
+            localCache.put(keyPrefix, key, r);
+        }
+        return r;
+    }
+
+    /**
+     * 获取分布式互斥锁并重建缓存，只由 single flight的 leader调用
+     * 其它节点持有锁时，休眠后重新读取缓存，最多等待锁的过期时间
+     */
+    private <R, ID> R rebuildWithMutex(
+            String key, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
         // 4.1.获取互斥锁
         String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(LOCK_SHOP_TTL);
         try {
-            boolean isLock = tryLock(lockKey);
-            // 4.2.判断是否获取成功
-            if (!isLock) {
-                // 4.3.获取锁失败，休眠并重试
+            // 4.2.获取锁失败，说明其它节点正在重建，休眠后重新读缓存
+            while (!tryLock(lockKey)) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new RuntimeException("等待缓存重建超时：" + key);
+                }
                 Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
+                byte[] bytes = cacheRedisTemplate.opsForValue().get(key);
+                if (bytes != null && bytes.length == 0) {
+                    return null;
+                }
+                // 无法解码的旧数据等持有锁的节点覆盖
+                R r = bytes == null ? null : decode(key, bytes, type);
+                if (r != null) {
+                    return r;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        try {
+            // 4.3.获取锁成功，再判断缓存中是否已经存在了，dck（双重检查的思想）
+            byte[] bytes = cacheRedisTemplate.opsForValue().get(key);
+            if (bytes != null && bytes.length == 0) {
+                return null;
             }
-            // 4.4.获取锁成功，首先判断缓存是否存在了，不存在才去根据id查询
-            // 4.5 再判断缓存中是否已经存在了，dck（双重检查的思想）
-            shopJson = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(shopJson)){
+            if (bytes != null) {
                 //缓存中已经存在，直接返回即可
-                return JSONUtil.toBean(shopJson,type);
+                R r = decode(key, bytes, type);
+                if (r != null) {
+                    return r;
+                }
+                discard(key);
             }
-            r = dbFallback.apply(id);
+            R r = dbFallback.apply(id);
             // 5.不存在，返回错误
             if (r == null) {
                 // 将空值写入redis
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                setNull(key);
                 // 返回错误信息
                 return null;
             }
             // 6.存在，写入redis
             this.set(key, r, time, unit);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
+            return r;
+        } finally {
             // 7.释放锁
             unlock(lockKey);
         }
-        // 8.返回
-        return r;
     }
 
 
+    /**
+     * {@link #queryWithPassThrough}的异步版本
+     * redis查询使用 lettuce异步命令，未命中时在回源线程池查询数据库，调用线程不会被阻塞
+     *
+     * @return 不存在时结果为 null
+     */
+    public <R, ID> CompletableFuture<R> queryWithPassThroughAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return CompletableFuture.completedFuture(local == LocalCache.NULL_VALUE ? null : type.cast(local));
+            }
+        }
+        if (isAbsent(keyPrefix, id)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 回调在 lettuce的 IO线程上执行，这里只做解码，阻塞操作都交给回源线程池
+        return readBytesAsync(key).thenCompose(bytes -> {
+            R cached = bytes == null || bytes.length == 0 ? null : decode(key, bytes, type);
+            if (bytes != null && (bytes.length == 0 || cached != null)) {
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, cached);
+                }
+                return CompletableFuture.completedFuture(cached);
+            }
+            // 未命中或无法解码（先删除再回源）
+            return discardAsync(bytes == null ? null : key).thenCompose(ignored -> loadAsync(() -> {
+                R apply = dbFallback.apply(id);
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, apply);
+                }
+                if (apply == null) {
+                    setNull(key);
+                } else {
+                    this.set(key, apply, time, unit);
+                }
+                return apply;
+            }));
+        });
+    }
+
+    /**
+     * {@link #queryWithMutex}的异步版本
+     * 同一个 key的并发请求共享同一个 future，由一个回源线程获取分布式锁并重建
+     */
+    public <R, ID> CompletableFuture<R> queryWithMutexAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return CompletableFuture.completedFuture(local == LocalCache.NULL_VALUE ? null : type.cast(local));
+            }
+        }
+        if (isAbsent(keyPrefix, id)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return readBytesAsync(key).thenCompose(bytes -> {
+            R cached = bytes == null || bytes.length == 0 ? null : decode(key, bytes, type);
+            if (bytes != null && (bytes.length == 0 || cached != null)) {
+                if (useLocal && cached != null) {
+                    localCache.put(keyPrefix, key, cached);
+                }
+                return CompletableFuture.completedFuture(cached);
+            }
+            // 获取锁失败时的休眠重试发生在回源线程池，不占用调用线程；无法解码时先删除再回源
+            return discardAsync(bytes == null ? null : key).thenCompose(ignored -> singleFlight.executeAsync(key,
+                    () -> loadAsync(() -> rebuildWithMutex(key, id, type, dbFallback, time, unit))))
+                    .thenApply(r -> {
+                        if (useLocal) {
+                            localCache.put(keyPrefix, key, r);
+                        }
+                        return r;
+                    });
+        });
+    }
+
+    /**
+     * {@link #queryWithLogicalExpire}的异步版本
+     */
+    public <R, ID> CompletableFuture<R> queryWithLogicalExpireAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit,
+            RefreshMode mode) {
+        String key = keyPrefix + id;
+        boolean useLocal = localCache.supports(keyPrefix);
+        if (useLocal) {
+            Object local = localCache.get(keyPrefix, key);
+            if (local != null) {
+                return CompletableFuture.completedFuture(local == LocalCache.NULL_VALUE ? null : type.cast(local));
+            }
+        }
+        return readBytesAsync(key).thenCompose(bytes -> {
+            if (bytes == null || bytes.length == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            RedisData redisData = decodeWithExpire(key, bytes, type);
+            if (redisData == null) {
+                return discardAsync(key).thenCompose(ignored ->
+                        loadAsync(() -> reloadLogical(key, id, dbFallback, time, unit)));
+            }
+            R r = type.cast(redisData.getData());
+            LocalDateTime expireTime = redisData.getExpireTime();
+            if (expireTime.isAfter(LocalDateTime.now())) {
+                if (mode == RefreshMode.EARLY && shouldRefreshEarly(expireTime, redisData.getDelta())) {
+                    submitRebuild(keyPrefix, key, id, dbFallback, time, unit, true);
+                }
+                if (useLocal) {
+                    localCache.put(keyPrefix, key, r);
+                }
+                return CompletableFuture.completedFuture(r);
+            }
+            submitRebuild(keyPrefix, key, id, dbFallback, time, unit, false);
+            return CompletableFuture.completedFuture(r);
+        });
+    }
+
+    /**
+     * 获取锁需要同步访问 redis，不能在 lettuce的 IO线程上执行，交给回源线程池
+     */
+    private <R, ID> void submitRebuild(String keyPrefix, String key, ID id, Function<ID, R> dbFallback,
+                                       Long time, TimeUnit unit, boolean early) {
+        try {
+            loaderExecutor.execute(() -> {
+                if (rebuildLogicalAsync(key, id, dbFallback, time, unit) && early) {
+                    meterRegistry.counter("cache.refresh.early", "prefix", keyPrefix).increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("回源线程池已满，放弃重建缓存：{}", key);
+        }
+    }
+
+    /**
+     * 在回源线程池中执行，线程池已满时返回失败的 future
+     */
+    private <T> CompletableFuture<T> loadAsync(Supplier<T> loader) {
+        try {
+            return CompletableFuture.supplyAsync(loader, loaderExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 批量查询缓存，利用缓存空值的方式解决缓存穿透问题
+     *  - 一次 MGET查询所有 key
+     *  - 未命中的 id只回调一次数据库（IN查询）
+     *  - 数据库结果与空值通过一次 pipeline写回 redis
+     * 批量查询的结果通常会被调用方修改（距离、点赞状态等），所以不经过本地缓存
+     *
+     * @param keyPrefix  key前缀
+     * @param ids        id集合
+     * @param type       转化为的类型
+     * @param dbFallback 批量查询数据库，返回 id -> 数据，不存在的 id不放入 map即可
+     * @param time       过期时间数值
+     * @param unit       过期时间单位
+     * @return 按照 ids的顺序返回存在的数据
+     */
+    public <R, ID> List<R> queryBatchWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type,
+            Function<Collection<ID>, Map<ID, R>> dbFallback, Long time, TimeUnit unit) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ID> idList = new ArrayList<>(ids);
+        // 0.去掉布隆过滤器判断一定不存在的 id
+        IdBloomFilter filter = bloomFilters.get(keyPrefix);
+        if (filter != null) {
+            List<Boolean> contains = filter.mightContainAll(idList);
+            List<ID> existing = new ArrayList<>(idList.size());
+            for (int i = 0; i < idList.size(); i++) {
+                if (contains.get(i)) {
+                    existing.add(idList.get(i));
+                }
+            }
+            idList = existing;
+            if (idList.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        List<String> keys = idList.stream().map(id -> keyPrefix + id).collect(Collectors.toList());
+        // 1.热点 key读本地副本，其余一次 MGET查询
+        byte[][] values = new byte[keys.size()][];
+        List<Integer> remote = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            values[i] = hotKeys.getReplica(keys.get(i));
+            if (values[i] == null) {
+                remote.add(i);
+            }
+        }
+        if (!remote.isEmpty()) {
+            List<byte[]> remoteValues = cacheRedisTemplate.opsForValue()
+                    .multiGet(remote.stream().map(keys::get).collect(Collectors.toList()));
+            for (int i = 0; i < remote.size(); i++) {
+                int index = remote.get(i);
+                values[index] = remoteValues == null ? null : remoteValues.get(i);
+                hotKeys.record(keys.get(index), values[index]);
+            }
+        }
+        Map<ID, R> found = new HashMap<>(idList.size());
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            byte[] value = values[i];
+            R r = value == null || value.length == 0 ? null : decode(keys.get(i), value, type);
+            if (r != null) {
+                found.put(idList.get(i), r);
+            } else if (value == null || value.length > 0) {
+                // 长度为 0表示缓存的空值，未命中和无法解码的才需要查数据库，写回时覆盖无法解码的旧数据
+                misses.add(idList.get(i));
+            }
+        }
+        // 2.未命中的 id一次性查询数据库，并通过 pipeline写回
+        if (!misses.isEmpty()) {
+            Map<ID, R> loaded = dbFallback.apply(misses);
+            Map<String, byte[]> hitValues = new HashMap<>(misses.size());
+            List<String> nullKeys = new ArrayList<>();
+            for (ID id : misses) {
+                R r = loaded == null ? null : loaded.get(id);
+                if (r == null) {
+                    nullKeys.add(keyPrefix + id);
+                } else {
+                    found.put(id, r);
+                    hitValues.put(keyPrefix + id, codec.encode(r));
+                }
+            }
+            setBatch(hitValues, time, unit, nullKeys);
+        }
+        // 3.按照传入的顺序返回
+        List<R> result = new ArrayList<>(found.size());
+        for (ID id : idList) {
+            R r = found.get(id);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 通过一次 pipeline批量写入缓存，每个 key的过期时间单独计算，同一批写入不会同时过期
+     *
+     * @param values   key -> 已经编码的值
+     * @param time     过期时间数值
+     * @param unit     过期时间单位
+     * @param nullKeys 需要缓存空值的 key
+     */
+    private void setBatch(Map<String, byte[]> values, Long time, TimeUnit unit, List<String> nullKeys) {
+        if (values.isEmpty() && nullKeys.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.stringCommands().set(
+                    serializer.serialize(key), value,
+                    Expiration.seconds(expirePolicy.ttlSeconds(key, time, unit)),
+                    RedisStringCommands.SetOption.upsert()));
+            for (String key : nullKeys) {
+                connection.stringCommands().set(serializer.serialize(key), NULL_PLACEHOLDER,
+                        Expiration.seconds(expirePolicy.ttlSeconds(key, CACHE_NULL_TTL, TimeUnit.MINUTES)),
+                        RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 解码缓存值，结构编号不一致（结构升级后的旧数据）、数据不完整或损坏时记录指标 cache.decode.failure
+     * @return 无法解码时返回 null，由调用方按未命中处理、回源重建
+     */
+    private <R> R decode(String key, byte[] bytes, Class<R> type) {
+        try {
+            return codec.decode(bytes, type);
+        } catch (RuntimeException e) {
+            decodeFailed(key, e);
+            return null;
+        }
+    }
+
+    /**
+     * {@link #decode}的逻辑过期版本
+     */
+    private RedisData decodeWithExpire(String key, byte[] bytes, Class<?> type) {
+        try {
+            RedisData redisData = codec.decodeWithExpire(bytes, type);
+            type.cast(redisData.getData());
+            return redisData;
+        } catch (RuntimeException e) {
+            decodeFailed(key, e);
+            return null;
+        }
+    }
+
+    private void decodeFailed(String key, RuntimeException e) {
+        log.warn("缓存值无法解码，删除后回源重建：{} {}", key, e.getMessage());
+        meterRegistry.counter("cache.decode.failure", "prefix", key.substring(0, key.lastIndexOf(':') + 1))
+                .increment();
+    }
+
+    /**
+     * 删除无法解码的缓存值，热点 key的本地副本一起失效
+     */
+    private void discard(String key) {
+        hotKeys.invalidate(key);
+        cacheRedisTemplate.delete(key);
+    }
+
+    /**
+     * {@link #discard}的异步版本，在 lettuce的 IO线程上调用，删除失败时不影响之后的回源
+     * @param key 为 null时什么也不做
+     */
+    private CompletableFuture<Void> discardAsync(String key) {
+        if (key == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        hotKeys.invalidate(key);
+        return asyncCommands.del(key).toCompletableFuture().handle((n, e) -> {
+            if (e != null) {
+                log.warn("删除无法解码的缓存值失败：{}", key, e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 逻辑过期的缓存无法解码时同步回源，数据库中也不存在时保持删除
+     */
+    private <R, ID> R reloadLogical(String key, ID id, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        R apply = dbFallback.apply(id);
+        if (apply != null) {
+            this.setWithLogicalExpire(key, apply, time, unit);
+        }
+        return apply;
+    }
+
+    /**
+     * 缓存空值，解决缓存穿透
+     */
+    private void setNull(String key) {
+        cacheRedisTemplate.opsForValue().set(key, NULL_PLACEHOLDER,
+                expirePolicy.ttlSeconds(key, CACHE_NULL_TTL, TimeUnit.MINUTES), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 读取缓存的原始字节，热点 key优先读本地副本，其余访问 redis并参与热点统计
+     */
+    private byte[] readBytes(String key) {
+        byte[] bytes = hotKeys.getReplica(key);
+        if (bytes != null) {
+            return bytes;
+        }
+        bytes = cacheRedisTemplate.opsForValue().get(key);
+        hotKeys.record(key, bytes);
+        return bytes;
+    }
+
+    /**
+     * {@link #readBytes}的异步版本
+     */
+    private CompletableFuture<byte[]> readBytesAsync(String key) {
+        byte[] bytes = hotKeys.getReplica(key);
+        if (bytes != null) {
+            return CompletableFuture.completedFuture(bytes);
+        }
+        return asyncCommands.get(key).toCompletableFuture().thenApply(value -> {
+            hotKeys.record(key, value);
+            return value;
+        });
+    }
+
+    /**
+     * 布隆过滤器是否判断该 id一定不存在
+     */
+    private boolean isAbsent(String keyPrefix, Object id) {
+        IdBloomFilter filter = bloomFilters.get(keyPrefix);
+        return filter != null && !filter.mightContain(id);
+    }
+
     private boolean tryLock(String key) {
         Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
         //防止自动拆箱出现错误,flg可能为 null
@@ -0,0 +1,148 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.WarmupConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.mapper.ShopMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:10
+ * @description 启动时预热商铺缓存和按类型划分的地理位置索引
+ *  - 按主键分批（keyset分页）读取 tb_shop，不会一次把整张表加载进内存
+ *  - 每批的 GEOADD和缓存写入各通过一次 pipeline完成
+ *  - spring boot在所有 ApplicationRunner执行完之后才把就绪状态切换为 ACCEPTING_TRAFFIC，
+ *    所以这里等待预热完成，最多等待 deadlineSeconds，超时后不再阻塞，预热在后台继续
+ */
+@Slf4j
+@Component
+public class CacheWarmupRunner implements ApplicationRunner {
+
+    private final WarmupConfigProperties properties;
+
+    private final ShopMapper shopMapper;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final CacheClient cacheClient;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicLong warmed = new AtomicLong();
+
+    private final AtomicLong total = new AtomicLong();
+
+    public CacheWarmupRunner(WarmupConfigProperties properties, ShopMapper shopMapper,
+                             StringRedisTemplate stringRedisTemplate, CacheClient cacheClient,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.shopMapper = shopMapper;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheClient = cacheClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return;
+        }
+        Gauge.builder("cache.warmup.progress", warmed, AtomicLong::get).tag("name", "shop").register(meterRegistry);
+        Gauge.builder("cache.warmup.total", total, AtomicLong::get).tag("name", "shop").register(meterRegistry);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                warmup();
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, "cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            future.get(properties.getDeadlineSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("预热超过{}秒仍未完成（{}/{}），不再阻塞就绪探针，后台继续预热",
+                    properties.getDeadlineSeconds(), warmed.get(), total.get());
+        } catch (ExecutionException e) {
+            // 预热失败不影响启动，只是首批请求会回源数据库
+            log.error("预热失败（{}/{}）", warmed.get(), total.get(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void warmup() {
+        long begin = System.currentTimeMillis();
+        total.set(shopMapper.selectCount(null));
+        long lastId = 0;
+        while (true) {
+            List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>()
+                    .gt("id", lastId).orderByAsc("id")
+                    .last("limit " + properties.getBatchSize()));
+            if (shops.isEmpty()) {
+                break;
+            }
+            writeGeo(shops);
+            writeCache(shops);
+            lastId = shops.get(shops.size() - 1).getId();
+            log.info("预热商铺缓存：{}/{}", warmed.addAndGet(shops.size()), total.get());
+        }
+        log.info("预热商铺缓存完成，共{}条，耗时{}ms", warmed.get(), System.currentTimeMillis() - begin);
+    }
+
+    /**
+     * 按类型写入地理位置索引，GEOADD key 经度 纬度 member
+     */
+    private void writeGeo(List<Shop> shops) {
+        RedisSerializer<String> serializer = stringRedisTemplate.getStringSerializer();
+        Map<Long, Map<byte[], Point>> byType = new HashMap<>();
+        for (Shop shop : shops) {
+            if (shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+                continue;
+            }
+            byType.computeIfAbsent(shop.getTypeId(), typeId -> new HashMap<>())
+                    .put(serializer.serialize(shop.getId().toString()), new Point(shop.getX(), shop.getY()));
+        }
+        if (byType.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byType.forEach((typeId, locations) ->
+                    connection.geoCommands().geoAdd(serializer.serialize(SHOP_GEO_KEY + typeId), locations));
+            return null;
+        });
+    }
+
+    private void writeCache(List<Shop> shops) {
+        Map<String, Shop> values = new HashMap<>(shops.size());
+        for (Shop shop : shops) {
+            values.put(CACHE_SHOP_KEY + shop.getId(), shop);
+        }
+        if ("logical".equals(properties.getCacheMode())) {
+            cacheClient.setAllWithLogicalExpire(values, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        } else {
+            cacheClient.setAll(values, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.qzdp.utils;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:10
+ * @description count-min sketch，用固定内存估算每个 key的访问次数
+ *  估算值只会偏大不会偏小，偏大的幅度与总访问量 / width成正比
+ */
+public class CountMinSketch {
+
+    private final int width;
+
+    private final int depth;
+
+    private final AtomicIntegerArray counters;
+
+    public CountMinSketch(int width, int depth) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width需要是 2的幂：" + width);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicIntegerArray(width * depth);
+    }
+
+    /**
+     * 计数加一
+     * @return 加一之后的估算值
+     */
+    public int add(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1 ^ 0x9E3779B9);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = i * width + ((h1 + i * h2) & (width - 1));
+            min = Math.min(min, counters.incrementAndGet(index));
+        }
+        return min;
+    }
+
+    /**
+     * 估算访问次数
+     */
+    public int estimate(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1 ^ 0x9E3779B9);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counters.get(i * width + ((h1 + i * h2) & (width - 1))));
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
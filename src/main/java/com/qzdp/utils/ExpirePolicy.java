@@ -0,0 +1,76 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:45
+ * @description 缓存过期时间策略，CacheClient的所有写入都通过这里计算实际的过期时间
+ *  给过期时间加上随机量，避免预热或批量更新后大量 key在同一时刻过期，请求同时打到数据库（缓存雪崩）
+ *  实际使用的过期时间按 key前缀记录到 cache.expire.ttl，通过分布可以确认过期时刻是否足够分散
+ */
+@Component
+public class ExpirePolicy {
+
+    private final CacheExpireConfigProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public ExpirePolicy(CacheExpireConfigProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 计算加上随机量后的过期秒数
+     *
+     * @param key  缓存的 key，按最后一个冒号之前的部分作为前缀统计
+     * @param time 基础过期时间
+     * @param unit 时间单位
+     * @return 过期秒数，至少为 1
+     */
+    public long ttlSeconds(String key, long time, TimeUnit unit) {
+        long base = Math.max(1, unit.toSeconds(time));
+        long ttl = base + jitter(base);
+        summaries.computeIfAbsent(prefixOf(key), prefix -> DistributionSummary.builder("cache.expire.ttl")
+                        .tag("prefix", prefix)
+                        .baseUnit("seconds")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(ttl);
+        return ttl;
+    }
+
+    private long jitter(long base) {
+        double ratio = properties.getJitterRatio() == null ? 0 : properties.getJitterRatio();
+        if (ratio <= 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (properties.getMode()) {
+            case "uniform":
+                return (long) (random.nextDouble() * ratio * base);
+            case "exponential":
+                double mean = ratio * base;
+                // 1 - nextDouble() 的范围是 (0, 1]，避免 ln(0)
+                double sample = -mean * Math.log(1 - random.nextDouble());
+                return (long) Math.min(sample, mean * properties.getMaxJitterMultiple());
+            default:
+                return 0;
+        }
+    }
+
+    private static String prefixOf(String key) {
+        return key.substring(0, key.lastIndexOf(':') + 1);
+    }
+}
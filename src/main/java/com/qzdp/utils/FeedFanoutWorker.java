@@ -0,0 +1,404 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.Follow;
+import com.qzdp.mapper.FollowMapper;
+import io.lettuce.core.cluster.SlotHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 07:10
+ * @description 把新发布的笔记推送到粉丝的收件箱 feed:{userId}
+ *  - 发布笔记时只往 stream.feed写一条推送任务，请求立即返回，后台线程用消费组读取任务
+ *  - 按 tb_follow主键分页（keyset）读取粉丝，每页的 ZADD按 slot排序后通过一次 pipeline写入
+ *  - 每写完一页把主键游标记录到 feed:fanout:{blogId}，同时 XCLAIM给自己刷新空闲时间，
+ *    节点宕机后任务留在 pending-list中，重启后或被其它节点接管后从游标继续，ZADD重复写入是幂等的
+ *  - 推送失败的任务留在 pending-list中重试，投递次数达到 maxDeliveries后确认并丢弃，不会一直重试、挡住后面的任务
+ *  - 写入时顺带 ZCARD，超出 inboxSize + compactBatch的收件箱交给 FeedInboxCompactor归档
+ *  - 大 V的笔记不推送（见 FeedTimeline），只推送给收件箱还存在的活跃粉丝时，每页先用一次 pipeline检查收件箱是否存在
+ *  - 指标 feed.fanout.lag：正在推送的任务从发布到现在的秒数，空闲时为 0
+ */
+@Slf4j
+@Component
+public class FeedFanoutWorker {
+
+    private static final String FIELD_BLOG = "blogId";
+    private static final String FIELD_AUTHOR = "authorId";
+    private static final String FIELD_TIME = "time";
+
+    private final FeedConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final FollowMapper followMapper;
+
+    private final FeedTimeline feedTimeline;
+
+    private final FeedInboxCompactor inboxCompactor;
+
+    private final ThreadPoolExecutor pool;
+
+    private final Consumer consumer;
+
+    /**
+     * 接管到其它节点的任务后，让推送线程先处理自己的 pending-list
+     */
+    private final AtomicBoolean recheckPending = new AtomicBoolean(true);
+
+    /**
+     * 正在推送的任务的发布时间，空闲时为 0
+     */
+    private final AtomicLong processingSince = new AtomicLong();
+
+    private final Counter inboxWrites;
+
+    private final Counter inactiveSkipped;
+
+    private final Counter reclaimed;
+
+    private final Counter dropped;
+
+    private final Timer duration;
+
+    public FeedFanoutWorker(FeedConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                            FollowMapper followMapper, FeedTimeline feedTimeline,
+                            FeedInboxCompactor inboxCompactor, ThreadPoolExecutor pool,
+                            OrderShardCoordinator coordinator, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.followMapper = followMapper;
+        this.feedTimeline = feedTimeline;
+        this.inboxCompactor = inboxCompactor;
+        this.pool = pool;
+        this.consumer = Consumer.from(FEED_FANOUT_GROUP, coordinator.nodeId() + "-feed");
+        this.inboxWrites = meterRegistry.counter("feed.fanout.inbox.writes");
+        this.inactiveSkipped = meterRegistry.counter("feed.fanout.inactive.skipped");
+        this.reclaimed = meterRegistry.counter("feed.fanout.reclaimed");
+        this.dropped = meterRegistry.counter("feed.fanout.dropped");
+        this.duration = meterRegistry.timer("feed.fanout.duration");
+        Gauge.builder("feed.fanout.lag", processingSince,
+                        since -> since.get() == 0 ? 0 : (System.currentTimeMillis() - since.get()) / 1000.0)
+                .description("正在推送的笔记从发布到现在的秒数").register(meterRegistry);
+    }
+
+    @PostConstruct
+    private void init() {
+        createGroup();
+        pool.submit(this::run);
+    }
+
+    /**
+     * 提交推送任务，XADD stream.feed * blogId .. authorId .. time ..
+     */
+    public void submit(Long blogId, Long authorId, long time) {
+        Map<String, String> job = new HashMap<>(4);
+        job.put(FIELD_BLOG, blogId.toString());
+        job.put(FIELD_AUTHOR, authorId.toString());
+        job.put(FIELD_TIME, String.valueOf(time));
+        stringRedisTemplate.opsForStream().add(FEED_FANOUT_STREAM_KEY, job);
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                if (recheckPending.getAndSet(false)) {
+                    handlePendingList();
+                }
+                // XREADGROUP GROUP g1 consumer COUNT 1 BLOCK t STREAMS stream.feed >
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                        consumer,
+                        StreamReadOptions.empty().count(1).block(Duration.ofMillis(properties.getBlockMillis())),
+                        StreamOffset.create(FEED_FANOUT_STREAM_KEY, ReadOffset.lastConsumed()));
+                if (records == null || records.isEmpty()) {
+                    continue;
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    fanout(record);
+                }
+            } catch (Exception e) {
+                log.error("推送笔记异常", e);
+                recheckPending.set(true);
+                sleep(properties.getBlockMillis());
+            }
+        }
+    }
+
+    /**
+     * 处理 pending-list中自己没有完成的任务（重启前中断的、从其它节点接管的、推送失败的）
+     * 每次从 pending-list中读取都会使投递次数加一，达到 maxDeliveries的任务不再重试，确认后丢弃
+     * 一个任务失败时继续处理后面的任务，全部处理完再抛出异常，由 run()等待后重试
+     */
+    void handlePendingList() {
+        String lastId = "0";
+        RuntimeException failure = null;
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                    consumer,
+                    StreamReadOptions.empty().count(10),
+                    StreamOffset.create(FEED_FANOUT_STREAM_KEY, ReadOffset.from(lastId)));
+            if (records == null || records.isEmpty()) {
+                break;
+            }
+            Map<RecordId, Long> deliveries = deliveries(records);
+            for (MapRecord<String, Object, Object> record : records) {
+                lastId = record.getId().getValue();
+                long count = deliveries.getOrDefault(record.getId(), 0L);
+                if (count >= properties.getMaxDeliveries()) {
+                    drop(record, count);
+                    continue;
+                }
+                try {
+                    fanout(record);
+                } catch (RuntimeException e) {
+                    log.error("推送任务失败，已投递{}次，等待重试：{}", count, record.getId(), e);
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * XPENDING stream.feed g1 first last count consumer，读取这一批任务的投递次数
+     */
+    private Map<RecordId, Long> deliveries(List<MapRecord<String, Object, Object>> records) {
+        Range<String> range = Range.closed(records.get(0).getId().getValue(),
+                records.get(records.size() - 1).getId().getValue());
+        PendingMessages messages = stringRedisTemplate.opsForStream()
+                .pending(FEED_FANOUT_STREAM_KEY, consumer, range, records.size());
+        Map<RecordId, Long> deliveries = new HashMap<>(records.size());
+        if (messages != null) {
+            for (PendingMessage message : messages) {
+                deliveries.put(message.getId(), message.getTotalDeliveryCount());
+            }
+        }
+        return deliveries;
+    }
+
+    /**
+     * 多次推送仍然失败的任务确认后丢弃，粉丝仍然可以在作者主页看到这篇笔记
+     */
+    private void drop(MapRecord<String, Object, Object> record, long deliveries) {
+        log.error("推送任务投递{}次仍未成功，丢弃：{} {}", deliveries, record.getId(), record.getValue());
+        stringRedisTemplate.opsForStream().acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, record.getId());
+        Object blogId = record.getValue().get(FIELD_BLOG);
+        if (blogId != null) {
+            stringRedisTemplate.delete(FEED_FANOUT_CHECKPOINT_KEY + blogId);
+        }
+        dropped.increment();
+    }
+
+    /**
+     * 推送一条任务，从上次的游标继续，完成后确认并删除游标
+     */
+    void fanout(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> job = record.getValue();
+        Long blogId;
+        Long authorId;
+        long time;
+        try {
+            blogId = Long.valueOf(job.get(FIELD_BLOG).toString());
+            authorId = Long.valueOf(job.get(FIELD_AUTHOR).toString());
+            time = Long.parseLong(job.get(FIELD_TIME).toString());
+        } catch (RuntimeException e) {
+            log.error("无法识别的推送任务，丢弃：{} {}", record.getId(), job);
+            stringRedisTemplate.opsForStream().acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, record.getId());
+            return;
+        }
+        long begin = System.nanoTime();
+        processingSince.set(time);
+        try {
+            String checkpointKey = FEED_FANOUT_CHECKPOINT_KEY + blogId;
+            if (!feedTimeline.shouldPush(authorId)) {
+                // 大 V只写发件箱，粉丝读取时拉取
+                stringRedisTemplate.opsForStream().acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, record.getId());
+                stringRedisTemplate.delete(checkpointKey);
+                return;
+            }
+            String checkpoint = stringRedisTemplate.opsForValue().get(checkpointKey);
+            long cursor = checkpoint == null ? 0 : Long.parseLong(checkpoint);
+            if (cursor > 0) {
+                log.info("笔记{}从粉丝游标{}继续推送", blogId, cursor);
+            }
+            int pageSize = properties.getFanoutPageSize();
+            while (true) {
+                // select id, user_id from tb_follow where follow_user_id = ? and id > ? order by id limit n
+                List<Follow> page = followMapper.selectList(new QueryWrapper<Follow>()
+                        .select("id", "user_id")
+                        .eq("follow_user_id", authorId).gt("id", cursor)
+                        .orderByAsc("id").last("limit " + pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                writeInboxes(page, blogId, time);
+                cursor = page.get(page.size() - 1).getId();
+                if (page.size() < pageSize) {
+                    break;
+                }
+                saveCheckpoint(checkpointKey, cursor, record.getId());
+            }
+            stringRedisTemplate.opsForStream().acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, record.getId());
+            stringRedisTemplate.delete(checkpointKey);
+        } finally {
+            processingSince.set(0);
+            duration.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 一页粉丝的收件箱按 slot排序后一次 pipeline写入，同一个节点上的命令连续发出
+     */
+    private void writeInboxes(List<Follow> page, Long blogId, long time) {
+        List<String> keys = page.stream().map(follow -> FEED_KEY + follow.getUserId()).collect(Collectors.toList());
+        if (feedTimeline.pushActiveOnly()) {
+            keys = activeInboxes(keys);
+        }
+        Map<Integer, List<String>> bySlot = new TreeMap<>();
+        for (String key : keys) {
+            bySlot.computeIfAbsent(SlotHash.getSlot(key), slot -> new ArrayList<>()).add(key);
+        }
+        if (bySlot.isEmpty()) {
+            return;
+        }
+        List<String> ordered = new ArrayList<>(keys.size());
+        bySlot.values().forEach(ordered::addAll);
+        String member = blogId.toString();
+        // 每个收件箱 ZADD之后 ZCARD，超出上限的交给归档任务
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : ordered) {
+                redis.zAdd(key, time, member);
+                redis.zCard(key);
+            }
+            return null;
+        });
+        inboxWrites.increment(ordered.size());
+        List<String> overflowed = new ArrayList<>();
+        for (int i = 0; i < ordered.size() && 2 * i + 1 < results.size(); i++) {
+            Object size = results.get(2 * i + 1);
+            if (size instanceof Long && inboxCompactor.needsCompaction((Long) size)) {
+                overflowed.add(ordered.get(i));
+            }
+        }
+        if (!overflowed.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(FEED_COMPACT_PENDING_KEY, overflowed.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 一次 pipeline检查收件箱是否存在，不存在的说明粉丝很久没有读取，读取时会重建
+     */
+    private List<String> activeInboxes(List<String> keys) {
+        List<Object> exists = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String key : keys) {
+                redis.exists(key);
+            }
+            return null;
+        });
+        List<String> active = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(exists.get(i))) {
+                active.add(keys.get(i));
+            }
+        }
+        inactiveSkipped.increment(keys.size() - active.size());
+        return active;
+    }
+
+    /**
+     * 记录游标，并把任务重新认领给自己，刷新空闲时间，避免推送大 V笔记时被其它节点误接管
+     */
+    private void saveCheckpoint(String checkpointKey, long cursor, RecordId recordId) {
+        stringRedisTemplate.opsForValue().set(checkpointKey, String.valueOf(cursor),
+                properties.getCheckpointTtlSeconds(), TimeUnit.SECONDS);
+        stringRedisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                ((StringRedisConnection) connection).xClaimJustId(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP,
+                        consumer.getName(), RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO).ids(recordId)));
+    }
+
+    /**
+     * 接管其它节点长时间没有进展的任务，交给推送线程从游标继续
+     */
+    @Scheduled(fixedDelayString = "${hm.feed.reclaimMillis:10000}")
+    public void reclaim() {
+        try {
+            PendingMessages messages = stringRedisTemplate.opsForStream()
+                    .pending(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, Range.unbounded(), 100);
+            if (messages == null || messages.isEmpty()) {
+                return;
+            }
+            List<RecordId> idle = new ArrayList<>();
+            for (PendingMessage message : messages) {
+                if (!consumer.getName().equals(message.getConsumerName())
+                        && message.getElapsedTimeSinceLastDelivery().toMillis() >= properties.getMinIdleMillis()) {
+                    idle.add(message.getId());
+                }
+            }
+            if (idle.isEmpty()) {
+                return;
+            }
+            Duration minIdle = Duration.ofMillis(properties.getMinIdleMillis());
+            List<RecordId> claimed = stringRedisTemplate.execute((RedisCallback<List<RecordId>>) connection ->
+                    ((StringRedisConnection) connection).xClaimJustId(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP,
+                            consumer.getName(), RedisStreamCommands.XClaimOptions.minIdle(minIdle)
+                                    .ids(idle.toArray(new RecordId[0]))));
+            if (claimed != null && !claimed.isEmpty()) {
+                log.warn("接管其它节点未完成的推送任务{}个", claimed.size());
+                reclaimed.increment(claimed.size());
+                recheckPending.set(true);
+            }
+        } catch (Exception e) {
+            log.error("接管推送任务失败", e);
+        }
+    }
+
+    private void createGroup() {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(FEED_FANOUT_STREAM_KEY.getBytes(StandardCharsets.UTF_8), FEED_FANOUT_GROUP,
+                            ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!ExceptionUtil.getRootCauseMessage(e).contains("BUSYGROUP")) {
+                log.error("创建消费组失败：{}", FEED_FANOUT_STREAM_KEY, e);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.FeedArchive;
+import com.qzdp.mapper.FeedArchiveMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 09:20
+ * @description 把收件箱中超出 inboxSize的旧笔记归档到 tb_feed_archive
+ *  - 推送时发现收件箱超出 inboxSize + compactBatch，把 key加入 feed:compact:pending
+ *  - 定时 SPOP待归档的收件箱，取出最旧的超出部分，INSERT IGNORE到数据库后再 ZREM这些笔记，
+ *    只删除读出来的成员，期间新推送进来的笔记不受影响；写库失败时放回待归档集合
+ *  - 归档后写入不过期的标记 feed:archived:{userId}，读取时收件箱不够一页且有这个标记时从 tb_feed_archive补齐，
+ *    收件箱过期重建之后仍然能读到归档
+ */
+@Slf4j
+@Component
+public class FeedInboxCompactor {
+
+    private final FeedConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final FeedArchiveMapper archiveMapper;
+
+    private final Counter archived;
+
+    public FeedInboxCompactor(FeedConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                              FeedArchiveMapper archiveMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.archiveMapper = archiveMapper;
+        this.archived = meterRegistry.counter("feed.inbox.archived");
+    }
+
+    /**
+     * 收件箱的条数是否需要归档
+     */
+    public boolean needsCompaction(long size) {
+        return size > properties.getInboxSize() + properties.getCompactBatch();
+    }
+
+    @Scheduled(fixedDelayString = "${hm.feed.compactMillis:5000}")
+    public void compactPending() {
+        List<String> keys;
+        try {
+            keys = stringRedisTemplate.opsForSet().pop(FEED_COMPACT_PENDING_KEY, properties.getCompactKeysPerRun());
+        } catch (Exception e) {
+            log.warn("读取待归档收件箱失败", e);
+            return;
+        }
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            try {
+                compact(key);
+            } catch (Exception e) {
+                log.error("归档收件箱失败：{}", key, e);
+                stringRedisTemplate.opsForSet().add(FEED_COMPACT_PENDING_KEY, key);
+            }
+        }
+    }
+
+    /**
+     * 归档一个收件箱中最旧的超出部分
+     * @return 归档的条数
+     */
+    int compact(String key) {
+        Long size = stringRedisTemplate.opsForZSet().zCard(key);
+        long overflow = size == null ? 0 : size - properties.getInboxSize();
+        if (overflow <= 0) {
+            return 0;
+        }
+        Set<ZSetOperations.TypedTuple<String>> oldest = stringRedisTemplate.opsForZSet().rangeWithScores(key, 0, overflow - 1);
+        if (oldest == null || oldest.isEmpty()) {
+            return 0;
+        }
+        Long userId = Long.valueOf(key.substring(FEED_KEY.length()));
+        List<FeedArchive> rows = new ArrayList<>(oldest.size());
+        Object[] members = new Object[oldest.size()];
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : oldest) {
+            rows.add(new FeedArchive()
+                    .setUserId(userId)
+                    .setBlogId(Long.valueOf(tuple.getValue()))
+                    .setPublishTime(tuple.getScore().longValue()));
+            members[i++] = tuple.getValue();
+        }
+        // 先写库再删除，宕机时最多重复归档，INSERT IGNORE保证幂等
+        archiveMapper.insertIgnoreBatch(rows);
+        markArchived(userId);
+        stringRedisTemplate.opsForZSet().remove(key, members);
+        archived.increment(rows.size());
+        return rows.size();
+    }
+
+    /**
+     * 标记用户有归档，不设置过期时间，收件箱过期后仍然保留
+     */
+    public void markArchived(Long userId) {
+        stringRedisTemplate.opsForValue().set(FEED_ARCHIVED_KEY + userId, "1");
+    }
+
+    /**
+     * 按发布时间倒序读取不晚于 max的归档笔记
+     */
+    public List<ZSetOperations.TypedTuple<String>> queryArchive(Long userId, long max, int limit) {
+        List<FeedArchive> rows = archiveMapper.queryBefore(userId, max, limit);
+        List<ZSetOperations.TypedTuple<String>> tuples = new ArrayList<>(rows.size());
+        for (FeedArchive row : rows) {
+            tuples.add(new DefaultTypedTuple<>(row.getBlogId().toString(), row.getPublishTime().doubleValue()));
+        }
+        return tuples;
+    }
+}
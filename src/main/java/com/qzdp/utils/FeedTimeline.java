@@ -0,0 +1,322 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.Follow;
+import com.qzdp.mapper.FollowMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 08:00
+ * @description 推拉结合的关注时间线
+ *  - 每篇笔记都写入作者自己的发件箱 feed:outbox:{authorId}，只保留最近 outboxSize篇
+ *  - 粉丝数不少于 bigAuthorFollowers的作者（大 V）只写发件箱，不推送，作者 id记录在 feed:big-authors
+ *  - 普通作者推送到粉丝的收件箱 feed:{userId}，activeDays大于 0时只推送给收件箱还存在的活跃粉丝，
+ *    收件箱每次读取时续期 activeDays天，长期不读的收件箱过期后不再接收推送
+ *  - 读取时把收件箱与关注的大 V的发件箱按 score做 k路归并；收件箱已经过期时先用关注的普通作者的发件箱重建
+ *  - 收件箱只在 redis中保留最近 inboxSize篇（见 FeedInboxCompactor），翻页越过这部分后从 tb_feed_archive读取，
+ *    是否有归档由不过期的 feed:archived:{userId}判断，不依赖收件箱的条数，收件箱过期重建后同样能读到
+ *  - 收件箱过期时其中还没有归档的笔记随之删除，重建只能找回每个普通作者发件箱中最近 rebuildPerAuthor篇
+ *    （发件箱最多保留 outboxSize篇），更早、又没有达到归档条件的笔记不会再出现在时间线上
+ *  - 大 V名单在每个节点缓存 bigAuthorsRefreshMillis，作者刚成为大 V时最多延迟这么久才会出现在粉丝的时间线上
+ */
+@Slf4j
+@Component
+public class FeedTimeline {
+
+    private final FeedConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final FollowMapper followMapper;
+
+    private final FeedInboxCompactor inboxCompactor;
+
+    private final Timer readTimer;
+
+    private final Counter coldReads;
+
+    private volatile Set<Long> bigAuthors = Collections.emptySet();
+
+    public FeedTimeline(FeedConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                        FollowMapper followMapper, FeedInboxCompactor inboxCompactor, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.followMapper = followMapper;
+        this.inboxCompactor = inboxCompactor;
+        this.readTimer = Timer.builder("feed.read").publishPercentileHistogram().register(meterRegistry);
+        this.coldReads = meterRegistry.counter("feed.read.cold");
+    }
+
+    @PostConstruct
+    private void init() {
+        refreshBigAuthors();
+    }
+
+    /**
+     * 写入作者的发件箱并裁剪到 outboxSize篇
+     */
+    public void publish(Long authorId, Long blogId, long time) {
+        String key = FEED_OUTBOX_KEY + authorId;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.zAdd(key, time, blogId.toString());
+            redis.zRemRange(key, 0, -properties.getOutboxSize() - 1);
+            return null;
+        });
+    }
+
+    /**
+     * 推送前判断作者是否需要推送，同时更新大 V名单
+     * @return 粉丝数少于阈值时返回 true
+     */
+    public boolean shouldPush(Long authorId) {
+        long followers = followMapper.selectCount(new QueryWrapper<Follow>().eq("follow_user_id", authorId));
+        boolean big = followers >= properties.getBigAuthorFollowers();
+        boolean known = bigAuthors.contains(authorId);
+        if (big && !known) {
+            stringRedisTemplate.opsForSet().add(FEED_BIG_AUTHORS_KEY, authorId.toString());
+            log.info("作者{}粉丝数{}，之后只写发件箱", authorId, followers);
+            refreshBigAuthors();
+        } else if (!big && known) {
+            stringRedisTemplate.opsForSet().remove(FEED_BIG_AUTHORS_KEY, authorId.toString());
+            refreshBigAuthors();
+        }
+        return !big;
+    }
+
+    /**
+     * 是否只推送给活跃粉丝（收件箱还存在）
+     */
+    public boolean pushActiveOnly() {
+        return properties.getActiveDays() > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${hm.feed.bigAuthorsRefreshMillis:30000}")
+    public void refreshBigAuthors() {
+        try {
+            Set<String> members = stringRedisTemplate.opsForSet().members(FEED_BIG_AUTHORS_KEY);
+            bigAuthors = members == null ? Collections.emptySet()
+                    : members.stream().map(Long::valueOf).collect(Collectors.toSet());
+        } catch (Exception e) {
+            log.warn("刷新大 V名单失败", e);
+        }
+    }
+
+    /**
+     * 读取关注时间线的一页
+     * @param max 上一页最小的时间戳，第一页为当前时间
+     * @param offset 上一页中与 max相同的条数，本页跳过
+     */
+    public Page read(Long userId, long max, int offset) {
+        long begin = System.nanoTime();
+        try {
+            int limit = offset + properties.getPageSize();
+            String inboxKey = FEED_KEY + userId;
+            Set<String> followees = stringRedisTemplate.opsForSet().members(FOLLOW_KEY + userId);
+            List<String> bigFollowed = new ArrayList<>();
+            List<String> smallFollowed = new ArrayList<>();
+            if (followees != null) {
+                Set<Long> big = bigAuthors;
+                for (String followee : followees) {
+                    (big.contains(Long.valueOf(followee)) ? bigFollowed : smallFollowed).add(followee);
+                }
+            }
+            // 一次往返：收件箱、收件箱的条数（0表示不存在）、是否有归档、关注的大 V的发件箱
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                redis.zRevRangeByScoreWithScores(inboxKey, 0, max, 0, limit);
+                redis.zCard(inboxKey);
+                redis.exists(FEED_ARCHIVED_KEY + userId);
+                for (String author : bigFollowed) {
+                    redis.zRevRangeByScoreWithScores(FEED_OUTBOX_KEY + author, 0, max, 0, limit);
+                }
+                return null;
+            });
+            List<List<ZSetOperations.TypedTuple<String>>> sources = new ArrayList<>(results.size());
+            sources.add(tuples(results.get(0)));
+            for (int i = 3; i < results.size(); i++) {
+                sources.add(tuples(results.get(i)));
+            }
+            long inboxSize = results.get(1) instanceof Long ? (Long) results.get(1) : 0;
+            boolean archived = Boolean.TRUE.equals(results.get(2));
+            if (pushActiveOnly()) {
+                if (inboxSize > 0) {
+                    stringRedisTemplate.expire(inboxKey, properties.getActiveDays(), TimeUnit.DAYS);
+                } else {
+                    // 收件箱已过期（不活跃期间没有收到推送），用关注的普通作者的发件箱重建
+                    sources.set(0, rebuildInbox(inboxKey, smallFollowed, max, limit));
+                }
+            }
+            // 收件箱达到上限但没有标记的是标记之前归档的，读到归档后补上标记
+            if (sources.get(0).size() < limit && (archived || inboxSize >= properties.getInboxSize())) {
+                // 游标已经越过 redis中保留的部分，从归档补齐
+                List<ZSetOperations.TypedTuple<String>> archive = inboxCompactor.queryArchive(userId, max, limit);
+                sources.add(archive);
+                coldReads.increment();
+                if (!archived && !archive.isEmpty()) {
+                    inboxCompactor.markArchived(userId);
+                }
+            }
+            return merge(sources, max, offset, properties.getPageSize());
+        } finally {
+            readTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 读取普通作者发件箱中最近的笔记写回收件箱，返回其中 score不大于 max的前 limit条
+     */
+    private List<ZSetOperations.TypedTuple<String>> rebuildInbox(String inboxKey, List<String> authors,
+                                                                 long max, int limit) {
+        if (authors.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int perAuthor = properties.getRebuildPerAuthor();
+        List<Object> outboxes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (String author : authors) {
+                redis.zRevRangeWithScores(FEED_OUTBOX_KEY + author, 0, perAuthor - 1);
+            }
+            return null;
+        });
+        Set<ZSetOperations.TypedTuple<String>> entries = new HashSet<>();
+        for (Object outbox : outboxes) {
+            entries.addAll(tuples(outbox));
+        }
+        if (!entries.isEmpty()) {
+            stringRedisTemplate.opsForZSet().add(inboxKey, entries);
+            stringRedisTemplate.expire(inboxKey, properties.getActiveDays(), TimeUnit.DAYS);
+        }
+        return entries.stream()
+                .filter(tuple -> tuple.getScore() <= max)
+                .sorted(ORDER)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * score从大到小，相同时按 member从大到小，与 ZREVRANGEBYSCORE的顺序一致
+     */
+    private static final Comparator<ZSetOperations.TypedTuple<String>> ORDER =
+            Comparator.<ZSetOperations.TypedTuple<String>>comparingDouble(ZSetOperations.TypedTuple::getScore)
+                    .reversed()
+                    .thenComparing(ZSetOperations.TypedTuple::getValue, Comparator.reverseOrder());
+
+    /**
+     * k路归并多个来源中 score不大于 max的笔记，去掉重复的笔记，跳过 offset条后取 count条
+     * 同一个笔记可能同时出现在收件箱和发件箱中（作者成为大 V之前推送过），只保留一次
+     */
+    static Page merge(List<List<ZSetOperations.TypedTuple<String>>> sources, long max, int offset, int count) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> ORDER.compare(a.head(), b.head()));
+        for (List<ZSetOperations.TypedTuple<String>> source : sources) {
+            if (!source.isEmpty()) {
+                List<ZSetOperations.TypedTuple<String>> sorted = new ArrayList<>(source);
+                sorted.sort(ORDER);
+                heap.add(new Cursor(sorted));
+            }
+        }
+        Set<String> seen = new HashSet<>();
+        List<Long> blogIds = new ArrayList<>(count);
+        int skipped = 0;
+        long minTime = 0;
+        int sameAsMin = 0;
+        while (!heap.isEmpty() && blogIds.size() < count) {
+            Cursor cursor = heap.poll();
+            ZSetOperations.TypedTuple<String> tuple = cursor.head();
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+            if (tuple.getScore() > max || !seen.add(tuple.getValue())) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            long time = tuple.getScore().longValue();
+            blogIds.add(Long.valueOf(tuple.getValue()));
+            if (time == minTime) {
+                sameAsMin++;
+            } else {
+                minTime = time;
+                sameAsMin = 1;
+            }
+        }
+        // 本页最小时间戳与 max相同时，下一页还要跳过之前页中的这些
+        int nextOffset = minTime == max ? sameAsMin + offset : sameAsMin;
+        return new Page(blogIds, minTime, nextOffset);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ZSetOperations.TypedTuple<String>> tuples(Object result) {
+        if (!(result instanceof Collection)) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>((Collection<ZSetOperations.TypedTuple<String>>) result);
+    }
+
+    private static class Cursor {
+        private final List<ZSetOperations.TypedTuple<String>> source;
+        private int index;
+
+        Cursor(List<ZSetOperations.TypedTuple<String>> source) {
+            this.source = source;
+        }
+
+        ZSetOperations.TypedTuple<String> head() {
+            return source.get(index);
+        }
+
+        boolean advance() {
+            return ++index < source.size();
+        }
+    }
+
+    /**
+     * 时间线的一页，minTime与 offset作为下一页的参数
+     */
+    public static class Page {
+
+        private final List<Long> blogIds;
+
+        private final long minTime;
+
+        private final int offset;
+
+        Page(List<Long> blogIds, long minTime, int offset) {
+            this.blogIds = blogIds;
+            this.minTime = minTime;
+            this.offset = offset;
+        }
+
+        public List<Long> getBlogIds() {
+            return blogIds;
+        }
+
+        public long getMinTime() {
+            return minTime;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.dto.HotKeyDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.qzdp.utils.RedisConstants.CACHE_HOTKEY_CHANNEL;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:20
+ * @description 热点 key探测与本地固定副本
+ *  - 按比例采样 CacheClient对 redis的读取，用滑动窗口内的 count-min sketch估算每个 key的访问次数
+ *  - 超过阈值后通过 redis发布订阅广播晋升消息，所有节点把该 key固定在本地，不参与容量淘汰；
+ *    record()可能在 lettuce的 IO线程上调用，广播交给单独的线程执行，不在 IO线程上发送同步命令
+ *  - 本地副本保存的是 redis中的原始字节，每次读取重新解码，调用方修改返回的对象不会影响副本
+ *  - 副本的有效期很短，过期后下一次读取从 redis刷新，删除缓存时随失效消息一起清空
+ */
+@Slf4j
+@Component
+public class HotKeyDetector implements MessageListener {
+
+    private final HotKeyConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 滑动窗口的每一段
+     */
+    private final CountMinSketch[] slices;
+
+    private final long sliceMillis;
+
+    private volatile long currentEpoch;
+
+    private final Map<String, HotEntry> pinned = new ConcurrentHashMap<>();
+
+    /**
+     * 发送晋升广播，队列满时丢弃，key仍然热的话下一次采样会重新广播
+     */
+    private final Executor publisher;
+
+    public HotKeyDetector(HotKeyConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                          MeterRegistry meterRegistry) {
+        this(properties, stringRedisTemplate, meterRegistry, new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getMaxPinned()),
+                new ThreadFactoryBuilder().setNamePrefix("hotkey-publisher-").setDaemon(true).build(),
+                new ThreadPoolExecutor.DiscardPolicy()));
+    }
+
+    HotKeyDetector(HotKeyConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                   MeterRegistry meterRegistry, Executor publisher) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.publisher = publisher;
+        this.slices = new CountMinSketch[properties.getWindowSlices()];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        }
+        this.sliceMillis = TimeUnit.SECONDS.toMillis(properties.getWindowSeconds()) / slices.length;
+        this.currentEpoch = System.currentTimeMillis() / sliceMillis;
+        Gauge.builder("cache.hotkey.pinned", pinned, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 读取本地副本
+     * @param key 完整的 key
+     * @return 没有晋升或副本已过期时返回 null，需要访问 redis
+     */
+    public byte[] getReplica(String key) {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return null;
+        }
+        HotEntry entry = pinned.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (entry.promotedUntil < now) {
+            pinned.remove(key, entry);
+            return null;
+        }
+        byte[] bytes = entry.bytes;
+        if (bytes != null && entry.replicaExpireAt > now) {
+            entry.hits.increment();
+            return bytes;
+        }
+        entry.misses.increment();
+        return null;
+    }
+
+    /**
+     * 记录一次 redis读取，已晋升的 key顺便刷新本地副本
+     * @param key   完整的 key
+     * @param bytes redis返回的值，不存在时为 null
+     */
+    public void record(String key, byte[] bytes) {
+        if (!Boolean.TRUE.equals(properties.getEnabled())) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        HotEntry entry = pinned.get(key);
+        if (entry != null && bytes != null) {
+            entry.replicaExpireAt = now + properties.getReplicaTtlMillis();
+            entry.bytes = bytes;
+        }
+        if (ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate()) {
+            return;
+        }
+        rotate(now);
+        int current = (int) (currentEpoch % slices.length);
+        long estimate = slices[current].add(key);
+        for (int i = 0; i < slices.length; i++) {
+            if (i != current) {
+                estimate += slices[i].estimate(key);
+            }
+        }
+        if (estimate / properties.getSampleRate() >= properties.getThreshold()) {
+            onHot(key, now);
+        }
+    }
+
+    /**
+     * 删除缓存时清空本地副本，保留晋升状态
+     */
+    public void invalidate(String key) {
+        HotEntry entry = pinned.get(key);
+        if (entry != null) {
+            entry.bytes = null;
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (CACHE_HOTKEY_CHANNEL.equals(channel)) {
+            log.debug("收到热点 key晋升消息：{}", key);
+            promote(key);
+        } else {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * 当前节点固定的热点 key，按估算访问次数倒序
+     */
+    public List<HotKeyDTO> hotKeys() {
+        long now = System.currentTimeMillis();
+        List<HotKeyDTO> result = new ArrayList<>(pinned.size());
+        pinned.forEach((key, entry) -> {
+            if (entry.promotedUntil < now) {
+                return;
+            }
+            long hits = entry.hits.sum();
+            long misses = entry.misses.sum();
+            HotKeyDTO dto = new HotKeyDTO();
+            dto.setKey(key);
+            dto.setEstimate(estimate(key));
+            dto.setHits(hits);
+            dto.setMisses(misses);
+            dto.setHitRate(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+            dto.setPromotedUntil(LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.promotedUntil), ZoneId.systemDefault()));
+            result.add(dto);
+        });
+        result.sort(Comparator.comparing(HotKeyDTO::getEstimate).reversed());
+        return result;
+    }
+
+    /**
+     * 当前窗口内估算的访问次数，已按采样比例折算
+     */
+    public long estimate(String key) {
+        long estimate = 0;
+        for (CountMinSketch slice : slices) {
+            estimate += slice.estimate(key);
+        }
+        return (long) (estimate / properties.getSampleRate());
+    }
+
+    private void onHot(String key, long now) {
+        HotEntry entry = pinned.get(key);
+        long promoteMillis = TimeUnit.SECONDS.toMillis(properties.getPromoteSeconds());
+        // 已经晋升且剩余时间超过一半，不需要重复广播
+        if (entry != null && entry.promotedUntil - now > promoteMillis / 2) {
+            return;
+        }
+        if (promote(key)) {
+            publisher.execute(() -> publish(key));
+        }
+    }
+
+    private void publish(String key) {
+        try {
+            stringRedisTemplate.convertAndSend(CACHE_HOTKEY_CHANNEL, key);
+        } catch (Exception e) {
+            log.warn("广播热点 key晋升失败：{}", key, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (publisher instanceof ExecutorService) {
+            ((ExecutorService) publisher).shutdown();
+        }
+    }
+
+    /**
+     * 固定到本地或者续期
+     * @return 是否固定成功
+     */
+    private boolean promote(String key) {
+        long promotedUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(properties.getPromoteSeconds());
+        HotEntry entry = pinned.get(key);
+        if (entry == null) {
+            if (pinned.size() >= properties.getMaxPinned()) {
+                log.warn("固定的热点 key已达上限{}，忽略：{}", properties.getMaxPinned(), key);
+                return false;
+            }
+            HotEntry created = new HotEntry();
+            created.promotedUntil = promotedUntil;
+            if (pinned.putIfAbsent(key, created) == null) {
+                meterRegistry.counter("cache.hotkey.promoted").increment();
+                log.info("热点 key晋升为本地副本：{}", key);
+                return true;
+            }
+            entry = pinned.get(key);
+            if (entry == null) {
+                return false;
+            }
+        }
+        entry.promotedUntil = Math.max(entry.promotedUntil, promotedUntil);
+        return true;
+    }
+
+    /**
+     * 进入新的时间段时清空即将复用的计数器，并清理过期的晋升
+     */
+    private void rotate(long now) {
+        long epoch = now / sliceMillis;
+        if (epoch == currentEpoch) {
+            return;
+        }
+        synchronized (this) {
+            if (epoch == currentEpoch) {
+                return;
+            }
+            long from = Math.max(currentEpoch + 1, epoch - slices.length + 1);
+            for (long e = from; e <= epoch; e++) {
+                slices[(int) (e % slices.length)].clear();
+            }
+            currentEpoch = epoch;
+            pinned.entrySet().removeIf(item -> item.getValue().promotedUntil < now);
+        }
+    }
+
+    private static class HotEntry {
+        volatile byte[] bytes;
+        volatile long replicaExpireAt;
+        volatile long promotedUntil;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+}
@@ -0,0 +1,65 @@
+package com.qzdp.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:02
+ * @description id布隆过滤器，用来拦截一定不存在的 id，解决缓存穿透问题
+ */
+public interface IdBloomFilter {
+
+    /**
+     * id是否可能存在
+     * @param id 实体 id
+     * @return false代表一定不存在; true代表可能存在（有一定的误判率）
+     */
+    boolean mightContain(Object id);
+
+    /**
+     * 批量判断 id是否可能存在
+     * @param ids 实体 id集合
+     * @return 与 ids顺序一致的判断结果
+     */
+    default List<Boolean> mightContainAll(Collection<?> ids) {
+        List<Boolean> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            result.add(mightContain(id));
+        }
+        return result;
+    }
+
+    /**
+     * 添加 id
+     * @param id 实体 id
+     */
+    void put(Object id);
+
+    /**
+     * 批量添加 id
+     * @param ids 实体 id集合
+     */
+    void putAll(Collection<?> ids);
+
+    /**
+     * 根据当前已置位的比特数估算的误判率
+     */
+    double currentFpp();
+
+    /**
+     * 位数组占用的内存，单位字节
+     */
+    long memoryBytes();
+
+    /**
+     * 是否已经构建完成，构建完成之前 {@link #mightContain(Object)} 总是返回 true
+     */
+    boolean isReady();
+
+    /**
+     * 标记构建完成
+     */
+    void markReady();
+}
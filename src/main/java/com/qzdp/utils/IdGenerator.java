@@ -0,0 +1,37 @@
+package com.qzdp.utils;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 04:00
+ * @description 全局唯一 id生成器，由 hm.id.type选择实现
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成唯一 id
+     * @param keyPrefix id 分组
+     * @return id
+     */
+    long nextId(String keyPrefix);
+
+    /**
+     * id中记录的生成时间
+     * @param id 由当前实现生成的 id
+     * @return epoch 毫秒
+     */
+    long timestampOf(long id);
+
+    /**
+     * 一次生成多个 id
+     * @param keyPrefix id 分组
+     * @param n 个数
+     * @return n个 id
+     */
+    default long[] nextIds(String keyPrefix, int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = nextId(keyPrefix);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,123 @@
+package com.qzdp.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.qzdp.config.LocalCacheConfigProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.qzdp.utils.RedisConstants.CACHE_INVALIDATE_CHANNEL;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 10:12
+ * @description 进程内的一级缓存（L1），位于 redis之前
+ *  - 每个 key前缀一个 caffeine缓存，按容量 + 访问频率（W-TinyLFU）淘汰，并带有写入过期时间
+ *  - 缓存的是反序列化之后的对象，命中时既不走网络也不需要解析 json
+ *  - 某个节点删除缓存时通过 redis的发布订阅通知所有节点失效本地副本
+ */
+@Slf4j
+@Component
+public class LocalCache implements MessageListener {
+
+    /**
+     * 空值占位符，表示数据库中不存在该数据
+     */
+    public static final Object NULL_VALUE = new Object();
+
+    private final Map<String, Cache<String, Object>> caches = new ConcurrentHashMap<>();
+
+    private final LocalCacheConfigProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public LocalCache(LocalCacheConfigProperties properties, MeterRegistry meterRegistry,
+                      StringRedisTemplate stringRedisTemplate) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 该前缀是否允许走本地缓存
+     * @param keyPrefix key前缀
+     * @return true表示允许
+     */
+    public boolean supports(String keyPrefix) {
+        return Boolean.TRUE.equals(properties.getEnabled()) && properties.getPrefixes().contains(keyPrefix);
+    }
+
+    /**
+     * 查询本地缓存
+     * @return 未命中返回 null，命中空值返回 {@link #NULL_VALUE}
+     */
+    public Object get(String keyPrefix, String key) {
+        return getCache(keyPrefix).getIfPresent(key);
+    }
+
+    public void put(String keyPrefix, String key, Object value) {
+        getCache(keyPrefix).put(key, value == null ? NULL_VALUE : value);
+    }
+
+    /**
+     * 只失效当前节点的本地副本
+     * @param key 完整的 key
+     */
+    public void invalidate(String key) {
+        for (Cache<String, Object> cache : caches.values()) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 广播失效消息，所有节点（包括自己）收到后失效本地副本
+     * @param key 完整的 key
+     */
+    public void publishInvalidate(String key) {
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        log.debug("收到本地缓存失效消息：{}", key);
+        invalidate(key);
+    }
+
+    /**
+     * 每个前缀的命中、未命中、淘汰次数
+     */
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach((prefix, cache) -> stats.put(prefix, cache.stats()));
+        return stats;
+    }
+
+    private Cache<String, Object> getCache(String keyPrefix) {
+        return caches.computeIfAbsent(keyPrefix, prefix -> {
+            Cache<String, Object> cache = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaximumSize())
+                    .expireAfterWrite(properties.getExpireSeconds(), TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+            // 暴露 cache.gets{result=hit|miss}、cache.evictions 等指标，按前缀区分
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, prefix, Tags.of("tier", "local"));
+            return cache;
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.qzdp.utils;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:18
+ * @description 堆内布隆过滤器，判断不需要网络请求，但每个节点各自维护一份
+ *  其它节点新增的 id通过发布订阅同步，消息丢失时由构建时的最大 id兜底（见 AbstractIdBloomFilter）
+ */
+public class LocalIdBloomFilter extends AbstractIdBloomFilter {
+
+    private final AtomicLongArray words;
+
+    public LocalIdBloomFilter(long expectedInsertions, double fpp) {
+        super(expectedInsertions, fpp);
+        this.words = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        if (!isReady() || aboveHighWaterMark(id)) {
+            return true;
+        }
+        for (long index : indexes(id)) {
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(Object id) {
+        for (long index : indexes(id)) {
+            int i = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = words.get(i);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(i, old, old | mask));
+        }
+    }
+
+    @Override
+    public void putAll(Collection<?> ids) {
+        for (Object id : ids) {
+            put(id);
+        }
+    }
+
+    @Override
+    public double currentFpp() {
+        long bitCount = 0;
+        for (int i = 0; i < words.length(); i++) {
+            bitCount += Long.bitCount(words.get(i));
+        }
+        return fppOf(bitCount);
+    }
+}
@@ -0,0 +1,295 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 02:00
+ * @description lua脚本注册中心
+ *  - 启动时把所有脚本 SCRIPT LOAD到集群的每个节点，之后只用 EVALSHA发送 sha1，不再每次发送脚本内容
+ *  - 节点重启或执行过 SCRIPT FLUSH时返回 NOSCRIPT，重新加载到所有节点后再执行一次
+ *  - 每个脚本记录执行耗时的直方图 redis.script{script=...}
+ *  - 一个请求需要执行多个脚本时可以一次发出、一起等待结果（每个调用自己的 key需要在同一个 slot）
+ */
+@Slf4j
+@Component
+public class LuaScriptRegistry {
+
+    public static final String SECKILL = "secKill";
+    public static final String SECKILL_TAKE = "secKillTake";
+    public static final String UNLOCK = "unlock";
+    public static final String RENEW = "renew";
+    public static final String RATE_LIMIT = "rateLimit";
+    public static final String ORDER_DEAD_LETTER = "orderDeadLetter";
+    public static final String ORDER_REPLAY = "orderReplay";
+
+    private final Map<String, DefaultRedisScript<?>> scripts = new LinkedHashMap<>();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final StatefulConnection<String, byte[]> asyncConnection;
+
+    private final RedisClusterAsyncCommands<String, byte[]> asyncCommands;
+
+    private final MeterRegistry meterRegistry;
+
+    public LuaScriptRegistry(StringRedisTemplate stringRedisTemplate,
+                             StatefulConnection<String, byte[]> cacheAsyncConnection,
+                             RedisClusterAsyncCommands<String, byte[]> cacheAsyncCommands,
+                             MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.asyncConnection = cacheAsyncConnection;
+        this.asyncCommands = cacheAsyncCommands;
+        this.meterRegistry = meterRegistry;
+        register(SECKILL, Long.class);
+        register(SECKILL_TAKE, Long.class);
+        register(UNLOCK, Long.class);
+        register(RENEW, Long.class);
+        register(RATE_LIMIT, Long.class);
+        register(ORDER_DEAD_LETTER, Long.class);
+        register(ORDER_REPLAY, Long.class);
+    }
+
+    /**
+     * 注册 classpath下的 name.lua
+     */
+    private <T> void register(String name, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(name + ".lua"));
+        script.setResultType(resultType);
+        scripts.put(name, script);
+    }
+
+    /**
+     * 启动时加载所有脚本，失败时不影响启动，第一次执行时会重新加载
+     */
+    @PostConstruct
+    private void preload() {
+        for (String name : scripts.keySet()) {
+            try {
+                load(name);
+            } catch (Exception e) {
+                log.warn("预加载 lua脚本失败：{}", name, e);
+            }
+        }
+        log.info("预加载 lua脚本{}个：{}", scripts.size(), scripts.keySet());
+    }
+
+    /**
+     * EVALSHA执行脚本，遇到 NOSCRIPT时重新加载后再执行一次
+     * @param name 脚本名称
+     * @param keys 脚本的 KEYS
+     * @param args 脚本的 ARGV
+     * @return 脚本返回值，类型为注册时的 resultType
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, List<String> keys, Object... args) {
+        DefaultRedisScript<?> script = script(name);
+        byte[][] keysAndArgs = keysAndArgs(keys, args);
+        ReturnType returnType = ReturnType.fromJavaType(script.getResultType());
+        long begin = System.nanoTime();
+        try {
+            Object result;
+            try {
+                result = evalSha(script, returnType, keys.size(), keysAndArgs);
+            } catch (RuntimeException e) {
+                if (!isNoScript(e)) {
+                    throw e;
+                }
+                log.warn("lua脚本 {} 不存在（节点重启或 SCRIPT FLUSH），重新加载", name);
+                meterRegistry.counter("redis.script.reload", "script", name).increment();
+                load(name);
+                result = evalSha(script, returnType, keys.size(), keysAndArgs);
+            }
+            return (T) convert(result, script.getResultType());
+        } finally {
+            timer(name).record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 一次发出多个脚本调用，一起等待结果，结果顺序与 calls一致
+     * 每个调用的 key需要在同一个 slot，不同调用之间可以在不同的 slot，由 lettuce分别发往对应的节点
+     */
+    public List<Object> executePipelined(List<ScriptCall> calls) {
+        List<RedisFuture<Object>> futures = new ArrayList<>(calls.size());
+        long begin = System.nanoTime();
+        for (ScriptCall call : calls) {
+            checkSlot(call.keys);
+            DefaultRedisScript<?> script = script(call.name);
+            byte[][] values = new byte[call.args.length][];
+            for (int i = 0; i < call.args.length; i++) {
+                values[i] = String.valueOf(call.args[i]).getBytes(StandardCharsets.UTF_8);
+            }
+            futures.add(asyncCommands.evalsha(script.getSha1(), outputType(script.getResultType()),
+                    call.keys.toArray(new String[0]), values));
+        }
+        try {
+            CompletableFuture.allOf(futures.stream().map(RedisFuture::toCompletableFuture).toArray(CompletableFuture[]::new))
+                    .get(asyncConnection.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 有调用失败，下面逐个处理
+        } catch (TimeoutException e) {
+            throw new RedisCommandTimeoutException("批量执行 lua脚本超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        }
+        List<Object> results = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            ScriptCall call = calls.get(i);
+            RedisFuture<Object> future = futures.get(i);
+            String error = future.toCompletableFuture().isCompletedExceptionally() ? errorOf(future) : null;
+            if (error != null && error.contains("NOSCRIPT")) {
+                // 单个调用缺少脚本时同步补一次
+                results.add(execute(call.name, call.keys, call.args));
+                continue;
+            }
+            if (error != null) {
+                throw new IllegalStateException("执行 lua脚本失败：" + call.name + "，" + error);
+            }
+            results.add(convert(future.toCompletableFuture().join(), script(call.name).getResultType()));
+        }
+        long elapsed = (System.nanoTime() - begin) / Math.max(1, calls.size());
+        for (ScriptCall call : calls) {
+            timer(call.name).record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        return results;
+    }
+
+    /**
+     * SCRIPT LOAD，集群模式下 lettuce会发往所有节点
+     */
+    private void load(String name) {
+        DefaultRedisScript<?> script = script(name);
+        String sha = LettuceFutures.awaitOrCancel(
+                asyncCommands.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8)),
+                asyncConnection.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (!script.getSha1().equals(sha)) {
+            log.warn("lua脚本 {} 的 sha1不一致：{} != {}", name, script.getSha1(), sha);
+        }
+    }
+
+    private Object evalSha(DefaultRedisScript<?> script, ReturnType returnType, int numKeys, byte[][] keysAndArgs) {
+        return stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.scriptingCommands()
+                .evalSha(script.getSha1(), returnType, numKeys, keysAndArgs));
+    }
+
+    private DefaultRedisScript<?> script(String name) {
+        DefaultRedisScript<?> script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("未注册的 lua脚本：" + name);
+        }
+        return script;
+    }
+
+    private Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> Timer.builder("redis.script")
+                .tag("script", n)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, Object[] args) {
+        byte[][] result = new byte[keys.size() + args.length][];
+        for (int i = 0; i < keys.size(); i++) {
+            result[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < args.length; i++) {
+            result[keys.size() + i] = String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    private static void checkSlot(List<String> keys) {
+        if (keys.size() > 1 && keys.stream().map(SlotHash::getSlot).distinct().count() > 1) {
+            throw new IllegalArgumentException("同一个脚本调用的 key必须在同一个 slot：" + keys);
+        }
+    }
+
+    static boolean isNoScript(Throwable e) {
+        return ExceptionUtil.getRootCauseMessage(e).contains("NOSCRIPT");
+    }
+
+    private static String errorOf(RedisFuture<?> future) {
+        try {
+            future.toCompletableFuture().join();
+            return null;
+        } catch (Exception e) {
+            return ExceptionUtil.getRootCauseMessage(e);
+        }
+    }
+
+    private static ScriptOutputType outputType(Class<?> resultType) {
+        if (resultType == null) {
+            return ScriptOutputType.STATUS;
+        }
+        if (Long.class.equals(resultType)) {
+            return ScriptOutputType.INTEGER;
+        }
+        if (Boolean.class.equals(resultType)) {
+            return ScriptOutputType.BOOLEAN;
+        }
+        if (List.class.isAssignableFrom(resultType)) {
+            return ScriptOutputType.MULTI;
+        }
+        return ScriptOutputType.VALUE;
+    }
+
+    private static Object convert(Object result, Class<?> resultType) {
+        if (result instanceof byte[] && String.class.equals(resultType)) {
+            return new String((byte[]) result, StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    /**
+     * 一次脚本调用
+     */
+    public static class ScriptCall {
+
+        private final String name;
+
+        private final List<String> keys;
+
+        private final Object[] args;
+
+        private ScriptCall(String name, List<String> keys, Object[] args) {
+            this.name = name;
+            this.keys = keys;
+            this.args = args;
+        }
+
+        public static ScriptCall of(String name, List<String> keys, Object... args) {
+            return new ScriptCall(name, keys, args);
+        }
+    }
+}
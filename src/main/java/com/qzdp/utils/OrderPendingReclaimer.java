@@ -0,0 +1,309 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.dto.OrderResultDTO;
+import com.qzdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_DLQ_SUFFIX;
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_GROUP;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 23:10
+ * @description 接管订单 stream中长时间未确认的消息
+ *  - 定时用 XPENDING扫描当前节点负责的分片，空闲超过 minIdleMillis的消息（消费者宕机、分片被重新分配后留下的）
+ *    用 XCLAIM整批转给当前节点的 reclaimer消费者重新处理
+ *  - XCLAIM会使投递次数加一，投递次数达到 maxDeliveries的消息不再重试，订单结果记为 FAILED
+ *    确认和转入死信用 orderDeadLetter.lua一起完成，死信 stream与分片 stream带有相同的 hash tag，例如 stream.orders:{order-3}:dlq
+ *  - 整批处理失败时逐条重试，只有真正有问题的消息留在 pending-list中
+ */
+@Slf4j
+@Component
+public class OrderPendingReclaimer {
+
+    private static final String FIELD_STREAM = "sourceStream";
+    private static final String FIELD_ID = "sourceId";
+    private static final String FIELD_DELIVERIES = "deliveries";
+    private static final String FIELD_CONSUMER = "consumer";
+
+    /**
+     * 重放时去掉的死信字段
+     */
+    private static final Set<String> REPLAY_EXCLUDED = new HashSet<>(
+            Arrays.asList(FIELD_STREAM, FIELD_ID, FIELD_DELIVERIES, FIELD_CONSUMER));
+
+    private final OrderConsumerConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final OrderShardRouter router;
+
+    private final OrderShardCoordinator coordinator;
+
+    private final IVoucherOrderService voucherOrderService;
+
+    private final OrderResultStore orderResultStore;
+
+    private final LuaScriptRegistry scriptRegistry;
+
+    private final Counter reclaimed;
+
+    private final Counter deadLettered;
+
+    /**
+     * 所有分片的消息总数、未确认消息数、最早未确认消息的时间，每次扫描时刷新
+     */
+    private final AtomicLong depth = new AtomicLong();
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+
+    public OrderPendingReclaimer(OrderConsumerConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                                 OrderShardRouter router, OrderShardCoordinator coordinator,
+                                 IVoucherOrderService voucherOrderService, OrderResultStore orderResultStore,
+                                 LuaScriptRegistry scriptRegistry, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.router = router;
+        this.coordinator = coordinator;
+        this.voucherOrderService = voucherOrderService;
+        this.orderResultStore = orderResultStore;
+        this.scriptRegistry = scriptRegistry;
+        this.reclaimed = meterRegistry.counter("voucher.order.reclaimed");
+        this.deadLettered = meterRegistry.counter("voucher.order.dead");
+        Gauge.builder("voucher.order.stream.depth", depth, AtomicLong::get)
+                .description("订单分片 stream中的消息总数").register(meterRegistry);
+        Gauge.builder("voucher.order.pending", pending, AtomicLong::get)
+                .description("已投递未确认的订单消息数").register(meterRegistry);
+        Gauge.builder("voucher.order.pending.oldest.age", oldestPendingMillis,
+                        oldest -> oldest.get() == 0 ? 0 : (System.currentTimeMillis() - oldest.get()) / 1000.0)
+                .description("最早一条未确认订单消息的存在秒数").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${hm.order.consumer.reclaimMillis:10000}")
+    public void reclaim() {
+        for (Integer shard : coordinator.ownedShards()) {
+            String streamKey = router.streamKey(shard);
+            try {
+                reclaim(shard);
+            } catch (Exception e) {
+                log.error("接管 pending消息失败：{}", streamKey, e);
+            }
+        }
+        refreshStats();
+    }
+
+    /**
+     * 所有分片的死信 stream中最早的 count条消息
+     */
+    public List<Map<String, Object>> deadLetters(int count) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : earliestDeadLetters(Range.unbounded(), count)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", record.getId().getValue());
+            record.getValue().forEach((k, v) -> item.put(k.toString(), v));
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 把死信重新投递到所在分片的订单 stream，删除死信和重新投递在同一个脚本中完成
+     * @param id 死信消息 id，为空时重放最早的 count条
+     * @param count 最多重放的条数
+     * @return 重放的条数
+     */
+    public int replay(String id, int count) {
+        Range<String> range = StrUtil.isBlank(id) ? Range.unbounded() : Range.closed(id, id);
+        int replayed = 0;
+        for (MapRecord<String, Object, Object> record : earliestDeadLetters(range, count)) {
+            String dlqKey = record.getStream();
+            String streamKey = StrUtil.removeSuffix(dlqKey, STREAM_ORDERS_DLQ_SUFFIX);
+            List<Object> args = new ArrayList<>();
+            args.add(record.getId().getValue());
+            record.getValue().forEach((k, v) -> {
+                if (!REPLAY_EXCLUDED.contains(k.toString())) {
+                    args.add(k);
+                    args.add(v);
+                }
+            });
+            // 脚本返回0表示死信已经被其它请求重放
+            Long moved = scriptRegistry.execute(LuaScriptRegistry.ORDER_REPLAY, Arrays.asList(dlqKey, streamKey),
+                    args.toArray());
+            if (moved != null && moved == 1) {
+                replayed++;
+            }
+        }
+        log.info("重放订单死信{}条", replayed);
+        return replayed;
+    }
+
+    /**
+     * 按 id从各分片的死信 stream中取出最早的 count条，返回的记录带有所在的死信 stream的 key
+     */
+    private List<MapRecord<String, Object, Object>> earliestDeadLetters(Range<String> range, int count) {
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        for (String dlqKey : router.allDlqKeys()) {
+            List<MapRecord<String, Object, Object>> shardRecords = stringRedisTemplate.opsForStream()
+                    .range(dlqKey, range, RedisZSetCommands.Limit.limit().count(count));
+            if (shardRecords != null) {
+                shardRecords.forEach(record -> records.add(record.withStreamKey(dlqKey)));
+            }
+        }
+        records.sort(Comparator.comparing((MapRecord<String, Object, Object> record) -> record.getId().getTimestamp())
+                .thenComparing(record -> record.getId().getSequence()));
+        return records.size() > count ? records.subList(0, count) : records;
+    }
+
+    private void reclaim(int shard) {
+        String streamKey = router.streamKey(shard);
+        long minIdle = properties.getMinIdleMillis();
+        // XPENDING stream.orders:{order-i} g1 - + count
+        PendingMessages messages = stringRedisTemplate.opsForStream()
+                .pending(streamKey, STREAM_ORDERS_GROUP, Range.unbounded(), properties.getReclaimBatchSize());
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+        List<RecordId> retry = new ArrayList<>();
+        Map<RecordId, PendingMessage> dead = new LinkedHashMap<>();
+        for (PendingMessage message : messages) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() < minIdle) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() >= properties.getMaxDeliveries()) {
+                dead.put(message.getId(), message);
+            } else {
+                retry.add(message.getId());
+            }
+        }
+        if (!dead.isEmpty()) {
+            deadLetter(shard, dead);
+        }
+        if (retry.isEmpty()) {
+            return;
+        }
+        // XCLAIM stream.orders:{order-i} g1 reclaimer minIdle id1 id2 ...，其它节点已经接管的消息不会被返回
+        List<StringRecord> records = claim(streamKey, retry);
+        if (records.isEmpty()) {
+            return;
+        }
+        reclaimed.increment(records.size());
+        log.warn("接管订单 stream[{}]中空闲超过{}ms的消息{}条", streamKey, minIdle, records.size());
+        try {
+            voucherOrderService.handleOrderRecords(streamKey, records);
+        } catch (Exception e) {
+            // 整批失败时逐条处理，把有问题的消息隔离出来
+            for (StringRecord record : records) {
+                try {
+                    voucherOrderService.handleOrderRecords(streamKey, Collections.singletonList(record));
+                } catch (Exception ex) {
+                    log.error("订单消息处理失败，等待下次重试：{} {}", streamKey, record.getId(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 确认原消息并转入同一分片的死信 stream，两步在一个脚本中完成
+     */
+    private void deadLetter(int shard, Map<RecordId, PendingMessage> dead) {
+        String streamKey = router.streamKey(shard);
+        List<String> keys = Arrays.asList(streamKey, router.dlqKey(shard));
+        List<StringRecord> records = claim(streamKey, new ArrayList<>(dead.keySet()));
+        List<OrderResultDTO> failed = new ArrayList<>(records.size());
+        for (StringRecord record : records) {
+            PendingMessage message = dead.get(record.getId());
+            List<Object> args = new ArrayList<>();
+            args.add(STREAM_ORDERS_GROUP);
+            args.add(record.getId().getValue());
+            record.getValue().forEach((k, v) -> {
+                args.add(k);
+                args.add(v);
+            });
+            Collections.addAll(args, FIELD_STREAM, streamKey, FIELD_ID, record.getId().getValue(),
+                    FIELD_DELIVERIES, String.valueOf(message.getTotalDeliveryCount()),
+                    FIELD_CONSUMER, message.getConsumerName());
+            // 脚本返回0表示消息已经被确认，其它节点抢先接管的由它们处理
+            Long moved = scriptRegistry.execute(LuaScriptRegistry.ORDER_DEAD_LETTER, keys, args.toArray());
+            if (moved == null || moved == 0) {
+                continue;
+            }
+            log.error("订单消息投递{}次仍未成功，转入死信：{} {}", message.getTotalDeliveryCount(), streamKey, record.getId());
+            failed.add(failedResult(record.getValue()));
+        }
+        if (failed.isEmpty()) {
+            return;
+        }
+        deadLettered.increment(failed.size());
+        try {
+            orderResultStore.save(failed);
+        } catch (Exception e) {
+            log.warn("写入订单处理结果失败", e);
+        }
+    }
+
+    private static OrderResultDTO failedResult(Map<String, String> value) {
+        return new OrderResultDTO(toLong(value.get("id")), toLong(value.get("userId")), toLong(value.get("voucherId")),
+                OrderResultStore.Status.FAILED.name());
+    }
+
+    private static Long toLong(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private List<StringRecord> claim(String streamKey, List<RecordId> ids) {
+        String owner = coordinator.nodeId() + "-reclaimer";
+        Duration minIdle = Duration.ofMillis(properties.getMinIdleMillis());
+        List<StringRecord> records = stringRedisTemplate.execute((RedisCallback<List<StringRecord>>) connection ->
+                ((StringRedisConnection) connection).xClaim(streamKey, STREAM_ORDERS_GROUP, owner, minIdle,
+                        ids.toArray(new RecordId[0])));
+        return records == null ? Collections.emptyList() : records;
+    }
+
+    private void refreshStats() {
+        long totalDepth = 0;
+        long totalPending = 0;
+        long oldest = 0;
+        for (String streamKey : router.allStreamKeys()) {
+            try {
+                Long size = stringRedisTemplate.opsForStream().size(streamKey);
+                totalDepth += size == null ? 0 : size;
+                PendingMessagesSummary summary = stringRedisTemplate.opsForStream().pending(streamKey, STREAM_ORDERS_GROUP);
+                if (summary == null || summary.getTotalPendingMessages() == 0) {
+                    continue;
+                }
+                totalPending += summary.getTotalPendingMessages();
+                // 消息 id的前半部分是写入 stream的毫秒时间戳
+                long time = summary.minRecordId().getTimestamp();
+                oldest = oldest == 0 ? time : Math.min(oldest, time);
+            } catch (Exception e) {
+                log.warn("统计订单 stream失败：{}", streamKey, e);
+            }
+        }
+        depth.set(totalDepth);
+        pending.set(totalPending);
+        oldestPendingMillis.set(oldest);
+    }
+}
@@ -0,0 +1,217 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.dto.OrderResultDTO;
+import com.qzdp.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.qzdp.utils.RedisConstants.ORDER_RESULT_CHANNEL;
+import static com.qzdp.utils.RedisConstants.ORDER_RESULT_KEY;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 06:05
+ * @description 秒杀订单处理结果
+ *  - 消费者处理完一批订单后，把每个订单的结果写入 order:result:{id}（hash，resultTtlSeconds后过期），一次管道发出
+ *  - 同时发布一条消息 id:status,id:status...，等待结果的长轮询请求可能在任意节点上，收到后立即返回
+ *  - 查询结果只读 redis，不访问数据库；还没有结果（消息还在 stream中）时为 PENDING
+ *  - 结果只保留 resultTtlSeconds，订单 id中的生成时间早于 resultTtlSeconds仍查不到结果时为 EXPIRED，客户端应停止轮询
+ */
+@Slf4j
+@Component
+public class OrderResultStore implements MessageListener {
+
+    public enum Status {
+        /**
+         * 已进入订单 stream，还没有处理
+         */
+        PENDING,
+        SUCCESS,
+        /**
+         * 同一用户已经有该券的订单
+         */
+        DUPLICATE,
+        /**
+         * 数据库库存不足
+         */
+        SOLD_OUT,
+        /**
+         * 多次处理失败，已转入死信
+         */
+        FAILED,
+        /**
+         * 下单已超过 resultTtlSeconds仍查不到结果：结果已过期，或者订单 id不存在，
+         * 客户端停止轮询，到订单列表中确认
+         */
+        EXPIRED
+    }
+
+    private static final String FIELD_USER = "userId";
+    private static final String FIELD_VOUCHER = "voucherId";
+    private static final String FIELD_STATUS = "status";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final OrderConsumerConfigProperties properties;
+
+    private final IdGenerator idGenerator;
+
+    /**
+     * 当前节点上等待结果的长轮询请求
+     */
+    private final Map<Long, List<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    public OrderResultStore(StringRedisTemplate stringRedisTemplate, OrderConsumerConfigProperties properties,
+                            IdGenerator idGenerator) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * 写入一批订单的结果并通知所有节点
+     */
+    public void save(List<OrderResultDTO> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        long ttl = TimeUnit.SECONDS.toMillis(properties.getResultTtlSeconds());
+        StringJoiner message = new StringJoiner(",");
+        for (OrderResultDTO result : results) {
+            message.add(result.getOrderId() + ":" + result.getStatus());
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            for (OrderResultDTO result : results) {
+                String key = ORDER_RESULT_KEY + result.getOrderId();
+                Map<String, String> hash = new HashMap<>(4);
+                hash.put(FIELD_USER, String.valueOf(result.getUserId()));
+                hash.put(FIELD_VOUCHER, String.valueOf(result.getVoucherId()));
+                hash.put(FIELD_STATUS, result.getStatus());
+                redis.hMSet(key, hash);
+                redis.pExpire(key, ttl);
+            }
+            return null;
+        });
+        stringRedisTemplate.convertAndSend(ORDER_RESULT_CHANNEL, message.toString());
+    }
+
+    /**
+     * 查询订单结果
+     * @return 还没有结果或结果已过期时返回 null
+     */
+    public OrderResultDTO get(Long orderId) {
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(ORDER_RESULT_KEY + orderId);
+        if (hash.isEmpty()) {
+            return null;
+        }
+        return new OrderResultDTO(orderId, Long.valueOf((String) hash.get(FIELD_USER)),
+                Long.valueOf((String) hash.get(FIELD_VOUCHER)), (String) hash.get(FIELD_STATUS));
+    }
+
+    /**
+     * 等待订单结果，超时时返回 PENDING，结果已过期时立即返回 EXPIRED
+     * @param userId 当前用户，结果属于其他用户时按订单不存在处理
+     * @param waitMillis 最长等待时间，不超过 resultMaxWaitMillis
+     */
+    public DeferredResult<Result> await(Long orderId, Long userId, long waitMillis) {
+        long timeout = Math.max(0, Math.min(waitMillis, properties.getResultMaxWaitMillis()));
+        DeferredResult<Result> deferred = new DeferredResult<>(timeout, missing(orderId));
+        // 已经过期的订单不会再写入结果，不用等待
+        if (timeout == 0 || expired(orderId)) {
+            deferred.setResult(toResult(orderId, get(orderId), userId));
+            return deferred;
+        }
+        Waiter waiter = new Waiter(deferred, userId);
+        waiters.computeIfAbsent(orderId, id -> new CopyOnWriteArrayList<>()).add(waiter);
+        deferred.onCompletion(() -> removeWaiter(orderId, waiter));
+        // 先登记再查询，避免结果在查询之后、登记之前写入而错过通知
+        OrderResultDTO result = get(orderId);
+        if (result != null) {
+            deferred.setResult(toResult(orderId, result, userId));
+        }
+        return deferred;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String item : StrUtil.split(body, ',')) {
+            int colon = item.indexOf(':');
+            Long orderId;
+            try {
+                orderId = Long.valueOf(item.substring(0, colon));
+            } catch (RuntimeException e) {
+                log.warn("无法识别的订单结果消息：{}", item);
+                continue;
+            }
+            List<Waiter> list = waiters.remove(orderId);
+            if (list == null) {
+                continue;
+            }
+            // 通知里只有状态，再读一次 redis得到订单所属用户
+            OrderResultDTO result = get(orderId);
+            for (Waiter waiter : list) {
+                waiter.deferred.setResult(toResult(orderId, result, waiter.userId));
+            }
+        }
+    }
+
+    int waiting() {
+        return waiters.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void removeWaiter(Long orderId, Waiter waiter) {
+        waiters.computeIfPresent(orderId, (id, list) -> {
+            list.remove(waiter);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    Result toResult(Long orderId, OrderResultDTO result, Long userId) {
+        if (result == null) {
+            return missing(orderId);
+        }
+        if (!Objects.equals(result.getUserId(), userId)) {
+            return Result.fail("订单不存在");
+        }
+        return Result.ok(result);
+    }
+
+    /**
+     * 查不到结果时，按订单 id中的生成时间区分 PENDING和 EXPIRED
+     */
+    private Result missing(Long orderId) {
+        Status status = expired(orderId) ? Status.EXPIRED : Status.PENDING;
+        return Result.ok(new OrderResultDTO(orderId, null, null, status.name()));
+    }
+
+    private boolean expired(Long orderId) {
+        long age = System.currentTimeMillis() - idGenerator.timestampOf(orderId);
+        return age > TimeUnit.SECONDS.toMillis(properties.getResultTtlSeconds());
+    }
+
+    private static class Waiter {
+        final DeferredResult<Result> deferred;
+        final Long userId;
+
+        Waiter(DeferredResult<Result> deferred, Long userId) {
+            this.deferred = deferred;
+            this.userId = userId;
+        }
+    }
+}
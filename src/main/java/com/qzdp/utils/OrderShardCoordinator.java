@@ -0,0 +1,156 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import com.qzdp.config.OrderConsumerConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_GROUP;
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_NODES_KEY;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 22:00
+ * @description 订单 stream分片在消费节点之间的分配
+ *  - 每个节点定时把自己写入 zset（score为心跳时间），超时没有心跳的节点被移除
+ *  - 存活节点按 id排序，第 i个节点负责 shard % n == i的分片，节点加入或离开后下一次心跳重新分配
+ *  - 分配切换期间两个节点可能短暂消费同一个分片，同一个消费组内每条消息只会投递给一个消费者，不会重复消费
+ */
+@Slf4j
+@Component
+public class OrderShardCoordinator {
+
+    private final OrderConsumerConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final OrderShardRouter router;
+
+    private final String nodeId;
+
+    private volatile List<Integer> owned = Collections.emptyList();
+
+    public OrderShardCoordinator(OrderConsumerConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                                 OrderShardRouter router, Environment environment) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.router = router;
+        this.nodeId = StrUtil.isNotBlank(properties.getNodeId()) ? properties.getNodeId()
+                : environment.getProperty("spring.application.name", "qzdp") + "-" + NetUtil.getLocalHostName()
+                + "-" + environment.getProperty("server.port", "8080");
+    }
+
+    @PostConstruct
+    private void init() {
+        for (String key : router.allStreamKeys()) {
+            createGroup(key);
+        }
+        heartbeat();
+    }
+
+    /**
+     * 当前节点的标识
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 消费线程在消费组中的名称，同一节点重启后保持不变，能接着处理自己 pending-list中的消息
+     */
+    public String consumerName(int thread) {
+        return nodeId + "-" + thread;
+    }
+
+    /**
+     * 当前节点负责的全部分片
+     */
+    public List<Integer> ownedShards() {
+        return owned;
+    }
+
+    /**
+     * 某个消费线程负责的分片，当前节点的分片轮流分给各个线程
+     */
+    public List<Integer> ownedShards(int thread, int threads) {
+        List<Integer> shards = owned;
+        List<Integer> result = new ArrayList<>();
+        for (int i = thread; i < shards.size(); i += threads) {
+            result.add(shards.get(i));
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${hm.order.consumer.heartbeatMillis:5000}")
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            long deadline = now - properties.getNodeTtlMillis();
+            stringRedisTemplate.opsForZSet().add(STREAM_ORDERS_NODES_KEY, nodeId, now);
+            stringRedisTemplate.opsForZSet().removeRangeByScore(STREAM_ORDERS_NODES_KEY, 0, deadline);
+            Set<String> members = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(STREAM_ORDERS_NODES_KEY, deadline, Double.MAX_VALUE);
+            List<String> nodes = members == null ? Collections.singletonList(nodeId) : new ArrayList<>(members);
+            List<Integer> assigned = assign(nodes, nodeId, router.shards());
+            if (!assigned.equals(owned)) {
+                log.info("订单分片重新分配，存活节点{}个，当前节点[{}]负责分片{}", nodes.size(), nodeId, assigned);
+                owned = assigned;
+            }
+        } catch (Exception e) {
+            // 心跳失败时保持原来的分配
+            log.error("订单消费节点心跳失败", e);
+        }
+    }
+
+    @PreDestroy
+    private void leave() {
+        try {
+            stringRedisTemplate.opsForZSet().remove(STREAM_ORDERS_NODES_KEY, nodeId);
+        } catch (Exception e) {
+            log.warn("订单消费节点下线失败，等待心跳超时后自动移除", e);
+        }
+    }
+
+    /**
+     * 存活节点按 id排序后，第 i个节点负责 shard % n == i的分片
+     */
+    static List<Integer> assign(Collection<String> nodes, String nodeId, int shards) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(nodes));
+        if (!sorted.contains(nodeId)) {
+            sorted.add(nodeId);
+            Collections.sort(sorted);
+        }
+        int index = sorted.indexOf(nodeId);
+        List<Integer> result = new ArrayList<>();
+        for (int shard = index; shard < shards; shard += sorted.size()) {
+            result.add(shard);
+        }
+        return result;
+    }
+
+    /**
+     * XGROUP CREATE key g1 0 MKSTREAM，消费组已存在时忽略
+     */
+    private void createGroup(String key) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(key.getBytes(StandardCharsets.UTF_8), STREAM_ORDERS_GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!ExceptionUtil.getRootCauseMessage(e).contains("BUSYGROUP")) {
+                log.error("创建消费组失败：{}", key, e);
+            }
+        }
+    }
+}
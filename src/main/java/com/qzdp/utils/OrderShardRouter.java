@@ -0,0 +1,167 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.OrderConsumerConfigProperties;
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.qzdp.utils.RedisConstants.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:50
+ * @description 秒杀订单的分片路由
+ *  优惠券按 id取模路由到 K个分片，同一个分片的库存、下单用户集合和订单 stream使用同一个 hash tag，
+ *  保证 secKill.lua访问的 key都在同一个 slot，而不同分片分散到集群的不同 slot
+ *  库存分段时第 j段放在分片 (shardOf(voucherId) + j) % K上，第 0段与不分段时的 key相同
+ *  用户固定由自己的主段记录是否下过单，主段库存不足时到其它段扣库存，订单消息写入扣库存那一段所在分片的 stream
+ */
+@Component
+public class OrderShardRouter {
+
+    private final int shards;
+
+    /**
+     * 每个分片的 hash tag
+     */
+    private final String[] tags;
+
+    public OrderShardRouter(OrderConsumerConfigProperties properties) {
+        this.shards = properties.getShards();
+        this.tags = new String[shards];
+        for (int i = 0; i < shards; i++) {
+            tags[i] = spreadTag(i, shards);
+        }
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public int shardOf(long voucherId) {
+        return (int) Math.floorMod(voucherId, (long) shards);
+    }
+
+    /**
+     * 分片的 hash tag，例如 {order-3-17}
+     */
+    public String tagOf(long voucherId) {
+        return tag(shardOf(voucherId));
+    }
+
+    public String streamKey(int shard) {
+        return STREAM_ORDERS_KEY + ":" + tag(shard);
+    }
+
+    /**
+     * 分片的死信 stream，与订单 stream在同一个 slot，确认和转入死信可以在一个脚本中完成
+     */
+    public String dlqKey(int shard) {
+        return streamKey(shard) + STREAM_ORDERS_DLQ_SUFFIX;
+    }
+
+    public String stockKey(long voucherId) {
+        return SECKILL_STOCK_KEY + tagOf(voucherId) + ":" + voucherId;
+    }
+
+    public String orderKey(long voucherId) {
+        return SECKILL_ORDER_KEY + tagOf(voucherId) + ":" + voucherId;
+    }
+
+    /**
+     * 秒杀脚本的 KEYS：库存、下单用户集合、订单 stream
+     */
+    public List<String> secKillKeys(long voucherId) {
+        return Arrays.asList(stockKey(voucherId), orderKey(voucherId), streamKey(shardOf(voucherId)));
+    }
+
+    /**
+     * 库存第 segment段所在的分片
+     */
+    public int segmentShard(long voucherId, int segment) {
+        return (shardOf(voucherId) + segment) % shards;
+    }
+
+    public String stockKey(long voucherId, int segment) {
+        if (segment == 0) {
+            return stockKey(voucherId);
+        }
+        return SECKILL_STOCK_KEY + tag(segmentShard(voucherId, segment)) + ":" + voucherId + ":" + segment;
+    }
+
+    public String orderKey(long voucherId, int segment) {
+        if (segment == 0) {
+            return orderKey(voucherId);
+        }
+        return SECKILL_ORDER_KEY + tag(segmentShard(voucherId, segment)) + ":" + voucherId + ":" + segment;
+    }
+
+    /**
+     * 用户的主段，用户是否下过单只记录在主段的下单用户集合中
+     */
+    public static int homeSegment(long userId, int segments) {
+        return (int) Math.floorMod(userId, (long) segments);
+    }
+
+    /**
+     * 分段秒杀脚本的 KEYS：第 segment段的库存、下单用户集合、所在分片的订单 stream
+     */
+    public List<String> secKillKeys(long voucherId, int segment) {
+        return Arrays.asList(stockKey(voucherId, segment), orderKey(voucherId, segment),
+                streamKey(segmentShard(voucherId, segment)));
+    }
+
+    /**
+     * 从其它段扣库存的脚本 KEYS：第 segment段的库存、所在分片的订单 stream
+     */
+    public List<String> takeKeys(long voucherId, int segment) {
+        return Arrays.asList(stockKey(voucherId, segment), streamKey(segmentShard(voucherId, segment)));
+    }
+
+    /**
+     * 把库存平均拆成 segments段，前 stock % segments段各多一个
+     */
+    public static int[] splitStock(int stock, int segments) {
+        int[] result = new int[segments];
+        for (int i = 0; i < segments; i++) {
+            result[i] = stock / segments + (i < stock % segments ? 1 : 0);
+        }
+        return result;
+    }
+
+    public List<String> allStreamKeys() {
+        List<String> keys = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            keys.add(streamKey(i));
+        }
+        return keys;
+    }
+
+    public List<String> allDlqKeys() {
+        List<String> keys = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            keys.add(dlqKey(i));
+        }
+        return keys;
+    }
+
+    private String tag(int shard) {
+        return tags[shard];
+    }
+
+    /**
+     * 第 i个分片的 hash tag，保证落在把 16384个 slot均分成 K段后的第 i段
+     * 直接用 {order-0}..{order-7}时 crc16的结果只落在其中 4段，按 slot均分的 8主节点集群只有一半节点分到分片
+     */
+    static String spreadTag(int shard, int shards) {
+        for (int n = 0; ; n++) {
+            String tag = n == 0 ? "{order-" + shard + "}" : "{order-" + shard + "-" + n + "}";
+            if ((long) SlotHash.getSlot(tag) * shards / SlotHash.SLOT_COUNT == shard) {
+                return tag;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.qzdp.utils;
+
+import com.qzdp.annotation.RateLimit;
+import com.qzdp.config.RateLimitConfigProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.qzdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:15
+ * @description 限流器，先过本地令牌桶，再过 redis滑动窗口
+ *  - 本地令牌桶按限流名称在每个节点各建一个，被拒绝的请求不会访问 redis
+ *  - 一个请求的多条 redis规则用 LuaScriptRegistry一次发出，只有一次往返的等待
+ *  - 某条规则拒绝时，已经通过的规则仍然计了数，被拒绝的请求会占用其它维度的少量额度
+ *  - redis出错时按 failOpen放行或拒绝
+ *  - 指标 ratelimit.requests{name, result=admitted|rejected, reason=local|user|ip|param|error}
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    public static final String LOCAL = "local";
+
+    private final LuaScriptRegistry scriptRegistry;
+
+    private final RateLimitConfigProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RateLimiter(LuaScriptRegistry scriptRegistry, RateLimitConfigProperties properties, MeterRegistry meterRegistry) {
+        this.scriptRegistry = scriptRegistry;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return properties.getEnabled();
+    }
+
+    /**
+     * 尝试放行一个请求
+     * @param limit 方法上的限流注解
+     * @param values 与 limit.rules()一一对应的维度取值，为 null的规则跳过
+     * @return 放行时返回 null，否则返回拒绝的原因
+     */
+    public String tryAcquire(RateLimit limit, List<String> values) {
+        if (limit.permitsPerSecond() > 0 && !bucket(limit).tryAcquire()) {
+            return rejected(limit.name(), LOCAL);
+        }
+        RateLimit.Rule[] rules = limit.rules();
+        List<LuaScriptRegistry.ScriptCall> calls = new ArrayList<>(rules.length);
+        List<RateLimit.Rule> checked = new ArrayList<>(rules.length);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rules.length; i++) {
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            RateLimit.Rule rule = rules[i];
+            calls.add(LuaScriptRegistry.ScriptCall.of(LuaScriptRegistry.RATE_LIMIT,
+                    Collections.singletonList(key(limit.name(), rule, value)),
+                    TimeUnit.SECONDS.toMillis(rule.windowSeconds()), rule.limit(), now));
+            checked.add(rule);
+        }
+        if (calls.isEmpty()) {
+            return admitted(limit.name());
+        }
+        List<Object> results;
+        try {
+            results = scriptRegistry.executePipelined(calls);
+        } catch (Exception e) {
+            log.warn("限流检查失败：{}", limit.name(), e);
+            counter(limit.name(), properties.getFailOpen() ? "admitted" : "rejected", "error").increment();
+            return properties.getFailOpen() ? null : "error";
+        }
+        for (int i = 0; i < results.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof Long && (Long) result == 0) {
+                return rejected(limit.name(), reason(checked.get(i)));
+            }
+        }
+        return admitted(limit.name());
+    }
+
+    /**
+     * rate:limit:{name}:{维度}:{取值}
+     */
+    static String key(String name, RateLimit.Rule rule, String value) {
+        return RATE_LIMIT_KEY + name + ":" + reason(rule) + ":" + value;
+    }
+
+    private static String reason(RateLimit.Rule rule) {
+        return rule.dimension().name().toLowerCase();
+    }
+
+    private TokenBucket bucket(RateLimit limit) {
+        return buckets.computeIfAbsent(limit.name(), name -> new TokenBucket(limit.permitsPerSecond(), limit.burst()));
+    }
+
+    private String admitted(String name) {
+        counter(name, "admitted", "").increment();
+        return null;
+    }
+
+    private String rejected(String name, String reason) {
+        counter(name, "rejected", reason).increment();
+        return reason;
+    }
+
+    private Counter counter(String name, String result, String reason) {
+        return counters.computeIfAbsent(name + ':' + result + ':' + reason, k -> meterRegistry.counter(
+                "ratelimit.requests", "name", name, "result", result, "reason", reason));
+    }
+}
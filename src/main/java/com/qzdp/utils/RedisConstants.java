@@ -6,6 +6,9 @@ package com.qzdp.utils;
  */
 public class RedisConstants {
     public static final String SECKILL_TIME_KEY = "secKill:time:";
+    public static final String SECKILL_STATE_CHANNEL = "secKill:state";
+    public static final String STREAM_ORDERS_KEY = "stream.orders";
+    public static final String STREAM_ORDERS_GROUP = "g1";
     public static final String FOLLOW_KEY = "follows:";
 
     public static final String LOGIN_CODE_KEY = "login:code:";
@@ -17,13 +20,41 @@ public class RedisConstants {
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public static final String CACHE_HOTKEY_CHANNEL = "cache:hotkey";
+
+    public static final Long CACHE_BLOG_TTL = 30L;
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+
+    public static final String BLOOM_FILTER_KEY = "bloom:";
+    public static final String BLOOM_PUT_CHANNEL = "bloom:put";
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
     public static final String SECKILL_STOCK_KEY = "secKill:stock:";
+    public static final String SECKILL_ORDER_KEY = "secKill:order:";
+    public static final String STREAM_ORDERS_NODES_KEY = "stream.orders:nodes";
+    public static final String STREAM_ORDERS_DLQ_SUFFIX = ":dlq";
+    public static final String ORDER_RESULT_KEY = "order:result:";
+    public static final String ORDER_RESULT_CHANNEL = "order:result";
+    public static final String ID_WORKER_KEY = "id:worker:";
+    public static final String RATE_LIMIT_KEY = "rate:limit:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_HOT_KEY = "{blog:hot}:rank";
+    public static final String BLOG_HOT_META_KEY = "{blog:hot}:meta";
+    public static final String BLOG_HOT_LOCK_KEY = "{blog:hot}:lock:";
     public static final String FEED_KEY = "feed:";
+    public static final String FEED_FANOUT_STREAM_KEY = "stream.feed";
+    public static final String FEED_FANOUT_GROUP = "g1";
+    public static final String FEED_FANOUT_CHECKPOINT_KEY = "feed:fanout:";
+    public static final String FEED_OUTBOX_KEY = "feed:outbox:";
+    public static final String FEED_BIG_AUTHORS_KEY = "feed:big-authors";
+    public static final String FEED_COMPACT_PENDING_KEY = "feed:compact:pending";
+    public static final String FEED_ARCHIVED_KEY = "feed:archived:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
 }
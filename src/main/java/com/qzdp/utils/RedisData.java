@@ -7,5 +7,9 @@ import java.time.LocalDateTime;
 @Data
 public class RedisData {
     private LocalDateTime expireTime;
+    /**
+     * 上次重建缓存的耗时，单位毫秒
+     */
+    private Long delta;
     private Object data;
 }
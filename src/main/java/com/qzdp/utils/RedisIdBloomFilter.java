@@ -0,0 +1,123 @@
+package com.qzdp.utils;
+
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 14:26
+ * @description 基于 redis bitmap的布隆过滤器，所有节点共享一份
+ *  每次判断 / 添加只发送一条 BITFIELD命令，k个比特位放在同一条命令里
+ *  重建时写入新的 key，写完后通过 {@link #use(String, long)}切换，切换之前继续读旧的位数组
+ */
+public class RedisIdBloomFilter extends AbstractIdBloomFilter {
+
+    private static final BitFieldSubCommands.BitFieldType BIT = BitFieldSubCommands.BitFieldType.unsigned(1);
+
+    private volatile String key;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public RedisIdBloomFilter(String key, long expectedInsertions, double fpp, StringRedisTemplate stringRedisTemplate) {
+        super(expectedInsertions, fpp);
+        this.key = key;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 切换到重建好的位数组
+     * @param key 新的位数组
+     * @param highWaterMark 重建时读到的最大 id
+     */
+    public void use(String key, long highWaterMark) {
+        // 先切换 key再提高最大 id，中间的请求用旧的最大 id，只会多放行
+        this.key = key;
+        setHighWaterMark(highWaterMark);
+    }
+
+    /**
+     * 位数组的规格，用来判断 redis中已有的位数组是否与当前配置一致
+     */
+    public String spec() {
+        return numBits + ":" + numHashFunctions;
+    }
+
+    @Override
+    public boolean mightContain(Object id) {
+        return mightContainAll(Collections.singletonList(id)).get(0);
+    }
+
+    @Override
+    public List<Boolean> mightContainAll(Collection<?> ids) {
+        List<Boolean> result = new ArrayList<>(Collections.nCopies(ids.size(), Boolean.TRUE));
+        if (!isReady()) {
+            return result;
+        }
+        // 大于最大 id的直接放行，只查询其余的 id
+        List<Integer> checked = new ArrayList<>(ids.size());
+        List<BitFieldSubCommands.BitFieldSubCommand> commands = new ArrayList<>(ids.size() * numHashFunctions);
+        int position = 0;
+        for (Object id : ids) {
+            if (!aboveHighWaterMark(id)) {
+                checked.add(position);
+                for (long index : indexes(id)) {
+                    commands.add(BitFieldSubCommands.BitFieldGet.create(BIT, BitFieldSubCommands.Offset.offset(index)));
+                }
+            }
+            position++;
+        }
+        if (commands.isEmpty()) {
+            return result;
+        }
+        List<Long> bits = stringRedisTemplate.opsForValue().bitField(key,
+                BitFieldSubCommands.create(commands.toArray(new BitFieldSubCommands.BitFieldSubCommand[0])));
+        if (bits == null) {
+            // 查询失败时放行，交给后面的缓存空值兜底
+            return result;
+        }
+        for (int i = 0; i < checked.size(); i++) {
+            for (int j = 0; j < numHashFunctions; j++) {
+                if (bits.get(i * numHashFunctions + j) == 0) {
+                    result.set(checked.get(i), Boolean.FALSE);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void put(Object id) {
+        putAll(Collections.singletonList(id));
+    }
+
+    @Override
+    public void putAll(Collection<?> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<BitFieldSubCommands.BitFieldSubCommand> commands = new ArrayList<>(ids.size() * numHashFunctions);
+        for (Object id : ids) {
+            for (long index : indexes(id)) {
+                commands.add(BitFieldSubCommands.BitFieldSet.create(BIT, BitFieldSubCommands.Offset.offset(index), 1));
+            }
+        }
+        stringRedisTemplate.opsForValue().bitField(key,
+                BitFieldSubCommands.create(commands.toArray(new BitFieldSubCommands.BitFieldSubCommand[0])));
+    }
+
+    @Override
+    public double currentFpp() {
+        Long bitCount = stringRedisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.stringCommands().bitCount(key.getBytes(StandardCharsets.UTF_8)));
+        return fppOf(bitCount == null ? 0 : bitCount);
+    }
+}
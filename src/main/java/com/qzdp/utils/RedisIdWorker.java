@@ -1,19 +1,33 @@
 package com.qzdp.utils;
 
+import com.qzdp.config.IdWorkerConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author haofeng
  * @date 2022/10/15 20:16
  * @description redis 实现生成全局唯一的 id
+ *  id = 32位时间戳（秒） << 32 | 32位当天的序列号，序列号由 redis中 icr:{prefix}:{yy:MM:dd}自增得到
+ *  lease模式下每个节点一次 INCRBY租用一段序列号，用原子计数器在本地发放，用掉 prefetchRatio后异步租用下一段
+ *  号段只在租用它的那一天使用，跨天时丢弃旧号段，保证同一秒内不会出现相同的序列号
  */
+@Slf4j
 @Component
-public class RedisIdWorker {
+@ConditionalOnProperty(prefix = "hm.id", name = "type", havingValue = "redis", matchIfMissing = true)
+public class RedisIdWorker implements IdGenerator {
 
     /**
      * 开始时间戳
@@ -24,10 +38,36 @@ public class RedisIdWorker {
      */
     private static final int COUNT_BITS = 32;
 
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yy:MM:dd");
+
+    private static final long SECONDS_PER_DAY = 86400L;
+
     private StringRedisTemplate stringRedisTemplate;
 
-    public RedisIdWorker(StringRedisTemplate stringRedisTemplate) {
+    private final boolean lease;
+
+    private final long leaseSize;
+
+    private final long prefetchOffset;
+
+    private final Map<String, LeaseState> leases = new ConcurrentHashMap<>();
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "id-lease-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 当天的日期字符串，跨天时更新
+     */
+    private volatile DateKey dateKey = new DateKey(-1, null);
+
+    public RedisIdWorker(StringRedisTemplate stringRedisTemplate, IdWorkerConfigProperties properties) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.lease = "lease".equalsIgnoreCase(properties.getMode());
+        this.leaseSize = properties.getLeaseSize();
+        this.prefetchOffset = Math.max(0, Math.min(leaseSize - 1, (long) (leaseSize * properties.getPrefetchRatio())));
     }
 
     /**
@@ -35,17 +75,149 @@ public class RedisIdWorker {
      * @param keyPrefix id 分组
      * @return
      */
+    @Override
     public long nextId(String keyPrefix) {
         //1.生成时间戳
-        LocalDateTime now = LocalDateTime.now();
-        long nowSecond = now.toEpochSecond(ZoneOffset.UTC);
+        long nowSecond = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
         long timestamp = nowSecond - BEGIN_TIMESTAMP;
+        long epochDay = Math.floorDiv(nowSecond, SECONDS_PER_DAY);
         //2.生成序列号
-        //2.1获取当前的日期，精确到天
-        String date = now.format(DateTimeFormatter.ofPattern("yy:MM:dd"));
-        //2.2自增长
-        Long increment = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix+ ":"+ date);
+        long increment = lease ? nextLeased(keyPrefix, epochDay) : nextIncrement(keyPrefix, epochDay);
         //拼接并返回
         return timestamp << COUNT_BITS | increment;
     }
+
+    /**
+     * 时间戳是本地时间按 UTC换算的秒数，精确到秒
+     */
+    @Override
+    public long timestampOf(long id) {
+        long second = (id >>> COUNT_BITS) + BEGIN_TIMESTAMP;
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 每个 id一次 INCR
+     */
+    private long nextIncrement(String keyPrefix, long epochDay) {
+        //2.1获取当前的日期，精确到天
+        //2.2自增长
+        Long increment = stringRedisTemplate.opsForValue().increment(counterKey(keyPrefix, epochDay));
+        return increment;
+    }
+
+    /**
+     * 从本地号段中取序列号，号段用完或跨天时切换
+     */
+    private long nextLeased(String keyPrefix, long epochDay) {
+        LeaseState state = leases.computeIfAbsent(keyPrefix, LeaseState::new);
+        while (true) {
+            Segment segment = state.current;
+            if (segment != null && segment.epochDay == epochDay) {
+                long seq = segment.next.getAndIncrement();
+                if (seq <= segment.end) {
+                    if (seq == segment.prefetchAt) {
+                        prefetch(state, epochDay);
+                    }
+                    return seq;
+                }
+            }
+            switchSegment(state, segment, epochDay);
+        }
+    }
+
+    /**
+     * 只有一个线程切换号段，优先使用已经预取好的下一段
+     */
+    private void switchSegment(LeaseState state, Segment exhausted, long epochDay) {
+        synchronized (state) {
+            if (state.current != exhausted) {
+                // 其它线程已经切换过了
+                return;
+            }
+            Segment next = null;
+            Future<Segment> prefetched = state.prefetched;
+            state.prefetched = null;
+            if (prefetched != null) {
+                try {
+                    next = prefetched.get();
+                } catch (Exception e) {
+                    log.warn("预取 id号段失败，同步租用：{}", state.keyPrefix, e);
+                }
+            }
+            if (next == null || next.epochDay != epochDay) {
+                next = leaseSegment(state.keyPrefix, epochDay);
+            }
+            state.current = next;
+        }
+    }
+
+    private void prefetch(LeaseState state, long epochDay) {
+        synchronized (state) {
+            if (state.prefetched == null) {
+                state.prefetched = prefetchExecutor.submit(() -> leaseSegment(state.keyPrefix, epochDay));
+            }
+        }
+    }
+
+    /**
+     * INCRBY icr:{prefix}:{date} leaseSize，得到 [end - leaseSize + 1, end]
+     */
+    private Segment leaseSegment(String keyPrefix, long epochDay) {
+        Long end = stringRedisTemplate.opsForValue().increment(counterKey(keyPrefix, epochDay), leaseSize);
+        long start = end - leaseSize + 1;
+        return new Segment(epochDay, start, end, start + prefetchOffset);
+    }
+
+    private String counterKey(String keyPrefix, long epochDay) {
+        DateKey key = dateKey;
+        if (key.epochDay != epochDay) {
+            key = new DateKey(epochDay, LocalDate.ofEpochDay(epochDay).format(DATE_FORMATTER));
+            dateKey = key;
+        }
+        return "icr:" + keyPrefix + ":" + key.date;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private static class DateKey {
+        final long epochDay;
+        final String date;
+
+        DateKey(long epochDay, String date) {
+            this.epochDay = epochDay;
+            this.date = date;
+        }
+    }
+
+    /**
+     * 一段租用的序列号
+     */
+    private static class Segment {
+        final long epochDay;
+        final long end;
+        final long prefetchAt;
+        final AtomicLong next;
+
+        Segment(long epochDay, long start, long end, long prefetchAt) {
+            this.epochDay = epochDay;
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+            this.next = new AtomicLong(start);
+        }
+    }
+
+    private static class LeaseState {
+        final String keyPrefix;
+        volatile Segment current;
+        Future<Segment> prefetched;
+
+        LeaseState(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+        }
+    }
 }
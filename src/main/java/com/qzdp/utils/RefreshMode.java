@@ -0,0 +1,19 @@
+package com.qzdp.utils;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 16:40
+ * @description 逻辑过期缓存的刷新方式
+ */
+public enum RefreshMode {
+
+    /**
+     * 逻辑过期之后才重建
+     */
+    ON_EXPIRE,
+
+    /**
+     * 概率提前重建（XFetch）
+     */
+    EARLY
+}
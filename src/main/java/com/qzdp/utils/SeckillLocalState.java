@@ -0,0 +1,146 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.qzdp.utils.RedisConstants.SECKILL_STATE_CHANNEL;
+import static com.qzdp.utils.RedisConstants.SECKILL_TIME_KEY;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 01:10
+ * @description 秒杀券在每个节点内存中的状态，秒杀请求在访问 redis之前先在这里过滤
+ *  - 活动时间窗口：第一次用到时从 redis加载，创建或修改秒杀券时通过发布订阅通知所有节点重新加载
+ *  - 售罄标记：秒杀脚本返回库存不足后在本节点标记并广播，之后的请求直接在 JVM内拒绝
+ *  - 两者都带有过期时间，漏掉广播的节点过期后会从 redis重新确认
+ */
+@Slf4j
+@Component
+public class SeckillLocalState implements MessageListener {
+
+    private static final String WINDOW = "window:";
+    private static final String SOLD_OUT = "soldout:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Cache<Long, SeckillWindow> windows = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    private final Cache<Long, Boolean> soldOut = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+
+    private final Counter rejectedSoldOut;
+
+    private final Counter rejectedWindow;
+
+    public SeckillLocalState(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.rejectedSoldOut = meterRegistry.counter("seckill.rejected.local", "reason", "soldout");
+        this.rejectedWindow = meterRegistry.counter("seckill.rejected.local", "reason", "window");
+    }
+
+    /**
+     * 秒杀券的活动时间窗口
+     * @return 秒杀券不存在时返回 null
+     */
+    public SeckillWindow window(Long voucherId) {
+        return windows.get(voucherId, id -> SeckillWindow.parse(stringRedisTemplate.opsForValue().get(SECKILL_TIME_KEY + id)));
+    }
+
+    /**
+     * 写入 redis之后调用，通知所有节点（包括自己）重新加载时间窗口并清除售罄标记
+     */
+    public void publishWindow(Long voucherId) {
+        stringRedisTemplate.convertAndSend(SECKILL_STATE_CHANNEL, WINDOW + voucherId);
+    }
+
+    public boolean isSoldOut(Long voucherId) {
+        return soldOut.getIfPresent(voucherId) != null;
+    }
+
+    /**
+     * 标记售罄并广播给其它节点
+     */
+    public void markSoldOut(Long voucherId) {
+        if (isSoldOut(voucherId)) {
+            return;
+        }
+        soldOut.put(voucherId, Boolean.TRUE);
+        stringRedisTemplate.convertAndSend(SECKILL_STATE_CHANNEL, SOLD_OUT + voucherId);
+    }
+
+    /**
+     * 记录一次在本地拒绝的请求
+     * @param soldOut true表示因为售罄，false表示不在活动时间内
+     */
+    public void rejected(boolean soldOut) {
+        (soldOut ? rejectedSoldOut : rejectedWindow).increment();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if (body.startsWith(SOLD_OUT)) {
+                soldOut.put(Long.valueOf(body.substring(SOLD_OUT.length())), Boolean.TRUE);
+            } else if (body.startsWith(WINDOW)) {
+                Long voucherId = Long.valueOf(body.substring(WINDOW.length()));
+                windows.invalidate(voucherId);
+                soldOut.invalidate(voucherId);
+            }
+        } catch (NumberFormatException e) {
+            log.warn("无法识别的秒杀状态消息：{}", body);
+        }
+    }
+
+    /**
+     * 秒杀券的活动时间（秒）以及库存段数，redis中的格式为 开始时间-结束时间-段数
+     */
+    public static class SeckillWindow {
+
+        private final long beginTime;
+
+        private final long endTime;
+
+        private final int segments;
+
+        public SeckillWindow(long beginTime, long endTime, int segments) {
+            this.beginTime = beginTime;
+            this.endTime = endTime;
+            this.segments = segments;
+        }
+
+        public static SeckillWindow parse(String value) {
+            if (StrUtil.isBlank(value)) {
+                return null;
+            }
+            String[] s = value.split("-");
+            // 旧数据没有段数这一项时不分段
+            return new SeckillWindow(Long.parseLong(s[0]), Long.parseLong(s[1]),
+                    s.length > 2 ? Integer.parseInt(s[2]) : 1);
+        }
+
+        public boolean contains(long epochSecond) {
+            return epochSecond >= beginTime && epochSecond <= endTime;
+        }
+
+        public int getSegments() {
+            return segments;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.qzdp.utils;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 15:30
+ * @description 进程内的请求合并（single flight）
+ *  同一时刻对同一个 key的并发调用只有第一个线程（leader）真正执行，
+ *  其余线程阻塞等待 leader的结果，而不是各自休眠重试
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 执行或等待同一个 key正在进行中的调用
+     *
+     * @param key     合并的 key
+     * @param loader  真正执行的逻辑，只有 leader会执行
+     * @param timeout 等待 leader的最长时间
+     * @param unit    时间单位
+     * @return leader的执行结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader, long timeout, TimeUnit unit) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            // 已经有线程在执行，等待它的结果
+            try {
+                return (T) inFlight.get(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            } catch (TimeoutException e) {
+                throw new RuntimeException("等待缓存重建超时：" + key, e);
+            }
+        }
+        try {
+            T value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步版本，同一个 key正在进行中时直接返回进行中的 future，不阻塞调用线程
+     *
+     * @param key    合并的 key
+     * @param loader 返回 future的逻辑，只有 leader会执行
+     * @return 每个调用方拿到各自的 future，互不影响
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight.thenApply(value -> (T) value);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = loader.get();
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((value, e) -> {
+            // 先移除再完成，完成之后进来的调用会重新执行
+            calls.remove(key, future);
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future.thenApply(value -> (T) value);
+    }
+
+    /**
+     * 当前正在进行中的调用数
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+}
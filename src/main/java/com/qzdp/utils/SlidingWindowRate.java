@@ -0,0 +1,49 @@
+package com.qzdp.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 21:30
+ * @description 按秒分桶的滑动窗口速率，用于统计最近一段时间的平均每秒处理量
+ */
+public class SlidingWindowRate {
+
+    private final int seconds;
+
+    private final AtomicLongArray counts;
+
+    private final AtomicLongArray epochs;
+
+    public SlidingWindowRate(int seconds) {
+        this.seconds = seconds;
+        this.counts = new AtomicLongArray(seconds);
+        this.epochs = new AtomicLongArray(seconds);
+    }
+
+    public void add(long n) {
+        long epoch = System.currentTimeMillis() / 1000;
+        int index = (int) (epoch % seconds);
+        long old = epochs.get(index);
+        if (old != epoch && epochs.compareAndSet(index, old, epoch)) {
+            // 桶已经属于更早的一秒，重置后复用
+            counts.set(index, 0);
+        }
+        counts.addAndGet(index, n);
+    }
+
+    /**
+     * 最近 seconds秒（不含当前这一秒）的平均每秒数量
+     */
+    public double perSecond() {
+        long now = System.currentTimeMillis() / 1000;
+        long sum = 0;
+        for (int i = 0; i < seconds; i++) {
+            long epoch = epochs.get(i);
+            if (epoch < now && epoch >= now - seconds) {
+                sum += counts.get(i);
+            }
+        }
+        return (double) sum / seconds;
+    }
+}
@@ -0,0 +1,214 @@
+package com.qzdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import com.qzdp.config.IdWorkerConfigProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import static com.qzdp.utils.RedisConstants.ID_WORKER_KEY;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 04:10
+ * @description 本地生成 id的 snowflake实现，生成 id时不访问 redis
+ *  id = 41位毫秒时间戳 << 22 | 10位 worker id << 12 | 12位同一毫秒内的序列号
+ *  - worker id通过 id:worker:{n}租用（SET NX PX），定时续期，续期失败时停止发号并重新租用
+ *  - 时钟回拨不超过 maxBackwardMillis时等待追上，超过时抛出异常，不会生成重复 id
+ *  - 时间戳从 2021-01-01开始，比 RedisIdWorker的起点早一年，从 RedisIdWorker切换过来时新 id大于所有已经发出的旧 id
+ *    （RedisIdWorker的 id每秒增长 2^32，这里每秒增长 1000 * 2^22，提前一年可以覆盖到 2060年之后）
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "hm.id", name = "type", havingValue = "snowflake")
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /**
+     * 2021-01-01 00:00:00 UTC
+     */
+    static final long EPOCH_MILLIS = 1609459200000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final IdWorkerConfigProperties properties;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final LuaScriptRegistry scriptRegistry;
+
+    private final LongSupplier clock;
+
+    /**
+     * 续期时写入 key的值，区分不同节点
+     */
+    private final String owner = UUID.randomUUID().toString(true);
+
+    private volatile int workerId = -1;
+
+    /**
+     * 租约在本地认为有效的截止时间，过了这个时间还没有续期成功就停止发号
+     */
+    private volatile long leaseDeadline;
+
+    private long lastTimestamp = -1L;
+
+    private long sequence;
+
+    public SnowflakeIdGenerator(IdWorkerConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                                LuaScriptRegistry scriptRegistry) {
+        this(properties, stringRedisTemplate, scriptRegistry, System::currentTimeMillis);
+    }
+
+    SnowflakeIdGenerator(IdWorkerConfigProperties properties, StringRedisTemplate stringRedisTemplate,
+                         LuaScriptRegistry scriptRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void init() {
+        acquire();
+        if (workerId < 0) {
+            throw new IllegalStateException("没有可用的 snowflake worker id");
+        }
+    }
+
+    @Override
+    public long nextId(String keyPrefix) {
+        return nextIds(keyPrefix, 1)[0];
+    }
+
+    /**
+     * 一次加锁生成 n个 id，同一毫秒内的序列号用完后进入下一毫秒
+     */
+    @Override
+    public synchronized long[] nextIds(String keyPrefix, int n) {
+        long[] ids = new long[n];
+        long timestamp = currentTimestamp();
+        int worker = workerId;
+        for (int i = 0; i < n; i++) {
+            if (timestamp == lastTimestamp) {
+                sequence = (sequence + 1) & SEQUENCE_MASK;
+                if (sequence == 0) {
+                    timestamp = waitNextMillis(lastTimestamp);
+                }
+            } else {
+                sequence = 0;
+            }
+            lastTimestamp = timestamp;
+            ids[i] = (timestamp - EPOCH_MILLIS) << (WORKER_BITS + SEQUENCE_BITS)
+                    | (long) worker << SEQUENCE_BITS
+                    | sequence;
+        }
+        return ids;
+    }
+
+    @Override
+    public long timestampOf(long id) {
+        return (id >>> (WORKER_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public int workerId() {
+        return workerId;
+    }
+
+    /**
+     * 续期 worker id，续期失败（key过期后被其它节点占用）时重新租用
+     */
+    @Scheduled(fixedDelayString = "${hm.id.workerHeartbeatMillis:10000}")
+    public void heartbeat() {
+        int worker = workerId;
+        try {
+            if (worker >= 0) {
+                long begin = clock.getAsLong();
+                Long renewed = scriptRegistry.execute(LuaScriptRegistry.RENEW,
+                        Collections.singletonList(ID_WORKER_KEY + worker), owner, properties.getWorkerTtlMillis());
+                if (renewed != null && renewed == 1) {
+                    leaseDeadline = begin + properties.getWorkerTtlMillis();
+                    return;
+                }
+                log.warn("snowflake worker id {} 续期失败，重新租用", worker);
+                workerId = -1;
+            }
+            acquire();
+        } catch (Exception e) {
+            log.error("snowflake worker id续期失败", e);
+        }
+    }
+
+    @PreDestroy
+    void release() {
+        int worker = workerId;
+        if (worker < 0) {
+            return;
+        }
+        try {
+            scriptRegistry.execute(LuaScriptRegistry.UNLOCK, Collections.singletonList(ID_WORKER_KEY + worker), owner);
+        } catch (Exception e) {
+            log.warn("释放 snowflake worker id失败，等待过期：{}", worker, e);
+        }
+    }
+
+    /**
+     * 从随机位置开始依次尝试 SET id:worker:{n} owner NX PX ttl
+     */
+    private void acquire() {
+        int start = ThreadLocalRandom.current().nextInt(MAX_WORKER_ID + 1);
+        for (int i = 0; i <= MAX_WORKER_ID; i++) {
+            int candidate = (start + i) & MAX_WORKER_ID;
+            long begin = clock.getAsLong();
+            Boolean ok = stringRedisTemplate.opsForValue().setIfAbsent(ID_WORKER_KEY + candidate, owner,
+                    properties.getWorkerTtlMillis(), TimeUnit.MILLISECONDS);
+            if (Boolean.TRUE.equals(ok)) {
+                leaseDeadline = begin + properties.getWorkerTtlMillis();
+                workerId = candidate;
+                log.info("租用 snowflake worker id：{}", candidate);
+                return;
+            }
+        }
+        log.error("snowflake worker id已全部被占用");
+    }
+
+    /**
+     * 当前毫秒时间戳，检查租约与时钟回拨
+     */
+    private long currentTimestamp() {
+        long now = clock.getAsLong();
+        if (workerId < 0 || now >= leaseDeadline) {
+            throw new IllegalStateException("snowflake worker id租约已失效，暂停生成 id");
+        }
+        if (now < lastTimestamp) {
+            long backward = lastTimestamp - now;
+            if (backward > properties.getMaxBackwardMillis()) {
+                throw new IllegalStateException("时钟回拨 " + backward + "ms，拒绝生成 id");
+            }
+            log.warn("时钟回拨 {}ms，等待追上", backward);
+            now = waitNextMillis(lastTimestamp - 1);
+        }
+        return now;
+    }
+
+    private long waitNextMillis(long last) {
+        long now = clock.getAsLong();
+        while (now <= last) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            now = clock.getAsLong();
+        }
+        return now;
+    }
+}
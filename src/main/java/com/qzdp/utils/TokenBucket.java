@@ -0,0 +1,52 @@
+package com.qzdp.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:05
+ * @description 无锁的本地令牌桶
+ *  不单独记录令牌数，只记录桶被取空的时刻 emptyAt：每取一个令牌 emptyAt后移一个间隔，
+ *  emptyAt超过当前时间 burst个间隔说明令牌已经取完，等价于容量为 burst、每个间隔补充一个令牌的令牌桶
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+
+    private final long capacityNanos;
+
+    private final LongSupplier clock;
+
+    private final AtomicLong emptyAt;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier clock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond和 burst必须大于 0");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.capacityNanos = intervalNanos * burst;
+        this.clock = clock;
+        // 初始时桶是满的
+        this.emptyAt = new AtomicLong(clock.getAsLong());
+    }
+
+    public boolean tryAcquire() {
+        long now = clock.getAsLong();
+        while (true) {
+            long current = emptyAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (emptyAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
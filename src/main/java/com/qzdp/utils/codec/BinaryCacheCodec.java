@@ -0,0 +1,179 @@
+package com.qzdp.utils.codec;
+
+import com.qzdp.utils.RedisData;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:50
+ * @description 按 schema编码的二进制编解码器
+ *  格式：MAGIC(1) + flags(1) + schemaId(varint) + [原始长度(varint)] + body
+ *  - flags & 0x01：body经过压缩，超过阈值才压缩
+ *  - flags & 0x02：body是逻辑过期的包装，先写 expireTime、delta再写 data
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    public static final int MAGIC = 0xB7;
+
+    private static final int FLAG_COMPRESSED = 0x01;
+
+    private static final int FLAG_EXPIRE = 0x02;
+
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final Map<Class<?>, BinarySchema<?>> schemasByType = new HashMap<>();
+
+    private final Map<Integer, BinarySchema<?>> schemasById = new HashMap<>();
+
+    private final int compressThreshold;
+
+    public BinaryCacheCodec(List<BinarySchema<?>> schemas, int compressThreshold) {
+        for (BinarySchema<?> schema : schemas) {
+            schemasByType.put(schema.type(), schema);
+            schemasById.put(schema.id(), schema);
+        }
+        this.compressThreshold = compressThreshold;
+    }
+
+    public static boolean isBinary(byte[] bytes) {
+        return bytes.length > 0 && (bytes[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * 是否可以用二进制格式编码该类型
+     */
+    public boolean supports(Class<?> type) {
+        return schemasByType.containsKey(type);
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        BinaryWriter body = new BinaryWriter(256);
+        BinarySchema<Object> schema = schemaOf(value.getClass());
+        schema.write(body, value);
+        return pack(0, schema.id(), body);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        BinaryReader in = unpack(bytes);
+        return type.cast(schemasById.get(schemaIdOf(bytes)).read(in));
+    }
+
+    @Override
+    public byte[] encodeWithExpire(RedisData redisData) {
+        BinaryWriter body = new BinaryWriter(256);
+        BinarySchema<Object> schema = schemaOf(redisData.getData().getClass());
+        body.writeDateTime(redisData.getExpireTime());
+        body.writeLong(redisData.getDelta());
+        schema.write(body, redisData.getData());
+        return pack(FLAG_EXPIRE, schema.id(), body);
+    }
+
+    @Override
+    public RedisData decodeWithExpire(byte[] bytes, Class<?> type) {
+        BinaryReader in = unpack(bytes);
+        LocalDateTime expireTime = in.readDateTime();
+        Long delta = in.readLong();
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(expireTime);
+        redisData.setDelta(delta);
+        redisData.setData(type.cast(schemasById.get(schemaIdOf(bytes)).read(in)));
+        return redisData;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BinarySchema<Object> schemaOf(Class<?> type) {
+        BinarySchema<?> schema = schemasByType.get(type);
+        if (schema == null) {
+            throw new IllegalArgumentException("没有注册二进制结构的类型：" + type.getName());
+        }
+        return (BinarySchema<Object>) schema;
+    }
+
+    private byte[] pack(int flags, int schemaId, BinaryWriter body) {
+        byte[] raw = body.toByteArray();
+        BinaryWriter out = new BinaryWriter(raw.length + 8);
+        if (raw.length < compressThreshold) {
+            out.writeByte(MAGIC);
+            out.writeByte(flags);
+            out.writeVarLong(schemaId);
+            out.writeBytes(raw, 0, raw.length);
+            return out.toByteArray();
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            out.writeByte(MAGIC);
+            out.writeByte(flags | FLAG_COMPRESSED);
+            out.writeVarLong(schemaId);
+            out.writeVarLong(raw.length);
+            byte[] chunk = new byte[Math.max(64, raw.length / 2)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.writeBytes(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private int schemaIdOf(byte[] bytes) {
+        return (int) new BinaryReader(bytes, 2).readVarLong();
+    }
+
+    /**
+     * 校验头部并返回定位到 body起始位置的读取器，压缩的 body先解压
+     */
+    private BinaryReader unpack(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("不是二进制格式的缓存值");
+        }
+        int flags = bytes[1] & 0xFF;
+        BinaryReader header = new BinaryReader(bytes, 2);
+        int schemaId = (int) header.readVarLong();
+        if (!schemasById.containsKey(schemaId)) {
+            throw new IllegalArgumentException("未知的二进制结构：" + schemaId);
+        }
+        if ((flags & FLAG_COMPRESSED) == 0) {
+            return header;
+        }
+        long rawLength = header.readVarLong();
+        int offset = header.position();
+        // deflate的压缩比不超过 1032:1，超出说明长度字段已损坏，避免按错误的长度分配内存
+        if (rawLength < 0 || rawLength > (long) (bytes.length - offset) * MAX_DEFLATE_RATIO) {
+            throw new IllegalArgumentException("缓存值的原始长度不合法：" + rawLength);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] raw = new byte[(int) rawLength];
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, raw.length - n);
+                // 输入被截断或需要字典时 inflate返回 0，继续循环会一直空转
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("缓存值不完整，解压失败");
+                }
+                n += read;
+            }
+            if (n < raw.length) {
+                throw new IllegalArgumentException("缓存值解压后的长度不足：" + n + "/" + raw.length);
+            }
+            return new BinaryReader(raw, 0);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("缓存值解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.qzdp.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:32
+ * @description 二进制读取，与 {@link BinaryWriter}对应
+ */
+public final class BinaryReader {
+
+    private final byte[] buf;
+
+    private int pos;
+
+    public BinaryReader(byte[] buf, int offset) {
+        this.buf = buf;
+        this.pos = offset;
+    }
+
+    public int readByte() {
+        return buf[pos++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    public Long readLong() {
+        if (readByte() == 0) {
+            return null;
+        }
+        long raw = readVarLong();
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    public Integer readInt() {
+        Long value = readLong();
+        return value == null ? null : value.intValue();
+    }
+
+    public Double readDouble() {
+        if (readByte() == 0) {
+            return null;
+        }
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) (buf[pos++] & 0xFF) << (i << 3);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public Boolean readBoolean() {
+        int b = readByte();
+        return b == 0 ? null : b == 2;
+    }
+
+    public String readString() {
+        int length = (int) readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    public LocalDateTime readDateTime() {
+        if (readByte() == 0) {
+            return null;
+        }
+        long raw = readVarLong();
+        long seconds = (raw >>> 1) ^ -(raw & 1);
+        int nanos = (int) readVarLong();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    public int position() {
+        return pos;
+    }
+}
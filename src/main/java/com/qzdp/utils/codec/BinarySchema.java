@@ -0,0 +1,21 @@
+package com.qzdp.utils.codec;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:20
+ * @description 某个类型的二进制结构，按固定顺序读写字段，不经过中间的 map
+ *  新增字段只能追加在末尾，并且需要修改 {@link #id()}，旧数据会因为编号不一致而回源重建
+ */
+public interface BinarySchema<T> {
+
+    /**
+     * 写入头部的结构编号，每个类型唯一
+     */
+    int id();
+
+    Class<T> type();
+
+    void write(BinaryWriter out, T value);
+
+    T read(BinaryReader in);
+}
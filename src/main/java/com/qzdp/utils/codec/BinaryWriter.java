@@ -0,0 +1,113 @@
+package com.qzdp.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:25
+ * @description 二进制写入，整数使用 zigzag + 变长编码，可为空的字段先写一个标记
+ */
+public final class BinaryWriter {
+
+    private byte[] buf;
+
+    private int pos;
+
+    public BinaryWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    public void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buf, pos, length);
+        pos += length;
+    }
+
+    /**
+     * 无符号变长编码，每个字节 7位有效数据
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+    }
+
+    public void writeLong(Long value) {
+        if (value == null) {
+            writeByte(0);
+            return;
+        }
+        writeByte(1);
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeInt(Integer value) {
+        writeLong(value == null ? null : value.longValue());
+    }
+
+    public void writeDouble(Double value) {
+        if (value == null) {
+            writeByte(0);
+            return;
+        }
+        writeByte(1);
+        long bits = Double.doubleToLongBits(value);
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buf[pos++] = (byte) (bits >>> (i << 3));
+        }
+    }
+
+    public void writeBoolean(Boolean value) {
+        writeByte(value == null ? 0 : value ? 2 : 1);
+    }
+
+    /**
+     * 长度 + 1后写入，0表示 null
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    public void writeDateTime(LocalDateTime value) {
+        if (value == null) {
+            writeByte(0);
+            return;
+        }
+        writeByte(1);
+        long seconds = value.toEpochSecond(ZoneOffset.UTC);
+        writeVarLong((seconds << 1) ^ (seconds >> 63));
+        writeVarLong(value.getNano());
+    }
+
+    public int size() {
+        return pos;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+
+    private void ensure(int length) {
+        if (pos + length > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + length));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.qzdp.utils.codec;
+
+import com.qzdp.utils.RedisData;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:10
+ * @description 缓存值的编解码器，负责对象与 redis中字节之间的转换
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码普通缓存值
+     * @param value 不为空
+     * @return 写入 redis的字节
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码普通缓存值
+     * @param bytes 从 redis读取的字节，不为空
+     * @param type  目标类型
+     */
+    <T> T decode(byte[] bytes, Class<T> type);
+
+    /**
+     * 编码带逻辑过期时间的缓存值
+     * @param redisData data不为空
+     */
+    byte[] encodeWithExpire(RedisData redisData);
+
+    /**
+     * 解码带逻辑过期时间的缓存值
+     * @param bytes 从 redis读取的字节，不为空
+     * @param type  data的类型
+     * @return data已经转换为 type类型
+     */
+    RedisData decodeWithExpire(byte[] bytes, Class<?> type);
+}
@@ -0,0 +1,237 @@
+package com.qzdp.utils.codec;
+
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.Blog;
+import com.qzdp.entity.Shop;
+import com.qzdp.entity.User;
+import com.qzdp.entity.Voucher;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 17:40
+ * @description 缓存实体的二进制结构，数据库中不存在的字段（距离、点赞状态等）不写入缓存
+ */
+public final class EntitySchemas {
+
+    private EntitySchemas() {
+    }
+
+    public static List<BinarySchema<?>> all() {
+        return Arrays.asList(new ShopSchema(), new BlogSchema(), new UserSchema(), new VoucherSchema(),
+                new UserDTOSchema());
+    }
+
+    static final class ShopSchema implements BinarySchema<Shop> {
+        @Override
+        public int id() {
+            return 1;
+        }
+
+        @Override
+        public Class<Shop> type() {
+            return Shop.class;
+        }
+
+        @Override
+        public void write(BinaryWriter out, Shop shop) {
+            out.writeLong(shop.getId());
+            out.writeString(shop.getName());
+            out.writeLong(shop.getTypeId());
+            out.writeString(shop.getImages());
+            out.writeString(shop.getArea());
+            out.writeString(shop.getAddress());
+            out.writeDouble(shop.getX());
+            out.writeDouble(shop.getY());
+            out.writeLong(shop.getAvgPrice());
+            out.writeInt(shop.getSold());
+            out.writeInt(shop.getComments());
+            out.writeInt(shop.getScore());
+            out.writeString(shop.getOpenHours());
+            out.writeDateTime(shop.getCreateTime());
+            out.writeDateTime(shop.getUpdateTime());
+        }
+
+        @Override
+        public Shop read(BinaryReader in) {
+            Shop shop = new Shop();
+            shop.setId(in.readLong());
+            shop.setName(in.readString());
+            shop.setTypeId(in.readLong());
+            shop.setImages(in.readString());
+            shop.setArea(in.readString());
+            shop.setAddress(in.readString());
+            shop.setX(in.readDouble());
+            shop.setY(in.readDouble());
+            shop.setAvgPrice(in.readLong());
+            shop.setSold(in.readInt());
+            shop.setComments(in.readInt());
+            shop.setScore(in.readInt());
+            shop.setOpenHours(in.readString());
+            shop.setCreateTime(in.readDateTime());
+            shop.setUpdateTime(in.readDateTime());
+            return shop;
+        }
+    }
+
+    static final class BlogSchema implements BinarySchema<Blog> {
+        @Override
+        public int id() {
+            return 2;
+        }
+
+        @Override
+        public Class<Blog> type() {
+            return Blog.class;
+        }
+
+        @Override
+        public void write(BinaryWriter out, Blog blog) {
+            out.writeLong(blog.getId());
+            out.writeLong(blog.getShopId());
+            out.writeLong(blog.getUserId());
+            out.writeString(blog.getTitle());
+            out.writeString(blog.getImages());
+            out.writeString(blog.getContent());
+            out.writeInt(blog.getLiked());
+            out.writeInt(blog.getComments());
+            out.writeDateTime(blog.getCreateTime());
+            out.writeDateTime(blog.getUpdateTime());
+        }
+
+        @Override
+        public Blog read(BinaryReader in) {
+            Blog blog = new Blog();
+            blog.setId(in.readLong());
+            blog.setShopId(in.readLong());
+            blog.setUserId(in.readLong());
+            blog.setTitle(in.readString());
+            blog.setImages(in.readString());
+            blog.setContent(in.readString());
+            blog.setLiked(in.readInt());
+            blog.setComments(in.readInt());
+            blog.setCreateTime(in.readDateTime());
+            blog.setUpdateTime(in.readDateTime());
+            return blog;
+        }
+    }
+
+    static final class UserSchema implements BinarySchema<User> {
+        @Override
+        public int id() {
+            return 3;
+        }
+
+        @Override
+        public Class<User> type() {
+            return User.class;
+        }
+
+        @Override
+        public void write(BinaryWriter out, User user) {
+            out.writeLong(user.getId());
+            out.writeString(user.getPhone());
+            out.writeString(user.getPassword());
+            out.writeString(user.getNickName());
+            out.writeString(user.getIcon());
+            out.writeDateTime(user.getCreateTime());
+            out.writeDateTime(user.getUpdateTime());
+        }
+
+        @Override
+        public User read(BinaryReader in) {
+            User user = new User();
+            user.setId(in.readLong());
+            user.setPhone(in.readString());
+            user.setPassword(in.readString());
+            user.setNickName(in.readString());
+            user.setIcon(in.readString());
+            user.setCreateTime(in.readDateTime());
+            user.setUpdateTime(in.readDateTime());
+            return user;
+        }
+    }
+
+    static final class VoucherSchema implements BinarySchema<Voucher> {
+        @Override
+        public int id() {
+            return 4;
+        }
+
+        @Override
+        public Class<Voucher> type() {
+            return Voucher.class;
+        }
+
+        @Override
+        public void write(BinaryWriter out, Voucher voucher) {
+            out.writeLong(voucher.getId());
+            out.writeLong(voucher.getShopId());
+            out.writeString(voucher.getTitle());
+            out.writeString(voucher.getSubTitle());
+            out.writeString(voucher.getRules());
+            out.writeLong(voucher.getPayValue());
+            out.writeLong(voucher.getActualValue());
+            out.writeInt(voucher.getType());
+            out.writeInt(voucher.getStatus());
+            out.writeInt(voucher.getStock());
+            out.writeDateTime(voucher.getBeginTime());
+            out.writeDateTime(voucher.getEndTime());
+            out.writeDateTime(voucher.getCreateTime());
+            out.writeDateTime(voucher.getUpdateTime());
+        }
+
+        @Override
+        public Voucher read(BinaryReader in) {
+            Voucher voucher = new Voucher();
+            voucher.setId(in.readLong());
+            voucher.setShopId(in.readLong());
+            voucher.setTitle(in.readString());
+            voucher.setSubTitle(in.readString());
+            voucher.setRules(in.readString());
+            voucher.setPayValue(in.readLong());
+            voucher.setActualValue(in.readLong());
+            voucher.setType(in.readInt());
+            voucher.setStatus(in.readInt());
+            voucher.setStock(in.readInt());
+            voucher.setBeginTime(in.readDateTime());
+            voucher.setEndTime(in.readDateTime());
+            voucher.setCreateTime(in.readDateTime());
+            voucher.setUpdateTime(in.readDateTime());
+            return voucher;
+        }
+    }
+
+    /**
+     * 笔记列表中的作者信息，不含手机号、密码
+     */
+    static final class UserDTOSchema implements BinarySchema<UserDTO> {
+        @Override
+        public int id() {
+            return 5;
+        }
+
+        @Override
+        public Class<UserDTO> type() {
+            return UserDTO.class;
+        }
+
+        @Override
+        public void write(BinaryWriter out, UserDTO user) {
+            out.writeLong(user.getId());
+            out.writeString(user.getNickName());
+            out.writeString(user.getIcon());
+        }
+
+        @Override
+        public UserDTO read(BinaryReader in) {
+            UserDTO user = new UserDTO();
+            user.setId(in.readLong());
+            user.setNickName(in.readString());
+            user.setIcon(in.readString());
+            return user;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.qzdp.utils.codec;
+
+import com.qzdp.utils.RedisData;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:05
+ * @description 兼容迁移期间两种格式的编解码器
+ *  - 解码时按首字节判断是二进制还是 json，redis中的旧数据不需要清理，过期后自然替换
+ *  - 编码时使用配置的格式，没有注册二进制结构的类型仍然写 json
+ */
+public class MigratingCacheCodec implements CacheCodec {
+
+    private final BinaryCacheCodec binary;
+
+    private final JsonCacheCodec json;
+
+    private final boolean writeBinary;
+
+    public MigratingCacheCodec(BinaryCacheCodec binary, JsonCacheCodec json, boolean writeBinary) {
+        this.binary = binary;
+        this.json = json;
+        this.writeBinary = writeBinary;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return writerFor(value.getClass()).encode(value);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return BinaryCacheCodec.isBinary(bytes) ? binary.decode(bytes, type) : json.decode(bytes, type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(RedisData redisData) {
+        return writerFor(redisData.getData().getClass()).encodeWithExpire(redisData);
+    }
+
+    @Override
+    public RedisData decodeWithExpire(byte[] bytes, Class<?> type) {
+        return BinaryCacheCodec.isBinary(bytes)
+                ? binary.decodeWithExpire(bytes, type) : json.decodeWithExpire(bytes, type);
+    }
+
+    private CacheCodec writerFor(Class<?> type) {
+        return writeBinary && binary.supports(type) ? binary : json;
+    }
+}
@@ -65,6 +65,25 @@ CREATE TABLE `tb_blog_comments`  (
 -- Records of tb_blog_comments
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for tb_feed_archive
+-- ----------------------------
+DROP TABLE IF EXISTS `tb_feed_archive`;
+CREATE TABLE `tb_feed_archive`  (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键',
+  `user_id` bigint(20) UNSIGNED NOT NULL COMMENT '收件箱所属的用户id',
+  `blog_id` bigint(20) UNSIGNED NOT NULL COMMENT '探店笔记id',
+  `publish_time` bigint(20) NOT NULL COMMENT '笔记发布的毫秒时间戳，即收件箱中的score',
+  `create_time` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '归档时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uk_user_blog`(`user_id`, `blog_id`) USING BTREE,
+  INDEX `idx_user_time`(`user_id`, `publish_time`) USING BTREE
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '收件箱超出上限后归档的旧笔记' ROW_FORMAT = Compact;
+
+-- ----------------------------
+-- Records of tb_feed_archive
+-- ----------------------------
+
 -- ----------------------------
 -- Table structure for tb_follow
 -- ----------------------------
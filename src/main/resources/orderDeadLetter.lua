@@ -0,0 +1,21 @@
+-- 确认订单消息并转入同一分片的死信 stream，两步在一个脚本中完成，中途宕机不会丢消息也不会重复写死信
+-- 1.1.消费者组
+local group = ARGV[1]
+-- 1.2.原消息 id
+local id = ARGV[2]
+-- 1.3.ARGV[3]开始是死信消息的 field value
+
+-- 2 数据key，两个 key带有相同的分片 hash tag，在集群中属于同一个 slot
+-- 订单分片 stream的 key
+local streamKey = KEYS[1]
+-- 死信 stream的 key
+local dlqKey = KEYS[2]
+
+-- 3 脚本业务
+-- 3.1 消息已经被确认（其它节点抢先处理），返回0
+if (redis.call('xack', streamKey, group, id) == 0) then
+    return 0
+end
+-- 3.2 写入死信 XADD stream.orders:{order-n}:dlq * k1 v1 k2 v2 ...
+redis.call('xadd', dlqKey, '*', unpack(ARGV, 3))
+return 1
@@ -0,0 +1,19 @@
+-- 从死信 stream删除并重新投递到同一分片的订单 stream，两步在一个脚本中完成，同一条死信只会重放一次
+-- 1.1.死信消息 id
+local id = ARGV[1]
+-- 1.2.ARGV[2]开始是订单消息的 field value
+
+-- 2 数据key，两个 key带有相同的分片 hash tag，在集群中属于同一个 slot
+-- 死信 stream的 key
+local dlqKey = KEYS[1]
+-- 订单分片 stream的 key
+local streamKey = KEYS[2]
+
+-- 3 脚本业务
+-- 3.1 死信已经被删除（其它请求已经重放），返回0
+if (redis.call('xdel', dlqKey, id) == 0) then
+    return 0
+end
+-- 3.2 重新投递 XADD stream.orders:{order-n} * k1 v1 k2 v2 ...
+redis.call('xadd', streamKey, '*', unpack(ARGV, 2))
+return 1
@@ -0,0 +1,26 @@
+-- 滑动窗口限流：当前窗口的计数加上上一个窗口按剩余比例折算的计数，不超过上限时放行并计数
+-- 1.1.窗口长度（毫秒）
+local window = tonumber(ARGV[1])
+-- 1.2.一个窗口内的上限
+local limit = tonumber(ARGV[2])
+-- 1.3.当前时间（毫秒），由调用方传入
+local now = tonumber(ARGV[3])
+
+-- 2 计数 hash，field为窗口序号
+local key = KEYS[1]
+
+local current = math.floor(now / window)
+local counts = redis.call('hmget', key, current, current - 1)
+local count = tonumber(counts[1]) or 0
+local previous = tonumber(counts[2]) or 0
+
+-- 3.1 超过上限，返回0
+local estimate = previous * (1 - (now - current * window) / window) + count
+if (estimate + 1 > limit) then
+    return 0
+end
+-- 3.2 计数并清理更早的窗口，两个窗口之后过期
+redis.call('hincrby', key, current, 1)
+redis.call('hdel', key, current - 2)
+redis.call('pexpire', key, window * 2)
+return 1
@@ -0,0 +1,5 @@
+-- 续期：key中的标示与自己一致时才延长过期时间，返回 1表示续期成功
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    return redis.call('pexpire', KEYS[1], ARGV[2])
+end
+return 0
@@ -5,18 +5,29 @@ local voucherId = ARGV[1]
 local userId = ARGV[2]
 -- 1.3.订单id
 local orderId = ARGV[3]
+-- 1.4.库存分段时传 1：本段库存不足也先记录用户，再到其它段扣库存
+local reserve = ARGV[4]
 
--- 2 数据key
---数据库的 key
-local stockKey = 'secKill:stock:' .. voucherId
--- 订单的key
-local orderKey = 'secKill:order:' .. voucherId
+-- 2 数据key，三个 key带有相同的分片 hash tag，在集群中属于同一个 slot
+-- 库存的 key
+local stockKey = KEYS[1]
+-- 下单用户集合的 key
+local orderKey = KEYS[2]
+-- 订单分片 stream的 key
+local streamKey = KEYS[3]
 
 -- 3 脚本业务
 -- 3.1 判断库存是否充足
 if (tonumber(redis.call('get', stockKey)) <= 0) then
-    --库存不足，返回1
-    return 1
+    if (reserve ~= '1') then
+        --库存不足，返回1
+        return 1
+    end
+    -- 分段库存：判断用户是否下单，没有下过单就先占住，返回3由调用方到其它段扣库存
+    if (redis.call('sadd', orderKey, userId) == 0) then
+        return 2
+    end
+    return 3
 end
 -- 3.2 判断用户是否下单,zset结构 sismember判断集合是否包含某元素，true 返回 1
 if (redis.call('sismember', orderKey, userId) == 1) then
@@ -28,7 +39,7 @@ end
 redis.call('incrby', stockKey, -1)
 -- 3.4 下单保存用户（为了防止用户重复下单）
 redis.call('sadd', orderKey, userId)
--- 3.5 发送消息到消息队列 XADD stream.orders * k1 v1 k2 v2 ...(参数名最好与实体类属性对应，方便反序列化)
-redis.call('xadd','stream.orders','*','userId',userId,'voucherId',voucherId,'id',orderId)
+-- 3.5 发送消息到消息队列 XADD stream.orders:{order-n} * k1 v1 k2 v2 ...(参数名最好与实体类属性对应，方便反序列化)
+redis.call('xadd',streamKey,'*','userId',userId,'voucherId',voucherId,'id',orderId)
 
 return 0
\ No newline at end of file
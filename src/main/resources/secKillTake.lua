@@ -0,0 +1,24 @@
+-- 分段库存：用户主段库存不足时，到其它段扣库存并发送下单消息
+-- 用户已经在主段的下单用户集合中占位，这里不再判断重复下单
+-- 1.1.优惠券id
+local voucherId = ARGV[1]
+-- 1.2.用户id
+local userId = ARGV[2]
+-- 1.3.订单id
+local orderId = ARGV[3]
+
+-- 2 数据key，两个 key带有相同的分片 hash tag
+-- 本段库存的 key
+local stockKey = KEYS[1]
+-- 本段所在分片 stream的 key
+local streamKey = KEYS[2]
+
+-- 3.1 本段库存不足，返回1
+local stock = tonumber(redis.call('get', stockKey))
+if (stock == nil or stock <= 0) then
+    return 1
+end
+-- 3.2 扣库存并发送下单消息
+redis.call('incrby', stockKey, -1)
+redis.call('xadd', streamKey, '*', 'userId', userId, 'voucherId', voucherId, 'id', orderId)
+return 0
@@ -0,0 +1,7 @@
+-- 比较锁中的标示与当前线程的标示是否一致
+if (redis.call('get', KEYS[1]) == ARGV[1]) then
+    -- 一致则释放锁
+    return redis.call('del', KEYS[1])
+end
+-- 不一致则直接返回
+return 0
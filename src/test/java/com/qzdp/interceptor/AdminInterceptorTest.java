@@ -0,0 +1,74 @@
+package com.qzdp.interceptor;
+
+import com.qzdp.config.AdminConfigProperties;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 16:10
+ * @description 运维接口只允许配置的管理员访问
+ */
+public class AdminInterceptorTest {
+
+    private final AdminConfigProperties properties = new AdminConfigProperties();
+
+    private final AdminInterceptor interceptor = new AdminInterceptor(properties);
+
+    @AfterEach
+    public void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    public void adminIsAllowed() throws Exception {
+        properties.setUserIds(Collections.singletonList(1L));
+        login(1L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("POST", "/admin/order/dead-letters/replay"),
+                response, null));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void otherUserIsForbidden() throws Exception {
+        properties.setUserIds(Collections.singletonList(1L));
+        login(1010L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/admin/cache/hot-keys"), response, null));
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    public void emptyAdminListForbidsEveryone() throws Exception {
+        login(1L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/admin/order/dead-letters"), response, null));
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    public void anonymousIsUnauthorized() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/admin/order/dead-letters"), response, null));
+        assertEquals(401, response.getStatus());
+    }
+
+    private static void login(Long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        UserHolder.saveUser(user);
+    }
+}
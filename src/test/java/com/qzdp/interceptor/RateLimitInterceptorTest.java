@@ -0,0 +1,64 @@
+package com.qzdp.interceptor;
+
+import com.qzdp.config.RateLimitConfigProperties;
+import com.qzdp.utils.RateLimiter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 16:40
+ * @description 按 IP限流时客户端地址的识别，只有来自可信代理的请求才读取 X-Forwarded-For
+ */
+public class RateLimitInterceptorTest {
+
+    private final RateLimitConfigProperties properties = new RateLimitConfigProperties();
+
+    @Test
+    public void forwardedHeaderFromClientIsIgnored() {
+        MockHttpServletRequest request = request("203.0.113.7", "1.2.3.4");
+
+        assertEquals("203.0.113.7", interceptor().clientIp(request));
+    }
+
+    @Test
+    public void forwardedHeaderFromTrustedProxyIsUsed() {
+        properties.setTrustedProxies(Arrays.asList("127.0.0.1", "10.0.0.0/8"));
+
+        assertEquals("198.51.100.9", interceptor().clientIp(request("127.0.0.1", "198.51.100.9")));
+        assertEquals("198.51.100.9", interceptor().clientIp(request("10.1.2.3", "198.51.100.9")));
+    }
+
+    @Test
+    public void spoofedLeftmostAddressIsSkipped() {
+        properties.setTrustedProxies(Arrays.asList("127.0.0.1", "10.0.0.0/8"));
+        // 客户端自己填了 1.2.3.4，nginx追加了真实地址，内网负载均衡再追加了 nginx的地址
+        MockHttpServletRequest request = request("127.0.0.1", "1.2.3.4, 198.51.100.9, 10.0.0.5");
+
+        assertEquals("198.51.100.9", interceptor().clientIp(request));
+    }
+
+    @Test
+    public void remoteOutsideTrustedProxiesIsUsed() {
+        properties.setTrustedProxies(Arrays.asList("10.0.0.0/8"));
+
+        assertEquals("::1", interceptor().clientIp(request("::1", "1.2.3.4")));
+        assertEquals("192.168.1.10", interceptor().clientIp(request("192.168.1.10", "1.2.3.4")));
+    }
+
+    private RateLimitInterceptor interceptor() {
+        return new RateLimitInterceptor(mock(RateLimiter.class), properties);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwarded) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/voucher-order/seckill/1");
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", forwarded);
+        return request;
+    }
+}
@@ -0,0 +1,388 @@
+package com.qzdp.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.extension.conditions.update.UpdateChainWrapper;
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.dto.OrderResultDTO;
+import com.qzdp.dto.Result;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.SeckillVoucher;
+import com.qzdp.entity.VoucherOrder;
+import com.qzdp.mapper.SeckillVoucherMapper;
+import com.qzdp.mapper.VoucherOrderMapper;
+import com.qzdp.service.ISeckillVoucherService;
+import com.qzdp.utils.IdGenerator;
+import com.qzdp.utils.LuaScriptRegistry;
+import com.qzdp.utils.OrderResultStore;
+import com.qzdp.utils.OrderShardRouter;
+import com.qzdp.utils.SeckillLocalState;
+import com.qzdp.utils.UserHolder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_GROUP;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 17:00
+ * @description 订单消息的批量落库：重新投递时的幂等、按优惠券合并扣库存与逐个扣减的兜底、确认与处理结果；
+ *  以及分段库存秒杀的流程：主段占位、到其它段扣库存、全部售罄时释放占位
+ *  数据库与 redis用 mock代替，批量插入只记录插入的订单，lua脚本按 KEYS[1]返回预设的结果
+ */
+public class VoucherOrderServiceImplTest {
+
+    private static final String STREAM = "stream.orders:{order-0}";
+
+    private static final long SECKILL_VOUCHER = 10L;
+    private static final long USER = 1011L;
+    private static final long ORDER = 9001L;
+    private static final int SEGMENTS = 8;
+
+    /**
+     * 数据库中各优惠券的库存
+     */
+    private final Map<Long, Integer> stock = new HashMap<>();
+
+    /**
+     * 数据库中已有的订单
+     */
+    private final List<VoucherOrder> existing = new ArrayList<>();
+
+    /**
+     * 执行过的扣库存 sql
+     */
+    private final List<String> deductions = new ArrayList<>();
+
+    private final List<VoucherOrder> saved = new ArrayList<>();
+
+    /**
+     * 各段库存 key对应的脚本返回值，没有设置的段返回 1（库存不足）
+     */
+    private final Map<String, Long> scriptResults = new HashMap<>();
+
+    /**
+     * 执行过的脚本：脚本名 KEYS[1]
+     */
+    private final List<String> scriptCalls = new ArrayList<>();
+
+    private final OrderShardRouter shardRouter = router();
+
+    private SetOperations<String, String> setOps;
+
+    private SeckillLocalState seckillLocalState;
+
+    private StreamOperations<String, Object, Object> streamOps;
+
+    private TransactionTemplate transactionTemplate;
+
+    private OrderResultStore orderResultStore;
+
+    private VoucherOrderServiceImpl service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        VoucherOrderMapper voucherOrderMapper = mock(VoucherOrderMapper.class);
+        when(voucherOrderMapper.selectList(any())).thenAnswer(invocation -> new ArrayList<>(existing));
+        SeckillVoucherMapper seckillVoucherMapper = mock(SeckillVoucherMapper.class);
+        when(seckillVoucherMapper.update(any(), any())).thenAnswer(invocation ->
+                deduct(invocation.getArgument(1)));
+        ISeckillVoucherService seckillVoucherService = mock(ISeckillVoucherService.class);
+        when(seckillVoucherService.update()).thenAnswer(invocation -> new UpdateChainWrapper<>(seckillVoucherMapper));
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOps = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOps);
+        setOps = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOps);
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+        orderResultStore = mock(OrderResultStore.class);
+        seckillLocalState = mock(SeckillLocalState.class);
+        when(seckillLocalState.window(SECKILL_VOUCHER)).thenReturn(
+                new SeckillLocalState.SeckillWindow(0, Long.MAX_VALUE, SEGMENTS));
+        IdGenerator idGenerator = mock(IdGenerator.class);
+        when(idGenerator.nextId("order")).thenReturn(ORDER);
+        LuaScriptRegistry scriptRegistry = mock(LuaScriptRegistry.class, invocation -> {
+            if (!"execute".equals(invocation.getMethod().getName())) {
+                return null;
+            }
+            String stockKey = invocation.<List<String>>getArgument(1).get(0);
+            scriptCalls.add(invocation.getArgument(0) + " " + stockKey);
+            return scriptResults.getOrDefault(stockKey, 1L);
+        });
+
+        VoucherOrderServiceImpl target = new VoucherOrderServiceImpl(mock(ThreadPoolExecutor.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(target, "baseMapper", voucherOrderMapper);
+        ReflectionTestUtils.setField(target, "seckillVoucherService", seckillVoucherService);
+        ReflectionTestUtils.setField(target, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(target, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(target, "orderResultStore", orderResultStore);
+        ReflectionTestUtils.setField(target, "seckillLocalState", seckillLocalState);
+        ReflectionTestUtils.setField(target, "idGenerator", idGenerator);
+        ReflectionTestUtils.setField(target, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(target, "scriptRegistry", scriptRegistry);
+        service = spy(target);
+        // 批量插入需要 SqlSession，这里只记录插入的订单
+        doAnswer(invocation -> saved.addAll(invocation.getArgument(0)))
+                .when(service).saveBatch(anyCollection(), anyInt());
+        UserDTO user = new UserDTO();
+        user.setId(USER);
+        UserHolder.saveUser(user);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    public void redeliveredOrdersAreNotCreatedTwice() {
+        stock.put(7L, 10);
+        // 101已经落库（落库之后、确认之前宕机），用户 1020已经用另一个订单买过
+        existing.add(order(101L, 1010L, 7L));
+        existing.add(order(50L, 1020L, 7L));
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>();
+
+        int created = service.createVoucherOrders(
+                Arrays.asList(order(101L, 1010L, 7L), order(102L, 1020L, 7L), order(103L, 1030L, 7L)), statuses);
+
+        assertEquals(1, created);
+        assertEquals(Collections.singletonList(103L), ids(saved));
+        assertEquals(Collections.singletonList("stock = stock - 1"), deductions);
+        assertEquals(OrderResultStore.Status.SUCCESS, statuses.get(101L));
+        assertEquals(OrderResultStore.Status.DUPLICATE, statuses.get(102L));
+        assertEquals(OrderResultStore.Status.SUCCESS, statuses.get(103L));
+    }
+
+    @Test
+    public void sameUserTwiceInOneBatchIsCreatedOnce() {
+        stock.put(7L, 10);
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>();
+
+        int created = service.createVoucherOrders(Arrays.asList(order(101L, 1010L, 7L), order(102L, 1010L, 7L)),
+                statuses);
+
+        assertEquals(1, created);
+        assertEquals(OrderResultStore.Status.DUPLICATE, statuses.get(102L));
+    }
+
+    @Test
+    public void stockIsDeductedOncePerVoucher() {
+        stock.put(7L, 10);
+        stock.put(8L, 10);
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>();
+
+        int created = service.createVoucherOrders(Arrays.asList(order(101L, 1010L, 7L), order(102L, 1020L, 8L),
+                order(103L, 1030L, 7L), order(104L, 1040L, 7L), order(105L, 1050L, 8L)), statuses);
+
+        assertEquals(5, created);
+        assertEquals(Arrays.asList("stock = stock - 3", "stock = stock - 2"), deductions);
+        assertEquals(7, (int) stock.get(7L));
+        assertEquals(8, (int) stock.get(8L));
+        assertTrue(statuses.values().stream().allMatch(OrderResultStore.Status.SUCCESS::equals));
+        // 一次批量插入，每个订单都有创建时间
+        verify(service).saveBatch(anyCollection(), eq(5));
+        assertTrue(saved.stream().allMatch(order -> order.getCreateTime() != null));
+    }
+
+    @Test
+    public void fallsBackToSingleDeductionsWhenStockIsShort() {
+        // redis与数据库不一致，数据库只剩 2个
+        stock.put(7L, 2);
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>();
+
+        int created = service.createVoucherOrders(
+                Arrays.asList(order(101L, 1010L, 7L), order(102L, 1020L, 7L), order(103L, 1030L, 7L)), statuses);
+
+        assertEquals(2, created);
+        assertEquals(Arrays.asList("stock = stock - 3", "stock = stock - 1", "stock = stock - 1",
+                "stock = stock - 1"), deductions);
+        assertEquals(0, (int) stock.get(7L));
+        assertEquals(Arrays.asList(101L, 102L), ids(saved));
+        assertEquals(OrderResultStore.Status.SOLD_OUT, statuses.get(103L));
+    }
+
+    @Test
+    public void soldOutBatchInsertsNothing() {
+        stock.put(7L, 0);
+        Map<Long, OrderResultStore.Status> statuses = new HashMap<>();
+
+        assertEquals(0, service.createVoucherOrders(Collections.singletonList(order(101L, 1010L, 7L)), statuses));
+
+        verify(service, never()).saveBatch(anyCollection(), anyInt());
+        assertEquals(OrderResultStore.Status.SOLD_OUT, statuses.get(101L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void batchIsAckedOnceAndResultsAreSaved() {
+        stock.put(7L, 1);
+
+        int created = service.handleOrderRecords(STREAM, Arrays.asList(record("1-0", 101L, 1010L, 7L),
+                record("2-0", 102L, 1020L, 7L)));
+
+        assertEquals(1, created);
+        verify(streamOps).acknowledge(STREAM, STREAM_ORDERS_GROUP, RecordId.of("1-0"), RecordId.of("2-0"));
+        ArgumentCaptor<List<OrderResultDTO>> results = ArgumentCaptor.forClass(List.class);
+        verify(orderResultStore).save(results.capture());
+        Map<Long, String> byId = results.getValue().stream()
+                .collect(Collectors.toMap(OrderResultDTO::getOrderId, OrderResultDTO::getStatus));
+        assertEquals(OrderResultStore.Status.SUCCESS.name(), byId.get(101L));
+        assertEquals(OrderResultStore.Status.SOLD_OUT.name(), byId.get(102L));
+    }
+
+    @Test
+    public void failedTransactionLeavesBatchPending() {
+        stock.put(7L, 10);
+        doThrow(new IllegalStateException("db down")).when(service).saveBatch(anyCollection(), anyInt());
+
+        assertThrows(IllegalStateException.class, () -> service.handleOrderRecords(STREAM,
+                Collections.singletonList(record("1-0", 101L, 1010L, 7L))));
+
+        verify(streamOps, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+        verify(orderResultStore, never()).save(anyList());
+    }
+
+    @Test
+    public void resultStoreFailureDoesNotFailBatch() {
+        stock.put(7L, 10);
+        doThrow(new IllegalStateException("redis down")).when(orderResultStore).save(anyList());
+
+        assertEquals(1, service.handleOrderRecords(STREAM, Collections.singletonList(record("1-0", 101L, 1010L, 7L))));
+
+        verify(streamOps).acknowledge(STREAM, STREAM_ORDERS_GROUP, RecordId.of("1-0"));
+    }
+
+    @Test
+    public void segmentedOrderFromHomeSegment() {
+        int home = OrderShardRouter.homeSegment(USER, SEGMENTS);
+        scriptResults.put(stockKey(home), 0L);
+
+        Result result = service.secKillVoucher(SECKILL_VOUCHER);
+
+        assertTrue(result.getSuccess());
+        assertEquals(ORDER, result.getData());
+        assertEquals(Collections.singletonList(LuaScriptRegistry.SECKILL + " " + stockKey(home)), scriptCalls);
+    }
+
+    @Test
+    public void reservedUserTakesStockFromSibling() {
+        // 主段售罄，用户已占位（返回 3），第二个相邻段还有库存
+        int home = OrderShardRouter.homeSegment(USER, SEGMENTS);
+        scriptResults.put(stockKey(home), 3L);
+        scriptResults.put(stockKey((home + 2) % SEGMENTS), 0L);
+
+        Result result = service.secKillVoucher(SECKILL_VOUCHER);
+
+        assertTrue(result.getSuccess());
+        assertEquals(ORDER, result.getData());
+        assertEquals(Arrays.asList(
+                LuaScriptRegistry.SECKILL + " " + stockKey(home),
+                LuaScriptRegistry.SECKILL_TAKE + " " + stockKey((home + 1) % SEGMENTS),
+                LuaScriptRegistry.SECKILL_TAKE + " " + stockKey((home + 2) % SEGMENTS)), scriptCalls);
+        // 扣到了库存，占位保留
+        verify(setOps, never()).remove(anyString(), any());
+        verify(seckillLocalState, never()).markSoldOut(any());
+    }
+
+    @Test
+    public void allSegmentsEmptyReleasesReservation() {
+        int home = OrderShardRouter.homeSegment(USER, SEGMENTS);
+        scriptResults.put(stockKey(home), 3L);
+
+        Result result = service.secKillVoucher(SECKILL_VOUCHER);
+
+        assertFalse(result.getSuccess());
+        assertEquals("库存不足", result.getErrorMsg());
+        // 其它 7个段各尝试一次
+        assertEquals(SEGMENTS, scriptCalls.size());
+        assertEquals(SEGMENTS - 1, scriptCalls.stream()
+                .filter(call -> call.startsWith(LuaScriptRegistry.SECKILL_TAKE + " ")).distinct().count());
+        verify(setOps).remove(shardRouter.orderKey(SECKILL_VOUCHER, home), String.valueOf(USER));
+        verify(seckillLocalState).markSoldOut(SECKILL_VOUCHER);
+    }
+
+    @Test
+    public void duplicateOrderIsRejectedAtHomeSegment() {
+        int home = OrderShardRouter.homeSegment(USER, SEGMENTS);
+        scriptResults.put(stockKey(home), 2L);
+
+        Result result = service.secKillVoucher(SECKILL_VOUCHER);
+
+        assertFalse(result.getSuccess());
+        assertEquals("不能重复下单", result.getErrorMsg());
+        // 不会再去其它段扣库存，也不会释放已有的下单记录
+        assertEquals(Collections.singletonList(LuaScriptRegistry.SECKILL + " " + stockKey(home)), scriptCalls);
+        verify(setOps, never()).remove(anyString(), any());
+        verify(seckillLocalState, never()).markSoldOut(any());
+    }
+
+    /**
+     * update tb_seckill_voucher set stock = stock - k where voucher_id = ? and stock >= k（逐个扣减时 stock > 0）
+     */
+    private int deduct(UpdateWrapper<SeckillVoucher> wrapper) {
+        // voucher_id = #{MPGENVAL1} AND stock >= #{MPGENVAL2}
+        String where = wrapper.getSqlSegment();
+        String sql = wrapper.getSqlSet();
+        deductions.add(sql);
+        Map<String, Object> params = wrapper.getParamNameValuePairs();
+        long voucherId = (Long) params.get("MPGENVAL1");
+        int k = Integer.parseInt(sql.substring(sql.lastIndexOf(' ') + 1));
+        int left = stock.getOrDefault(voucherId, 0);
+        Integer bound = (Integer) params.get("MPGENVAL2");
+        boolean matched = bound == null || (where.contains("stock >=") ? left >= bound : left > bound);
+        if (!matched) {
+            return 0;
+        }
+        stock.put(voucherId, left - k);
+        return 1;
+    }
+
+    private String stockKey(int segment) {
+        return shardRouter.stockKey(SECKILL_VOUCHER, segment);
+    }
+
+    private static OrderShardRouter router() {
+        OrderConsumerConfigProperties properties = new OrderConsumerConfigProperties();
+        properties.setShards(SEGMENTS);
+        return new OrderShardRouter(properties);
+    }
+
+    private static VoucherOrder order(Long id, Long userId, Long voucherId) {
+        return new VoucherOrder().setId(id).setUserId(userId).setVoucherId(voucherId);
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, Long orderId, Long userId, Long voucherId) {
+        Map<Object, Object> value = new HashMap<>();
+        value.put("id", orderId.toString());
+        value.put("userId", userId.toString());
+        value.put("voucherId", voucherId.toString());
+        return StreamRecords.newRecord().in(STREAM).withId(RecordId.of(id)).ofMap(value);
+    }
+
+    private static List<Long> ids(List<VoucherOrder> orders) {
+        return orders.stream().map(VoucherOrder::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,152 @@
+package com.qzdp.utils;
+
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.Blog;
+import com.qzdp.entity.User;
+import com.qzdp.mapper.UserMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 10:40
+ * @description 一页 10篇笔记填充作者与点赞状态的耗时（微秒/页）
+ *  perBlog是原来的做法：每篇笔记一次 getById查询数据库、一次 ZSCORE；batched作者缓存全部命中；
+ *  coldCache作者缓存全部未命中，多一次 IN查询
+ *  redis往返 REDIS_RTT_MICROS、数据库往返 DB_RTT_MICROS用等待模拟，不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class BlogHydrationBenchmark {
+
+    private static final long REDIS_RTT_MICROS = 200;
+
+    private static final long DB_RTT_MICROS = 500;
+
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"perBlog", "batched", "coldCache"})
+    public String mode;
+
+    private List<Blog> blogs;
+
+    private UserMapper userMapper;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private BlogHydrator hydrator;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        blogs = new ArrayList<>(PAGE_SIZE);
+        for (long i = 1; i <= PAGE_SIZE; i++) {
+            Blog blog = new Blog();
+            blog.setId(i);
+            blog.setUserId(100 + i);
+            blogs.add(blog);
+        }
+        UserDTO login = new UserDTO();
+        login.setId(1010L);
+        UserHolder.saveUser(login);
+
+        userMapper = mock(UserMapper.class);
+        when(userMapper.selectById(any())).thenAnswer(invocation -> {
+            await(DB_RTT_MICROS);
+            return user(invocation.getArgument(0));
+        });
+        when(userMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            await(DB_RTT_MICROS);
+            List<User> users = new ArrayList<>();
+            for (Object id : invocation.<Collection<?>>getArgument(0)) {
+                users.add(user((Long) id));
+            }
+            return users;
+        });
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.score(anyString(), any())).thenAnswer(invocation -> {
+            await(REDIS_RTT_MICROS);
+            return null;
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            await(REDIS_RTT_MICROS);
+            return Collections.nCopies(PAGE_SIZE, null);
+        });
+        boolean coldCache = "coldCache".equals(mode);
+        CacheClient cacheClient = mock(CacheClient.class);
+        when(cacheClient.queryBatchWithPassThrough(anyString(), anyCollection(), eq(UserDTO.class), any(),
+                anyLong(), any())).thenAnswer(invocation -> {
+            // MGET
+            await(REDIS_RTT_MICROS);
+            Collection<Long> ids = invocation.getArgument(1);
+            if (coldCache) {
+                Function<Collection<Long>, Map<Long, UserDTO>> fallback = invocation.getArgument(3);
+                Map<Long, UserDTO> users = fallback.apply(ids);
+                // 写回
+                await(REDIS_RTT_MICROS);
+                return new ArrayList<>(users.values());
+            }
+            List<UserDTO> users = new ArrayList<>();
+            for (Long id : ids) {
+                UserDTO user = new UserDTO();
+                user.setId(id);
+                user.setNickName("user" + id);
+                users.add(user);
+            }
+            return users;
+        });
+        hydrator = new BlogHydrator(stringRedisTemplate, cacheClient, userMapper);
+    }
+
+    @Benchmark
+    public List<Blog> hydrate() {
+        if ("perBlog".equals(mode)) {
+            for (Blog blog : blogs) {
+                User user = userMapper.selectById(blog.getUserId());
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+                Double score = stringRedisTemplate.opsForZSet().score(RedisConstants.BLOG_LIKED_KEY + blog.getId(), "1010");
+                blog.setIsLike(score != null);
+            }
+        } else {
+            hydrator.hydrate(blogs);
+        }
+        return blogs;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BlogHydrationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static User user(Long id) {
+        return new User().setId(id).setNickName("user" + id);
+    }
+
+    private static void await(long micros) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+}
@@ -0,0 +1,135 @@
+package com.qzdp.utils;
+
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.Blog;
+import com.qzdp.entity.User;
+import com.qzdp.mapper.UserMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 10:20
+ * @description 笔记列表批量填充作者与点赞状态，缓存与 redis用 mock代替
+ */
+public class BlogHydratorTest {
+
+    private final List<Object> pipelined = new ArrayList<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private CacheClient cacheClient;
+
+    private UserMapper userMapper;
+
+    private BlogHydrator hydrator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        // 用户 1010点赞过 id为偶数的笔记
+        when(connection.zScore(anyString(), eq("1010"))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            pipelined.add(Long.parseLong(key.substring(BLOG_LIKED_KEY.length())) % 2 == 0 ? 1.0 : null);
+            return null;
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelined.clear();
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return new ArrayList<>(pipelined);
+        });
+        userMapper = mock(UserMapper.class);
+        when(userMapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            List<User> users = new ArrayList<>();
+            for (Object id : invocation.<Collection<?>>getArgument(0)) {
+                if ((Long) id != 404L) {
+                    users.add(new User().setId((Long) id).setNickName("user" + id).setIcon("/icon/" + id)
+                            .setPhone("13800000000"));
+                }
+            }
+            return users;
+        });
+        // 缓存全部未命中，直接回源
+        cacheClient = mock(CacheClient.class);
+        when(cacheClient.queryBatchWithPassThrough(eq(CACHE_USER_KEY), anyCollection(), eq(UserDTO.class), any(),
+                anyLong(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(1);
+            Function<Collection<Long>, Map<Long, UserDTO>> fallback = invocation.getArgument(3);
+            Map<Long, UserDTO> found = fallback.apply(ids);
+            List<UserDTO> result = new ArrayList<>();
+            for (Long id : ids) {
+                if (found.containsKey(id)) {
+                    result.add(found.get(id));
+                }
+            }
+            return result;
+        });
+        hydrator = new BlogHydrator(stringRedisTemplate, cacheClient, userMapper);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void fillsAuthorsAndLikesInOneBatch() {
+        login(1010L);
+        List<Blog> blogs = Arrays.asList(blog(1, 7), blog(2, 8), blog(3, 7), blog(4, 404));
+
+        hydrator.hydrate(blogs);
+
+        assertEquals(Arrays.asList("user7", "user8", "user7", null),
+                Arrays.asList(blogs.get(0).getName(), blogs.get(1).getName(), blogs.get(2).getName(),
+                        blogs.get(3).getName()));
+        assertEquals("/icon/8", blogs.get(1).getIcon());
+        assertEquals(Arrays.asList(false, true, false, true),
+                Arrays.asList(blogs.get(0).getIsLike(), blogs.get(1).getIsLike(), blogs.get(2).getIsLike(),
+                        blogs.get(3).getIsLike()));
+        // 作者去重后一次批量查询，点赞一次 pipeline
+        verify(cacheClient).queryBatchWithPassThrough(eq(CACHE_USER_KEY),
+                eq(new LinkedHashSet<>(Arrays.asList(7L, 8L, 404L))), eq(UserDTO.class), any(), anyLong(), any());
+        verify(userMapper, times(1)).selectBatchIds(anyCollection());
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void anonymousReaderSkipsLikes() {
+        List<Blog> blogs = Collections.singletonList(blog(2, 7));
+
+        hydrator.hydrate(blogs);
+
+        assertEquals("user7", blogs.get(0).getName());
+        assertNull(blogs.get(0).getIsLike());
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    private static void login(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        UserHolder.saveUser(user);
+    }
+
+    private static Blog blog(long id, long userId) {
+        Blog blog = new Blog();
+        blog.setId(id);
+        blog.setUserId(userId);
+        return blog;
+    }
+}
@@ -0,0 +1,252 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.RankConfigProperties;
+import com.qzdp.entity.Blog;
+import com.qzdp.mapper.BlogMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 11:40
+ * @description 热门排行的打分、增量更新、滚动分页与重建，redis与数据库用 mock代替
+ */
+public class BlogRankingTest {
+
+    private static final long NOW = 1700000000000L;
+
+    private final RankConfigProperties properties = new RankConfigProperties();
+
+    /**
+     * key -> member -> score
+     */
+    private final Map<String, Map<String, Double>> zsets = new HashMap<>();
+
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+
+    /**
+     * tb_blog，id -> 笔记
+     */
+    private final TreeMap<Long, Blog> table = new TreeMap<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private BlogMapper blogMapper;
+
+    private BlogRanking ranking;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setMaxSize(3);
+        properties.setReconcilePageSize(2);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.reverseRangeByScoreWithScores(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> {
+                    double max = invocation.getArgument(2);
+                    long offset = invocation.getArgument(3);
+                    long count = invocation.getArgument(4);
+                    return sorted(invocation.getArgument(0)).stream()
+                            .filter(tuple -> tuple.getScore() <= max)
+                            .skip(offset).limit(count)
+                            .collect(Collectors.toCollection(LinkedHashSet::new));
+                });
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOps);
+        when(hashOps.entries(anyString())).thenAnswer(invocation ->
+                new HashMap<Object, Object>(hashes.getOrDefault(invocation.<String>getArgument(0), Collections.emptyMap())));
+
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.zAdd(anyString(), anyDouble(), anyString())).thenAnswer(invocation -> {
+            zsets.computeIfAbsent(invocation.getArgument(0), k -> new HashMap<>())
+                    .put(invocation.getArgument(2), invocation.getArgument(1));
+            return null;
+        });
+        when(connection.hSet(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            hashes.computeIfAbsent(invocation.getArgument(0), k -> new HashMap<>())
+                    .put(invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        });
+        when(connection.zRem(anyString(), any())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            for (int i = 1; i < args.length; i++) {
+                zsets.getOrDefault(args[0], new HashMap<>()).remove(args[i]);
+            }
+            return null;
+        });
+        when(connection.hDel(anyString(), any())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            for (int i = 1; i < args.length; i++) {
+                hashes.getOrDefault(args[0], new HashMap<>()).remove(args[i]);
+            }
+            return null;
+        });
+        when(connection.del(ArgumentMatchers.<String>any())).thenAnswer(invocation -> {
+            for (Object key : invocation.getArguments()) {
+                zsets.remove(key);
+                hashes.remove(key);
+            }
+            return null;
+        });
+        doAnswer(invocation -> {
+            String from = invocation.getArgument(0);
+            String to = invocation.getArgument(1);
+            if (zsets.containsKey(from)) {
+                zsets.put(to, zsets.remove(from));
+            }
+            if (hashes.containsKey(from)) {
+                hashes.put(to, hashes.remove(from));
+            }
+            return null;
+        }).when(connection).rename(anyString(), anyString());
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+
+        blogMapper = mock(BlogMapper.class);
+        when(blogMapper.selectOne(any())).thenAnswer(invocation -> {
+            QueryWrapper<Blog> wrapper = invocation.getArgument(0);
+            wrapper.getSqlSegment();
+            return table.get((Long) wrapper.getParamNameValuePairs().get("MPGENVAL1"));
+        });
+        when(blogMapper.selectList(any())).thenAnswer(invocation -> page(invocation.getArgument(0)));
+        ranking = new BlogRanking(properties, stringRedisTemplate, blogMapper, () -> NOW);
+    }
+
+    @Test
+    public void gravityFavoursRecentBlogs() {
+        // 1小时前 10个赞，胜过 2天前 100个赞
+        assertTrue(ranking.score(10, NOW - hours(1), NOW) > ranking.score(100, NOW - hours(48), NOW));
+        properties.setMode("liked");
+        assertEquals(100, ranking.score(100, NOW - hours(48), NOW));
+    }
+
+    @Test
+    public void likeUpdatesScoreIncrementally() {
+        table.put(1L, blog(1, 5, 3));
+        table.put(2L, blog(2, 5, 24 * 30));
+
+        ranking.onLikeChanged(1L);
+        ranking.onLikeChanged(2L);
+
+        assertEquals(ranking.score(5, NOW - hours(3), NOW), zsets.get(BLOG_HOT_KEY).get("1"));
+        // 超出时间窗口的笔记不进入排行
+        assertFalse(zsets.get(BLOG_HOT_KEY).containsKey("2"));
+        assertEquals("5," + (NOW - hours(3)), hashes.get(BLOG_HOT_META_KEY).get("1"));
+    }
+
+    @Test
+    public void scrollSkipsTiesAcrossPages() {
+        Map<String, Double> rank = new HashMap<>();
+        rank.put("1", 9.0);
+        rank.put("2", 5.0);
+        rank.put("3", 5.0);
+        rank.put("4", 5.0);
+        rank.put("5", 1.0);
+        zsets.put(BLOG_HOT_KEY, rank);
+
+        BlogRanking.Page first = ranking.scroll(null, 0, 2);
+        assertEquals(Arrays.asList(1L, 4L), first.getBlogIds());
+        assertEquals(5.0, first.getMinScore());
+        assertEquals(1, first.getOffset());
+
+        BlogRanking.Page second = ranking.scroll(first.getMinScore(), first.getOffset(), 2);
+        assertEquals(Arrays.asList(3L, 2L), second.getBlogIds());
+        // 整页都是 5分，下一页跳过之前的 3条
+        assertEquals(3, second.getOffset());
+
+        BlogRanking.Page third = ranking.scroll(second.getMinScore(), second.getOffset(), 2);
+        assertEquals(Collections.singletonList(5L), third.getBlogIds());
+    }
+
+    @Test
+    public void reconcileRebuildsTopBlogsFromDatabase() {
+        properties.setMode("liked");
+        for (long id = 1; id <= 5; id++) {
+            table.put(id, blog(id, (int) id * 10, 24 * 30));
+        }
+        // 增量更新漏掉的旧数据
+        zsets.computeIfAbsent(BLOG_HOT_KEY, k -> new HashMap<>()).put("99", 1000.0);
+
+        ranking.reconcile();
+
+        Map<String, Double> rank = zsets.get(BLOG_HOT_KEY);
+        assertEquals(new HashSet<>(Arrays.asList("3", "4", "5")), rank.keySet());
+        assertEquals(50.0, rank.get("5"));
+        assertEquals(rank.keySet(), hashes.get(BLOG_HOT_META_KEY).keySet());
+        assertFalse(zsets.containsKey(BLOG_HOT_KEY + ":tmp"));
+    }
+
+    @Test
+    public void recomputeDecaysAndTrims() {
+        hashes.put(BLOG_HOT_META_KEY, new HashMap<>());
+        zsets.put(BLOG_HOT_KEY, new HashMap<>());
+        long[][] blogs = {{1, 1000, 60}, {2, 10, 1}, {3, 50, 10}, {4, 1, 2}, {5, 1000, 24 * 8}};
+        for (long[] b : blogs) {
+            hashes.get(BLOG_HOT_META_KEY).put(String.valueOf(b[0]), b[1] + "," + (NOW - hours(b[2])));
+            zsets.get(BLOG_HOT_KEY).put(String.valueOf(b[0]), 0.0);
+        }
+
+        ranking.recompute();
+
+        // 5超出 7天窗口，剩下 4篇中分数最低的 4被裁掉
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), zsets.get(BLOG_HOT_KEY).keySet());
+        assertEquals(zsets.get(BLOG_HOT_KEY).keySet(), hashes.get(BLOG_HOT_META_KEY).keySet());
+        assertEquals(ranking.score(50, NOW - hours(10), NOW), zsets.get(BLOG_HOT_KEY).get("3"));
+    }
+
+    /**
+     * 模拟 select id, liked, create_time from tb_blog where id > ? [and create_time >= ?] order by id limit n
+     */
+    private List<Blog> page(QueryWrapper<Blog> wrapper) {
+        wrapper.getSqlSegment();
+        long cursor = (Long) wrapper.getParamNameValuePairs().get("MPGENVAL1");
+        return table.tailMap(cursor, false).values().stream()
+                .limit(properties.getReconcilePageSize())
+                .collect(Collectors.toList());
+    }
+
+    private List<ZSetOperations.TypedTuple<String>> sorted(String key) {
+        return zsets.getOrDefault(key, Collections.emptyMap()).entrySet().stream()
+                .map(e -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(e.getKey(), e.getValue()))
+                .sorted(Comparator.<ZSetOperations.TypedTuple<String>>comparingDouble(ZSetOperations.TypedTuple::getScore)
+                        .reversed()
+                        .thenComparing(ZSetOperations.TypedTuple::getValue, Comparator.reverseOrder()))
+                .collect(Collectors.toList());
+    }
+
+    private static Blog blog(long id, int liked, long hoursAgo) {
+        Blog blog = new Blog();
+        blog.setId(id);
+        blog.setLiked(liked);
+        blog.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(NOW - hours(hoursAgo)),
+                ZoneId.systemDefault()));
+        return blog;
+    }
+
+    private static long hours(long hours) {
+        return TimeUnit.HOURS.toMillis(hours);
+    }
+}
@@ -0,0 +1,259 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.BloomFilterConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.mapper.BlogMapper;
+import com.qzdp.mapper.ShopMapper;
+import com.qzdp.mapper.UserMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 14:10
+ * @description 布隆过滤器的构建、最大 id兜底、节点之间的新增 id同步与定期重建，redis与数据库用 mock代替
+ */
+public class BloomFilterRegistryTest {
+
+    /**
+     * tb_shop中已有的 id
+     */
+    private final List<Long> shopIds = new ArrayList<>(Arrays.asList(2L, 4L, 6L, 8L, 10L));
+
+    /**
+     * redis中的字符串 key
+     */
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final BloomFilterConfigProperties properties = new BloomFilterConfigProperties();
+
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>());
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ShopMapper shopMapper;
+
+    @BeforeEach
+    public void setUp() {
+        properties.setType("local");
+        properties.setExpectedInsertions(1000L);
+        properties.setBatchSize(2);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectObjs(any())).thenAnswer(invocation -> {
+            QueryWrapper<Shop> wrapper = invocation.getArgument(0);
+            wrapper.getSqlSegment();
+            long lastId = ((Number) wrapper.getParamNameValuePairs().get("MPGENVAL1")).longValue();
+            return shopIds.stream().filter(id -> id > lastId).limit(properties.getBatchSize())
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void buildsFromDatabaseAndPassesNewerIds() throws InterruptedException {
+        IdBloomFilter filter = build().get(CACHE_SHOP_KEY);
+
+        for (Long id : shopIds) {
+            assertTrue(filter.mightContain(id));
+        }
+        assertFalse(filter.mightContain(3L));
+        // 大于构建时最大 id的可能是其它节点刚刚新增的，不能拦截
+        assertTrue(filter.mightContain(11L));
+        assertTrue(filter.mightContain("11"));
+    }
+
+    @Test
+    public void putIsBroadcastToOtherNodes() throws InterruptedException {
+        BloomFilterRegistry nodeA = build();
+        BloomFilterRegistry nodeB = build();
+        assertFalse(nodeB.get(CACHE_SHOP_KEY).mightContain(3L));
+
+        nodeA.put(CACHE_SHOP_KEY, 3L);
+
+        assertTrue(nodeA.get(CACHE_SHOP_KEY).mightContain(3L));
+        verify(stringRedisTemplate).convertAndSend(BLOOM_PUT_CHANNEL, CACHE_SHOP_KEY + 3);
+        nodeB.onMessage(new DefaultMessage(BLOOM_PUT_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                (CACHE_SHOP_KEY + 3).getBytes(StandardCharsets.UTF_8)), null);
+        assertTrue(nodeB.get(CACHE_SHOP_KEY).mightContain(3L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sharedFilterIsNotBroadcast() {
+        properties.setType("redis");
+        when(stringRedisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        BloomFilterRegistry registry = newRegistry();
+        registry.init();
+
+        registry.put(CACHE_SHOP_KEY, 3L);
+
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    public void localFilterIsRebuiltPeriodically() throws InterruptedException {
+        properties.setRebuildMillis(0L);
+        BloomFilterRegistry registry = build();
+        // 加入过滤器失败（或同步消息丢失）的 id，小于最大 id时会被拦截
+        shopIds.add(0, 3L);
+        assertFalse(registry.get(CACHE_SHOP_KEY).mightContain(3L));
+
+        registry.refresh();
+
+        awaitTrue(() -> registry.get(CACHE_SHOP_KEY).mightContain(3L));
+        assertFalse(registry.get(CACHE_SHOP_KEY).mightContain(5L));
+    }
+
+    @Test
+    public void sharedFilterIsBuiltUnderVersionedKey() throws InterruptedException {
+        properties.setType("redis");
+        ValueOperations<String, String> valueOps = fakeRedis();
+        BloomFilterRegistry registry = build();
+
+        RedisIdBloomFilter filter = (RedisIdBloomFilter) registry.get(CACHE_SHOP_KEY);
+        String current = redis.get(BLOOM_FILTER_KEY + "shop:" + filter.spec() + ":current");
+        assertTrue(current.endsWith(":10"), current);
+        // 位数组的 key包含规格和构建时间
+        assertEquals(BLOOM_FILTER_KEY + "shop:" + filter.spec() + ":" + current.split(":")[0], filter.getKey());
+        assertEquals(10L, filter.getHighWaterMark());
+        verify(valueOps, atLeastOnce()).bitField(eq(filter.getKey()), any());
+    }
+
+    @Test
+    public void sharedFilterReusesCurrentBuild() throws InterruptedException {
+        properties.setType("redis");
+        fakeRedis();
+        String spec = new RedisIdBloomFilter("", properties.getExpectedInsertions(), properties.getFpp(),
+                stringRedisTemplate).spec();
+        long generation = System.currentTimeMillis();
+        redis.put(BLOOM_FILTER_KEY + "shop:" + spec + ":current", generation + ":8");
+
+        RedisIdBloomFilter filter = (RedisIdBloomFilter) build().get(CACHE_SHOP_KEY);
+
+        assertEquals(BLOOM_FILTER_KEY + "shop:" + spec + ":" + generation, filter.getKey());
+        assertEquals(8L, filter.getHighWaterMark());
+        verify(shopMapper, never()).selectObjs(any());
+    }
+
+    @Test
+    public void staleSharedFilterIsRebuilt() throws InterruptedException {
+        properties.setType("redis");
+        fakeRedis();
+        BloomFilterRegistry registry = build();
+        RedisIdBloomFilter filter = (RedisIdBloomFilter) registry.get(CACHE_SHOP_KEY);
+        String oldKey = filter.getKey();
+        shopIds.add(12L);
+        properties.setRebuildMillis(0L);
+        Thread.sleep(2);
+
+        registry.refresh();
+        // 等重建结束再校验 mock，避免和线程池中的调用并发
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(12L, filter.getHighWaterMark());
+        assertNotEquals(oldKey, filter.getKey());
+        // 旧的位数组保留一段时间，等其它节点切换
+        verify(stringRedisTemplate).expire(oldKey, properties.getCheckMillis() * 10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void sharedFilterPassesIdsAboveHighWaterMark() {
+        ValueOperations<String, String> valueOps = fakeRedis();
+        RedisIdBloomFilter filter = new RedisIdBloomFilter("bloom:shop", 1000, 0.01, stringRedisTemplate);
+        filter.use("bloom:shop:1", 10L);
+        filter.markReady();
+        // 位数组是空的
+        when(valueOps.bitField(anyString(), any())).thenAnswer(invocation -> Collections.nCopies(
+                invocation.<BitFieldSubCommands>getArgument(1).getSubCommands().size(), 0L));
+
+        assertEquals(Arrays.asList(false, true, false), filter.mightContainAll(Arrays.asList(3L, 11L, "5")));
+        // 只查询了不大于最大 id的两个 id
+        verify(valueOps).bitField(eq("bloom:shop:1"), argThat(commands ->
+                commands.getSubCommands().size() == 2 * filter.numHashFunctions));
+    }
+
+    @Test
+    public void putFailureIsNotFatal() throws InterruptedException {
+        properties.setType("redis");
+        ValueOperations<String, String> valueOps = fakeRedis();
+        BloomFilterRegistry registry = build();
+        doThrow(new IllegalStateException("redis down")).when(valueOps).bitField(anyString(), any());
+
+        assertDoesNotThrow(() -> registry.put(CACHE_SHOP_KEY, 11L));
+
+        assertEquals(1, (int) meterRegistry.counter("bloom.filter.put.failure", "name", "shop").count());
+        // 新增的 id大于构建时的最大 id，不会被拦截
+        doReturn(null).when(valueOps).bitField(anyString(), any());
+        assertTrue(registry.get(CACHE_SHOP_KEY).mightContain(11L));
+    }
+
+    private BloomFilterRegistry build() throws InterruptedException {
+        BloomFilterRegistry registry = newRegistry();
+        registry.init();
+        // 等三张表都构建完成，之后线程池不再访问 mock
+        for (String keyPrefix : Arrays.asList(CACHE_SHOP_KEY, CACHE_BLOG_KEY, CACHE_USER_KEY)) {
+            awaitTrue(() -> registry.get(keyPrefix).isReady());
+        }
+        return registry;
+    }
+
+    private BloomFilterRegistry newRegistry() {
+        return new BloomFilterRegistry(properties, stringRedisTemplate, meterRegistry, pool,
+                shopMapper, mock(BlogMapper.class), mock(UserMapper.class));
+    }
+
+    /**
+     * 字符串 key保存在 redis中，位数组的读写只记录调用
+     */
+    @SuppressWarnings("unchecked")
+    private ValueOperations<String, String> fakeRedis() {
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString());
+        when(valueOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenAnswer(invocation ->
+                redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(stringRedisTemplate.delete(anyString())).thenAnswer(invocation ->
+                redis.remove(invocation.<String>getArgument(0)) != null);
+        return valueOps;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,157 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 18:20
+ * @description 固定 tomcat线程数下同步查询与异步查询的对比
+ *  - 每次调用由 SERVLET_THREADS个线程发起 REQUESTS个命中缓存的查询，得分是全部返回的耗时（毫秒/批）
+ *  - redis往返用延迟模拟：同步查询阻塞调用线程，异步查询由单独的线程在延迟后完成 future（相当于 lettuce的 IO线程）
+ *  mock只做桩不记录调用，不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CacheClientAsyncBenchmark {
+
+    private static final int SERVLET_THREADS = 8;
+    private static final int REQUESTS = 1000;
+    private static final long REDIS_RTT_MICROS = 2000;
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    private ExecutorService servletThreads;
+
+    private ScheduledExecutorService ioThreads;
+
+    private ThreadPoolExecutor loaderExecutor;
+
+    private CacheClient cacheClient;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        servletThreads = Executors.newFixedThreadPool(SERVLET_THREADS);
+        ioThreads = Executors.newScheduledThreadPool(2);
+        loaderExecutor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100));
+        CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        byte[] bytes = codec.encode(shop);
+
+        RedisTemplate<String, byte[]> cacheRedisTemplate = mock(RedisTemplate.class, withSettings().stubOnly());
+        ValueOperations<String, byte[]> valueOperations = mock(ValueOperations.class, withSettings().stubOnly());
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(startsWith("cache:shop:1"))).thenAnswer(invocation -> {
+            sleepMicros(REDIS_RTT_MICROS);
+            return bytes;
+        });
+
+        RedisClusterAsyncCommands<String, byte[]> asyncCommands =
+                mock(RedisClusterAsyncCommands.class, withSettings().stubOnly());
+        when(asyncCommands.get(anyString())).thenAnswer(invocation -> {
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            ioThreads.schedule(() -> future.complete(bytes), REDIS_RTT_MICROS, TimeUnit.MICROSECONDS);
+            RedisFuture<byte[]> redisFuture = mock(RedisFuture.class, withSettings().stubOnly());
+            when(redisFuture.toCompletableFuture()).thenReturn(future);
+            return redisFuture;
+        });
+
+        // 关闭热点探测，避免本地副本影响对比
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class, withSettings().stubOnly());
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate, asyncCommands, codec,
+                new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry),
+                mock(LocalCache.class, withSettings().stubOnly()),
+                mock(BloomFilterRegistry.class, withSettings().stubOnly()),
+                new HotKeyDetector(hotKeyProperties, stringRedisTemplate, meterRegistry),
+                meterRegistry, loaderExecutor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        servletThreads.shutdownNow();
+        ioThreads.shutdownNow();
+        loaderExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int batch() throws Exception {
+        return "sync".equals(mode) ? runSync() : runAsync();
+    }
+
+    private int runSync() throws Exception {
+        List<Future<Shop>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(servletThreads.submit(() -> cacheClient.queryWithPassThrough(
+                    "cache:shop:", 1L, Shop.class, id -> null, 30L, TimeUnit.MINUTES)));
+        }
+        int hits = 0;
+        for (Future<Shop> future : futures) {
+            if (future.get() != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private int runAsync() throws Exception {
+        List<Future<CompletableFuture<Shop>>> submits = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            // servlet线程只负责发起查询，立即返回
+            submits.add(servletThreads.submit(() -> cacheClient.queryWithPassThroughAsync(
+                    "cache:shop:", 1L, Shop.class, id -> null, 30L, TimeUnit.MINUTES)));
+        }
+        int hits = 0;
+        for (Future<CompletableFuture<Shop>> submit : submits) {
+            if (submit.get().get() != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CacheClientAsyncBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static void sleepMicros(long micros) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+}
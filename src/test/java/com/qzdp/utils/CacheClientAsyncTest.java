@@ -0,0 +1,120 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 19:40
+ * @description 异步查询的功能测试，吞吐对比见 CacheClientAsyncBenchmark
+ *  redis往返用延迟模拟：同步查询阻塞调用线程，异步查询由单独的线程在延迟后完成 future（相当于 lettuce的 IO线程）
+ */
+public class CacheClientAsyncTest {
+
+    private static final long REDIS_RTT_MICROS = 2000;
+
+    private final CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private ScheduledExecutorService ioThreads;
+
+    private ThreadPoolExecutor loaderExecutor;
+
+    private CacheClient cacheClient;
+
+    private final AtomicInteger dbLoads = new AtomicInteger();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ioThreads = Executors.newScheduledThreadPool(2);
+        loaderExecutor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(100));
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        byte[] bytes = codec.encode(shop);
+
+        RedisTemplate<String, byte[]> cacheRedisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, byte[]> valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(startsWith("cache:shop:1"))).thenAnswer(invocation -> {
+            sleepMicros(REDIS_RTT_MICROS);
+            return bytes;
+        });
+
+        RedisClusterAsyncCommands<String, byte[]> asyncCommands = mock(RedisClusterAsyncCommands.class);
+        when(asyncCommands.get(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            CompletableFuture<byte[]> future = new CompletableFuture<>();
+            ioThreads.schedule(() -> future.complete("cache:shop:1".equals(key) ? bytes : null),
+                    REDIS_RTT_MICROS, TimeUnit.MICROSECONDS);
+            RedisFuture<byte[]> redisFuture = mock(RedisFuture.class);
+            when(redisFuture.toCompletableFuture()).thenReturn(future);
+            return redisFuture;
+        });
+
+        LocalCache localCache = mock(LocalCache.class);
+        BloomFilterRegistry bloomFilters = mock(BloomFilterRegistry.class);
+        // 关闭热点探测，避免本地副本影响对比
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExpirePolicy expirePolicy = new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry);
+        HotKeyDetector hotKeyDetector = new HotKeyDetector(hotKeyProperties, mock(StringRedisTemplate.class), meterRegistry);
+        cacheClient = new CacheClient(mock(StringRedisTemplate.class), cacheRedisTemplate, asyncCommands, codec,
+                expirePolicy, localCache, bloomFilters, hotKeyDetector, meterRegistry, loaderExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ioThreads.shutdownNow();
+        loaderExecutor.shutdownNow();
+    }
+
+    @Test
+    public void missLoadsOnLoaderExecutor() throws Exception {
+        Shop shop = cacheClient.queryWithPassThroughAsync("cache:shop:", 2L, Shop.class, id -> {
+            dbLoads.incrementAndGet();
+            assertTrue(Thread.currentThread().getName().startsWith("pool-"));
+            return null;
+        }, 30L, TimeUnit.MINUTES).get(1, TimeUnit.SECONDS);
+        assertEquals(null, shop);
+        assertEquals(1, dbLoads.get());
+    }
+
+    @Test
+    public void hitCompletesWithoutLoading() throws Exception {
+        Shop shop = cacheClient.queryWithPassThroughAsync("cache:shop:", 1L, Shop.class, id -> {
+            dbLoads.incrementAndGet();
+            return null;
+        }, 30L, TimeUnit.MINUTES).get(1, TimeUnit.SECONDS);
+        assertEquals(1L, shop.getId());
+        assertEquals(0, dbLoads.get());
+    }
+
+    private static void sleepMicros(long micros) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+}
@@ -0,0 +1,200 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 19:00
+ * @description 批量查询：按传入顺序返回、未命中的 id一次回源、通过 pipeline写回，redis用 mock代替
+ */
+public class CacheClientBatchTest {
+
+    private final CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * redis中的缓存，没有的 key视为未命中
+     */
+    private final Map<String, byte[]> redis = new HashMap<>();
+
+    /**
+     * 数据库中的商铺
+     */
+    private final Map<Long, Shop> database = new HashMap<>();
+
+    /**
+     * 每次回源查询的 id
+     */
+    private final List<List<Long>> dbQueries = new ArrayList<>();
+
+    /**
+     * pipeline写回的值，key -> 值
+     */
+    private final Map<String, byte[]> written = new LinkedHashMap<>();
+
+    private ValueOperations<String, byte[]> valueOperations;
+
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    private BloomFilterRegistry bloomFilters;
+
+    private ThreadPoolExecutor loaderExecutor;
+
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        loaderExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+        cacheRedisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(anyList())).thenAnswer(invocation -> invocation.<List<String>>getArgument(0)
+                .stream().map(redis::get).collect(Collectors.toList()));
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(stringCommands.set(any(byte[].class), any(byte[].class), any(Expiration.class),
+                any(RedisStringCommands.SetOption.class))).thenAnswer(invocation -> {
+            written.put(new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8),
+                    invocation.getArgument(1));
+            return true;
+        });
+        when(cacheRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<?>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+        bloomFilters = mock(BloomFilterRegistry.class);
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate, mock(RedisClusterAsyncCommands.class),
+                codec, new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry), mock(LocalCache.class),
+                bloomFilters, new HotKeyDetector(hotKeyProperties, stringRedisTemplate, meterRegistry),
+                meterRegistry, loaderExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    @Test
+    public void mixedHitsMissesAndNullsKeepInputOrder() {
+        // 1、5命中，2是缓存的空值，3、4未命中，其中 4在数据库中也不存在
+        cache(1L, shop(1L));
+        redis.put(CACHE_SHOP_KEY + 2, new byte[0]);
+        cache(5L, shop(5L));
+        database.put(3L, shop(3L));
+
+        List<Shop> shops = query(3L, 1L, 4L, 2L, 5L);
+
+        assertEquals(Arrays.asList(3L, 1L, 5L), shops.stream().map(Shop::getId).collect(Collectors.toList()));
+        // 只有未命中的 id回源，且只查询一次
+        assertEquals(Collections.singletonList(Arrays.asList(3L, 4L)), dbQueries);
+        // 查到的值和空值通过同一个 pipeline写回
+        verify(cacheRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        assertEquals(new HashSet<>(Arrays.asList(CACHE_SHOP_KEY + 3, CACHE_SHOP_KEY + 4)), written.keySet());
+        assertEquals(3L, codec.decode(written.get(CACHE_SHOP_KEY + 3), Shop.class).getId());
+        assertEquals(0, written.get(CACHE_SHOP_KEY + 4).length);
+    }
+
+    @Test
+    public void allHitsSkipDatabase() {
+        cache(1L, shop(1L));
+        cache(2L, shop(2L));
+        // 缓存的空值也算命中
+        redis.put(CACHE_SHOP_KEY + 3, new byte[0]);
+
+        List<Shop> shops = query(2L, 3L, 1L);
+
+        assertEquals(Arrays.asList(2L, 1L), shops.stream().map(Shop::getId).collect(Collectors.toList()));
+        assertTrue(dbQueries.isEmpty());
+        verify(cacheRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    public void undecodableValueIsReloadedAndOverwritten() {
+        byte[] stale = codec.encode(shop(1L));
+        stale[2] = 100;
+        redis.put(CACHE_SHOP_KEY + 1, stale);
+        database.put(1L, shop(1L));
+
+        List<Shop> shops = query(1L);
+
+        assertEquals(1L, shops.get(0).getId());
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), dbQueries);
+        assertEquals(1L, codec.decode(written.get(CACHE_SHOP_KEY + 1), Shop.class).getId());
+        assertEquals(1, (int) meterRegistry.counter("cache.decode.failure", "prefix", CACHE_SHOP_KEY).count());
+    }
+
+    @Test
+    public void bloomFilterDropsAbsentIds() {
+        IdBloomFilter filter = mock(IdBloomFilter.class);
+        when(filter.mightContainAll(anyList())).thenReturn(Arrays.asList(true, false));
+        when(bloomFilters.get(CACHE_SHOP_KEY)).thenReturn(filter);
+        cache(1L, shop(1L));
+
+        List<Shop> shops = query(1L, 2L);
+
+        assertEquals(1, shops.size());
+        verify(valueOperations).multiGet(Collections.singletonList(CACHE_SHOP_KEY + 1));
+        assertTrue(dbQueries.isEmpty());
+    }
+
+    private List<Shop> query(Long... ids) {
+        return cacheClient.queryBatchWithPassThrough(CACHE_SHOP_KEY, Arrays.asList(ids), Shop.class, misses -> {
+            dbQueries.add(new ArrayList<>(misses));
+            Map<Long, Shop> loaded = new HashMap<>();
+            for (Long id : misses) {
+                if (database.containsKey(id)) {
+                    loaded.put(id, database.get(id));
+                }
+            }
+            return loaded;
+        }, 30L, TimeUnit.MINUTES);
+    }
+
+    private void cache(Long id, Shop shop) {
+        redis.put(CACHE_SHOP_KEY + id, codec.encode(shop));
+    }
+
+    private static Shop shop(Long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("商铺" + id);
+        return shop;
+    }
+}
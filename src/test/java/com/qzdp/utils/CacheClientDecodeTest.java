@@ -0,0 +1,178 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.qzdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 18:00
+ * @description 无法解码的缓存值（结构升级后的旧数据）删除后回源重建，redis用 mock代替
+ */
+public class CacheClientDecodeTest {
+
+    private static final String KEY = CACHE_SHOP_KEY + 1;
+
+    /**
+     * 没有注册过的结构编号，相当于结构升级之前写入的数据
+     */
+    private static final byte STALE_SCHEMA_ID = 100;
+
+    private final CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger dbLoads = new AtomicInteger();
+
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    private ValueOperations<String, byte[]> valueOperations;
+
+    private RedisClusterAsyncCommands<String, byte[]> asyncCommands;
+
+    private ThreadPoolExecutor loaderExecutor;
+
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        loaderExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+        cacheRedisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> lockOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(lockOperations);
+        when(lockOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        asyncCommands = mock(RedisClusterAsyncCommands.class);
+        when(asyncCommands.del(ArgumentMatchers.<String>any())).thenAnswer(invocation -> redisFuture(1L));
+
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate, asyncCommands, codec,
+                new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry), mock(LocalCache.class),
+                mock(BloomFilterRegistry.class), new HotKeyDetector(hotKeyProperties, stringRedisTemplate, meterRegistry),
+                meterRegistry, loaderExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    @Test
+    public void staleSchemaIsReloadedFromDatabase() {
+        when(valueOperations.get(KEY)).thenReturn(stale(codec.encode(shop("旧的名称"))));
+
+        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, 1L, Shop.class, this::load, 30L, TimeUnit.MINUTES);
+
+        assertEquals("103茶餐厅", shop.getName());
+        assertEquals(1, dbLoads.get());
+        verify(cacheRedisTemplate).delete(KEY);
+        // 重新写入当前结构
+        assertEquals("103茶餐厅", codec.decode(written(), Shop.class).getName());
+        assertEquals(1, (int) meterRegistry.counter("cache.decode.failure", "prefix", CACHE_SHOP_KEY).count());
+    }
+
+    @Test
+    public void staleSchemaIsReloadedWithMutex() {
+        when(valueOperations.get(KEY)).thenReturn(stale(codec.encode(shop("旧的名称")))).thenReturn(null);
+
+        Shop shop = cacheClient.queryWithMutex(CACHE_SHOP_KEY, 1L, Shop.class, this::load, 30L, TimeUnit.MINUTES);
+
+        assertEquals("103茶餐厅", shop.getName());
+        assertEquals(1, dbLoads.get());
+        verify(cacheRedisTemplate).delete(KEY);
+    }
+
+    @Test
+    public void staleLogicalExpireEntryIsReloaded() {
+        // 逻辑过期的 key在 redis中不会过期，不回源的话之后每次读取都会失败
+        RedisData redisData = new RedisData();
+        redisData.setData(shop("旧的名称"));
+        redisData.setExpireTime(LocalDateTime.now().plusMinutes(30));
+        when(valueOperations.get(KEY)).thenReturn(stale(codec.encodeWithExpire(redisData)));
+
+        Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, 1L, Shop.class, this::load, 30L,
+                TimeUnit.MINUTES);
+
+        assertEquals("103茶餐厅", shop.getName());
+        assertEquals(1, dbLoads.get());
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(valueOperations).set(eq(KEY), written.capture());
+        assertEquals("103茶餐厅", ((Shop) codec.decodeWithExpire(written.getValue(), Shop.class).getData()).getName());
+    }
+
+    @Test
+    public void truncatedValueIsReloadedAsync() throws Exception {
+        byte[] encoded = codec.encode(shop("旧的名称"));
+        byte[] truncated = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        when(asyncCommands.get(KEY)).thenAnswer(invocation -> redisFuture(truncated));
+
+        Shop shop = cacheClient.queryWithPassThroughAsync(CACHE_SHOP_KEY, 1L, Shop.class, this::load, 30L,
+                TimeUnit.MINUTES).get(1, TimeUnit.SECONDS);
+
+        assertEquals("103茶餐厅", shop.getName());
+        assertEquals(1, dbLoads.get());
+        verify(asyncCommands).del(KEY);
+    }
+
+    private Shop load(Long id) {
+        dbLoads.incrementAndGet();
+        return shop("103茶餐厅");
+    }
+
+    private byte[] written() {
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(valueOperations).set(eq(KEY), written.capture(), anyLong(), any(TimeUnit.class));
+        return written.getValue();
+    }
+
+    /**
+     * 把头部的结构编号改成没有注册过的编号
+     */
+    private static byte[] stale(byte[] bytes) {
+        byte[] copy = bytes.clone();
+        copy[2] = STALE_SCHEMA_ID;
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> RedisFuture<T> redisFuture(T value) {
+        RedisFuture<T> future = mock(RedisFuture.class);
+        when(future.toCompletableFuture()).thenReturn(CompletableFuture.completedFuture(value));
+        return future;
+    }
+
+    private static Shop shop(String name) {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName(name);
+        return shop;
+    }
+}
@@ -0,0 +1,154 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.qzdp.utils.CacheClient.XFETCH_MIN_DELTA_MILLIS;
+import static com.qzdp.utils.CacheClient.shouldRefreshEarly;
+import static com.qzdp.utils.RedisConstants.CACHE_SHOP_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 14:40
+ * @description 逻辑过期缓存的概率提前刷新（XFetch），redis用 mock代替
+ */
+public class CacheClientRefreshTest {
+
+    private final CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger dbLoads = new AtomicInteger();
+
+    private ValueOperations<String, byte[]> valueOperations;
+
+    private ThreadPoolExecutor loaderExecutor;
+
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        loaderExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+        RedisTemplate<String, byte[]> cacheRedisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> lockOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(lockOperations);
+        when(lockOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate, mock(RedisClusterAsyncCommands.class),
+                codec, new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry), mock(LocalCache.class),
+                mock(BloomFilterRegistry.class), new HotKeyDetector(hotKeyProperties, stringRedisTemplate, meterRegistry),
+                meterRegistry, loaderExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    @Test
+    public void zeroDeltaUsesFloor() {
+        // -ln(0.5) * 100ms ≈ 69ms
+        assertTrue(shouldRefreshEarly(50, 0L, 0.5));
+        assertTrue(shouldRefreshEarly(50, null, 0.5));
+        assertFalse(shouldRefreshEarly(100, 0L, 0.5));
+        // 远离过期时间，随机数再小也不会提前刷新
+        assertFalse(shouldRefreshEarly(TimeUnit.MINUTES.toMillis(30), 0L, 1e-9));
+    }
+
+    @Test
+    public void slowerRebuildRefreshesEarlier() {
+        assertFalse(shouldRefreshEarly(1000, 100L, 0.5));
+        assertTrue(shouldRefreshEarly(1000, 2000L, 0.5));
+    }
+
+    @Test
+    public void refreshProbabilityAtDeltaIsAboutOneOverE() {
+        // 剩余时间等于 delta时每次读取提前刷新的概率为 1/e ≈ 0.368
+        int refreshed = 0;
+        int reads = 10000;
+        for (int i = 0; i < reads; i++) {
+            if (shouldRefreshEarly(XFETCH_MIN_DELTA_MILLIS, 0L, 1 - ThreadLocalRandom.current().nextDouble())) {
+                refreshed++;
+            }
+        }
+        double ratio = (double) refreshed / reads;
+        assertTrue(ratio > 0.3 && ratio < 0.45, "refreshed " + refreshed + "/" + reads + ", ratio=" + ratio);
+    }
+
+    @Test
+    public void warmedEntryIsRefreshedBeforeExpiry() throws InterruptedException {
+        // 预热写入的缓存 delta为 0，即将过期；剩余 200ms时每次读取提前刷新的概率约为 e^-2，
+        // 留足时间避免首次调用的类加载耗时跨过过期时间，走成普通的过期重建
+        stubEntry(LocalDateTime.now().plus(200, ChronoUnit.MILLIS));
+        CountDownLatch rebuilt = new CountDownLatch(1);
+
+        for (int i = 0; i < 1000 && dbLoads.get() == 0; i++) {
+            Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, 1L, Shop.class, id -> {
+                dbLoads.incrementAndGet();
+                rebuilt.countDown();
+                return shop(id);
+            }, 30L, TimeUnit.MINUTES, RefreshMode.EARLY);
+            assertEquals(1L, shop.getId());
+        }
+
+        assertTrue(rebuilt.await(5, TimeUnit.SECONDS));
+        assertTrue(meterRegistry.counter("cache.refresh.early", "prefix", CACHE_SHOP_KEY).count() >= 1);
+    }
+
+    @Test
+    public void onExpireModeWaitsForExpiry() throws InterruptedException {
+        stubEntry(LocalDateTime.now().plus(30, ChronoUnit.MILLIS));
+        for (int i = 0; i < 100; i++) {
+            cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, 1L, Shop.class, id -> {
+                dbLoads.incrementAndGet();
+                return shop(id);
+            }, 30L, TimeUnit.MINUTES);
+        }
+        loaderExecutor.shutdown();
+        loaderExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        // 可能恰好跨过过期时间触发一次正常重建，但不会有提前刷新
+        assertEquals(0, (int) meterRegistry.counter("cache.refresh.early", "prefix", CACHE_SHOP_KEY).count());
+    }
+
+    private void stubEntry(LocalDateTime expireTime) {
+        RedisData redisData = new RedisData();
+        redisData.setData(shop(1L));
+        redisData.setExpireTime(expireTime);
+        redisData.setDelta(0L);
+        when(valueOperations.get(CACHE_SHOP_KEY + 1)).thenReturn(codec.encodeWithExpire(redisData));
+    }
+
+    private static Shop shop(Long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("103茶餐厅");
+        return shop;
+    }
+}
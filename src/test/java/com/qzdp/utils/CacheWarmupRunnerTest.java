@@ -0,0 +1,185 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.WarmupConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.mapper.ShopMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 17:40
+ * @description 启动预热：分批读取商铺、按类型写入地理位置索引、写入缓存，以及超时后不再阻塞启动
+ *  数据库与 redis用 mock代替
+ */
+public class CacheWarmupRunnerTest {
+
+    private static final int SHOPS = 5;
+
+    private final WarmupConfigProperties properties = new WarmupConfigProperties();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<Long> cursors = new ArrayList<>();
+
+    /**
+     * 各类型的地理位置索引，key -> 商铺 id
+     */
+    private final Map<String, Set<String>> geo = new HashMap<>();
+
+    private ShopMapper shopMapper;
+
+    private CacheClient cacheClient;
+
+    private CacheWarmupRunner runner;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setEnabled(true);
+        properties.setBatchSize(2);
+        properties.setDeadlineSeconds(5);
+        shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectCount(any())).thenReturn(SHOPS);
+        when(shopMapper.selectList(any())).thenAnswer(invocation -> page(invocation.getArgument(0)));
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.getStringSerializer()).thenReturn(RedisSerializer.string());
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisGeoCommands geoCommands = mock(RedisGeoCommands.class);
+        when(connection.geoCommands()).thenReturn(geoCommands);
+        when(geoCommands.geoAdd(any(byte[].class), anyMap())).thenAnswer(invocation -> {
+            Map<byte[], Point> locations = invocation.getArgument(1);
+            geo.computeIfAbsent(new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8),
+                    key -> new HashSet<>()).addAll(locations.keySet().stream()
+                    .map(member -> new String(member, StandardCharsets.UTF_8)).collect(Collectors.toList()));
+            return (long) locations.size();
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return Collections.emptyList();
+        });
+        cacheClient = mock(CacheClient.class);
+        runner = new CacheWarmupRunner(properties, shopMapper, stringRedisTemplate, cacheClient, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void warmsEveryShopBatchByBatch() {
+        runner.run(new DefaultApplicationArguments());
+
+        assertEquals(Arrays.asList(0L, 2L, 4L, 5L), cursors);
+        ArgumentCaptor<Map<String, ?>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(cacheClient, times(3)).setAll(batches.capture(), eq(CACHE_SHOP_TTL), eq(TimeUnit.MINUTES));
+        Set<String> keys = batches.getAllValues().stream().flatMap(batch -> batch.keySet().stream())
+                .collect(Collectors.toSet());
+        assertEquals(LongStream.rangeClosed(1, SHOPS).mapToObj(id -> CACHE_SHOP_KEY + id).collect(Collectors.toSet()),
+                keys);
+        verify(cacheClient, never()).setAllWithLogicalExpire(anyMap(), anyLong(), any());
+        assertEquals(SHOPS, meterRegistry.get("cache.warmup.progress").gauge().value());
+        assertEquals(SHOPS, meterRegistry.get("cache.warmup.total").gauge().value());
+    }
+
+    @Test
+    public void geoIndexIsGroupedByTypeAndSkipsShopsWithoutLocation() {
+        runner.run(new DefaultApplicationArguments());
+
+        // 奇数 id为类型 1，偶数为类型 2，id为 5的商铺没有坐标
+        assertEquals(new HashSet<>(Arrays.asList("1", "3")), geo.get(SHOP_GEO_KEY + 1));
+        assertEquals(new HashSet<>(Arrays.asList("2", "4")), geo.get(SHOP_GEO_KEY + 2));
+    }
+
+    @Test
+    public void logicalModeWritesLogicalExpire() {
+        properties.setCacheMode("logical");
+
+        runner.run(new DefaultApplicationArguments());
+
+        verify(cacheClient, times(3)).setAllWithLogicalExpire(anyMap(), eq(CACHE_SHOP_TTL), eq(TimeUnit.MINUTES));
+        verify(cacheClient, never()).setAll(anyMap(), anyLong(), any());
+    }
+
+    @Test
+    public void disabledWarmupDoesNothing() {
+        properties.setEnabled(false);
+
+        runner.run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(shopMapper, cacheClient);
+    }
+
+    @Test
+    public void slowWarmupStopsBlockingAfterDeadline() throws InterruptedException {
+        properties.setDeadlineSeconds(1);
+        CountDownLatch database = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            database.await();
+            return page(invocation.getArgument(0));
+        }).when(shopMapper).selectList(any());
+
+        long begin = System.nanoTime();
+        runner.run(new DefaultApplicationArguments());
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        assertTrue(waited >= 900 && waited < 3000, "waited=" + waited);
+        verify(cacheClient, never()).setAll(anyMap(), anyLong(), any());
+        // 不再阻塞启动，预热在后台继续完成
+        database.countDown();
+        verify(cacheClient, timeout(5000).times(3)).setAll(anyMap(), anyLong(), any());
+    }
+
+    @Test
+    public void failedWarmupDoesNotFailStartup() {
+        doThrow(new IllegalStateException("db down")).when(shopMapper).selectList(any());
+
+        assertDoesNotThrow(() -> runner.run(new DefaultApplicationArguments()));
+
+        verify(cacheClient, never()).setAll(anyMap(), anyLong(), any());
+    }
+
+    /**
+     * id > ? order by id limit batchSize
+     */
+    private List<Shop> page(QueryWrapper<Shop> wrapper) {
+        wrapper.getSqlSegment();
+        long cursor = ((Number) wrapper.getParamNameValuePairs().get("MPGENVAL1")).longValue();
+        cursors.add(cursor);
+        return LongStream.rangeClosed(cursor + 1, Math.min(SHOPS, cursor + properties.getBatchSize()))
+                .mapToObj(CacheWarmupRunnerTest::shop)
+                .collect(Collectors.toList());
+    }
+
+    private static Shop shop(long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(id % 2 == 1 ? 1L : 2L);
+        if (id != SHOPS) {
+            shop.setX(120.149192 + id / 1000.0);
+            shop.setY(30.316078);
+        }
+        return shop;
+    }
+}
@@ -0,0 +1,65 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:55
+ * @description 模拟预热时一次写入 10000个 key，比较各策略下同一秒过期的 key数
+ */
+public class ExpirePolicyTest {
+
+    private static final int KEYS = 10000;
+
+    private static final long BASE_SECONDS = TimeUnit.MINUTES.toSeconds(30);
+
+    @Test
+    public void fixedExpiresTogether() {
+        ExpirePolicy policy = policy("fixed");
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(BASE_SECONDS, policy.ttlSeconds("cache:shop:" + i, 30, TimeUnit.MINUTES));
+        }
+    }
+
+    @Test
+    public void jitterSpreadsExpiry() {
+        for (String mode : new String[]{"uniform", "exponential"}) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            ExpirePolicy policy = policy(mode, registry);
+            int[] perSecond = new int[(int) (BASE_SECONDS * 2)];
+            Set<Long> distinct = new HashSet<>();
+            for (int i = 0; i < KEYS; i++) {
+                long ttl = policy.ttlSeconds("cache:shop:" + i, 30, TimeUnit.MINUTES);
+                assertTrue(ttl >= BASE_SECONDS && ttl <= BASE_SECONDS * 1.4);
+                perSecond[(int) ttl]++;
+                distinct.add(ttl);
+            }
+            int peak = 0;
+            for (int count : perSecond) {
+                peak = Math.max(peak, count);
+            }
+            DistributionSummary summary = registry.get("cache.expire.ttl").tag("prefix", "cache:shop:").summary();
+            assertEquals(KEYS, summary.count(), mode);
+            assertTrue(peak < KEYS / 20, mode + ": distinct seconds=" + distinct.size() + ", peak keys per second=" + peak);
+        }
+    }
+
+    private ExpirePolicy policy(String mode) {
+        return policy(mode, new SimpleMeterRegistry());
+    }
+
+    private ExpirePolicy policy(String mode, SimpleMeterRegistry registry) {
+        CacheExpireConfigProperties properties = new CacheExpireConfigProperties();
+        properties.setMode(mode);
+        return new ExpirePolicy(properties, registry);
+    }
+}
@@ -0,0 +1,261 @@
+package com.qzdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.Follow;
+import com.qzdp.mapper.FeedArchiveMapper;
+import com.qzdp.mapper.FollowMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 07:40
+ * @description 笔记推送的分页写入与断点续推，数据库与 redis用 mock代替
+ */
+public class FeedFanoutWorkerTest {
+
+    private static final long AUTHOR = 1L;
+    private static final long BLOG = 99L;
+    private static final int FOLLOWERS = 2500;
+
+    private final FeedConfigProperties properties = new FeedConfigProperties();
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private final Set<String> inboxes = new HashSet<>();
+
+    private final List<Long> cursors = new ArrayList<>();
+
+    /**
+     * 当前 pipeline中各命令的返回值
+     */
+    private final List<Object> pipelined = new ArrayList<>();
+
+    private FeedTimeline feedTimeline;
+
+    private SetOperations<String, String> setOps;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private StreamOperations<String, Object, Object> streamOps;
+
+    private FeedFanoutWorker worker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setFanoutPageSize(1000);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString(), anyLong(), any());
+        when(stringRedisTemplate.delete(anyString())).thenAnswer(invocation ->
+                values.remove(invocation.<String>getArgument(0)) != null);
+        streamOps = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOps);
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.zAdd(anyString(), anyDouble(), anyString())).thenAnswer(invocation -> {
+            pipelined.add(inboxes.add(invocation.getArgument(0)));
+            return null;
+        });
+        // 用户 id小于 10的收件箱已经写满
+        when(connection.zCard(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            pipelined.add(Long.parseLong(key.substring(FEED_KEY.length())) < 10 ? 1200L : 10L);
+            return null;
+        });
+        // 用户 id为偶数的收件箱存在
+        when(connection.exists(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            pipelined.add(Long.parseLong(key.substring(FEED_KEY.length())) % 2 == 0);
+            return null;
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelined.clear();
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return new ArrayList<>(pipelined);
+        });
+
+        FollowMapper followMapper = mock(FollowMapper.class);
+        when(followMapper.selectList(any())).thenAnswer(invocation -> page(invocation.getArgument(0)));
+        OrderShardCoordinator coordinator = mock(OrderShardCoordinator.class);
+        when(coordinator.nodeId()).thenReturn("node-a");
+        feedTimeline = mock(FeedTimeline.class);
+        when(feedTimeline.shouldPush(anyLong())).thenReturn(true);
+        setOps = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOps);
+        FeedInboxCompactor compactor = new FeedInboxCompactor(properties, stringRedisTemplate,
+                mock(FeedArchiveMapper.class), new SimpleMeterRegistry());
+        worker = new FeedFanoutWorker(properties, stringRedisTemplate, followMapper, feedTimeline, compactor,
+                mock(ThreadPoolExecutor.class), coordinator, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void writesEveryFollowerPageByPage() {
+        worker.fanout(job());
+
+        assertEquals(FOLLOWERS, inboxes.size());
+        assertEquals(Arrays.asList(0L, 1000L, 2000L), cursors);
+        verify(streamOps).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("1-0"));
+        // 完成后删除游标
+        assertFalse(values.containsKey(FEED_FANOUT_CHECKPOINT_KEY + BLOG));
+    }
+
+    @Test
+    public void fullInboxesAreQueuedForCompaction() {
+        worker.fanout(job());
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(setOps).add(eq(FEED_COMPACT_PENDING_KEY), keys.capture());
+        assertEquals(LongStream.range(1, 10).mapToObj(i -> FEED_KEY + i).collect(Collectors.toSet()),
+                new HashSet<>(keys.getAllValues()));
+    }
+
+    @Test
+    public void resumesFromCheckpoint() {
+        values.put(FEED_FANOUT_CHECKPOINT_KEY + BLOG, "2000");
+
+        worker.fanout(job());
+
+        assertEquals(Collections.singletonList(2000L), cursors);
+        assertEquals(FOLLOWERS - 2000, inboxes.size());
+        assertTrue(inboxes.contains(FEED_KEY + 2001) && !inboxes.contains(FEED_KEY + 2000));
+    }
+
+    @Test
+    public void bigAuthorIsNotPushed() {
+        when(feedTimeline.shouldPush(AUTHOR)).thenReturn(false);
+
+        worker.fanout(job());
+
+        assertTrue(inboxes.isEmpty() && cursors.isEmpty());
+        verify(streamOps).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("1-0"));
+    }
+
+    @Test
+    public void pushesOnlyToExistingInboxes() {
+        when(feedTimeline.pushActiveOnly()).thenReturn(true);
+
+        worker.fanout(job());
+
+        assertEquals(FOLLOWERS / 2, inboxes.size());
+        assertTrue(inboxes.contains(FEED_KEY + 2) && !inboxes.contains(FEED_KEY + 1));
+    }
+
+    @Test
+    public void crashKeepsCheckpointAndLeavesJobPending() {
+        // 第二页写入时宕机
+        doAnswer(invocation -> {
+            if (cursors.size() == 2) {
+                throw new IllegalStateException("redis down");
+            }
+            return Collections.emptyList();
+        }).when(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+
+        assertThrows(IllegalStateException.class, () -> worker.fanout(job()));
+
+        assertEquals("1000", values.get(FEED_FANOUT_CHECKPOINT_KEY + BLOG));
+        verify(streamOps, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    public void repeatedlyFailingJobIsDroppedAfterMaxDeliveries() {
+        properties.setMaxDeliveries(3);
+        values.put(FEED_FANOUT_CHECKPOINT_KEY + BLOG, "1000");
+        pendingJobs(job("1-0", BLOG), job("2-0", BLOG + 1));
+        delivered(pendingMessage("1-0", 3), pendingMessage("2-0", 1));
+
+        worker.handlePendingList();
+
+        // 1-0不再推送，确认并删除游标；后面的 2-0正常推送
+        verify(streamOps).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("1-0"));
+        verify(streamOps).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("2-0"));
+        assertFalse(values.containsKey(FEED_FANOUT_CHECKPOINT_KEY + BLOG));
+        assertEquals(Arrays.asList(0L, 1000L, 2000L), cursors);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failingJobDoesNotBlockLaterJobs() {
+        pendingJobs(job("1-0", BLOG), job("2-0", BLOG + 1));
+        delivered(pendingMessage("1-0", 1), pendingMessage("2-0", 1));
+        // 第一个任务写入收件箱失败
+        doAnswer(invocation -> {
+            if (cursors.size() == 1) {
+                throw new IllegalStateException("redis down");
+            }
+            return Collections.emptyList();
+        }).when(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+
+        assertThrows(IllegalStateException.class, () -> worker.handlePendingList());
+
+        // 失败的任务留在 pending-list中，后面的任务照常完成
+        verify(streamOps, never()).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("1-0"));
+        verify(streamOps).acknowledge(FEED_FANOUT_STREAM_KEY, FEED_FANOUT_GROUP, RecordId.of("2-0"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pendingJobs(MapRecord<String, Object, Object>... jobs) {
+        when(streamOps.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+                .thenReturn(Arrays.asList(jobs), Collections.emptyList());
+    }
+
+    private void delivered(PendingMessage... messages) {
+        when(streamOps.pending(eq(FEED_FANOUT_STREAM_KEY), any(Consumer.class), any(Range.class), anyLong()))
+                .thenReturn(new PendingMessages(FEED_FANOUT_GROUP, Arrays.asList(messages)));
+    }
+
+    private static PendingMessage pendingMessage(String id, long deliveries) {
+        return new PendingMessage(RecordId.of(id), Consumer.from(FEED_FANOUT_GROUP, "node-a-feed"),
+                Duration.ZERO, deliveries);
+    }
+
+    /**
+     * 粉丝 i的 tb_follow主键为 i，user_id为 i
+     */
+    private List<Follow> page(QueryWrapper<Follow> wrapper) {
+        // 生成 sql片段时才会填充参数：follow_user_id = ?1 and id > ?2
+        wrapper.getSqlSegment();
+        long cursor = (Long) wrapper.getParamNameValuePairs().get("MPGENVAL2");
+        cursors.add(cursor);
+        return LongStream.rangeClosed(cursor + 1, Math.min(FOLLOWERS, cursor + properties.getFanoutPageSize()))
+                .mapToObj(i -> new Follow().setId(i).setUserId(i))
+                .collect(Collectors.toList());
+    }
+
+    private static MapRecord<String, Object, Object> job() {
+        return job("1-0", BLOG);
+    }
+
+    private static MapRecord<String, Object, Object> job(String id, long blogId) {
+        Map<Object, Object> value = new HashMap<>();
+        value.put("blogId", String.valueOf(blogId));
+        value.put("authorId", String.valueOf(AUTHOR));
+        value.put("time", "1700000000000");
+        return StreamRecords.newRecord().in(FEED_FANOUT_STREAM_KEY).withId(RecordId.of(id)).ofMap(value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.FeedArchive;
+import com.qzdp.mapper.FeedArchiveMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 09:40
+ * @description 收件箱超出上限部分的归档，redis与数据库用 mock代替
+ */
+public class FeedInboxCompactorTest {
+
+    private static final String INBOX = FEED_KEY + 7;
+
+    private final FeedConfigProperties properties = new FeedConfigProperties();
+
+    /**
+     * 收件箱，score从小到大
+     */
+    private final TreeMap<Long, String> inbox = new TreeMap<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SetOperations<String, String> setOps;
+
+    private ValueOperations<String, String> valueOps;
+
+    private FeedArchiveMapper archiveMapper;
+
+    private FeedInboxCompactor compactor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setInboxSize(1000);
+        properties.setCompactBatch(100);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.zCard(INBOX)).thenAnswer(invocation -> (long) inbox.size());
+        when(zSetOps.rangeWithScores(eq(INBOX), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long end = invocation.getArgument(2);
+            return inbox.entrySet().stream().limit(end + 1)
+                    .map(e -> new DefaultTypedTuple<>(e.getValue(), e.getKey().doubleValue()))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        });
+        when(zSetOps.remove(eq(INBOX), any())).thenAnswer(invocation -> {
+            Object[] members = Arrays.copyOfRange(invocation.getArguments(), 1, invocation.getArguments().length);
+            Set<Object> removed = new HashSet<>(Arrays.asList(members));
+            inbox.values().removeIf(removed::contains);
+            return (long) members.length;
+        });
+        setOps = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOps);
+        valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        archiveMapper = mock(FeedArchiveMapper.class);
+        compactor = new FeedInboxCompactor(properties, stringRedisTemplate, archiveMapper, new SimpleMeterRegistry());
+        for (long i = 1; i <= 1150; i++) {
+            inbox.put(i, String.valueOf(1000 + i));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void archivesOldestOverflowAndKeepsNewest() {
+        assertTrue(compactor.needsCompaction(inbox.size()));
+
+        assertEquals(150, compactor.compact(INBOX));
+
+        assertEquals(1000, inbox.size());
+        assertEquals(151L, inbox.firstKey());
+        ArgumentCaptor<List<FeedArchive>> rows = ArgumentCaptor.forClass(List.class);
+        verify(archiveMapper).insertIgnoreBatch(rows.capture());
+        assertEquals(150, rows.getValue().size());
+        FeedArchive first = rows.getValue().get(0);
+        assertEquals(7L, first.getUserId());
+        assertEquals(1001L, first.getBlogId());
+        assertEquals(1L, first.getPublishTime());
+        // 收件箱过期后仍然知道有归档
+        verify(valueOps).set(FEED_ARCHIVED_KEY + 7, "1");
+    }
+
+    @Test
+    public void failedInsertKeepsInboxAndRequeues() {
+        when(setOps.pop(FEED_COMPACT_PENDING_KEY, properties.getCompactKeysPerRun()))
+                .thenReturn(Collections.singletonList(INBOX));
+        when(archiveMapper.insertIgnoreBatch(anyList())).thenThrow(new IllegalStateException("db down"));
+
+        compactor.compactPending();
+
+        assertEquals(1150, inbox.size());
+        verify(setOps).add(FEED_COMPACT_PENDING_KEY, INBOX);
+        verify(valueOps, never()).set(anyString(), anyString());
+    }
+}
@@ -0,0 +1,119 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.FeedConfigProperties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 08:50
+ * @description 关注时间线两种模式的读写开销
+ *  - 读：push只读收件箱一个来源，hybrid另外归并 bigFollowed个大 V的发件箱，测的是归并一页的耗时（微秒/次），
+ *    两种模式都是一次 pipeline往返，不含 redis本身
+ *  - 写：main中先按幂律分布的粉丝数模拟一轮发布，打印每篇笔记平均的 ZADD次数
+ *  - 内存：main中估算收件箱限制条数前后每个用户占用的 redis内存
+ *  不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class FeedTimelineBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"push", "hybrid"})
+    public String mode;
+
+    @Param({"20"})
+    public int bigFollowed;
+
+    private List<List<ZSetOperations.TypedTuple<String>>> sources;
+
+    private long max;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        max = System.currentTimeMillis();
+        int sourceCount = "push".equals(mode) ? 1 : 1 + bigFollowed;
+        sources = new ArrayList<>(sourceCount);
+        long blogId = 0;
+        for (int i = 0; i < sourceCount; i++) {
+            // 每个来源按 limit = offset + pageSize取回，时间倒序
+            List<ZSetOperations.TypedTuple<String>> source = new ArrayList<>(PAGE_SIZE);
+            long time = max;
+            for (int j = 0; j < PAGE_SIZE; j++) {
+                time -= random.nextInt(60000);
+                source.add(new DefaultTypedTuple<>(String.valueOf(++blogId), (double) time));
+            }
+            sources.add(source);
+        }
+    }
+
+    @Benchmark
+    public FeedTimeline.Page read() {
+        return FeedTimeline.merge(sources, max, 0, PAGE_SIZE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printWriteAmplification();
+        printInboxMemory();
+        Options options = new OptionsBuilder()
+                .include(FeedTimelineBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * 10000个作者各发一篇，第 i个作者的粉丝数为 1000000 / i（幂律分布），30%的粉丝近期活跃
+     */
+    private static void printWriteAmplification() {
+        int authors = 10000;
+        long bigAuthorFollowers = 10000;
+        double activeRatio = 0.3;
+        long push = 0;
+        long hybrid = 0;
+        long hybridActive = 0;
+        for (int i = 1; i <= authors; i++) {
+            long followers = 1000000L / i;
+            push += followers;
+            // 发件箱固定写一次
+            hybrid += 1;
+            hybridActive += 1;
+            if (followers < bigAuthorFollowers) {
+                hybrid += followers;
+                hybridActive += (long) (followers * activeRatio);
+            }
+        }
+        System.out.printf("每篇笔记平均 ZADD次数：push %.1f，hybrid %.1f，hybrid+活跃粉丝 %.1f%n",
+                (double) push / authors, (double) hybrid / authors, (double) hybridActive / authors);
+    }
+
+    /**
+     * 收件箱超过 128条后是 skiplist编码，每条约 100字节：
+     * 19位的 id字符串 sds约 24字节，dict entry 24字节，hash桶 8字节，skiplist节点平均约 45字节
+     * 按每个用户每天收到 30篇推送估算一年后的收件箱
+     */
+    private static void printInboxMemory() {
+        int bytesPerEntry = 100;
+        long perDay = 30;
+        FeedConfigProperties properties = new FeedConfigProperties();
+        long before = perDay * 365 * bytesPerEntry;
+        long after = (long) (properties.getInboxSize() + properties.getCompactBatch()) * bytesPerEntry;
+        System.out.printf("一年后每个收件箱约占：不限制 %.0fKB，inboxSize=%d %.0fKB（上限）%n",
+                before / 1024.0, properties.getInboxSize(), after / 1024.0);
+    }
+}
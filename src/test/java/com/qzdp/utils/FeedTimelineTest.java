@@ -0,0 +1,252 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.FeedConfigProperties;
+import com.qzdp.entity.FeedArchive;
+import com.qzdp.mapper.FeedArchiveMapper;
+import com.qzdp.mapper.FollowMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.*;
+
+import java.util.*;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 08:30
+ * @description 推拉结合时间线的归并、滚动分页与大 V判断，redis用 mock代替
+ */
+public class FeedTimelineTest {
+
+    private static final long READER = 7L;
+    private static final long BIG = 100L;
+    private static final long SMALL = 200L;
+
+    private final FeedConfigProperties properties = new FeedConfigProperties();
+
+    /**
+     * key -> 有序集合
+     */
+    private final Map<String, List<ZSetOperations.TypedTuple<String>>> zsets = new HashMap<>();
+
+    private final List<Object> pipelined = new ArrayList<>();
+
+    /**
+     * redis中的字符串 key
+     */
+    private final Map<String, String> strings = new HashMap<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SetOperations<String, String> setOps;
+
+    private FollowMapper followMapper;
+
+    private FeedArchiveMapper archiveMapper;
+
+    private FeedTimeline timeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setPageSize(3);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        setOps = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOps);
+        when(setOps.members(FEED_BIG_AUTHORS_KEY)).thenReturn(Collections.singleton(String.valueOf(BIG)));
+        when(setOps.members(FOLLOW_KEY + READER))
+                .thenReturn(new HashSet<>(Arrays.asList(String.valueOf(BIG), String.valueOf(SMALL))));
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOps);
+        doAnswer(invocation -> {
+            zsets.put(invocation.getArgument(0), new ArrayList<>(invocation.<Set<ZSetOperations.TypedTuple<String>>>getArgument(1)));
+            return 0L;
+        }).when(zSetOps).add(anyString(), anySet());
+
+        StringRedisConnection connection = mock(StringRedisConnection.class);
+        when(connection.zRevRangeByScoreWithScores(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> {
+                    double max = invocation.getArgument(2);
+                    long count = invocation.getArgument(4);
+                    pipelined.add(range(invocation.getArgument(0), max, count));
+                    return null;
+                });
+        when(connection.zRevRangeWithScores(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long end = invocation.getArgument(2);
+            pipelined.add(range(invocation.getArgument(0), Double.MAX_VALUE, end + 1));
+            return null;
+        });
+        when(connection.exists(anyString())).thenAnswer(invocation -> {
+            pipelined.add(strings.containsKey(invocation.<String>getArgument(0)));
+            return null;
+        });
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        doAnswer(invocation -> strings.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOps).set(anyString(), anyString());
+        when(connection.zCard(anyString())).thenAnswer(invocation -> {
+            pipelined.add((long) zsets.getOrDefault(invocation.<String>getArgument(0), Collections.emptyList()).size());
+            return null;
+        });
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            pipelined.clear();
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return new ArrayList<>(pipelined);
+        });
+
+        followMapper = mock(FollowMapper.class);
+        archiveMapper = mock(FeedArchiveMapper.class);
+        FeedInboxCompactor compactor = new FeedInboxCompactor(properties, stringRedisTemplate, archiveMapper,
+                new SimpleMeterRegistry());
+        timeline = new FeedTimeline(properties, stringRedisTemplate, followMapper, compactor, new SimpleMeterRegistry());
+        timeline.refreshBigAuthors();
+    }
+
+    @Test
+    public void mergeDeduplicatesAndPagesAcrossTies() {
+        List<List<ZSetOperations.TypedTuple<String>>> sources = Arrays.asList(
+                tuples(10, 1, 9, 2, 9, 3, 5, 4),
+                tuples(9, 5, 9, 2, 7, 6));
+        // 9分的笔记有 3、5、2（去重后），跨两页
+        FeedTimeline.Page first = FeedTimeline.merge(sources, 10, 0, 3);
+        assertEquals(Arrays.asList(1L, 5L, 3L), first.getBlogIds());
+        assertEquals(9, first.getMinTime());
+        assertEquals(2, first.getOffset());
+
+        FeedTimeline.Page second = FeedTimeline.merge(sources, first.getMinTime(), first.getOffset(), 3);
+        assertEquals(Arrays.asList(2L, 6L, 4L), second.getBlogIds());
+        assertEquals(5, second.getMinTime());
+        assertEquals(1, second.getOffset());
+    }
+
+    @Test
+    public void offsetAccumulatesWhenPageEndsOnMax() {
+        List<List<ZSetOperations.TypedTuple<String>>> sources = Collections.singletonList(
+                tuples(9, 5, 9, 4, 9, 3, 9, 2, 9, 1, 8, 0));
+        FeedTimeline.Page first = FeedTimeline.merge(sources, 9, 0, 2);
+        FeedTimeline.Page second = FeedTimeline.merge(sources, first.getMinTime(), first.getOffset(), 2);
+        // 整页都是 9分，下一页要跳过前两页的 4条
+        assertEquals(4, second.getOffset());
+        FeedTimeline.Page third = FeedTimeline.merge(sources, second.getMinTime(), second.getOffset(), 2);
+        assertEquals(Arrays.asList(1L, 0L), third.getBlogIds());
+        assertEquals(8, third.getMinTime());
+        assertEquals(1, third.getOffset());
+    }
+
+    @Test
+    public void readMergesInboxWithBigAuthorOutbox() {
+        zsets.put(FEED_KEY + READER, tuples(30, 3, 10, 1));
+        zsets.put(FEED_OUTBOX_KEY + BIG, tuples(40, 4, 20, 2));
+
+        FeedTimeline.Page page = timeline.read(READER, 100, 0);
+
+        assertEquals(Arrays.asList(4L, 3L, 2L), page.getBlogIds());
+        assertEquals(20, page.getMinTime());
+        // 活跃读者的收件箱续期
+        verify(stringRedisTemplate).expire(eq(FEED_KEY + READER), anyLong(), any());
+    }
+
+    @Test
+    public void expiredInboxIsRebuiltFromOutboxes() {
+        zsets.put(FEED_OUTBOX_KEY + SMALL, tuples(30, 3, 10, 1));
+        zsets.put(FEED_OUTBOX_KEY + BIG, tuples(20, 2));
+
+        FeedTimeline.Page page = timeline.read(READER, 100, 0);
+
+        assertEquals(Arrays.asList(3L, 2L, 1L), page.getBlogIds());
+        // 只用普通作者的发件箱重建，大 V的笔记在读取时拉取
+        assertEquals(2, zsets.get(FEED_KEY + READER).size());
+    }
+
+    @Test
+    public void scrollsPastHotWindowIntoArchive() {
+        properties.setInboxSize(2);
+        zsets.put(FEED_KEY + READER, tuples(50, 5, 40, 4));
+        when(archiveMapper.queryBefore(eq(READER), anyLong(), anyInt())).thenReturn(Arrays.asList(
+                new FeedArchive().setBlogId(3L).setPublishTime(30L),
+                new FeedArchive().setBlogId(1L).setPublishTime(10L)));
+
+        FeedTimeline.Page page = timeline.read(READER, 100, 0);
+
+        assertEquals(Arrays.asList(5L, 4L, 3L), page.getBlogIds());
+        verify(archiveMapper).queryBefore(READER, 100, 3);
+        // 标记之前归档的收件箱，读到归档后补上标记
+        assertTrue(strings.containsKey(FEED_ARCHIVED_KEY + READER));
+    }
+
+    @Test
+    public void rebuiltInboxStillReadsArchive() {
+        // 收件箱归档过，之后不活跃过期，重建出来的笔记不够一页
+        strings.put(FEED_ARCHIVED_KEY + READER, "1");
+        zsets.put(FEED_OUTBOX_KEY + SMALL, tuples(50, 5));
+        when(archiveMapper.queryBefore(eq(READER), anyLong(), anyInt())).thenReturn(Arrays.asList(
+                new FeedArchive().setBlogId(3L).setPublishTime(30L),
+                new FeedArchive().setBlogId(1L).setPublishTime(10L)));
+
+        FeedTimeline.Page page = timeline.read(READER, 100, 0);
+
+        assertEquals(Arrays.asList(5L, 3L, 1L), page.getBlogIds());
+        verify(archiveMapper).queryBefore(READER, 100, 3);
+    }
+
+    @Test
+    public void shortInboxWithArchiveFlagReadsArchive() {
+        // 收件箱没有达到上限（归档之后又被裁剪、或者重建过），只要有标记就从归档补齐
+        strings.put(FEED_ARCHIVED_KEY + READER, "1");
+        zsets.put(FEED_KEY + READER, tuples(50, 5, 40, 4));
+        when(archiveMapper.queryBefore(eq(READER), anyLong(), anyInt())).thenReturn(Collections.singletonList(
+                new FeedArchive().setBlogId(3L).setPublishTime(30L)));
+
+        FeedTimeline.Page page = timeline.read(READER, 100, 0);
+
+        assertEquals(Arrays.asList(5L, 4L, 3L), page.getBlogIds());
+    }
+
+    @Test
+    public void hotWindowAloneSkipsArchive() {
+        zsets.put(FEED_KEY + READER, tuples(50, 5, 40, 4));
+
+        timeline.read(READER, 100, 0);
+
+        // 收件箱没有写满过，不会有归档
+        verify(archiveMapper, never()).queryBefore(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void authorAboveThresholdBecomesBig() {
+        properties.setBigAuthorFollowers(1000L);
+        when(followMapper.selectCount(any())).thenReturn(999, 1000);
+
+        assertTrue(timeline.shouldPush(SMALL));
+        assertFalse(timeline.shouldPush(SMALL));
+        verify(setOps).add(FEED_BIG_AUTHORS_KEY, String.valueOf(SMALL));
+    }
+
+    private List<ZSetOperations.TypedTuple<String>> range(String key, double max, long count) {
+        List<ZSetOperations.TypedTuple<String>> result = new ArrayList<>();
+        List<ZSetOperations.TypedTuple<String>> zset = zsets.getOrDefault(key, Collections.emptyList());
+        for (ZSetOperations.TypedTuple<String> tuple : zset) {
+            if (tuple.getScore() <= max && result.size() < count) {
+                result.add(tuple);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * score, blogId, score, blogId ...
+     */
+    private static List<ZSetOperations.TypedTuple<String>> tuples(long... pairs) {
+        List<ZSetOperations.TypedTuple<String>> tuples = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            tuples.add(new DefaultTypedTuple<>(String.valueOf(pairs[i + 1]), (double) pairs[i]));
+        }
+        return tuples;
+    }
+}
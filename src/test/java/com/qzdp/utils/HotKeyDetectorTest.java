@@ -0,0 +1,74 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.dto.HotKeyDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.qzdp.utils.RedisConstants.CACHE_HOTKEY_CHANNEL;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 20:50
+ * @description 模拟促销时一个商铺占 30%的流量，其余流量分散在 10万个商铺上
+ */
+public class HotKeyDetectorTest {
+
+    @Test
+    public void promoteHeavyHitterOnly() {
+        HotKeyConfigProperties properties = new HotKeyConfigProperties();
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        HotKeyDetector detector = new HotKeyDetector(properties, stringRedisTemplate, new SimpleMeterRegistry(),
+                Runnable::run);
+        byte[] hotValue = {1, 2, 3};
+        int redisReads = 0;
+        for (int i = 0; i < 50000; i++) {
+            String key = ThreadLocalRandom.current().nextInt(10) < 3
+                    ? "cache:shop:1" : "cache:shop:" + (2 + ThreadLocalRandom.current().nextInt(100000));
+            if (detector.getReplica(key) == null) {
+                redisReads++;
+                detector.record(key, key.equals("cache:shop:1") ? hotValue : new byte[]{0});
+            }
+        }
+        verify(stringRedisTemplate, times(1)).convertAndSend(CACHE_HOTKEY_CHANNEL, "cache:shop:1");
+        List<HotKeyDTO> hotKeys = detector.hotKeys();
+        assertEquals(1, hotKeys.size());
+        HotKeyDTO hot = hotKeys.get(0);
+        assertEquals("cache:shop:1", hot.getKey());
+        assertTrue(hot.getHitRate() > 0.9, "estimate=" + hot.getEstimate() + ", hitRate=" + hot.getHitRate()
+                + ", redisReads=" + redisReads + "/50000");
+        assertArrayEquals(hotValue, detector.getReplica("cache:shop:1"));
+
+        // 删除缓存后副本清空，下一次读取重新访问 redis
+        detector.invalidate("cache:shop:1");
+        assertNull(detector.getReplica("cache:shop:1"));
+    }
+
+    @Test
+    public void recordDoesNotPublishOnCallerThread() {
+        HotKeyConfigProperties properties = new HotKeyConfigProperties();
+        properties.setSampleRate(1.0);
+        properties.setThreshold(10L);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        List<Runnable> queued = new ArrayList<>();
+        HotKeyDetector detector = new HotKeyDetector(properties, stringRedisTemplate, new SimpleMeterRegistry(),
+                queued::add);
+        for (int i = 0; i < 20; i++) {
+            detector.record("cache:shop:1", new byte[]{1});
+        }
+
+        // 本节点已经固定，广播只提交给发布线程
+        assertEquals(1, detector.hotKeys().size());
+        verifyNoInteractions(stringRedisTemplate);
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+        verify(stringRedisTemplate).convertAndSend(CACHE_HOTKEY_CHANNEL, "cache:shop:1");
+    }
+}
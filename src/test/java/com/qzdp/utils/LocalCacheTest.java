@@ -0,0 +1,155 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.CacheExpireConfigProperties;
+import com.qzdp.config.HotKeyConfigProperties;
+import com.qzdp.config.LocalCacheConfigProperties;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.codec.BinaryCacheCodec;
+import com.qzdp.utils.codec.CacheCodec;
+import com.qzdp.utils.codec.EntitySchemas;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.qzdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 17:20
+ * @description 本地缓存（L1）的命中、空值缓存和跨节点失效，redis用 mock代替
+ */
+public class LocalCacheTest {
+
+    private final CacheCodec codec = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private final LocalCacheConfigProperties properties = new LocalCacheConfigProperties();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger dbLoads = new AtomicInteger();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, byte[]> valueOperations;
+
+    private LocalCache localCache;
+
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setPrefixes(Collections.singletonList(CACHE_SHOP_KEY));
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        RedisTemplate<String, byte[]> cacheRedisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(cacheRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        localCache = new LocalCache(properties, meterRegistry, stringRedisTemplate);
+        HotKeyConfigProperties hotKeyProperties = new HotKeyConfigProperties();
+        hotKeyProperties.setEnabled(false);
+        cacheClient = new CacheClient(stringRedisTemplate, cacheRedisTemplate, mock(RedisClusterAsyncCommands.class),
+                codec, new ExpirePolicy(new CacheExpireConfigProperties(), meterRegistry), localCache,
+                mock(BloomFilterRegistry.class), new HotKeyDetector(hotKeyProperties, stringRedisTemplate, meterRegistry),
+                meterRegistry, mock(ThreadPoolExecutor.class));
+    }
+
+    @Test
+    public void localHitSkipsRedisAndDatabase() {
+        when(valueOperations.get(CACHE_SHOP_KEY + 1)).thenReturn(codec.encode(shop(1L)));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("103茶餐厅", query(CACHE_SHOP_KEY, 1L).getName());
+        }
+
+        verify(valueOperations, times(1)).get(CACHE_SHOP_KEY + 1);
+        assertEquals(0, dbLoads.get());
+        assertEquals(2, (int) meterRegistry.get("cache.gets").tags("cache", CACHE_SHOP_KEY, "result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    public void missingRowIsCachedLocally() {
+        assertNull(query(CACHE_SHOP_KEY, 404L));
+        assertNull(query(CACHE_SHOP_KEY, 404L));
+
+        assertEquals(1, dbLoads.get());
+        verify(valueOperations, times(1)).get(CACHE_SHOP_KEY + 404);
+    }
+
+    @Test
+    public void unlistedPrefixAlwaysReadsRedis() {
+        properties.setPrefixes(Collections.emptyList());
+        when(valueOperations.get(CACHE_SHOP_KEY + 1)).thenReturn(codec.encode(shop(1L)));
+
+        query(CACHE_SHOP_KEY, 1L);
+        query(CACHE_SHOP_KEY, 1L);
+
+        verify(valueOperations, times(2)).get(CACHE_SHOP_KEY + 1);
+    }
+
+    @Test
+    public void disabledCacheAlwaysReadsRedis() {
+        properties.setEnabled(false);
+        when(valueOperations.get(CACHE_SHOP_KEY + 1)).thenReturn(codec.encode(shop(1L)));
+
+        query(CACHE_SHOP_KEY, 1L);
+        query(CACHE_SHOP_KEY, 1L);
+
+        verify(valueOperations, times(2)).get(CACHE_SHOP_KEY + 1);
+    }
+
+    @Test
+    public void deleteInvalidatesLocallyAndBroadcasts() {
+        when(valueOperations.get(CACHE_SHOP_KEY + 1)).thenReturn(codec.encode(shop(1L)));
+        query(CACHE_SHOP_KEY, 1L);
+
+        cacheClient.delete(CACHE_SHOP_KEY + 1);
+
+        assertNull(localCache.get(CACHE_SHOP_KEY, CACHE_SHOP_KEY + 1));
+        verify(stringRedisTemplate).convertAndSend(CACHE_INVALIDATE_CHANNEL, CACHE_SHOP_KEY + 1);
+        // 删除后重新从 redis读取
+        query(CACHE_SHOP_KEY, 1L);
+        verify(valueOperations, times(2)).get(CACHE_SHOP_KEY + 1);
+    }
+
+    @Test
+    public void invalidateMessageDropsOtherNodesCopy() {
+        LocalCache otherNode = new LocalCache(properties, new SimpleMeterRegistry(), stringRedisTemplate);
+        otherNode.put(CACHE_SHOP_KEY, CACHE_SHOP_KEY + 1, shop(1L));
+        otherNode.put(CACHE_SHOP_KEY, CACHE_SHOP_KEY + 2, shop(2L));
+
+        otherNode.onMessage(new DefaultMessage(CACHE_INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                (CACHE_SHOP_KEY + 1).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertNull(otherNode.get(CACHE_SHOP_KEY, CACHE_SHOP_KEY + 1));
+        assertNotNull(otherNode.get(CACHE_SHOP_KEY, CACHE_SHOP_KEY + 2));
+    }
+
+    private Shop query(String keyPrefix, Long id) {
+        return cacheClient.queryWithPassThrough(keyPrefix, id, Shop.class, shopId -> {
+            dbLoads.incrementAndGet();
+            return shopId == 404L ? null : shop(shopId);
+        }, 30L, TimeUnit.MINUTES);
+    }
+
+    private static Shop shop(Long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("103茶餐厅");
+        return shop;
+    }
+}
@@ -0,0 +1,115 @@
+package com.qzdp.utils;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.AsyncCommand;
+import io.lettuce.core.protocol.Command;
+import io.lettuce.core.protocol.CommandType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 02:30
+ * @description lua脚本注册中心的 NOSCRIPT恢复与批量执行，redis用 mock代替
+ */
+public class LuaScriptRegistryTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RedisClusterAsyncCommands<String, byte[]> asyncCommands;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LuaScriptRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        asyncCommands = mock(RedisClusterAsyncCommands.class);
+        StatefulConnection<String, byte[]> connection = mock(StatefulConnection.class);
+        when(connection.getTimeout()).thenReturn(Duration.ofSeconds(1));
+        when(asyncCommands.scriptLoad(any(byte[].class))).thenAnswer(invocation -> completed("sha"));
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new LuaScriptRegistry(stringRedisTemplate, connection, asyncCommands, meterRegistry);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reloadsScriptOnNoScript() {
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RedisSystemException("NOSCRIPT", new RedisNoScriptException("NOSCRIPT No matching script")))
+                .thenReturn(0L);
+
+        Long result = registry.execute(LuaScriptRegistry.UNLOCK, Collections.singletonList("lock:order"), "id-1");
+
+        assertEquals(0L, result);
+        verify(asyncCommands, times(1)).scriptLoad(any(byte[].class));
+        assertEquals(1, meterRegistry.get("redis.script.reload").tag("script", "unlock").counter().count());
+        assertEquals(1, meterRegistry.get("redis.script").tag("script", "unlock").timer().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void otherErrorsAreNotRetried() {
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenThrow(new RedisSystemException("ERR", new IllegalStateException("ERR wrong number of arguments")));
+
+        assertThrows(RedisSystemException.class,
+                () -> registry.execute(LuaScriptRegistry.UNLOCK, Collections.singletonList("lock:order"), "id-1"));
+        verify(asyncCommands, never()).scriptLoad(any(byte[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pipelinedCallsKeepOrderAndRecoverNoScript() {
+        AsyncCommand<String, byte[], Object> ok = command();
+        ok.complete(0L);
+        AsyncCommand<String, byte[], Object> missing = command();
+        missing.completeExceptionally(new RedisNoScriptException("NOSCRIPT No matching script"));
+        when(asyncCommands.evalsha(anyString(), eq(ScriptOutputType.INTEGER), any(String[].class), any()))
+                .thenReturn((AsyncCommand) ok, (AsyncCommand) missing);
+        when(stringRedisTemplate.execute(any(RedisCallback.class))).thenReturn(1L);
+
+        List<Object> results = registry.executePipelined(Arrays.asList(
+                LuaScriptRegistry.ScriptCall.of(LuaScriptRegistry.UNLOCK, Collections.singletonList("lock:a"), "1"),
+                LuaScriptRegistry.ScriptCall.of(LuaScriptRegistry.UNLOCK, Collections.singletonList("lock:b"), "2")));
+
+        assertEquals(Arrays.asList(0L, 1L), results);
+    }
+
+    @Test
+    public void pipelinedCallMustStayInOneSlot() {
+        assertThrows(IllegalArgumentException.class, () -> registry.executePipelined(Collections.singletonList(
+                LuaScriptRegistry.ScriptCall.of(LuaScriptRegistry.SECKILL_TAKE, Arrays.asList("a", "b"), "1"))));
+    }
+
+    private static AsyncCommand<String, byte[], Object> command() {
+        return new AsyncCommand<>(new Command<>(CommandType.EVALSHA, null));
+    }
+
+    private static AsyncCommand<String, String, String> completed(String value) {
+        AsyncCommand<String, String, String> command =
+                new AsyncCommand<>(new Command<>(CommandType.SCRIPT, new StatusOutput<>(StringCodec.UTF8)));
+        command.complete(value);
+        return command;
+    }
+}
@@ -0,0 +1,216 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.*;
+
+import static com.qzdp.utils.RedisConstants.STREAM_ORDERS_GROUP;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 23:40
+ * @description pending消息的接管与死信，redis用 mock代替
+ */
+public class OrderPendingReclaimerTest {
+
+    private static final String STREAM = "stream.orders:{order-0}";
+
+    private static final String DLQ = "stream.orders:{order-0}:dlq";
+
+    private final OrderConsumerConfigProperties properties = new OrderConsumerConfigProperties();
+
+    private StreamOperations<String, Object, Object> streamOps;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private IVoucherOrderService voucherOrderService;
+
+    private LuaScriptRegistry scriptRegistry;
+
+    private OrderPendingReclaimer reclaimer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        properties.setShards(1);
+        properties.setMinIdleMillis(1000L);
+        properties.setMaxDeliveries(3);
+        streamOps = mock(StreamOperations.class);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOps);
+        voucherOrderService = mock(IVoucherOrderService.class);
+        scriptRegistry = mock(LuaScriptRegistry.class);
+        when(scriptRegistry.execute(anyString(), anyList(), any())).thenReturn(1L);
+        OrderShardRouter router = new OrderShardRouter(properties);
+        OrderShardCoordinator coordinator = mock(OrderShardCoordinator.class);
+        when(coordinator.ownedShards()).thenReturn(Collections.singletonList(0));
+        when(coordinator.nodeId()).thenReturn("node-a");
+        reclaimer = new OrderPendingReclaimer(properties, stringRedisTemplate, router, coordinator,
+                voucherOrderService, mock(OrderResultStore.class), scriptRegistry, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void idleMessagesAreClaimedAndHandled() {
+        pending(message("1-0", "node-b-0", 5000, 1), message("2-0", "node-b-0", 10, 1));
+        claimed(record("1-0", "7"));
+
+        reclaimer.reclaim();
+
+        verify(voucherOrderService).handleOrderRecords(eq(STREAM), argThat(list -> list.size() == 1
+                && list.get(0).getId().getValue().equals("1-0")));
+        verify(scriptRegistry, never()).execute(eq(LuaScriptRegistry.ORDER_DEAD_LETTER), anyList(), any());
+    }
+
+    @Test
+    public void poisonMessagesAreMovedToDeadLetter() {
+        pending(message("1-0", "node-b-0", 5000, 3));
+        claimed(record("1-0", "7"));
+
+        reclaimer.reclaim();
+
+        verify(voucherOrderService, never()).handleOrderRecords(anyString(), anyList());
+        // 确认和写入死信在同一个脚本中，死信 stream与分片 stream在同一个 slot
+        Map<String, String> body = deadLetterBody(Arrays.asList(STREAM, DLQ), STREAM_ORDERS_GROUP, "1-0");
+        assertEquals("7", body.get("voucherId"));
+        assertEquals(STREAM, body.get("sourceStream"));
+        assertEquals("3", body.get("deliveries"));
+        verify(streamOps, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+        verify(streamOps, never()).add(anyString(), anyMap());
+    }
+
+    @Test
+    public void messageAckedElsewhereIsNotCountedAsDead() {
+        pending(message("1-0", "node-b-0", 5000, 3));
+        claimed(record("1-0", "7"));
+        when(scriptRegistry.execute(eq(LuaScriptRegistry.ORDER_DEAD_LETTER), anyList(), any())).thenReturn(0L);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderShardCoordinator coordinator = mock(OrderShardCoordinator.class);
+        when(coordinator.ownedShards()).thenReturn(Collections.singletonList(0));
+        OrderResultStore orderResultStore = mock(OrderResultStore.class);
+        new OrderPendingReclaimer(properties, stringRedisTemplate, new OrderShardRouter(properties), coordinator,
+                voucherOrderService, orderResultStore, scriptRegistry, meterRegistry).reclaim();
+
+        assertEquals(0, (int) meterRegistry.counter("voucher.order.dead").count());
+        verify(orderResultStore, never()).save(anyList());
+    }
+
+    @Test
+    public void failedBatchFallsBackToSingleMessages() {
+        pending(message("1-0", "node-b-0", 5000, 1), message("2-0", "node-b-0", 5000, 1));
+        claimed(record("1-0", "7"), record("2-0", "8"));
+        when(voucherOrderService.handleOrderRecords(eq(STREAM), anyList())).thenAnswer(invocation -> {
+            List<?> list = invocation.getArgument(1);
+            if (list.size() > 1) {
+                throw new IllegalStateException("batch failed");
+            }
+            return 1;
+        });
+
+        reclaimer.reclaim();
+
+        // 一次整批 + 两次单条
+        verify(voucherOrderService, times(3)).handleOrderRecords(eq(STREAM), anyList());
+    }
+
+    @Test
+    public void replayMovesDeadLetterBackToItsShard() {
+        Map<Object, Object> body = new LinkedHashMap<>();
+        body.put("voucherId", "7");
+        body.put("userId", "1010");
+        body.put("id", "99");
+        body.put("sourceStream", STREAM);
+        body.put("sourceId", "1-0");
+        body.put("deliveries", "3");
+        body.put("consumer", "node-b-0");
+        MapRecord<String, Object, Object> dead = StreamRecords.newRecord().in(DLQ)
+                .withId(RecordId.of("5-0")).ofMap(body);
+        when(streamOps.range(eq(DLQ), any(Range.class), any())).thenReturn(Collections.singletonList(dead));
+
+        assertEquals(1, reclaimer.replay(null, 10));
+
+        // 删除死信和重新投递在同一个脚本中，只保留订单字段
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(scriptRegistry).execute(eq(LuaScriptRegistry.ORDER_REPLAY), eq(Arrays.asList(DLQ, STREAM)),
+                args.capture());
+        assertEquals(Arrays.asList("5-0", "voucherId", "7", "userId", "1010", "id", "99"), args.getAllValues());
+        verify(streamOps, never()).add(anyString(), anyMap());
+        verify(streamOps, never()).delete(anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    public void deadLettersOfAllShardsAreMergedById() {
+        properties.setShards(2);
+        OrderShardRouter router = new OrderShardRouter(properties);
+        when(streamOps.range(eq(router.dlqKey(0)), any(Range.class), any()))
+                .thenReturn(Arrays.asList(deadRecord(router.dlqKey(0), "3-0"), deadRecord(router.dlqKey(0), "9-0")));
+        when(streamOps.range(eq(router.dlqKey(1)), any(Range.class), any()))
+                .thenReturn(Collections.singletonList(deadRecord(router.dlqKey(1), "5-0")));
+        OrderPendingReclaimer reclaimer = new OrderPendingReclaimer(properties, stringRedisTemplate, router,
+                mock(OrderShardCoordinator.class), voucherOrderService, mock(OrderResultStore.class), scriptRegistry,
+                new SimpleMeterRegistry());
+
+        List<Map<String, Object>> deadLetters = reclaimer.deadLetters(2);
+
+        assertEquals(2, deadLetters.size());
+        assertEquals("3-0", deadLetters.get(0).get("id"));
+        assertEquals("5-0", deadLetters.get(1).get("id"));
+    }
+
+    /**
+     * 取出转入死信脚本的参数，校验 KEYS和前两个参数后返回死信消息的 field value
+     */
+    private Map<String, String> deadLetterBody(List<String> keys, String group, String id) {
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(scriptRegistry).execute(eq(LuaScriptRegistry.ORDER_DEAD_LETTER), eq(keys), args.capture());
+        List<Object> values = args.getAllValues();
+        assertEquals(group, values.get(0));
+        assertEquals(id, values.get(1));
+        Map<String, String> body = new HashMap<>();
+        for (int i = 2; i < values.size(); i += 2) {
+            body.put(values.get(i).toString(), values.get(i + 1).toString());
+        }
+        return body;
+    }
+
+    private static MapRecord<String, Object, Object> deadRecord(String dlqKey, String id) {
+        return StreamRecords.newRecord().in(dlqKey).withId(RecordId.of(id))
+                .ofMap(Collections.singletonMap("voucherId", "7"));
+    }
+
+    private void pending(PendingMessage... messages) {
+        when(streamOps.pending(eq(STREAM), eq(STREAM_ORDERS_GROUP), any(Range.class), anyLong()))
+                .thenReturn(new PendingMessages(STREAM_ORDERS_GROUP, Arrays.asList(messages)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void claimed(StringRecord... records) {
+        when(stringRedisTemplate.execute(any(RedisCallback.class))).thenReturn(Arrays.asList(records));
+    }
+
+    private static PendingMessage message(String id, String consumer, long idleMillis, long deliveries) {
+        return new PendingMessage(RecordId.of(id), Consumer.from(STREAM_ORDERS_GROUP, consumer),
+                Duration.ofMillis(idleMillis), deliveries);
+    }
+
+    private static StringRecord record(String id, String voucherId) {
+        Map<String, String> body = new HashMap<>();
+        body.put("voucherId", voucherId);
+        body.put("userId", "1010");
+        body.put("id", "99");
+        return StreamRecords.string(body).withStreamKey(STREAM).withId(RecordId.of(id));
+    }
+}
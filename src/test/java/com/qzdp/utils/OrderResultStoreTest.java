@@ -0,0 +1,130 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.OrderConsumerConfigProperties;
+import com.qzdp.dto.OrderResultDTO;
+import com.qzdp.dto.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.qzdp.utils.RedisConstants.ORDER_RESULT_CHANNEL;
+import static com.qzdp.utils.RedisConstants.ORDER_RESULT_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 06:30
+ * @description 订单结果的写入通知与长轮询，redis用 mock代替
+ */
+public class OrderResultStoreTest {
+
+    private final Map<String, Map<Object, Object>> hashes = new HashMap<>();
+
+    /**
+     * 订单 id的生成时间，没有登记的 id按刚刚生成处理
+     */
+    private final Map<Long, Long> createdAt = new HashMap<>();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private OrderResultStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(stringRedisTemplate.opsForHash()).thenReturn(hashOps);
+        when(hashOps.entries(any())).thenAnswer(invocation ->
+                hashes.getOrDefault(invocation.<String>getArgument(0), Collections.emptyMap()));
+        IdGenerator idGenerator = mock(IdGenerator.class);
+        when(idGenerator.timestampOf(anyLong())).thenAnswer(invocation ->
+                createdAt.getOrDefault(invocation.<Long>getArgument(0), System.currentTimeMillis()));
+        store = new OrderResultStore(stringRedisTemplate, new OrderConsumerConfigProperties(), idGenerator);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void saveWritesOnePipelineAndOneMessage() {
+        store.save(Arrays.asList(new OrderResultDTO(1L, 10L, 7L, "SUCCESS"),
+                new OrderResultDTO(2L, 11L, 7L, "SOLD_OUT")));
+
+        verify(stringRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(stringRedisTemplate).convertAndSend(ORDER_RESULT_CHANNEL, "1:SUCCESS,2:SOLD_OUT");
+    }
+
+    @Test
+    public void existingResultIsReturnedImmediately() {
+        put(1L, 10L, "SUCCESS");
+
+        assertEquals("SUCCESS", status(store.await(1L, 10L, 5000)));
+        // 不能查看其他用户的订单
+        assertFalse(result(store.await(1L, 99L, 0)).getSuccess());
+        // 没有结果且不等待
+        assertEquals("PENDING", status(store.await(2L, 10L, 0)));
+    }
+
+    @Test
+    public void waiterIsWokenByNotification() {
+        DeferredResult<Result> deferred = store.await(1L, 10L, 5000);
+        assertFalse(deferred.hasResult());
+        assertEquals(1, store.waiting());
+
+        put(1L, 10L, "DUPLICATE");
+        store.onMessage(new DefaultMessage(ORDER_RESULT_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "3:SUCCESS,1:DUPLICATE".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals("DUPLICATE", status(deferred));
+        assertEquals(0, store.waiting());
+    }
+
+    @Test
+    public void missingResultPastTtlIsExpired() {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(new OrderConsumerConfigProperties().getResultTtlSeconds());
+        createdAt.put(1L, System.currentTimeMillis() - ttlMillis - 1000);
+        createdAt.put(2L, System.currentTimeMillis() - ttlMillis + 60000);
+
+        // 已过期的订单不等待，直接返回
+        DeferredResult<Result> expired = store.await(1L, 10L, 5000);
+        assertEquals("EXPIRED", status(expired));
+        assertEquals(0, store.waiting());
+        // 还在保留时间内的订单继续等待
+        assertFalse(store.await(2L, 10L, 5000).hasResult());
+        assertEquals("PENDING", status(store.await(2L, 10L, 0)));
+
+        // 结果还在时以结果为准
+        put(1L, 10L, "SUCCESS");
+        assertEquals("SUCCESS", status(store.await(1L, 10L, 0)));
+    }
+
+    private void put(Long orderId, Long userId, String status) {
+        Map<Object, Object> hash = new HashMap<>();
+        hash.put("userId", String.valueOf(userId));
+        hash.put("voucherId", "7");
+        hash.put("status", status);
+        hashes.put(ORDER_RESULT_KEY + orderId, hash);
+    }
+
+    private static Result result(DeferredResult<Result> deferred) {
+        assertTrue(deferred.hasResult());
+        return (Result) deferred.getResult();
+    }
+
+    private static String status(DeferredResult<Result> deferred) {
+        return ((OrderResultDTO) result(deferred).getData()).getStatus();
+    }
+}
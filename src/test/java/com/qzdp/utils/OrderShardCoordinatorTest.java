@@ -0,0 +1,49 @@
+package com.qzdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:40
+ * @description 分片分配的正确性：节点增减后重新分配，每个分片恰好属于一个节点且负载均衡
+ */
+public class OrderShardCoordinatorTest {
+
+    private static final int SHARDS = 8;
+
+    @Test
+    public void assignmentIsCompleteAndDisjoint() {
+        for (int n = 1; n <= SHARDS + 2; n++) {
+            List<String> nodes = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                nodes.add("node-" + i);
+            }
+            Set<Integer> seen = new HashSet<>();
+            int min = Integer.MAX_VALUE, max = 0;
+            for (String node : nodes) {
+                List<Integer> owned = OrderShardCoordinator.assign(nodes, node, SHARDS);
+                for (Integer shard : owned) {
+                    assertTrue(seen.add(shard), "分片被重复分配: " + shard);
+                }
+                min = Math.min(min, owned.size());
+                max = Math.max(max, owned.size());
+            }
+            assertEquals(SHARDS, seen.size());
+            assertTrue(max - min <= 1);
+        }
+    }
+
+    @Test
+    public void assignmentIgnoresNodeOrder() {
+        List<String> nodes = Arrays.asList("b", "a", "c");
+        List<String> reversed = Arrays.asList("c", "a", "b");
+        for (String node : nodes) {
+            assertEquals(OrderShardCoordinator.assign(nodes, node, SHARDS),
+                    OrderShardCoordinator.assign(reversed, node, SHARDS));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.qzdp.utils;
+
+import com.qzdp.annotation.RateLimit;
+import com.qzdp.config.RateLimitConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:40
+ * @description 限流器在请求路径上的额外耗时（微秒/次），不含 redis往返本身
+ *  local只有本地令牌桶；pipelined另外组装三条 redis规则并处理结果，redis返回立即完成
+ *  不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(16)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    @Param({"local", "pipelined"})
+    public String mode;
+
+    private RateLimiter rateLimiter;
+
+    private RateLimit limit;
+
+    private final List<String> values = Arrays.asList("1010", "10.0.0.1", "7");
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Object> admitted = Arrays.asList(1L, 1L, 1L);
+        LuaScriptRegistry scriptRegistry = new LuaScriptRegistry(null, null, null, new SimpleMeterRegistry()) {
+            @Override
+            public List<Object> executePipelined(List<ScriptCall> calls) {
+                return admitted;
+            }
+        };
+        rateLimiter = new RateLimiter(scriptRegistry, new RateLimitConfigProperties(), new SimpleMeterRegistry());
+        limit = Endpoints.class.getDeclaredMethod(mode).getAnnotation(RateLimit.class);
+    }
+
+    @Benchmark
+    public String tryAcquire() {
+        return rateLimiter.tryAcquire(limit, values);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static class Endpoints {
+
+        @RateLimit(name = "local", permitsPerSecond = 1e9, burst = 1000000)
+        void local() {
+        }
+
+        @RateLimit(name = "pipelined", permitsPerSecond = 1e9, burst = 1000000, rules = {
+                @RateLimit.Rule(dimension = RateLimit.Dimension.USER, limit = 5),
+                @RateLimit.Rule(dimension = RateLimit.Dimension.IP, limit = 50),
+                @RateLimit.Rule(dimension = RateLimit.Dimension.PARAM, param = "id", limit = 20000)
+        })
+        void pipelined() {
+        }
+    }
+}
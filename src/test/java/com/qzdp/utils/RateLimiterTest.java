@@ -0,0 +1,153 @@
+package com.qzdp.utils;
+
+import com.qzdp.annotation.RateLimit;
+import com.qzdp.config.RateLimitConfigProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 05:30
+ * @description 本地令牌桶的放行速率，以及多条 redis规则的合并判断，redis用 mock代替
+ */
+public class RateLimiterTest {
+
+    private LuaScriptRegistry scriptRegistry;
+
+    private RateLimitConfigProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setUp() {
+        scriptRegistry = mock(LuaScriptRegistry.class);
+        properties = new RateLimitConfigProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new RateLimiter(scriptRegistry, properties, meterRegistry);
+    }
+
+    @Test
+    public void bucketAllowsBurstThenRefills() {
+        AtomicLong now = new AtomicLong(0);
+        TokenBucket bucket = new TokenBucket(10, 5, now::get);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+        // 100ms补充一个令牌
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        // 空闲很久之后最多攒下 burst个
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        int admitted = 0;
+        while (bucket.tryAcquire()) {
+            admitted++;
+        }
+        assertEquals(5, admitted);
+    }
+
+    @Test
+    public void bucketAdmitsExactlyBurstUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1000, () -> 0L);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    if (bucket.tryAcquire()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(1000, admitted.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void firstRejectingRuleIsReported() throws Exception {
+        RateLimit limit = limit("seckill");
+        when(scriptRegistry.executePipelined(anyList())).thenReturn(Arrays.asList(1L, 0L));
+
+        // 未登录时跳过按用户的规则，只发出 IP和券 id两条
+        assertEquals("param", rateLimiter.tryAcquire(limit, Arrays.asList(null, "10.0.0.1", "7")));
+        verify(scriptRegistry).executePipelined(argThat(calls -> calls.size() == 2));
+        assertEquals(1, meterRegistry.get("ratelimit.requests")
+                .tags("name", "seckill", "result", "rejected", "reason", "param").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void redisErrorFollowsFailOpen() throws Exception {
+        RateLimit limit = limit("seckill");
+        when(scriptRegistry.executePipelined(anyList())).thenThrow(new IllegalStateException("CLUSTERDOWN"));
+
+        assertNull(rateLimiter.tryAcquire(limit, Arrays.asList("1", "10.0.0.1", "7")));
+        properties.setFailOpen(false);
+        assertEquals("error", rateLimiter.tryAcquire(limit, Arrays.asList("1", "10.0.0.1", "7")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void localRejectionSkipsRedis() throws Exception {
+        RateLimit limit = limit("code");
+        when(scriptRegistry.executePipelined(anyList())).thenReturn(Arrays.asList(1L, 1L));
+        int admitted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (rateLimiter.tryAcquire(limit, Arrays.asList("10.0.0.1", "13800000000")) == null) {
+                admitted++;
+            }
+        }
+        assertEquals(2, admitted);
+        verify(scriptRegistry, times(2)).executePipelined(anyList());
+        assertEquals(8, meterRegistry.get("ratelimit.requests").tag("reason", RateLimiter.LOCAL).counter().count());
+    }
+
+    @Test
+    public void keyContainsNameDimensionAndValue() throws Exception {
+        RateLimit limit = limit("code");
+        assertEquals("rate:limit:code:param:13800000000", RateLimiter.key("code", limit.rules()[1], "13800000000"));
+    }
+
+    private static RateLimit limit(String method) throws Exception {
+        return Endpoints.class.getDeclaredMethod(method).getAnnotation(RateLimit.class);
+    }
+
+    private static class Endpoints {
+
+        @RateLimit(name = "seckill", rules = {
+                @RateLimit.Rule(dimension = RateLimit.Dimension.USER, limit = 5),
+                @RateLimit.Rule(dimension = RateLimit.Dimension.IP, limit = 50),
+                @RateLimit.Rule(dimension = RateLimit.Dimension.PARAM, param = "id", limit = 100)
+        })
+        void seckill() {
+        }
+
+        @RateLimit(name = "code", permitsPerSecond = 0.001, burst = 2, rules = {
+                @RateLimit.Rule(dimension = RateLimit.Dimension.IP, limit = 20, windowSeconds = 60),
+                @RateLimit.Rule(dimension = RateLimit.Dimension.PARAM, param = "phone", limit = 5, windowSeconds = 600)
+        })
+        void code() {
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.IdWorkerConfigProperties;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 03:40
+ * @description 每个 id一次 INCR与号段租用两种模式的吞吐（ids/s）
+ *  redis往返用 REDIS_RTT_MICROS的等待模拟，不会被 surefire执行，运行：在 IDE中执行 main，或 mvn test-compile之后
+ *  java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main RedisIdWorkerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(16)
+@Fork(1)
+public class RedisIdWorkerBenchmark {
+
+    private static final long REDIS_RTT_MICROS = 200;
+
+    @Param({"incr", "lease"})
+    public String mode;
+
+    private RedisIdWorker worker;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.increment(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(REDIS_RTT_MICROS));
+            return counters.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).incrementAndGet();
+        });
+        when(valueOps.increment(anyString(), anyLong())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(REDIS_RTT_MICROS));
+            long delta = invocation.getArgument(1);
+            return counters.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).addAndGet(delta);
+        });
+        IdWorkerConfigProperties properties = new IdWorkerConfigProperties();
+        properties.setMode(mode);
+        worker = new RedisIdWorker(redis, properties);
+    }
+
+    @Benchmark
+    public long nextId() {
+        return worker.nextId("order");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RedisIdWorkerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.IdWorkerConfigProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 03:20
+ * @description 号段租用模式下 id的唯一性，多个节点共用同一个 redis计数器
+ */
+public class RedisIdWorkerTest {
+
+    private static final int NODES = 3;
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20000;
+    private static final int LEASE_SIZE = 1000;
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    @Test
+    public void leasedIdsAreUniqueAcrossNodes() throws Exception {
+        StringRedisTemplate redis = fakeRedis();
+        List<RedisIdWorker> workers = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            workers.add(new RedisIdWorker(redis, properties("lease")));
+        }
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (RedisIdWorker worker : workers) {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = worker.nextId("order");
+                        assertTrue(ids.add(id), "重复的 id: " + id);
+                        // 序列号在低 32位
+                        assertTrue((id & 0xFFFFFFFFL) > 0);
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        int total = NODES * THREADS * IDS_PER_THREAD;
+        assertEquals(total, ids.size());
+        // 每个号段一次往返，加上每个节点最后预取但没用上的号段
+        assertTrue(roundTrips.get() <= total / LEASE_SIZE + NODES * 2, "往返次数：" + roundTrips.get());
+    }
+
+    @Test
+    public void incrModeStillOneRoundTripPerId() {
+        RedisIdWorker worker = new RedisIdWorker(fakeRedis(), properties("incr"));
+        long first = worker.nextId("order");
+        long second = worker.nextId("order");
+        assertEquals(1, (first & 0xFFFFFFFFL));
+        assertEquals(2, (second & 0xFFFFFFFFL));
+        assertEquals(2, roundTrips.get());
+    }
+
+    @Test
+    public void timestampIsDecodedFromId() {
+        RedisIdWorker worker = new RedisIdWorker(fakeRedis(), properties("incr"));
+        long before = System.currentTimeMillis();
+        long timestamp = worker.timestampOf(worker.nextId("order"));
+        // id中的时间精确到秒
+        assertTrue(timestamp > before - 1000 && timestamp <= System.currentTimeMillis(),
+                "timestamp " + timestamp + " before " + before);
+    }
+
+    static IdWorkerConfigProperties properties(String mode) {
+        IdWorkerConfigProperties properties = new IdWorkerConfigProperties();
+        properties.setMode(mode);
+        properties.setLeaseSize(LEASE_SIZE);
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate fakeRedis() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(valueOps);
+        when(valueOps.increment(anyString())).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            return counters.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).incrementAndGet();
+        });
+        when(valueOps.increment(anyString(), anyLong())).thenAnswer(invocation -> {
+            roundTrips.incrementAndGet();
+            long delta = invocation.getArgument(1);
+            return counters.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).addAndGet(delta);
+        });
+        return redis;
+    }
+}
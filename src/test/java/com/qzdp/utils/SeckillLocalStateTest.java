@@ -0,0 +1,81 @@
+package com.qzdp.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.qzdp.utils.RedisConstants.SECKILL_STATE_CHANNEL;
+import static com.qzdp.utils.RedisConstants.SECKILL_TIME_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 01:30
+ * @description 秒杀券本地时间窗口与售罄标记
+ */
+public class SeckillLocalStateTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOps;
+
+    private SeckillLocalState state;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        state = new SeckillLocalState(stringRedisTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void windowIsLoadedOnceAndReloadedOnBroadcast() {
+        when(valueOps.get(SECKILL_TIME_KEY + 1)).thenReturn("100-200-8");
+        for (int i = 0; i < 10; i++) {
+            SeckillLocalState.SeckillWindow window = state.window(1L);
+            assertTrue(window.contains(150));
+            assertFalse(window.contains(201));
+            assertEquals(8, window.getSegments());
+        }
+        verify(valueOps, times(1)).get(SECKILL_TIME_KEY + 1);
+
+        when(valueOps.get(SECKILL_TIME_KEY + 1)).thenReturn("300-400");
+        state.onMessage(message("window:1"), null);
+        assertTrue(state.window(1L).contains(350));
+        assertEquals(1, state.window(1L).getSegments());
+    }
+
+    @Test
+    public void soldOutIsBroadcastAndClearedByNewWindow() {
+        state.markSoldOut(2L);
+        state.markSoldOut(2L);
+        assertTrue(state.isSoldOut(2L));
+        verify(stringRedisTemplate, times(1)).convertAndSend(SECKILL_STATE_CHANNEL, "soldout:2");
+
+        state.onMessage(message("soldout:3"), null);
+        assertTrue(state.isSoldOut(3L));
+
+        state.onMessage(message("window:3"), null);
+        assertFalse(state.isSoldOut(3L));
+    }
+
+    @Test
+    public void missingVoucherIsNotCached() {
+        assertNull(state.window(4L));
+        assertNull(state.window(4L));
+        verify(valueOps, times(2)).get(SECKILL_TIME_KEY + 4);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(SECKILL_STATE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
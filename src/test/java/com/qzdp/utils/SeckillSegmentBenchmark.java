@@ -0,0 +1,203 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.OrderConsumerConfigProperties;
+import io.lettuce.core.cluster.SlotHash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 18:40
+ * @description 不分段与分成 8段时秒杀的对比
+ *  - 每次调用是一轮完整的抢购：USERS个用户各请求两次，直到 STOCK个库存卖完，得分是一轮的耗时（毫秒/轮）
+ *  - 一轮结束后检查没有超卖、每个用户最多买到一次，不满足时直接失败
+ *  redis集群用内存模拟：key按 slot分到 NODES个节点，每个节点单线程串行执行脚本，每次执行耗时 SCRIPT_MICROS，
+ *  脚本逻辑与 secKill.lua、secKillTake.lua一致，不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class SeckillSegmentBenchmark {
+
+    private static final int NODES = 8;
+    private static final int SHARDS = 8;
+    private static final long SCRIPT_MICROS = 200;
+    private static final int CLIENTS = 64;
+    private static final int USERS = 6000;
+    private static final int STOCK = 5000;
+    private static final long VOUCHER_ID = 10L;
+
+    @Param({"1", "8"})
+    public int segments;
+
+    private final OrderShardRouter router = router();
+
+    private ExecutorService clients;
+
+    private FakeCluster cluster;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clients = Executors.newFixedThreadPool(CLIENTS);
+    }
+
+    /**
+     * 每轮开始前库存都是满的
+     */
+    @Setup(Level.Invocation)
+    public void restock() {
+        cluster = new FakeCluster();
+        int[] stocks = OrderShardRouter.splitStock(STOCK, segments);
+        for (int i = 0; i < segments; i++) {
+            cluster.stock.put(router.stockKey(VOUCHER_ID, i), new AtomicInteger(stocks[i]));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void shutdownCluster() {
+        cluster.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clients.shutdownNow();
+    }
+
+    @Benchmark
+    public int sellOut() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        Set<Long> buyers = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>(USERS * 2);
+        for (int u = 0; u < USERS * 2; u++) {
+            long userId = u % USERS;
+            futures.add(clients.submit(() -> {
+                if (secKill(userId) == 0) {
+                    sold.incrementAndGet();
+                    buyers.add(userId);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        int remaining = cluster.stock.values().stream().mapToInt(AtomicInteger::get).sum();
+        if (sold.get() != STOCK || remaining != 0 || buyers.size() != sold.get()
+                || cluster.streamed.get() != sold.get()) {
+            throw new IllegalStateException("sold=" + sold + " remaining=" + remaining + " buyers=" + buyers.size());
+        }
+        return sold.get();
+    }
+
+    /**
+     * 与 VoucherOrderServiceImpl中的分段秒杀流程一致
+     */
+    private int secKill(long userId) throws Exception {
+        if (segments == 1) {
+            return cluster.secKill(router.secKillKeys(VOUCHER_ID), userId, false);
+        }
+        int home = OrderShardRouter.homeSegment(userId, segments);
+        int r = cluster.secKill(router.secKillKeys(VOUCHER_ID, home), userId, true);
+        if (r != 3) {
+            return r;
+        }
+        for (int i = 1; i < segments; i++) {
+            int segment = (home + i) % segments;
+            if (cluster.take(router.takeKeys(VOUCHER_ID, segment)) == 0) {
+                return 0;
+            }
+        }
+        cluster.remove(router.orderKey(VOUCHER_ID, home), userId);
+        return 1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SeckillSegmentBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static OrderShardRouter router() {
+        OrderConsumerConfigProperties properties = new OrderConsumerConfigProperties();
+        properties.setShards(SHARDS);
+        return new OrderShardRouter(properties);
+    }
+
+    /**
+     * 每个节点一个单线程执行器，相当于 redis单线程执行命令
+     */
+    private static class FakeCluster {
+        final Map<String, AtomicInteger> stock = new ConcurrentHashMap<>();
+        final Map<String, Set<Long>> orders = new ConcurrentHashMap<>();
+        final AtomicInteger streamed = new AtomicInteger();
+        final ExecutorService[] nodes = new ExecutorService[NODES];
+
+        FakeCluster() {
+            for (int i = 0; i < NODES; i++) {
+                nodes[i] = Executors.newSingleThreadExecutor();
+            }
+        }
+
+        int secKill(List<String> keys, long userId, boolean reserve) throws Exception {
+            return call(keys.get(0), () -> {
+                AtomicInteger s = stock.get(keys.get(0));
+                Set<Long> users = orders.computeIfAbsent(keys.get(1), k -> new HashSet<>());
+                if (s.get() <= 0) {
+                    if (!reserve) {
+                        return 1;
+                    }
+                    return users.add(userId) ? 3 : 2;
+                }
+                if (users.contains(userId)) {
+                    return 2;
+                }
+                s.decrementAndGet();
+                users.add(userId);
+                streamed.incrementAndGet();
+                return 0;
+            });
+        }
+
+        int take(List<String> keys) throws Exception {
+            return call(keys.get(0), () -> {
+                AtomicInteger s = stock.get(keys.get(0));
+                if (s.get() <= 0) {
+                    return 1;
+                }
+                s.decrementAndGet();
+                streamed.incrementAndGet();
+                return 0;
+            });
+        }
+
+        void remove(String key, long userId) throws Exception {
+            call(key, () -> orders.get(key).remove(userId) ? 1 : 0);
+        }
+
+        int call(String key, Callable<Integer> script) throws Exception {
+            int node = SlotHash.getSlot(key) * NODES / SlotHash.SLOT_COUNT;
+            return nodes[node].submit(() -> {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(SCRIPT_MICROS));
+                return script.call();
+            }).get();
+        }
+
+        void shutdown() {
+            for (ExecutorService node : nodes) {
+                node.shutdown();
+            }
+        }
+    }
+}
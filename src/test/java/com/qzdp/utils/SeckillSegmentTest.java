@@ -0,0 +1,58 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.OrderConsumerConfigProperties;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 00:40
+ * @description 分段库存的拆分与 key的 slot分布，秒杀流程见 VoucherOrderServiceImplTest，吞吐对比见 SeckillSegmentBenchmark
+ */
+public class SeckillSegmentTest {
+
+    private static final int NODES = 8;
+    private static final int SHARDS = 8;
+    private static final long VOUCHER_ID = 10L;
+
+    @Test
+    public void splitStockKeepsTotal() {
+        for (int stock : new int[]{0, 1, 7, 100, 1001}) {
+            for (int segments = 1; segments <= 10; segments++) {
+                int[] split = OrderShardRouter.splitStock(stock, segments);
+                assertEquals(stock, Arrays.stream(split).sum());
+                assertTrue(Arrays.stream(split).max().getAsInt() - Arrays.stream(split).min().getAsInt() <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void segmentKeysShareSlotWithStream() {
+        OrderShardRouter router = router();
+        Set<Integer> slots = new HashSet<>();
+        for (int segment = 0; segment < SHARDS; segment++) {
+            List<String> keys = router.secKillKeys(VOUCHER_ID, segment);
+            int slot = SlotHash.getSlot(keys.get(0));
+            for (String key : keys) {
+                assertEquals(slot, SlotHash.getSlot(key), key);
+            }
+            assertEquals(slot, SlotHash.getSlot(router.takeKeys(VOUCHER_ID, segment).get(1)));
+            slots.add(slot);
+        }
+        // 8个分段分别落在按 slot均分的 8个节点上
+        assertEquals(SHARDS, slots.stream().map(slot -> slot * NODES / SlotHash.SLOT_COUNT).distinct().count());
+        // 第 0段与不分段时的 key相同
+        assertEquals(router.secKillKeys(VOUCHER_ID), router.secKillKeys(VOUCHER_ID, 0));
+    }
+
+    private static OrderShardRouter router() {
+        OrderConsumerConfigProperties properties = new OrderConsumerConfigProperties();
+        properties.setShards(SHARDS);
+        return new OrderShardRouter(properties);
+    }
+}
@@ -0,0 +1,190 @@
+package com.qzdp.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 15:30
+ * @description 热点 key过期瞬间同时涌入 CONCURRENCY个请求，原来“休眠 50ms后递归重试”与 single flight的对比
+ *  - 每次调用是一轮突发请求，得分是最后一个请求返回的耗时（毫秒/轮）
+ *  - lockCalls、redisReads为一轮中访问 redis的次数，peakPolling为一轮中同一时刻在休眠轮询的线程数
+ *  redis往返、数据库查询用等待模拟，不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class SingleFlightBenchmark {
+
+    private static final int CONCURRENCY = 200;
+    private static final long REDIS_RTT_MICROS = 500;
+    private static final long DB_MILLIS = 80;
+
+    @Param({"sleep-retry", "single-flight"})
+    public String mode;
+
+    private ExecutorService executor;
+
+    private SimulatedCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(CONCURRENCY);
+    }
+
+    /**
+     * 每轮开始前缓存都是刚过期的状态
+     */
+    @Setup(Level.Invocation)
+    public void expire() {
+        cache = "sleep-retry".equals(mode) ? new SleepRetryCache() : new SingleFlightCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst(RedisCalls calls) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return cache.get();
+            }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+            future.get();
+        }
+        calls.lockCalls = cache.lockCalls.get();
+        calls.redisReads = cache.redisReads.get();
+        calls.peakPolling = cache.peakPolling.get();
+    }
+
+    /**
+     * 迭代结束时读取，即每次迭代最后一轮的 redis访问次数；JMH输出的是各次迭代之和，需要除以迭代次数
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RedisCalls {
+        public long lockCalls;
+        public long redisReads;
+        public long peakPolling;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SingleFlightBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * 模拟 redis中的缓存和互斥锁
+     */
+    private abstract static class SimulatedCache {
+        final AtomicReference<String> redis = new AtomicReference<>();
+        final AtomicBoolean lock = new AtomicBoolean();
+        final AtomicInteger lockCalls = new AtomicInteger();
+        final AtomicInteger redisReads = new AtomicInteger();
+        final AtomicInteger polling = new AtomicInteger();
+        final AtomicInteger peakPolling = new AtomicInteger();
+
+        String read() {
+            redisReads.incrementAndGet();
+            sleepMicros(REDIS_RTT_MICROS);
+            return redis.get();
+        }
+
+        boolean tryLock() {
+            lockCalls.incrementAndGet();
+            sleepMicros(REDIS_RTT_MICROS);
+            return lock.compareAndSet(false, true);
+        }
+
+        String rebuild() {
+            sleepMicros(TimeUnit.MILLISECONDS.toMicros(DB_MILLIS));
+            redis.set("shop");
+            lock.set(false);
+            return "shop";
+        }
+
+        /**
+         * 休眠等待其它线程重建，同时统计同一时刻在休眠轮询的线程数
+         */
+        void pollWait() {
+            peakPolling.accumulateAndGet(polling.incrementAndGet(), Math::max);
+            try {
+                sleepMicros(TimeUnit.MILLISECONDS.toMicros(50));
+            } finally {
+                polling.decrementAndGet();
+            }
+        }
+
+        abstract String get();
+    }
+
+    /**
+     * 原来的实现：拿不到锁就休眠 50ms后递归重试
+     */
+    private static class SleepRetryCache extends SimulatedCache {
+        @Override
+        String get() {
+            String value = read();
+            if (value != null) {
+                return value;
+            }
+            if (!tryLock()) {
+                pollWait();
+                return get();
+            }
+            return rebuild();
+        }
+    }
+
+    /**
+     * 现在的实现：进程内合并，只有 leader去拿锁
+     */
+    private static class SingleFlightCache extends SimulatedCache {
+        private final SingleFlight singleFlight = new SingleFlight();
+
+        @Override
+        String get() {
+            String value = read();
+            if (value != null) {
+                return value;
+            }
+            return singleFlight.execute("cache:shop:1", () -> {
+                while (!tryLock()) {
+                    pollWait();
+                    String cached = read();
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+                return rebuild();
+            }, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void sleepMicros(long micros) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+}
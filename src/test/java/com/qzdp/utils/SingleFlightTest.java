@@ -0,0 +1,52 @@
+package com.qzdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 16:05
+ * @description single flight的合并效果，与原来“休眠 50ms后递归重试”方式的对比见 SingleFlightBenchmark
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return singleFlight.execute("cache:shop:1", () -> {
+                    loads.incrementAndGet();
+                    sleepMillis(100);
+                    return "shop";
+                }, 1, TimeUnit.SECONDS);
+            }));
+        }
+        start.countDown();
+        for (Future<String> future : futures) {
+            assertEquals("shop", future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    private static void sleepMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
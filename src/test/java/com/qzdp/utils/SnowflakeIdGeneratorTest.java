@@ -0,0 +1,137 @@
+package com.qzdp.utils;
+
+import com.qzdp.config.IdWorkerConfigProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 04:30
+ * @description snowflake id的唯一性、批量生成、时钟回拨与租约失效
+ */
+public class SnowflakeIdGeneratorTest {
+
+    private final IdWorkerConfigProperties properties = new IdWorkerConfigProperties();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private LuaScriptRegistry scriptRegistry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        scriptRegistry = mock(LuaScriptRegistry.class);
+    }
+
+    @Test
+    public void idsAreUniqueAndIncreasing() throws Exception {
+        SnowflakeIdGenerator generator = generator(System::currentTimeMillis);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                long last = 0;
+                for (int i = 0; i < 50000; i++) {
+                    long id = generator.nextId("order");
+                    assertTrue(id > last);
+                    assertTrue(ids.add(id));
+                    last = id;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(400000, ids.size());
+    }
+
+    @Test
+    public void batchSpillsIntoNextMillisecond() {
+        // 每读 10次时钟前进 1ms，批量生成时只在开始和序列号用完时读时钟
+        AtomicLong reads = new AtomicLong();
+        SnowflakeIdGenerator generator = generator(() -> 1700000000000L + reads.getAndIncrement() / 10);
+        long[] ids = generator.nextIds("order", 5000);
+        Set<Long> unique = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(unique.add(ids[i]));
+            if (i > 0) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+            assertEquals(generator.workerId(), (ids[i] >> 12) & SnowflakeIdGenerator.MAX_WORKER_ID);
+        }
+        // 一毫秒只有 4096个序列号，5000个 id跨了两个毫秒
+        assertEquals(2, Arrays.stream(ids).map(id -> id >> 22).distinct().count());
+    }
+
+    @Test
+    public void smallRollbackWaitsLargeRollbackFails() {
+        AtomicLong now = new AtomicLong(1700000000000L);
+        SnowflakeIdGenerator generator = generator(now::get);
+        long first = generator.nextId("order");
+
+        // 回拨 3ms，等待期间时钟继续走
+        now.addAndGet(-3);
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(now::incrementAndGet, 1, 1, TimeUnit.MILLISECONDS);
+        long second = generator.nextId("order");
+        ticker.shutdownNow();
+        assertTrue(second > first);
+
+        now.addAndGet(-1000);
+        assertThrows(IllegalStateException.class, () -> generator.nextId("order"));
+    }
+
+    @Test
+    public void expiredLeaseStopsGeneration() {
+        AtomicLong now = new AtomicLong(1700000000000L);
+        SnowflakeIdGenerator generator = generator(now::get);
+        generator.nextId("order");
+        now.addAndGet(properties.getWorkerTtlMillis());
+        assertThrows(IllegalStateException.class, () -> generator.nextId("order"));
+
+        // 续期成功后恢复
+        when(scriptRegistry.execute(eq(LuaScriptRegistry.RENEW), anyList(), any())).thenReturn(1L);
+        generator.heartbeat();
+        generator.nextId("order");
+    }
+
+    @Test
+    public void newIdsAreAboveRedisWorkerIds() {
+        long nowSecond = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        // RedisIdWorker在同一秒能生成的最大 id
+        long redisMax = (nowSecond - 1640995200L) << 32 | 0xFFFFFFFFL;
+        SnowflakeIdGenerator generator = generator(System::currentTimeMillis);
+        assertTrue(generator.nextId("order") > redisMax);
+    }
+
+    @Test
+    public void timestampIsDecodedFromId() {
+        SnowflakeIdGenerator generator = generator(() -> 1700000000123L);
+        assertEquals(1700000000123L, generator.timestampOf(generator.nextId("order")));
+    }
+
+    private SnowflakeIdGenerator generator(java.util.function.LongSupplier clock) {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(properties, stringRedisTemplate, scriptRegistry, clock);
+        generator.init();
+        return generator;
+    }
+}
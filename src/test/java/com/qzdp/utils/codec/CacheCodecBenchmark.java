@@ -0,0 +1,65 @@
+package com.qzdp.utils.codec;
+
+import com.qzdp.entity.Shop;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author haofeng
+ * @date 2026/10/18 15:10
+ * @description hutool json与二进制编解码一个商铺的耗时（纳秒/次），main中先打印每条缓存的字节数
+ *  不会被 surefire执行，运行方式与 RedisIdWorkerBenchmark相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    @Param({"json", "binary"})
+    public String type;
+
+    private CacheCodec codec;
+
+    private Shop shop;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        codec = newCodec(type);
+        shop = CacheCodecTest.shop();
+        encoded = codec.encode(shop);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(shop);
+    }
+
+    @Benchmark
+    public Shop decode() {
+        return codec.decode(encoded, Shop.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (String type : new String[]{"json", "binary"}) {
+            System.out.printf("%s: %d bytes/entry%n", type, newCodec(type).encode(CacheCodecTest.shop()).length);
+        }
+        Options options = new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static CacheCodec newCodec(String type) {
+        return "json".equals(type) ? new JsonCacheCodec() : new BinaryCacheCodec(EntitySchemas.all(), 1024);
+    }
+}
@@ -0,0 +1,127 @@
+package com.qzdp.utils.codec;
+
+import cn.hutool.core.util.StrUtil;
+import com.qzdp.dto.UserDTO;
+import com.qzdp.entity.Blog;
+import com.qzdp.entity.Shop;
+import com.qzdp.utils.RedisData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author haofeng
+ * @date 2026/10/17 18:20
+ * @description 二进制编解码的正确性、旧 json数据的兼容、损坏数据的处理，以及与 hutool json的体积对比
+ */
+public class CacheCodecTest {
+
+    private final JsonCacheCodec json = new JsonCacheCodec();
+
+    private final BinaryCacheCodec binary = new BinaryCacheCodec(EntitySchemas.all(), 1024);
+
+    private final MigratingCacheCodec codec = new MigratingCacheCodec(binary, json, true);
+
+    @Test
+    public void roundTrip() {
+        Shop shop = shop();
+        Shop decoded = codec.decode(codec.encode(shop), Shop.class);
+        assertEquals(shop, decoded);
+
+        // 空字段不能变成默认值
+        Shop empty = new Shop();
+        empty.setId(2L);
+        assertEquals(empty, codec.decode(codec.encode(empty), Shop.class));
+
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.now().withNano(123456789));
+        redisData.setDelta(35L);
+        redisData.setData(shop);
+        RedisData decodedData = codec.decodeWithExpire(codec.encodeWithExpire(redisData), Shop.class);
+        assertEquals(redisData.getExpireTime(), decodedData.getExpireTime());
+        assertEquals(35L, decodedData.getDelta());
+        assertEquals(shop, decodedData.getData());
+
+        UserDTO user = new UserDTO();
+        user.setId(3L);
+        user.setNickName("可可今天不吃肉");
+        assertEquals(user, codec.decode(codec.encode(user), UserDTO.class));
+        assertTrue(binary.supports(UserDTO.class));
+    }
+
+    @Test
+    public void compressLargeValue() {
+        Blog blog = new Blog();
+        blog.setId(1L);
+        blog.setUserId(2L);
+        blog.setContent(StrUtil.repeat("今天去吃了这家店，味道很好。", 200));
+        byte[] bytes = codec.encode(blog);
+        assertTrue(bytes.length < blog.getContent().length());
+        assertEquals(blog, codec.decode(bytes, Blog.class));
+    }
+
+    @Test
+    public void readLegacyJson() {
+        Shop shop = shop();
+        assertEquals(shop, codec.decode(json.encode(shop), Shop.class));
+
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.now().withNano(0));
+        redisData.setData(shop);
+        assertEquals(shop, codec.decodeWithExpire(json.encodeWithExpire(redisData), Shop.class).getData());
+    }
+
+    @Test
+    public void corruptCompressedValueFails() {
+        Blog blog = new Blog();
+        blog.setId(1L);
+        blog.setContent(StrUtil.repeat("今天去吃了这家店，味道很好。", 200));
+        byte[] bytes = binary.encode(blog);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        // 截断的输入以前会在解压循环里空转
+        assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> assertThrows(IllegalArgumentException.class, () -> binary.decode(truncated, Blog.class)));
+
+        // 原始长度字段被改成远超压缩比上限的值
+        byte[] inflated = bytes.clone();
+        inflated[3] = (byte) 0xFF;
+        inflated[4] = (byte) 0xFF;
+        inflated[5] = (byte) 0x7F;
+        assertThrows(IllegalArgumentException.class, () -> binary.decode(inflated, Blog.class));
+    }
+
+    /**
+     * 耗时对比见 CacheCodecBenchmark
+     */
+    @Test
+    public void smallerThanJson() {
+        Shop shop = shop();
+        int jsonBytes = json.encode(shop).length;
+        int binaryBytes = binary.encode(shop).length;
+        assertTrue(binaryBytes < jsonBytes, "json: " + jsonBytes + " bytes, binary: " + binaryBytes + " bytes");
+    }
+
+    static Shop shop() {
+        Shop shop = new Shop();
+        shop.setId(1L);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(1L);
+        shop.setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg");
+        shop.setArea("大关");
+        shop.setAddress("金华路锦昌文华苑29号");
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setSold(4215);
+        shop.setComments(3035);
+        shop.setScore(37);
+        shop.setOpenHours("10:00-22:00");
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        shop.setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        return shop;
+    }
+}